@@ -0,0 +1,142 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.openmuc.framework.config.ChannelConfig;
+import org.openmuc.framework.config.DeviceConfig;
+import org.openmuc.framework.config.DriverConfig;
+import org.openmuc.framework.config.ParseException;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+
+/**
+ * Generates channel configurations for the benchmarks. Channels are named <code>c0</code> to <code>c(n-1)</code> and
+ * grouped on devices <code>d0</code>, <code>d1</code>, ... of a single driver.
+ */
+public final class BenchmarkChannels {
+
+    private BenchmarkChannels() {
+    }
+
+    /**
+     * Writes a channels.xml with DOUBLE channels.
+     * 
+     * @param file
+     *            the file to write
+     * @param driverId
+     *            the driver of all devices
+     * @param channels
+     *            number of channels
+     * @param channelsPerDevice
+     *            number of channels per device
+     * @param channelSettings
+     *            XML elements added to every channel, e.g. <code>&lt;loggingInterval&gt;1s&lt;/loggingInterval&gt;</code>
+     * @return the written file
+     * @throws IOException
+     *             if the file can not be written
+     */
+    public static File writeChannelsXml(File file, String driverId, int channels, int channelsPerDevice,
+            String channelSettings) throws IOException {
+        try (PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+            writer.println("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>");
+            writer.println("<configuration>");
+            writer.println("  <driver id=\"" + driverId + "\">");
+            for (int i = 0; i < channels; i++) {
+                if (i % channelsPerDevice == 0) {
+                    if (i > 0) {
+                        writer.println("    </device>");
+                    }
+                    int device = i / channelsPerDevice;
+                    writer.println("    <device id=\"d" + device + "\">");
+                    writer.println("      <deviceAddress>d" + device + "</deviceAddress>");
+                }
+                writer.println("      <channel id=\"c" + i + "\">");
+                writer.println("        <description>benchmark channel " + i + "</description>");
+                writer.println("        <channelAddress>" + i + "</channelAddress>");
+                writer.println("        <valueType>DOUBLE</valueType>");
+                writer.println("        " + channelSettings);
+                writer.println("      </channel>");
+            }
+            if (channels > 0) {
+                writer.println("    </device>");
+            }
+            writer.println("  </driver>");
+            writer.println("</configuration>");
+        }
+        return file;
+    }
+
+    /**
+     * Parses a channels.xml the way the data manager does and returns its channels as passed to data loggers.
+     */
+    public static List<LogChannel> logChannels(File channelsXml) throws FileNotFoundException, ParseException {
+        RootConfigImpl rootConfig = RootConfigImpl.createFromFile(channelsXml).cloneWithDefaults();
+        List<LogChannel> logChannels = new ArrayList<>();
+        for (DriverConfig driverConfig : rootConfig.getDrivers()) {
+            for (DeviceConfig deviceConfig : driverConfig.getDevices()) {
+                for (ChannelConfig channelConfig : deviceConfig.getChannels()) {
+                    logChannels.add((ChannelConfigImpl) channelConfig);
+                }
+            }
+        }
+        return logChannels;
+    }
+
+    /**
+     * Creates the records of one logging tick, one valid record per channel.
+     */
+    public static List<LoggingRecord> loggingRecords(List<LogChannel> channels, double value, long timestamp) {
+        List<LoggingRecord> loggingRecords = new ArrayList<>(channels.size());
+        for (LogChannel channel : channels) {
+            loggingRecords.add(new LoggingRecord(channel.getId(), new Record(new DoubleValue(value), timestamp)));
+        }
+        return loggingRecords;
+    }
+
+    public static void deleteRecursively(File directory) throws IOException {
+        if (!directory.exists()) {
+            return;
+        }
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(directory.toPath())) {
+            paths = walk.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+        }
+        for (Path path : paths) {
+            Files.delete(path);
+        }
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.TransformerException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmuc.framework.config.ParseException;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.dataaccess.RecordListener;
+
+/**
+ * Cost of handing a new sample to a channel of an activated data manager: conversion to the configured value type and
+ * scaling, update of the latest record and notification of listeners.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChannelRecordBenchmark {
+
+    @Param({ "none", "scaled" })
+    private String scaling;
+
+    @Param({ "0", "1" })
+    private int listeners;
+
+    private File channelsXml;
+    private DataManager dataManager;
+    private ChannelImpl channel;
+    private long timestamp;
+
+    @Setup
+    public void setup() throws IOException, ParseException, ParserConfigurationException, TransformerException {
+        channelsXml = File.createTempFile("channels", ".xml");
+        BenchmarkChannels.writeChannelsXml(channelsXml, "virtual", 1, 1,
+                scaling.equals("scaled") ? "<scalingFactor>0.1</scalingFactor>" : "");
+
+        dataManager = new DataManager();
+        dataManager.activateWithConfig(channelsXml);
+        channel = (ChannelImpl) dataManager.getChannel("c0");
+        RecordListener listener = record -> {
+        };
+        for (int i = 0; i < listeners; i++) {
+            channel.addListener(listener);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        dataManager.deactivate();
+        channelsXml.delete();
+    }
+
+    @Benchmark
+    public Record setNewRecord() {
+        return channel.setNewRecord(new Record(new DoubleValue(timestamp), ++timestamp));
+    }
+
+    @Benchmark
+    public ChannelImpl setNewDouble() {
+        channel.setNewDouble(timestamp, ++timestamp);
+        return channel;
+    }
+
+}
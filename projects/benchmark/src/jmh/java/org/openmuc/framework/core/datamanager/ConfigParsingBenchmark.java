@@ -0,0 +1,75 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmuc.framework.config.ParseException;
+
+/**
+ * Parsing of a channels.xml by {@link RootConfigImpl#createFromFile(File)} as done on activation and on reload.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConfigParsingBenchmark {
+
+    @Param({ "1000", "10000", "100000" })
+    private int channels;
+
+    private File channelsXml;
+
+    @Setup
+    public void setup() throws IOException {
+        channelsXml = File.createTempFile("channels", ".xml");
+        BenchmarkChannels.writeChannelsXml(channelsXml, "virtual", channels, 100,
+                "<samplingInterval>1s</samplingInterval><loggingInterval>1m</loggingInterval>");
+    }
+
+    @TearDown
+    public void tearDown() {
+        channelsXml.delete();
+    }
+
+    @Benchmark
+    public RootConfigImpl createFromFile() throws IOException, ParseException {
+        return RootConfigImpl.createFromFile(channelsXml);
+    }
+
+}
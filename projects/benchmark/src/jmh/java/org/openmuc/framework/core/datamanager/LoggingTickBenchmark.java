@@ -0,0 +1,169 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmuc.framework.config.ChannelConfig;
+import org.openmuc.framework.config.DeviceConfig;
+import org.openmuc.framework.config.IdCollisionException;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.dataaccess.ChannelState;
+import org.openmuc.framework.datalogger.spi.DataLoggerService;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+
+/**
+ * Cost of one logging tick of {@link LoggingController#triggerLogging(Action)} with three loggers, one of them
+ * requiring logging settings. Half of the channels have no logging settings, the other half name two loggers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoggingTickBenchmark {
+
+    private static final int COLLECTIONS = 10;
+
+    @Param({ "10000", "100000" })
+    private int channels;
+
+    private LoggingController loggingController;
+    private Action action;
+
+    private static final class DiscardingLogger implements DataLoggerService {
+        private final String id;
+        private final boolean settingsRequired;
+        private volatile long records;
+
+        DiscardingLogger(String id, boolean settingsRequired) {
+            this.id = id;
+            this.settingsRequired = settingsRequired;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public void setChannelsToLog(List<LogChannel> channels) {
+        }
+
+        @Override
+        public void log(List<LoggingRecord> containers, long timestamp) {
+            // called by the delivery thread of the logger
+            records += containers.size();
+        }
+
+        @Override
+        public void logEvent(List<LoggingRecord> containers, long timestamp) {
+            records += containers.size();
+        }
+
+        @Override
+        public boolean logSettingsRequired() {
+            return settingsRequired;
+        }
+
+        @Override
+        public List<Record> getRecords(String channelId, long startTime, long endTime) throws IOException {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Record getLatestLogRecord(String channelId) throws IOException {
+            return null;
+        }
+    }
+
+    private final List<DiscardingLogger> loggers = new ArrayList<>();
+
+    @Setup
+    public void setup() throws IdCollisionException {
+        Deque<DataLoggerService> activeDataLoggers = new LinkedBlockingDeque<>();
+        loggers.add(new DiscardingLogger("asciilogger", false));
+        loggers.add(new DiscardingLogger("sqllogger", false));
+        loggers.add(new DiscardingLogger("mqttlogger", true));
+        for (DiscardingLogger logger : loggers) {
+            activeDataLoggers.add(logger);
+        }
+        loggingController = new LoggingController(activeDataLoggers);
+
+        DeviceConfig deviceConfig = new RootConfigImpl().addDriver("driver").addDevice("device");
+        action = new Action(0);
+        action.loggingCollections = new ArrayList<>();
+        for (int i = 0; i < COLLECTIONS; i++) {
+            action.loggingCollections.add(new ChannelCollection(1000 * (i + 1), 0, null, null));
+        }
+
+        for (int i = 0; i < channels; i++) {
+            ChannelConfigImpl config = (ChannelConfigImpl) deviceConfig.addChannel("channel" + i);
+            config.setDisabled(false);
+            config.setListening(false);
+            config.setSamplingInterval(-1);
+            config.setLoggingInterval(ChannelConfig.LOGGING_INTERVAL_DEFAULT);
+            config.setLoggingEvent(false);
+            if (i % 2 == 1) {
+                config.setLoggingSettings("mqttlogger:topic=channel" + i + ";sqllogger");
+            }
+            ChannelImpl channel = new ChannelImpl(null, config, ChannelState.CONNECTED, Flag.VALID, 0,
+                    new ArrayList<>());
+            action.loggingCollections.get(i % COLLECTIONS).add(channel);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        loggingController.shutdown();
+    }
+
+    /**
+     * Measures the data manager side of a tick, the loggers are called asynchronously.
+     */
+    @Benchmark
+    public Object tick() {
+        return loggingController.triggerLogging(action);
+    }
+
+}
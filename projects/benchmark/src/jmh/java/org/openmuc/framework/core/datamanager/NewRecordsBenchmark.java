@@ -0,0 +1,134 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.TransformerException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmuc.framework.config.ParseException;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.driver.spi.ChannelRecordContainer;
+
+/**
+ * Throughput of {@link DataManager#newRecords(List)} from listening drivers, measured end to end: each producer
+ * thread pushes records of its own channel and keeps at most about {@value #MAX_IN_FLIGHT} of them waiting for the
+ * data manager. Use <code>-t</code> to change the number of producer threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class NewRecordsBenchmark {
+
+    private static final int CHANNELS = 100;
+    private static final int MAX_IN_FLIGHT = 1024;
+
+    private final AtomicInteger nextChannel = new AtomicInteger();
+    private final List<ChannelImpl> channels = new ArrayList<>(CHANNELS);
+    private File channelsXml;
+    private DataManager dataManager;
+
+    @State(Scope.Thread)
+    public static class Producer {
+
+        private ChannelImpl channel;
+        private ChannelRecordContainerImpl container;
+        private List<ChannelRecordContainer> containers;
+        private long timestamp;
+
+        @Setup
+        public void setup(NewRecordsBenchmark benchmark) {
+            channel = benchmark.channels.get(benchmark.nextChannel.getAndIncrement() % CHANNELS);
+            container = channel.createChannelRecordContainer();
+            containers = Collections.singletonList(container);
+        }
+
+        @TearDown(Level.Iteration)
+        public void awaitApplied() {
+            awaitApplied(timestamp);
+        }
+
+        void awaitApplied(long timestamp) {
+            while (true) {
+                Record latestRecord = channel.getLatestRecord();
+                if (latestRecord.getTimestamp() != null && latestRecord.getTimestamp() >= timestamp) {
+                    return;
+                }
+                Thread.yield();
+            }
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException, ParseException, ParserConfigurationException, TransformerException {
+        channelsXml = File.createTempFile("channels", ".xml");
+        BenchmarkChannels.writeChannelsXml(channelsXml, "virtual", CHANNELS, CHANNELS,
+                "<listening>true</listening>");
+
+        dataManager = new DataManager();
+        dataManager.activateWithConfig(channelsXml);
+        for (int i = 0; i < CHANNELS; i++) {
+            channels.add((ChannelImpl) dataManager.getChannel("c" + i));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        dataManager.deactivate();
+        channelsXml.delete();
+    }
+
+    @Benchmark
+    public void newRecords(Producer producer) {
+        long timestamp = ++producer.timestamp;
+        producer.container.setDoubleRecord(timestamp, timestamp);
+        dataManager.newRecords(producer.containers);
+        if (timestamp % MAX_IN_FLIGHT == 0) {
+            producer.awaitApplied(timestamp - MAX_IN_FLIGHT / 2);
+        }
+    }
+
+}
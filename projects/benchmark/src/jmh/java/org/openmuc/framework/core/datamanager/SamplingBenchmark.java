@@ -0,0 +1,183 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.TransformerException;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmuc.framework.config.ChannelScanInfo;
+import org.openmuc.framework.config.DriverInfo;
+import org.openmuc.framework.config.ParseException;
+import org.openmuc.framework.driver.spi.ChannelRecordContainer;
+import org.openmuc.framework.driver.spi.ChannelValueContainer;
+import org.openmuc.framework.driver.spi.Connection;
+import org.openmuc.framework.driver.spi.DriverDeviceScanListener;
+import org.openmuc.framework.driver.spi.DriverService;
+import org.openmuc.framework.driver.spi.RecordsReceivedListener;
+
+/**
+ * Sampling of N channels on devices with 100 channels each by the data manager. The driver returns immediately, so
+ * the <code>samples</code> counter is the number of channel samples per second the data manager schedules and
+ * applies. It is <code>channels * 1000 / samplingInterval</code> as long as the data manager keeps up.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SamplingBenchmark {
+
+    private static final int CHANNELS_PER_DEVICE = 100;
+
+    @Param({ "1000", "10000", "100000" })
+    private int channels;
+
+    @Param({ "100" })
+    private int samplingInterval;
+
+    private final BenchmarkDriver driver = new BenchmarkDriver();
+    private File channelsXml;
+    private DataManager dataManager;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+
+        public long samples;
+        private long samplesAtStart;
+
+        @Setup(Level.Iteration)
+        public void setup(SamplingBenchmark benchmark) {
+            samplesAtStart = benchmark.driver.samples.sum();
+        }
+    }
+
+    private static final class BenchmarkDriver implements DriverService {
+
+        private final LongAdder samples = new LongAdder();
+
+        @Override
+        public DriverInfo getInfo() {
+            return new DriverInfo("benchmark", "Driver returning a constant for every channel", "", "", "", "");
+        }
+
+        @Override
+        public void scanForDevices(String settings, DriverDeviceScanListener listener) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void interruptDeviceScan() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Connection connect(String deviceAddress, String settings) {
+            return new BenchmarkConnection(samples);
+        }
+    }
+
+    private static final class BenchmarkConnection implements Connection {
+
+        private final LongAdder samples;
+
+        BenchmarkConnection(LongAdder samples) {
+            this.samples = samples;
+        }
+
+        @Override
+        public List<ChannelScanInfo> scanForChannels(String settings) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Object read(List<ChannelRecordContainer> containers, Object containerListHandle,
+                String samplingGroup) {
+            long timestamp = System.currentTimeMillis();
+            for (ChannelRecordContainer container : containers) {
+                container.setDoubleRecord(42.0, timestamp);
+            }
+            samples.add(containers.size());
+            return null;
+        }
+
+        @Override
+        public void startListening(List<ChannelRecordContainer> containers, RecordsReceivedListener listener) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Object write(List<ChannelValueContainer> containers, Object containerListHandle) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void disconnect() {
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException, ParseException, ParserConfigurationException, TransformerException {
+        channelsXml = File.createTempFile("channels", ".xml");
+        BenchmarkChannels.writeChannelsXml(channelsXml, "benchmark", channels, CHANNELS_PER_DEVICE,
+                "<samplingInterval>" + samplingInterval + "ms</samplingInterval>");
+
+        dataManager = new DataManager();
+        dataManager.activateWithConfig(channelsXml);
+        dataManager.bindDriverService(driver);
+    }
+
+    @TearDown
+    public void tearDown() {
+        dataManager.deactivate();
+        channelsXml.delete();
+    }
+
+    @Benchmark
+    public void sample(Counters counters) {
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        counters.samples = driver.samples.sum() - counters.samplesAtStart;
+    }
+
+}
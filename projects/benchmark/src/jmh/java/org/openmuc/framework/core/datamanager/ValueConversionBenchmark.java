@@ -0,0 +1,171 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmuc.framework.data.BooleanValue;
+import org.openmuc.framework.data.ByteArrayValue;
+import org.openmuc.framework.data.ByteValue;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.FloatValue;
+import org.openmuc.framework.data.IntValue;
+import org.openmuc.framework.data.LongValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.ShortValue;
+import org.openmuc.framework.data.StringValue;
+import org.openmuc.framework.data.TypeConversionException;
+import org.openmuc.framework.data.Value;
+import org.openmuc.framework.data.ValueType;
+
+/**
+ * Compares the per sample conversion of a valid record as it was done by ChannelImpl before (configuration looked up
+ * and switched on for every sample) with the conversion compiled per channel by {@link ValueConverter}.
+ * <p>
+ * Run with <code>gradle :openmuc-benchmark:jmh</code>, results are written as JSON to
+ * <code>build/results/jmh</code>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValueConversionBenchmark {
+
+    @Param({ "BOOLEAN", "BYTE", "SHORT", "INTEGER", "LONG", "FLOAT", "DOUBLE", "BYTE_ARRAY", "STRING" })
+    private ValueType valueType;
+
+    @Param({ "none", "scaled", "offsetScaled" })
+    private String scaling;
+
+    private Double scalingFactor;
+    private Double valueOffset;
+    private ValueConverter converter;
+    private Record driverRecord;
+    private long driverLong;
+    private LatestSample latestSample;
+
+    @Setup
+    public void setup() {
+        if (!scaling.equals("none")) {
+            scalingFactor = 0.1;
+        }
+        if (scaling.equals("offsetScaled")) {
+            valueOffset = -40d;
+        }
+        converter = ValueConverter.compile("benchmark", valueType, scalingFactor, valueOffset);
+        driverLong = 2345;
+        driverRecord = new Record(new DoubleValue(driverLong), System.currentTimeMillis());
+        latestSample = new LatestSample();
+    }
+
+    @Benchmark
+    public Record perSampleLookup() {
+        return convertPerSample(driverRecord);
+    }
+
+    @Benchmark
+    public Record compiled() {
+        Value convertedValue = converter.convert(driverRecord.getValue());
+        if (convertedValue == driverRecord.getValue()) {
+            return driverRecord;
+        }
+        return new Record(convertedValue, driverRecord.getTimestamp(), driverRecord.getFlag());
+    }
+
+    /**
+     * The primitive path used by drivers calling <code>setLongRecord</code>. Falls back to a record for non numeric
+     * value types like ChannelImpl does.
+     */
+    @Benchmark
+    public Object compiledPrimitive() {
+        ValueConverter.Numeric numeric = converter.numeric();
+        if (numeric == null) {
+            return converter.convert(new LongValue(driverLong));
+        }
+        numeric.store(driverLong, 1L, latestSample);
+        return latestSample;
+    }
+
+    private Record convertPerSample(Record record) {
+        if (scalingFactor != null) {
+            try {
+                record = new Record(new DoubleValue(record.getValue().asDouble() * scalingFactor),
+                        record.getTimestamp(), record.getFlag());
+            } catch (TypeConversionException e) {
+                // not reached with the benchmark input
+            }
+        }
+        if (valueOffset != null) {
+            try {
+                record = new Record(new DoubleValue(record.getValue().asDouble() + valueOffset), record.getTimestamp(),
+                        record.getFlag());
+            } catch (TypeConversionException e) {
+                // not reached with the benchmark input
+            }
+        }
+
+        try {
+            switch (valueType) {
+            case BOOLEAN:
+                return new Record(new BooleanValue(record.getValue().asBoolean()), record.getTimestamp(),
+                        record.getFlag());
+            case BYTE:
+                return new Record(new ByteValue(record.getValue().asByte()), record.getTimestamp(), record.getFlag());
+            case SHORT:
+                return new Record(new ShortValue(record.getValue().asShort()), record.getTimestamp(), record.getFlag());
+            case INTEGER:
+                return new Record(new IntValue(record.getValue().asInt()), record.getTimestamp(), record.getFlag());
+            case LONG:
+                return new Record(new LongValue(record.getValue().asLong()), record.getTimestamp(), record.getFlag());
+            case FLOAT:
+                return new Record(new FloatValue(record.getValue().asFloat()), record.getTimestamp(), record.getFlag());
+            case DOUBLE:
+                return new Record(new DoubleValue(record.getValue().asDouble()), record.getTimestamp(),
+                        record.getFlag());
+            case BYTE_ARRAY:
+                return new Record(new ByteArrayValue(record.getValue().asByteArray()), record.getTimestamp(),
+                        record.getFlag());
+            case STRING:
+            default:
+                return new Record(new StringValue(record.getValue().toString()), record.getTimestamp(),
+                        record.getFlag());
+            }
+        } catch (TypeConversionException e) {
+            return new Record(Flag.DRIVER_ERROR_CHANNEL_VALUE_TYPE_CONVERSION_EXCEPTION);
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.ascii;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmuc.framework.config.ParseException;
+import org.openmuc.framework.core.datamanager.BenchmarkChannels;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.datalogger.ascii.utils.Const;
+import org.openmuc.framework.datalogger.ascii.utils.LoggerUtils;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+
+/**
+ * Range and latest value reads of the {@link AsciiLogger} on a full day file logged every second, about 100 MB with
+ * the default of 100 channels. The file is written once with the rows of the first tick repeated for every second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AsciiLargeFileBenchmark {
+
+    private static final int LOGGING_INTERVAL = 1000;
+    private static final int TICKS_PER_DAY = 24 * 60 * 60;
+    private static final int TICKS_PER_HOUR = 60 * 60;
+    private static final long START = new GregorianCalendar(2024, Calendar.JANUARY, 1).getTimeInMillis();
+
+    @Param({ "100" })
+    private int channels;
+
+    private File directory;
+    private AsciiLogger asciiLogger;
+
+    @Setup
+    public void setup() throws IOException, ParseException {
+        directory = Files.createTempDirectory("asciilogger").toFile();
+        File channelsXml = BenchmarkChannels.writeChannelsXml(new File(directory, "channels.xml"), "virtual",
+                channels, channels, "<loggingInterval>" + LOGGING_INTERVAL + "ms</loggingInterval>");
+        List<LogChannel> logChannels = BenchmarkChannels.logChannels(channelsXml);
+
+        File asciiDirectory = new File(directory, "ascii");
+        asciiLogger = new AsciiLogger(asciiDirectory.getPath() + File.separator);
+        asciiLogger.setChannelsToLog(logChannels);
+        asciiLogger.log(BenchmarkChannels.loggingRecords(logChannels, 1, START), START);
+
+        File file = new File(asciiDirectory, LoggerUtils.getFilename(LOGGING_INTERVAL, 0, START));
+        List<String> lines = Files.readAllLines(file.toPath(), Const.CHAR_SET);
+        String firstRow = lines.get(lines.size() - 1);
+        int valuesStart = 0;
+        for (int i = 0; i < Const.NUM_OF_TIME_TYPES_IN_HEADER; i++) {
+            valuesStart = firstRow.indexOf(Const.SEPARATOR, valuesStart) + Const.SEPARATOR.length();
+        }
+        String values = firstRow.substring(valuesStart);
+
+        StringBuilder sb = new StringBuilder();
+        try (OutputStream out = new BufferedOutputStream(
+                Files.newOutputStream(file.toPath(), StandardOpenOption.APPEND), 1 << 16)) {
+            for (int i = 1; i < TICKS_PER_DAY; i++) {
+                sb.setLength(0);
+                LoggerUtils.setLoggerTimestamps(sb, START + (long) i * LOGGING_INTERVAL);
+                sb.append(values).append(Const.LINESEPARATOR);
+                out.write(sb.toString().getBytes(Const.CHAR_SET));
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkChannels.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public List<Record> getRecordsOfOneHour() throws IOException {
+        long startTime = START + 12L * TICKS_PER_HOUR * LOGGING_INTERVAL;
+        return asciiLogger.getRecords("c0", startTime, startTime + (TICKS_PER_HOUR - 1) * LOGGING_INTERVAL);
+    }
+
+    @Benchmark
+    public Record getLatestLogRecord() throws IOException {
+        return asciiLogger.getLatestLogRecord("c0");
+    }
+
+}
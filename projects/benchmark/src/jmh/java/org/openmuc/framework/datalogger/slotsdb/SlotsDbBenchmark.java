@@ -0,0 +1,119 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.slotsdb;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmuc.framework.config.ParseException;
+import org.openmuc.framework.core.datamanager.BenchmarkChannels;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+
+/**
+ * Write and read path of {@link SlotsDb} in a temporary directory. The read benchmark queries one channel over
+ * {@value #READ_TICKS} logged ticks, the write benchmark appends one tick of all channels.
+ * <p>
+ * SlotsDb reads its folder and the group commit mode from system properties when the class is loaded, the properties
+ * are set before the first instance is created. Each fork runs a single benchmark, so every fork gets its own folder.
+ * With group commit the write benchmark includes the fsync of the write-ahead log but not applying the values.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SlotsDbBenchmark {
+
+    private static final int LOGGING_INTERVAL = 1000;
+    private static final int READ_TICKS = 600;
+    private static final long START = new GregorianCalendar(2024, Calendar.JANUARY, 1).getTimeInMillis();
+
+    @Param({ "100", "1000" })
+    private int channels;
+
+    @Param({ "false", "true" })
+    private boolean groupCommit;
+
+    private File directory;
+    private SlotsDb slotsDb;
+    private List<LogChannel> logChannels;
+    private long timestamp;
+
+    @Setup
+    public void setup() throws IOException, ParseException {
+        directory = Files.createTempDirectory("slotsdb").toFile();
+        File channelsXml = BenchmarkChannels.writeChannelsXml(new File(directory, "channels.xml"), "virtual",
+                channels, channels, "<loggingInterval>" + LOGGING_INTERVAL + "ms</loggingInterval>");
+        logChannels = BenchmarkChannels.logChannels(channelsXml);
+
+        System.setProperty(SlotsDb.class.getPackage().getName().toLowerCase() + ".dbfolder",
+                new File(directory, "slotsdb").getPath() + File.separator);
+        System.setProperty(SlotsDb.class.getPackage().getName().toLowerCase() + ".wal", String.valueOf(groupCommit));
+        slotsDb = new SlotsDb();
+        slotsDb.activate(null);
+        slotsDb.setChannelsToLog(logChannels);
+
+        timestamp = START;
+        for (int i = 0; i < READ_TICKS; i++) {
+            log();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        slotsDb.deactivate(null);
+        BenchmarkChannels.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public long log() {
+        double value = timestamp / LOGGING_INTERVAL % 1000;
+        slotsDb.log(BenchmarkChannels.loggingRecords(logChannels, value, timestamp), timestamp);
+        timestamp += LOGGING_INTERVAL;
+        return timestamp;
+    }
+
+    @Benchmark
+    public List<Record> getRecords() throws IOException {
+        return slotsDb.getRecords("c0", START, START + (READ_TICKS - 1) * LOGGING_INTERVAL);
+    }
+
+}
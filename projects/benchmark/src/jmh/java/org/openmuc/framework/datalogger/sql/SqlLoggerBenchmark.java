@@ -0,0 +1,201 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.sql;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmuc.framework.config.ParseException;
+import org.openmuc.framework.core.datamanager.BenchmarkChannels;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+
+/**
+ * Write and read path of the SQL logger on an embedded H2 database in a temporary directory, with the default settings
+ * of {@link SqlLoggerService}. The connection is opened directly instead of through an OSGi DataSourceFactory. The
+ * read benchmark queries one channel over {@value #READ_TICKS} logged ticks, the write benchmark inserts one tick of
+ * all channels and the event benchmark inserts as many events of a single channel, one millisecond apart. The group
+ * logWhileReading logs ticks and reads history in two threads at the same time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SqlLoggerBenchmark {
+
+    private static final int LOGGING_INTERVAL = 1000;
+    private static final int READ_TICKS = 600;
+    private static final long START = new GregorianCalendar(2024, Calendar.JANUARY, 1).getTimeInMillis();
+
+    @Param({ "100", "1000" })
+    private int channels;
+
+    private File directory;
+    private EmbeddedH2Connector connector;
+    private DbAccess dbAccess;
+    private SqlWriter writer;
+    private SqlReader reader;
+    private List<LogChannel> logChannels;
+    private long timestamp;
+    private long eventTimestamp;
+
+    private static final class EmbeddedH2Connector extends DbConnector {
+
+        private Connection connection;
+        private String url;
+
+        void open(File directory) throws SQLException {
+            url = "jdbc:h2:file:" + directory.getAbsolutePath() + "/h2;MODE=MYSQL";
+            connection = openConnection();
+        }
+
+        @Override
+        protected void initConnector() {
+        }
+
+        @Override
+        protected void getConnectionToDb() {
+        }
+
+        @Override
+        public boolean isConnected() {
+            return connection != null;
+        }
+
+        @Override
+        protected Connection getConnection() {
+            return connection;
+        }
+
+        @Override
+        protected Connection openConnection() throws SQLException {
+            return DriverManager.getConnection(url, "openmuc", "openmuc");
+        }
+
+        @Override
+        public void closeConnection() {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                // ignore
+            }
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException, ParseException, SQLException {
+        directory = Files.createTempDirectory("sqllogger").toFile();
+        File channelsXml = BenchmarkChannels.writeChannelsXml(new File(directory, "channels.xml"), "virtual",
+                channels, channels, "<loggingInterval>" + LOGGING_INTERVAL + "ms</loggingInterval>");
+        logChannels = BenchmarkChannels.logChannels(channelsXml);
+
+        // registers the default settings used by the SQL logger classes, its config file goes to the temp directory
+        System.setProperty("felix.fileinstall.dir", new File(directory, "load").getPath());
+        new SqlLoggerService();
+        connector = new EmbeddedH2Connector();
+        connector.open(directory);
+        dbAccess = DbAccess.getTestInstance(connector);
+        new MetaBuilder(logChannels, dbAccess).writeMetaTable();
+        new TableSetup(logChannels, dbAccess).createOpenmucTables();
+        writer = new SqlWriter(dbAccess);
+        reader = new SqlReader(dbAccess);
+
+        timestamp = START;
+        // events are logged before the ticks so their timestamps never collide
+        eventTimestamp = START - TimeUnit.DAYS.toMillis(365);
+        for (int i = 0; i < READ_TICKS; i++) {
+            log();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        writer.shutdown();
+        dbAccess.closeConnection();
+        BenchmarkChannels.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public long log() {
+        double value = timestamp / LOGGING_INTERVAL % 1000;
+        writer.writeRecordContainerToDb(BenchmarkChannels.loggingRecords(logChannels, value, timestamp), timestamp);
+        writer.flush();
+        timestamp += LOGGING_INTERVAL;
+        return timestamp;
+    }
+
+    @Benchmark
+    public long logEvents() {
+        List<LoggingRecord> events = new ArrayList<>(channels);
+        for (int i = 0; i < channels; i++) {
+            events.add(new LoggingRecord("c0", new Record(new DoubleValue(i), eventTimestamp++)));
+        }
+        writer.writeEventBasedContainerToDb(events);
+        writer.flush();
+        return eventTimestamp;
+    }
+
+    @Benchmark
+    public List<Record> getRecords() {
+        return reader.readRecordListFromDb("c0", ValueType.DOUBLE, START, START + (READ_TICKS - 1) * LOGGING_INTERVAL);
+    }
+
+    @Benchmark
+    @Group("logWhileReading")
+    public long logWhileReading() {
+        return log();
+    }
+
+    @Benchmark
+    @Group("logWhileReading")
+    public List<Record> readWhileLogging() {
+        return getRecords();
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.lib.filePersistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmuc.framework.core.datamanager.BenchmarkChannels;
+
+/**
+ * Replay of a file buffer as done by the MQTT and AMQP writer after a reconnect: every iteration writes a backlog of
+ * backlogMb of messages and reads it back message by message. The time per MB is about the time of a 1 GB backlog in
+ * milliseconds.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FilePersistenceBenchmark {
+
+    private static final String BUFFER = "topic/test";
+    private static final int MAX_FILE_SIZE_KB = 4096;
+
+    @Param({ "64" })
+    private int backlogMb;
+
+    @Param({ "1024" })
+    private int messageSize;
+
+    private File directory;
+    private FilePersistence filePersistence;
+
+    @Setup(Level.Iteration)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("filepersistence").toFile();
+        int maxFileCount = backlogMb * 1024 / MAX_FILE_SIZE_KB + 2;
+        filePersistence = new FilePersistence(directory.getPath(), maxFileCount, MAX_FILE_SIZE_KB);
+        byte[] message = new byte[messageSize];
+        Arrays.fill(message, (byte) 'x');
+        long messages = (long) backlogMb * 1024 * 1024 / messageSize;
+        for (long i = 0; i < messages; i++) {
+            filePersistence.writeBufferToFile(BUFFER, message);
+        }
+        filePersistence.flush();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        filePersistence.close();
+        BenchmarkChannels.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public long replay() {
+        long bytes = 0;
+        while (filePersistence.fileExistsFor(BUFFER)) {
+            bytes += filePersistence.getMessage(BUFFER).length;
+        }
+        return bytes;
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.lib.parser.binary;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+import org.openmuc.framework.lib.parser.openmuc.OpenmucParserServiceImpl;
+import org.openmuc.framework.parser.spi.ParserService;
+import org.openmuc.framework.parser.spi.SerializationException;
+
+/**
+ * Messages per second and thread of the binary parser compared to the JSON parser. The list benchmark serializes one
+ * message of {@value #LIST_SIZE} records logged at the same time. The serialize benchmarks report the message size in
+ * bytes as secondary result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserComparisonBenchmark {
+
+    private static final int LIST_SIZE = 100;
+
+    @Param({ "openmuc", "binary" })
+    private String parser;
+
+    private ParserService parserService;
+    private LoggingRecord loggingRecord;
+    private List<LoggingRecord> loggingRecords;
+    private byte[] serializedRecord;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class MessageSize {
+
+        public long messageBytes;
+    }
+
+    @Setup
+    public void setup() throws SerializationException {
+        parserService = parser.equals("binary") ? new BinaryParserServiceImpl() : new OpenmucParserServiceImpl();
+
+        long timestamp = 1582722316000L;
+        loggingRecord = new LoggingRecord("c0", new Record(new DoubleValue(230.17), timestamp));
+        loggingRecords = new ArrayList<>(LIST_SIZE);
+        for (int i = 0; i < LIST_SIZE; i++) {
+            loggingRecords.add(new LoggingRecord("c" + i, new Record(new DoubleValue(i * 0.25), timestamp)));
+        }
+        serializedRecord = parserService.serialize(loggingRecord);
+    }
+
+    @Benchmark
+    public byte[] serialize(MessageSize size) throws SerializationException {
+        byte[] message = parserService.serialize(loggingRecord);
+        size.messageBytes = message.length;
+        return message;
+    }
+
+    @Benchmark
+    public byte[] serializeList(MessageSize size) throws SerializationException {
+        byte[] message = parserService.serialize(loggingRecords);
+        size.messageBytes = message.length;
+        return message;
+    }
+
+    @Benchmark
+    public Record deserialize() {
+        return parserService.deserialize(serializedRecord, ValueType.DOUBLE);
+    }
+
+}
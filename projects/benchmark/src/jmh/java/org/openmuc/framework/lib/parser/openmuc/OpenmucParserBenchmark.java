@@ -0,0 +1,107 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.lib.parser.openmuc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+import org.openmuc.framework.parser.spi.SerializationException;
+
+/**
+ * Messages per second and thread of the {@link OpenmucParserServiceImpl}, i.e. per core if the benchmark is run with
+ * one thread per core ({@code -t}). The list benchmark serializes one MQTT message of {@value #LIST_SIZE} records.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OpenmucParserBenchmark {
+
+    private static final int LIST_SIZE = 100;
+
+    private final OpenmucParserServiceImpl parserService = new OpenmucParserServiceImpl();
+    private LoggingRecord loggingRecord;
+    private List<LoggingRecord> loggingRecords;
+    private byte[] serializedRecord;
+
+    @State(Scope.Thread)
+    public static class ThreadBuffers {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(64 * 1024);
+    }
+
+    @Setup
+    public void setup() throws SerializationException {
+        long timestamp = 1582722316000L;
+        loggingRecord = new LoggingRecord("c0", new Record(new DoubleValue(230.17), timestamp));
+        loggingRecords = new ArrayList<>(LIST_SIZE);
+        for (int i = 0; i < LIST_SIZE; i++) {
+            loggingRecords.add(new LoggingRecord("c" + i, new Record(new DoubleValue(i * 0.25), timestamp)));
+        }
+        serializedRecord = parserService.serialize(loggingRecord);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws SerializationException {
+        return parserService.serialize(loggingRecord);
+    }
+
+    @Benchmark
+    public int serializeToByteBuffer(ThreadBuffers buffers) throws SerializationException {
+        buffers.buffer.clear();
+        parserService.serialize(loggingRecord, buffers.buffer);
+        return buffers.buffer.position();
+    }
+
+    @Benchmark
+    public int serializeListToOutputStream(ThreadBuffers buffers) throws SerializationException, IOException {
+        buffers.outputStream.reset();
+        parserService.serialize(loggingRecords, buffers.outputStream);
+        return buffers.outputStream.size();
+    }
+
+    @Benchmark
+    public Record deserialize() {
+        return parserService.deserialize(serializedRecord, ValueType.DOUBLE);
+    }
+
+}
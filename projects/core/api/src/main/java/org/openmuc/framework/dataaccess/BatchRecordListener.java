@@ -0,0 +1,63 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.dataaccess;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.openmuc.framework.data.Record;
+
+/**
+ * Record listener which is notified with all records of a channel that arrived since its last notification instead
+ * of being called once per record. Useful for listeners which cannot keep up with bursts of updates, e.g. servers
+ * forwarding records over the network.
+ * <p>
+ * Register it with {@link Channel#addListener(RecordListener)} like any other record listener.
+ */
+public interface BatchRecordListener extends RecordListener {
+
+    /**
+     * Called with the new records of the channel the listener was added to, in the order they were received. The list
+     * is never empty.
+     *
+     * @param records
+     *            the new records, oldest first
+     */
+    void newRecords(List<Record> records);
+
+    /**
+     * If <code>true</code> only the latest record is kept while the listener is busy ("latest value wins"), so
+     * {@link #newRecords(List)} is always called with a single record. Suited for consumers which only display the
+     * current value, e.g. user interfaces. Default is <code>false</code>.
+     *
+     * @return whether pending records are coalesced
+     */
+    default boolean isCoalescing() {
+        return false;
+    }
+
+    @Override
+    default void newRecord(Record record) {
+        newRecords(Collections.singletonList(record));
+    }
+
+}
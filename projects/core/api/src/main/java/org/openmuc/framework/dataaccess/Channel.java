@@ -23,6 +23,7 @@ package org.openmuc.framework.dataaccess;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.openmuc.framework.data.Flag;
 import org.openmuc.framework.data.FutureValue;
@@ -197,6 +198,11 @@ public interface Channel {
 
     /**
      * Adds a listener that is notified of new records received by sampling or listening.
+     * <p>
+     * Listeners are notified asynchronously. The records of this channel reach a listener in the order they were
+     * received and a listener is never called concurrently for the same channel. Records for a listener that falls
+     * behind are queued up to a bounded capacity, after which the oldest records are dropped. Implement
+     * {@link BatchRecordListener} to receive pending records in one call.
      *
      * @param listener
      *            the record listener that is notified of new records.
@@ -349,4 +355,51 @@ public interface Channel {
      */
     List<Record> getLoggedRecords(long startTime, long endTime) throws DataLoggerNotAvailableException, IOException;
 
+    /**
+     * Returns the logged data records from <code>startTime</code> to <code>endTime</code> inclusive at a resolution of
+     * at most <code>resolution</code>. Data loggers keeping downsampled data return one record per interval with the
+     * average of the interval, others return all logged records. The default implementation returns all logged
+     * records.
+     *
+     * @param startTime
+     *            the starting time in milliseconds since midnight, January 1, 1970 UTC. inclusive
+     * @param endTime
+     *            the ending time in milliseconds since midnight, January 1, 1970 UTC. inclusive
+     * @param resolution
+     *            the largest acceptable interval between two records in milliseconds, 0 for all logged records.
+     * @return the logged or aggregated data records from <code>startTime</code> to <code>endTime</code> inclusive.
+     * @throws DataLoggerNotAvailableException
+     *             if no data logger is installed and therefore no logged data can be accessed.
+     * @throws IOException
+     *             if any kind of error occurs accessing the logged data.
+     */
+    default List<Record> getLoggedRecords(long startTime, long endTime, long resolution)
+            throws DataLoggerNotAvailableException, IOException {
+        return getLoggedRecords(startTime, endTime);
+    }
+
+    /**
+     * Passes the logged data records with timestamps from <code>startTime</code> to <code>endTime</code> inclusive to
+     * the <code>consumer</code> in ascending order of their timestamps, without holding all records in memory. Use
+     * this method instead of <code>getLoggedRecords</code> for long time spans. The default implementation passes the
+     * records returned by {@link #getLoggedRecords(long, long)}.
+     *
+     * @param startTime
+     *            the starting time in milliseconds since midnight, January 1, 1970 UTC. inclusive
+     * @param endTime
+     *            the ending time in milliseconds since midnight, January 1, 1970 UTC. inclusive
+     * @param consumer
+     *            receives the records. Exceptions thrown by the consumer are passed on to the caller.
+     * @throws DataLoggerNotAvailableException
+     *             if no data logger is installed and therefore no logged data can be accessed.
+     * @throws IOException
+     *             if any kind of error occurs accessing the logged data.
+     */
+    default void readLoggedRecords(long startTime, long endTime, Consumer<Record> consumer)
+            throws DataLoggerNotAvailableException, IOException {
+        for (Record record : getLoggedRecords(startTime, endTime)) {
+            consumer.accept(record);
+        }
+    }
+
 }
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Time ordered queue of the actions executed by the data manager thread.
+ * <p>
+ * Actions are kept in a sorted map by start time, so inserting a collection, timeout or reconnect at an arbitrary
+ * time costs O(log n) instead of a linear walk over all pending actions. Sampling and logging collections are
+ * additionally indexed by their (interval, offset, sampling group, device) key so that channels find their collection
+ * in constant time while a configuration is applied.
+ * <p>
+ * Not thread safe, must only be accessed by the data manager thread.
+ */
+public final class ActionScheduler {
+
+    private final TreeMap<Long, Action> actions = new TreeMap<>();
+    private final Map<CollectionKey, ChannelCollection> samplingCollections = new HashMap<>();
+    private final Map<CollectionKey, ChannelCollection> loggingCollections = new HashMap<>();
+    private final Map<Device, Action> connectionRetryActions = new HashMap<>();
+
+    public boolean isEmpty() {
+        return actions.isEmpty();
+    }
+
+    public int size() {
+        return actions.size();
+    }
+
+    /**
+     * @return the action with the earliest start time or <code>null</code> if no action is scheduled
+     */
+    public Action first() {
+        Map.Entry<Long, Action> firstEntry = actions.firstEntry();
+        return firstEntry == null ? null : firstEntry.getValue();
+    }
+
+    /**
+     * Removes the action with the earliest start time. The collections of the action stay indexed, they are expected
+     * to be rescheduled by the caller.
+     *
+     * @return the removed action or <code>null</code> if no action is scheduled
+     */
+    public Action removeFirst() {
+        Map.Entry<Long, Action> firstEntry = actions.pollFirstEntry();
+        if (firstEntry == null) {
+            return null;
+        }
+        Action action = firstEntry.getValue();
+        if (action.connectionRetryDevices != null) {
+            for (Device device : action.connectionRetryDevices) {
+                connectionRetryActions.remove(device, action);
+            }
+        }
+        return action;
+    }
+
+    public void addSamplingCollection(ChannelCollection channelCollection, long startTimestamp) {
+        Action action = getOrCreateAction(startTimestamp);
+        if (action.samplingCollections == null) {
+            action.samplingCollections = new LinkedList<>();
+        }
+        action.samplingCollections.add(channelCollection);
+        channelCollection.action = action;
+        samplingCollections.put(CollectionKey.of(channelCollection), channelCollection);
+    }
+
+    public void addLoggingCollection(ChannelCollection channelCollection, long startTimestamp) {
+        Action action = getOrCreateAction(startTimestamp);
+        if (action.loggingCollections == null) {
+            action.loggingCollections = new LinkedList<>();
+        }
+        action.loggingCollections.add(channelCollection);
+        channelCollection.action = action;
+        loggingCollections.put(CollectionKey.of(channelCollection), channelCollection);
+    }
+
+    public void addReconnectDevice(Device device, long startTimestamp) {
+        Action action = getOrCreateAction(startTimestamp);
+        if (action.connectionRetryDevices == null) {
+            action.connectionRetryDevices = new LinkedList<>();
+        }
+        action.connectionRetryDevices.add(device);
+        connectionRetryActions.putIfAbsent(device, action);
+    }
+
+    public void addSamplingWorkerTimeout(SamplingTask samplingTask, long timeout) {
+        Action action = getOrCreateAction(timeout);
+        if (action.timeouts == null) {
+            action.timeouts = new LinkedList<>();
+        }
+        action.timeouts.add(samplingTask);
+    }
+
+    public ChannelCollection findSamplingCollection(int interval, int timeOffset, String samplingGroup,
+            Device device) {
+        return samplingCollections.get(new CollectionKey(interval, timeOffset, samplingGroup, device));
+    }
+
+    public ChannelCollection findLoggingCollection(int interval, int timeOffset) {
+        return loggingCollections.get(new CollectionKey(interval, timeOffset, null, null));
+    }
+
+    /**
+     * Unschedules a sampling collection and drops it from the index.
+     */
+    public void removeSamplingCollection(ChannelCollection channelCollection) {
+        if (channelCollection.action != null && channelCollection.action.samplingCollections != null) {
+            channelCollection.action.samplingCollections.remove(channelCollection);
+        }
+        samplingCollections.remove(CollectionKey.of(channelCollection), channelCollection);
+    }
+
+    /**
+     * Unschedules a logging collection and drops it from the index.
+     */
+    public void removeLoggingCollection(ChannelCollection channelCollection) {
+        if (channelCollection.action != null && channelCollection.action.loggingCollections != null) {
+            channelCollection.action.loggingCollections.remove(channelCollection);
+        }
+        loggingCollections.remove(CollectionKey.of(channelCollection), channelCollection);
+    }
+
+    /**
+     * Unschedules the logging collections of the action which have no channels left and drops them from the index.
+     */
+    public void removeEmptyLoggingCollections(Action action) {
+        if (action.loggingCollections == null) {
+            return;
+        }
+        Iterator<ChannelCollection> iterator = action.loggingCollections.iterator();
+        while (iterator.hasNext()) {
+            ChannelCollection loggingCollection = iterator.next();
+            if (loggingCollection.channels.isEmpty()) {
+                iterator.remove();
+                loggingCollections.remove(CollectionKey.of(loggingCollection), loggingCollection);
+            }
+        }
+    }
+
+    public void removeReconnectDevice(Device device) {
+        Action action = connectionRetryActions.remove(device);
+        if (action != null && action.connectionRetryDevices != null && action.connectionRetryDevices.remove(device)) {
+            return;
+        }
+        for (Action currentAction : actions.values()) {
+            if (currentAction.connectionRetryDevices != null && currentAction.connectionRetryDevices.remove(device)) {
+                break;
+            }
+        }
+    }
+
+    private Action getOrCreateAction(long startTimestamp) {
+        Action action = actions.get(startTimestamp);
+        if (action == null) {
+            action = new Action(startTimestamp);
+            actions.put(startTimestamp, action);
+        }
+        return action;
+    }
+
+    private static final class CollectionKey {
+
+        private final int interval;
+        private final int timeOffset;
+        private final String samplingGroup;
+        private final Device device;
+
+        CollectionKey(int interval, int timeOffset, String samplingGroup, Device device) {
+            this.interval = interval;
+            this.timeOffset = timeOffset;
+            this.samplingGroup = samplingGroup;
+            this.device = device;
+        }
+
+        static CollectionKey of(ChannelCollection channelCollection) {
+            return new CollectionKey(channelCollection.interval, channelCollection.timeOffset,
+                    channelCollection.samplingGroup, channelCollection.device);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof CollectionKey)) {
+                return false;
+            }
+            CollectionKey other = (CollectionKey) obj;
+            return interval == other.interval && timeOffset == other.timeOffset && device == other.device
+                    && Objects.equals(samplingGroup, other.samplingGroup);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(interval, timeOffset, samplingGroup, System.identityHashCode(device));
+        }
+    }
+}
@@ -21,17 +21,22 @@
 
 package org.openmuc.framework.core.datamanager;
 
-import java.util.LinkedList;
-import java.util.List;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 public final class ChannelCollection {
 
-    List<ChannelImpl> channels = new LinkedList<>();
+    Set<ChannelImpl> channels = new LinkedHashSet<>();
     int interval;
     int timeOffset;
     String samplingGroup;
     Device device;
     Action action;
+    /**
+     * Logger routing of the channels, built by the {@link LoggingController}. Reset whenever channels are added or
+     * removed.
+     */
+    LoggingController.CollectionRoute loggingRoute;
 
     public ChannelCollection(Integer interval, Integer timeOffset, String samplingGroup, Device device) {
         this.interval = interval;
@@ -40,6 +45,16 @@ public final class ChannelCollection {
         this.device = device;
     }
 
+    void add(ChannelImpl channel) {
+        channels.add(channel);
+        loggingRoute = null;
+    }
+
+    void remove(ChannelImpl channel) {
+        channels.remove(channel);
+        loggingRoute = null;
+    }
+
     public long calculateNextActionTime(long timestamp) {
         return ((interval - (((timestamp % (24 * 60 * 60 * 1000)) - timeOffset) % interval)) + timestamp);
     }
@@ -22,18 +22,11 @@
 package org.openmuc.framework.core.datamanager;
 
 import org.openmuc.framework.config.ChannelConfig;
-import org.openmuc.framework.data.BooleanValue;
-import org.openmuc.framework.data.ByteArrayValue;
-import org.openmuc.framework.data.ByteValue;
 import org.openmuc.framework.data.DoubleValue;
 import org.openmuc.framework.data.Flag;
-import org.openmuc.framework.data.FloatValue;
 import org.openmuc.framework.data.FutureValue;
-import org.openmuc.framework.data.IntValue;
 import org.openmuc.framework.data.LongValue;
 import org.openmuc.framework.data.Record;
-import org.openmuc.framework.data.ShortValue;
-import org.openmuc.framework.data.StringValue;
 import org.openmuc.framework.data.TypeConversionException;
 import org.openmuc.framework.data.Value;
 import org.openmuc.framework.data.ValueType;
@@ -55,24 +48,30 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
-import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public final class ChannelImpl implements Channel {
 
     private static final Logger logger = LoggerFactory.getLogger(ChannelImpl.class);
-    private final Set<RecordListener> listeners = new LinkedHashSet<>();
+    private final Map<RecordListener, ListenerQueue> listeners = new LinkedHashMap<>();
     private final DataManager dataManager;
     volatile ChannelConfigImpl config;
+    private volatile ValueConverter converter;
     ChannelCollection samplingCollection;
     ChannelCollection loggingCollection;
+    // indices of the loggers of this channel, maintained by the LoggingController
+    int[] loggingRoute;
+    int loggingRouteVersion;
     volatile Object handle;
     private volatile Record latestRecord;
+    private final LatestSample latestSample = new LatestSample();
     private Timer timer = null;
     private List<FutureValue> futureValues;
 
@@ -80,6 +79,7 @@ public final class ChannelImpl implements Channel {
             long currentTime, List<LogChannel> logChannels) {
         this.dataManager = dataManager;
         this.config = config;
+        this.converter = ValueConverter.compile(config);
         this.futureValues = new ArrayList<>();
 
         if (config.isDisabled()) {
@@ -206,7 +206,9 @@ public final class ChannelImpl implements Channel {
     @Override
     public void addListener(RecordListener listener) {
         synchronized (listeners) {
-            listeners.add(listener);
+            if (!listeners.containsKey(listener)) {
+                listeners.put(listener, new ListenerQueue(listener, config.getId(), dataManager.executors.common()));
+            }
         }
     }
 
@@ -219,7 +221,22 @@ public final class ChannelImpl implements Channel {
 
     @Override
     public Record getLatestRecord() {
-        return latestRecord;
+        Record record = latestRecord;
+        if (record != null) {
+            return record;
+        }
+        synchronized (latestSample) {
+            if (latestRecord == null) {
+                latestRecord = latestSample.toRecord();
+            }
+            return latestRecord;
+        }
+    }
+
+    private void updateLatestRecord(Record record) {
+        synchronized (latestSample) {
+            latestRecord = record;
+        }
     }
 
     @Override
@@ -248,23 +265,41 @@ public final class ChannelImpl implements Channel {
     @Override
     public List<Record> getLoggedRecords(long startTime, long endTime)
             throws DataLoggerNotAvailableException, IOException {
+        return getLoggedRecords(startTime, endTime, 0);
+    }
+
+    @Override
+    public List<Record> getLoggedRecords(long startTime, long endTime, long resolution)
+            throws DataLoggerNotAvailableException, IOException {
         String reader = getValidReaderIdFromConfig();
-        List<Record> toReturn = dataManager.getDataLogger(reader).getRecords(config.getId(), startTime, endTime);
+        List<Record> toReturn = dataManager.getDataLogger(reader).getRecords(config.getId(), startTime, endTime,
+                resolution);
+        addFutureValues(endTime, toReturn::add);
+        return toReturn;
+    }
 
+    @Override
+    public void readLoggedRecords(long startTime, long endTime, Consumer<Record> consumer)
+            throws DataLoggerNotAvailableException, IOException {
+        String reader = getValidReaderIdFromConfig();
+        dataManager.getDataLogger(reader).readRecords(config.getId(), startTime, endTime, consumer);
+        addFutureValues(endTime, consumer);
+    }
+
+    private void addFutureValues(long endTime, Consumer<Record> consumer) {
         // values in the future values list are sorted.
         Long currentTime = System.currentTimeMillis();
         for (FutureValue futureValue : futureValues) {
             if (futureValue.getWriteTime() >= currentTime) {
                 if (futureValue.getWriteTime() <= endTime) {
                     Record futureValAsRec = new Record(futureValue.getValue(), futureValue.getWriteTime());
-                    toReturn.add(futureValAsRec);
+                    consumer.accept(futureValAsRec);
                 }
                 else {
                     break;
                 }
             }
         }
-        return toReturn;
     }
 
     private String getValidReaderIdFromConfig() {
@@ -291,68 +326,67 @@ public final class ChannelImpl implements Channel {
 
         if (record.getFlag() == Flag.VALID) {
             convertedRecord = convertValidRecord(record);
+            updateLatestRecord(convertedRecord);
         }
         else {
-            convertedRecord = new Record(latestRecord.getValue(), latestRecord.getTimestamp(), record.getFlag());
+            // the value of the latest record is kept, so it has to be read and replaced under the same lock
+            synchronized (latestSample) {
+                Record latest = getLatestRecord();
+                convertedRecord = new Record(latest.getValue(), latest.getTimestamp(), record.getFlag());
+                latestRecord = convertedRecord;
+            }
         }
 
-        latestRecord = convertedRecord;
         notifyListeners();
 
         return convertedRecord;
     }
 
-    private Record convertValidRecord(Record record) {
-        Double scalingFactor = config.getScalingFactor();
-        Double scalingOffset = config.getValueOffset();
+    /**
+     * Primitive counterpart of {@link #setNewRecord(Record)} for a valid double sample. For numeric value types the
+     * converted value is stored in a reused slot and no {@link Record} is created unless it is requested.
+     */
+    void setNewDouble(double value, long timestamp) {
+        ValueConverter.Numeric converter = this.converter.numeric();
+        if (converter == null) {
+            setNewRecord(new Record(new DoubleValue(value), timestamp));
+            return;
+        }
 
-        if (scalingFactor != null) {
-            try {
-                record = new Record(new DoubleValue(record.getValue().asDouble() * scalingFactor),
-                        record.getTimestamp(), record.getFlag());
-            } catch (TypeConversionException e) {
-                String msg = "Unable to apply scaling factor to channel " + config.getId()
-                        + " because a TypeConversionError occurred.";
-                logger.error(msg, e);
-            }
+        synchronized (latestSample) {
+            converter.store(value, timestamp, latestSample);
+            latestRecord = null;
         }
-        if (scalingOffset != null) {
-            try {
-                record = new Record(new DoubleValue(record.getValue().asDouble() + scalingOffset),
-                        record.getTimestamp(), record.getFlag());
-            } catch (TypeConversionException e) {
-                String msg = "Unable to apply scaling offset to channel " + config.getId()
-                        + " because a TypeConversionError occurred.";
-                logger.error(msg, e);
-            }
+        notifyListeners();
+    }
+
+    /**
+     * Primitive counterpart of {@link #setNewRecord(Record)} for a valid long sample.
+     * 
+     * @see #setNewDouble(double, long)
+     */
+    void setNewLong(long value, long timestamp) {
+        ValueConverter.Numeric converter = this.converter.numeric();
+        if (converter == null) {
+            setNewRecord(new Record(new LongValue(value), timestamp));
+            return;
+        }
+
+        synchronized (latestSample) {
+            converter.store(value, timestamp, latestSample);
+            latestRecord = null;
         }
+        notifyListeners();
+    }
 
+    private Record convertValidRecord(Record record) {
         try {
-            switch (config.getValueType()) {
-            case BOOLEAN:
-                return new Record(new BooleanValue(record.getValue().asBoolean()), record.getTimestamp(),
-                        record.getFlag());
-            case BYTE:
-                return new Record(new ByteValue(record.getValue().asByte()), record.getTimestamp(), record.getFlag());
-            case SHORT:
-                return new Record(new ShortValue(record.getValue().asShort()), record.getTimestamp(), record.getFlag());
-            case INTEGER:
-                return new Record(new IntValue(record.getValue().asInt()), record.getTimestamp(), record.getFlag());
-            case LONG:
-                return new Record(new LongValue(record.getValue().asLong()), record.getTimestamp(), record.getFlag());
-            case FLOAT:
-                return new Record(new FloatValue(record.getValue().asFloat()), record.getTimestamp(), record.getFlag());
-            case DOUBLE:
-                return new Record(new DoubleValue(record.getValue().asDouble()), record.getTimestamp(),
-                        record.getFlag());
-            case BYTE_ARRAY:
-                return new Record(new ByteArrayValue(record.getValue().asByteArray()), record.getTimestamp(),
-                        record.getFlag());
-            case STRING:
-            default:
-                return new Record(new StringValue(record.getValue().toString()), record.getTimestamp(),
-                        record.getFlag());
+            Value value = record.getValue();
+            Value convertedValue = converter.convert(value);
+            if (convertedValue == value) {
+                return record;
             }
+            return new Record(convertedValue, record.getTimestamp(), record.getFlag());
         } catch (TypeConversionException e) {
             logger.error("Unable to convert value to configured value type because a TypeConversionError occured.", e);
             return new Record(Flag.DRIVER_ERROR_CHANNEL_VALUE_TYPE_CONVERSION_EXCEPTION);
@@ -365,22 +399,35 @@ public final class ChannelImpl implements Channel {
         }
 
         synchronized (listeners) {
-            for (RecordListener listener : listeners) {
-                config.deviceParent.device.dataManager.executor.execute(new ListenerNotifier(listener, latestRecord));
+            Record record = getLatestRecord();
+            for (ListenerQueue listenerQueue : listeners.values()) {
+                listenerQueue.offer(record);
             }
         }
 
     }
 
+    /**
+     * Replaces the configuration of this channel and compiles the value conversion for it.
+     */
+    void setConfig(ChannelConfigImpl config) {
+        this.config = config;
+        this.converter = ValueConverter.compile(config);
+    }
+
     ChannelRecordContainerImpl createChannelRecordContainer() {
         return new ChannelRecordContainerImpl(this);
     }
 
     void setFlag(Flag flag) {
-        if (flag != latestRecord.getFlag()) {
-            latestRecord = new Record(latestRecord.getValue(), latestRecord.getTimestamp(), flag);
-            notifyListeners();
+        synchronized (latestSample) {
+            Record latest = getLatestRecord();
+            if (flag == latest.getFlag()) {
+                return;
+            }
+            latestRecord = new Record(latest.getValue(), latest.getTimestamp(), flag);
         }
+        notifyListeners();
     }
 
     public void setNewDeviceState(ChannelState state, Flag flag) {
@@ -409,7 +456,6 @@ public final class ChannelImpl implements Channel {
             recordContainer.setRecord(record);
             recordContainers.add(recordContainer);
             dataManager.newRecords(recordContainers);
-            dataManager.interrupt();
             return record.getFlag();
         }
 
@@ -433,11 +479,7 @@ public final class ChannelImpl implements Channel {
         WriteTask writeTask = new WriteTask(dataManager, config.deviceParent.device, writeValueContainerList,
                 writeTaskFinishedSignal);
 
-        synchronized (dataManager.newWriteTasks) {
-            dataManager.newWriteTasks.add(writeTask);
-        }
-
-        dataManager.interrupt();
+        dataManager.addNewTask(writeTask);
         try {
             writeTaskFinishedSignal.await();
         } catch (InterruptedException e) {
@@ -445,7 +487,7 @@ public final class ChannelImpl implements Channel {
         }
 
         long timestamp = System.currentTimeMillis();
-        latestRecord = new Record(value, timestamp, writeValueContainer.getFlag());
+        updateLatestRecord(new Record(value, timestamp, writeValueContainer.getFlag()));
         notifyListeners();
 
         return writeValueContainer.getFlag();
@@ -502,10 +544,7 @@ public final class ChannelImpl implements Channel {
 
         ReadTask readTask = new ReadTask(dataManager, config.deviceParent.device, readValueContainerList,
                 readTaskFinishedSignal);
-        synchronized (dataManager.newReadTasks) {
-            dataManager.newReadTasks.add(readTask);
-        }
-        dataManager.interrupt();
+        dataManager.addNewTask(readTask);
 
         try {
             readTaskFinishedSignal.await();
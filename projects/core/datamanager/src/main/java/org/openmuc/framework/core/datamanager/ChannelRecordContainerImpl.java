@@ -21,7 +21,9 @@
 
 package org.openmuc.framework.core.datamanager;
 
+import org.openmuc.framework.data.DoubleValue;
 import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.LongValue;
 import org.openmuc.framework.data.Record;
 import org.openmuc.framework.driver.spi.ChannelRecordContainer;
 
@@ -29,11 +31,23 @@ public final class ChannelRecordContainerImpl implements ChannelRecordContainer
 
     private static final Record defaulRecord = new Record(Flag.DRIVER_ERROR_CHANNEL_NOT_ACCESSIBLE);
 
+    private static final byte RECORD = 0;
+    private static final byte DOUBLE = 1;
+    private static final byte LONG = 2;
+
     private final ChannelImpl channel;
     private final String channelAddress;
     private Record record;
     private Object channelHandle;
 
+    /*
+     * Primitive sample set by setDoubleRecord/setLongRecord. The record is only created if getRecord() is called.
+     */
+    private byte kind = RECORD;
+    private double doubleValue;
+    private long longValue;
+    private long timestamp;
+
     public ChannelRecordContainerImpl(ChannelImpl channel) {
         this(channel, defaulRecord);
     }
@@ -62,6 +76,14 @@ public final class ChannelRecordContainerImpl implements ChannelRecordContainer
 
     @Override
     public ChannelRecordContainer copy() {
+        if (kind != RECORD) {
+            ChannelRecordContainerImpl copy = new ChannelRecordContainerImpl(channel, null);
+            copy.kind = kind;
+            copy.doubleValue = doubleValue;
+            copy.longValue = longValue;
+            copy.timestamp = timestamp;
+            return copy;
+        }
         Record copiedRecord = new Record(record.getValue(), record.getTimestamp(), record.getFlag());
 
         return new ChannelRecordContainerImpl(channel, copiedRecord);
@@ -74,17 +96,57 @@ public final class ChannelRecordContainerImpl implements ChannelRecordContainer
 
     @Override
     public Record getRecord() {
+        if (record == null) {
+            if (kind == DOUBLE) {
+                record = new Record(new DoubleValue(doubleValue), timestamp);
+            }
+            else if (kind == LONG) {
+                record = new Record(new LongValue(longValue), timestamp);
+            }
+        }
         return record;
     }
 
     @Override
     public void setRecord(Record record) {
         this.record = record;
+        kind = RECORD;
+    }
+
+    @Override
+    public void setDoubleRecord(double value, long timestamp) {
+        this.record = null;
+        this.kind = DOUBLE;
+        this.doubleValue = value;
+        this.timestamp = timestamp;
+    }
+
+    @Override
+    public void setLongRecord(long value, long timestamp) {
+        this.record = null;
+        this.kind = LONG;
+        this.longValue = value;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Hands the sample over to the channel, using the primitive path if the driver set a primitive sample.
+     */
+    void applyToChannel() {
+        if (kind == DOUBLE) {
+            channel.setNewDouble(doubleValue, timestamp);
+        }
+        else if (kind == LONG) {
+            channel.setNewLong(longValue, timestamp);
+        }
+        else {
+            channel.setNewRecord(record);
+        }
     }
 
     @Override
     public String toString() {
         return "ChannelRecordContainerImpl{" + "channel=" + channel + ", channelAddress='" + channelAddress + '\''
-                + ", record=" + record + ", channelHandle=" + channelHandle + '}';
+                + ", record=" + getRecord() + ", channelHandle=" + channelHandle + '}';
     }
 }
@@ -31,15 +31,12 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
-import java.util.Queue;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingDeque;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
@@ -99,31 +96,30 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 @Component(service = { DataAccessService.class, ConfigService.class }, immediate = true, property = {
-        CommandProcessor.COMMAND_SCOPE + ":String=openmuc", CommandProcessor.COMMAND_FUNCTION + ":String=reload" })
+        CommandProcessor.COMMAND_SCOPE + ":String=openmuc", CommandProcessor.COMMAND_FUNCTION + ":String=reload",
+        CommandProcessor.COMMAND_FUNCTION + ":String=executors",
+        CommandProcessor.COMMAND_FUNCTION + ":String=loggers" })
 public final class DataManager extends Thread implements DataAccessService, ConfigService, RecordsReceivedListener {
 
     private static final String DEFAULT_CONF_FILE = "conf/channels.xml";
 
     private static final Logger logger = LoggerFactory.getLogger(DataManager.class);
-    final LinkedList<Device> connectedDevices = new LinkedList<>();
-    final LinkedList<Device> disconnectedDevices = new LinkedList<>();
-    final LinkedList<Device> connectionFailures = new LinkedList<>();
-    final LinkedList<SamplingTask> samplingTaskFinished = new LinkedList<>();
-    final LinkedList<WriteTask> newWriteTasks = new LinkedList<>();
-    final LinkedList<ReadTask> newReadTasks = new LinkedList<>();
-    final LinkedList<DeviceTask> tasksFinished = new LinkedList<>();
+    private static final int MAX_EVENTS_PER_WAKEUP = 4096;
+
+    private final EventInbox inbox = new EventInbox();
     private final HashMap<String, DriverService> newDrivers = new LinkedHashMap<>();
     final HashMap<String, ServerService> serverServices = new HashMap<>();
     private final Map<String, DriverService> activeDrivers = new LinkedHashMap<>();
-    private final LinkedList<Action> actions = new LinkedList<>();
+    private final ActionScheduler actions = new ActionScheduler();
     private final List<ConfigChangeListener> configChangeListeners = new LinkedList<>();
     private final List<DataLoggerService> newDataLoggers = new LinkedList<>();
     private final Deque<DataLoggerService> activeDataLoggers = new LinkedBlockingDeque<>();
-    private final LinkedList<List<ChannelRecordContainer>> receivedRecordContainers = new LinkedList<>();
+    private final LoggingController loggingController = new LoggingController(activeDataLoggers);
     private final ReentrantLock configLock = new ReentrantLock();
     CountDownLatch dataLoggerRemovedSignal;
     volatile int activeDeviceCountDown;
-    ThreadPoolExecutor executor = null;
+    TaskExecutors executors = null;
+    private DeviceShards shards = null;
     CountDownLatch driverRemovedSignal;
     private volatile boolean stopFlag = false;
     // does not need to be a list because RemovedService() for driver services
@@ -153,8 +149,13 @@ public final class DataManager extends Thread implements DataAccessService, Conf
 
         logger.info("Activating Data Manager with config {}", configFile);
 
-        NamedThreadFactory namedThreadFactory = new NamedThreadFactory("OpenMUC Data Manager Pool - thread-");
-        executor = (ThreadPoolExecutor) Executors.newCachedThreadPool(namedThreadFactory);
+        executors = TaskExecutors.fromSystemProperties();
+        logger.info("Executing tasks with executor strategy {}", executors.getStrategy());
+
+        shards = DeviceShards.fromSystemProperty();
+        if (shards != null) {
+            logger.info("Processing records of devices on {} shards", shards.size());
+        }
 
         try {
             this.configFile = configFile;
@@ -199,15 +200,36 @@ public final class DataManager extends Thread implements DataAccessService, Conf
         }
     }
 
+    /**
+     * Shell command printing the active task count, queue depth and executed/rejected task counts of the executors.
+     */
+    public String executors() {
+        TaskExecutors executors = this.executors;
+        if (executors == null) {
+            return "Data Manager not activated";
+        }
+        return executors.metrics();
+    }
+
+    /**
+     * Shell command printing queue depth, lag and delivered/dropped/spilled batches of the data loggers.
+     */
+    public String loggers() {
+        return loggingController.metrics();
+    }
+
     @Deactivate
-    private void deactivate() {
+    void deactivate() {
         logger.info("Deactivating Data Manager");
 
         stopFlag = true;
-        interrupt();
+        signalStateChanged();
         try {
             this.join();
-            executor.shutdown();
+            executors.shutdown();
+            if (shards != null) {
+                shards.shutdown();
+            }
         } catch (InterruptedException e) {
         }
         dataManagerActivated = false;
@@ -217,27 +239,22 @@ public final class DataManager extends Thread implements DataAccessService, Conf
     public void run() {
 
         setName("OpenMUC Data Manager");
-        handleInterruptEvent();
+        inbox.setConsumer(this);
+        handleStateChanges();
 
         while (!stopFlag) {
 
-            if (interrupted()) {
-                handleInterruptEvent();
+            if (!inbox.isEmpty()) {
+                handleEvents();
                 continue;
             }
 
             if (actions.isEmpty()) {
-                try {
-                    while (true) {
-                        Thread.sleep(Long.MAX_VALUE);
-                    }
-                } catch (InterruptedException e) {
-                    handleInterruptEvent();
-                    continue;
-                }
+                inbox.await(-1);
+                continue;
             }
 
-            Action currentAction = actions.getFirst();
+            Action currentAction = actions.first();
 
             long currentTime = System.currentTimeMillis();
 
@@ -250,12 +267,8 @@ public final class DataManager extends Thread implements DataAccessService, Conf
 
             long sleepTime = currentAction.startTime - currentTime;
             if (sleepTime > 0) {
-                try {
-                    Thread.sleep(sleepTime);
-                } catch (InterruptedException e) {
-                    handleInterruptEvent();
-                    continue;
-                }
+                inbox.await(TimeUnit.MILLISECONDS.toNanos(sleepTime));
+                continue;
             }
             actions.removeFirst();
 
@@ -263,12 +276,11 @@ public final class DataManager extends Thread implements DataAccessService, Conf
                 triggerTimeouts(currentAction.timeouts);
             }
 
-            LoggingController loggingController = new LoggingController(activeDataLoggers);
-
             if (loggingController.channelsHaveToBeLogged(currentAction)) {
                 for (Optional<ChannelCollection> collection : loggingController.triggerLogging(currentAction)) {
                     handleStillFilledChannels(collection, currentAction);
                 }
+                actions.removeEmptyLoggingCollections(currentAction);
             }
 
             if (currentAction.connectionRetryDevices != null && !currentAction.connectionRetryDevices.isEmpty()) {
@@ -349,187 +361,163 @@ public final class DataManager extends Thread implements DataAccessService, Conf
     }
 
     private void addSamplingCollectionToActions(ChannelCollection channelCollection, long startTimestamp) {
-
-        Action fittingAction = null;
-
-        ListIterator<Action> actionIterator = actions.listIterator();
-        while (actionIterator.hasNext()) {
-            Action currentAction = actionIterator.next();
-            if (currentAction.startTime == startTimestamp) {
-                fittingAction = currentAction;
-                if (fittingAction.samplingCollections == null) {
-                    fittingAction.samplingCollections = new LinkedList<>();
-                }
-                break;
-            }
-            else if (currentAction.startTime > startTimestamp) {
-                fittingAction = new Action(startTimestamp);
-                fittingAction.samplingCollections = new LinkedList<>();
-                actionIterator.previous();
-                actionIterator.add(fittingAction);
-                break;
-            }
-        }
-
-        if (fittingAction == null) {
-            fittingAction = new Action(startTimestamp);
-            fittingAction.samplingCollections = new LinkedList<>();
-            actions.add(fittingAction);
-        }
-
-        fittingAction.samplingCollections.add(channelCollection);
-        channelCollection.action = fittingAction;
-
+        actions.addSamplingCollection(channelCollection, startTimestamp);
     }
 
     private void addLoggingCollectionToActions(ChannelCollection channelCollection, long startTimestamp) {
+        actions.addLoggingCollection(channelCollection, startTimestamp);
+    }
+
+    void addReconnectDeviceToActions(Device device, long startTimestamp) {
+        actions.addReconnectDevice(device, startTimestamp);
+    }
 
-        Action fittingAction = null;
+    private void addSamplingWorkerTimeoutToActions(SamplingTask readWorker, long timeout) {
+        actions.addSamplingWorkerTimeout(readWorker, timeout);
+    }
 
-        ListIterator<Action> actionIterator = actions.listIterator();
-        while (actionIterator.hasNext()) {
-            Action currentAction = actionIterator.next();
-            if (currentAction.startTime == startTimestamp) {
-                fittingAction = currentAction;
-                if (fittingAction.loggingCollections == null) {
-                    fittingAction.loggingCollections = new LinkedList<>();
+    /**
+     * Drains the inbox in one batch. Records received by listening drivers are collected over the whole batch and
+     * delivered to event based loggers once.
+     */
+    private void handleEvents() {
+
+        long currentTime = System.currentTimeMillis();
+        List<ChannelRecordContainerImpl> channelRecordContainerList = null;
+
+        InboxEvent event;
+        int handledEvents = 0;
+        while (handledEvents++ < MAX_EVENTS_PER_WAKEUP && (event = inbox.poll()) != null) {
+            switch (event.type) {
+            case RECORDS_RECEIVED:
+                if (channelRecordContainerList == null) {
+                    channelRecordContainerList = new ArrayList<>();
+                }
+                if (shards == null) {
+                    handleReceivedRecords(event, channelRecordContainerList);
+                }
+                else {
+                    dispatchReceivedRecordsToShards(event);
                 }
                 break;
-            }
-            else if (currentAction.startTime > startTimestamp) {
-                fittingAction = new Action(startTimestamp);
-                fittingAction.loggingCollections = new LinkedList<>();
-                actionIterator.previous();
-                actionIterator.add(fittingAction);
+            case LOG_EVENTS_CONVERTED:
+                if (channelRecordContainerList == null) {
+                    channelRecordContainerList = new ArrayList<>();
+                }
+                addConvertedLogEvents(event, channelRecordContainerList);
                 break;
-            }
-        }
-
-        if (fittingAction == null) {
-            fittingAction = new Action(startTimestamp);
-            fittingAction.loggingCollections = new LinkedList<>();
-            actions.add(fittingAction);
-        }
-
-        fittingAction.loggingCollections.add(channelCollection);
-        channelCollection.action = fittingAction;
-    }
-
-    void addReconnectDeviceToActions(Device device, long startTimestamp) {
-        Action fittingAction = null;
-
-        ListIterator<Action> actionIterator = actions.listIterator();
-        while (actionIterator.hasNext()) {
-            Action currentAction = actionIterator.next();
-            if (currentAction.startTime == startTimestamp) {
-                fittingAction = currentAction;
-                if (fittingAction.connectionRetryDevices == null) {
-                    fittingAction.connectionRetryDevices = new LinkedList<>();
+            case SAMPLING_TASK_FINISHED:
+                SamplingTask samplingTask = (SamplingTask) event.payload;
+                if (shards == null) {
+                    samplingTask.storeValues();
+                }
+                else if (samplingTask.disable()) {
+                    shards.execute(samplingTask.device, samplingTask::applyValues);
                 }
+                samplingTask.device.taskFinished();
+                break;
+            case TASK_FINISHED:
+                ((DeviceTask) event.payload).device.taskFinished();
+                break;
+            case CONNECTION_FAILURE:
+                ((Device) event.payload).connectFailureSignal(currentTime);
+                break;
+            case CONNECTED:
+                ((Device) event.payload).connectedSignal(currentTime);
+                break;
+            case DISCONNECTED:
+                ((Device) event.payload).disconnectedSignal();
+                break;
+            case NEW_TASK:
+                handleNewTask(event);
+                break;
+            case STATE_CHANGED:
+            default:
+                handleStateChanges();
                 break;
             }
 
-            if (currentAction.startTime > startTimestamp) {
-                fittingAction = new Action(startTimestamp);
-                fittingAction.connectionRetryDevices = new LinkedList<>();
-                actionIterator.previous();
-                actionIterator.add(fittingAction);
-                break;
+            if (stopFlag) {
+                return;
             }
         }
 
-        if (fittingAction == null) {
-            fittingAction = new Action(startTimestamp);
-            fittingAction.connectionRetryDevices = new LinkedList<>();
-            actions.add(fittingAction);
+        if (channelRecordContainerList != null && !channelRecordContainerList.isEmpty()) {
+            loggingController.deliverLogsToEventBasedLogServices(channelRecordContainerList);
         }
-
-        fittingAction.connectionRetryDevices.add(device);
     }
 
-    private void addSamplingWorkerTimeoutToActions(SamplingTask readWorker, long timeout) {
+    @SuppressWarnings("unchecked")
+    private void handleReceivedRecords(InboxEvent event, List<ChannelRecordContainerImpl> channelRecordContainerList) {
+        convertReceivedRecords((List<ChannelRecordContainer>) event.payload, channelRecordContainerList);
+    }
 
-        Action fittingAction = null;
+    private static void convertReceivedRecords(List<ChannelRecordContainer> recordContainers,
+            List<ChannelRecordContainerImpl> channelRecordContainerList) {
+        recordContainers.stream()
+                .map(recContainer -> (ChannelRecordContainerImpl) recContainer)
+                .filter(containerImpl -> containerImpl.getChannel().getChannelState() == ChannelState.LISTENING
+                        || containerImpl.getChannel().getDriverName().equals("virtual"))
+                .forEach(containerImpl -> {
+                    containerImpl.applyToChannel();
+                    if (containerImpl.getChannel().isLoggingEvent()) {
+                        channelRecordContainerList.add(containerImpl);
+                    }
+                });
+    }
 
-        ListIterator<Action> actionIterator = actions.listIterator();
-        while (actionIterator.hasNext()) {
-            Action currentAction = actionIterator.next();
-            if (currentAction.startTime == timeout) {
-                fittingAction = currentAction;
-                if (fittingAction.timeouts == null) {
-                    fittingAction.timeouts = new LinkedList<>();
+    /**
+     * Converts the records on the shards owning the devices. Records which have to be logged on event are handed back
+     * to this thread because logger delivery is coordinated here.
+     */
+    @SuppressWarnings("unchecked")
+    private void dispatchReceivedRecordsToShards(InboxEvent event) {
+        Map<Device, List<ChannelRecordContainer>> containersByDevice = new LinkedHashMap<>();
+        for (ChannelRecordContainer container : (List<ChannelRecordContainer>) event.payload) {
+            Device device = ((ChannelRecordContainerImpl) container).getChannel().config.deviceParent.device;
+            containersByDevice.computeIfAbsent(device, d -> new ArrayList<>()).add(container);
+        }
+
+        for (Entry<Device, List<ChannelRecordContainer>> entry : containersByDevice.entrySet()) {
+            List<ChannelRecordContainer> recordContainers = entry.getValue();
+            shards.execute(entry.getKey(), () -> {
+                List<ChannelRecordContainerImpl> logEvents = new ArrayList<>();
+                convertReceivedRecords(recordContainers, logEvents);
+                if (!logEvents.isEmpty()) {
+                    inbox.offer(InboxEvent.Type.LOG_EVENTS_CONVERTED, logEvents);
                 }
-                break;
-            }
-            else if (currentAction.startTime > timeout) {
-                fittingAction = new Action(timeout);
-                fittingAction.timeouts = new LinkedList<>();
-                actionIterator.previous();
-                actionIterator.add(fittingAction);
-                break;
-            }
+            });
         }
+    }
 
-        if (fittingAction == null) {
-            fittingAction = new Action(timeout);
-            fittingAction.timeouts = new LinkedList<>();
-            actions.add(fittingAction);
-        }
+    @SuppressWarnings("unchecked")
+    private void addConvertedLogEvents(InboxEvent event, List<ChannelRecordContainerImpl> channelRecordContainerList) {
+        channelRecordContainerList.addAll((List<ChannelRecordContainerImpl>) event.payload);
+    }
 
-        fittingAction.timeouts.add(readWorker);
+    @SuppressWarnings("unchecked")
+    private <T extends DeviceTask & ConnectedTask> void handleNewTask(InboxEvent event) {
+        T newTask = (T) event.payload;
+        newTask.device.addTask(newTask);
     }
 
-    private void handleInterruptEvent() {
+    /**
+     * Handles changes which are signalled through {@link #signalStateChanged()}: stopping, new configurations and
+     * (de)registered drivers and data loggers.
+     */
+    private void handleStateChanges() {
 
         if (stopFlag) {
             prepareStop();
             return;
         }
 
-        long currentTime = 0;
-
         if (newRootConfigWithoutDefaults != null) {
-            currentTime = System.currentTimeMillis();
-            applyConfiguration(newRootConfigWithoutDefaults, currentTime);
+            applyConfiguration(newRootConfigWithoutDefaults, System.currentTimeMillis());
             newRootConfigWithoutDefaults = null;
             newConfigSignal.countDown();
         }
 
-        synchronized (receivedRecordContainers) {
-            List<ChannelRecordContainer> recordContainers;
-            LoggingController loggingController = new LoggingController(activeDataLoggers);
-            List<ChannelRecordContainerImpl> channelRecordContainerList = new ArrayList<>();
-            while ((recordContainers = receivedRecordContainers.poll()) != null) {
-                recordContainers.stream()
-                        .map(recContainer -> (ChannelRecordContainerImpl) recContainer)
-                        .filter(containerImpl -> containerImpl.getChannel().getChannelState() == ChannelState.LISTENING
-                                || containerImpl.getChannel().getDriverName().equals("virtual"))
-                        .forEach(containerImpl -> {
-                            containerImpl.getChannel().setNewRecord(containerImpl.getRecord());
-                            if (containerImpl.getChannel().isLoggingEvent()) {
-                                channelRecordContainerList.add(containerImpl);
-                            }
-                        });
-            }
-            loggingController.deliverLogsToEventBasedLogServices(channelRecordContainerList);
-        }
-
-        synchronized (samplingTaskFinished) {
-            SamplingTask samplingTask;
-            while ((samplingTask = samplingTaskFinished.poll()) != null) {
-                samplingTask.storeValues();
-                samplingTask.device.taskFinished();
-            }
-        }
-
-        synchronized (tasksFinished) {
-            DeviceTask deviceTask;
-            while ((deviceTask = tasksFinished.poll()) != null) {
-                deviceTask.device.taskFinished();
-
-            }
-        }
-
         synchronized (newDrivers) {
             // needed to synchronize with getRunningDrivers
             synchronized (activeDrivers) {
@@ -559,7 +547,7 @@ public final class DataManager extends Thread implements DataAccessService, Conf
                 activeDataLoggers.addAll(newDataLoggers);
                 for (DataLoggerService dataLogger : newDataLoggers) {
                     logger.info("Data logger registered: " + dataLogger.getId());
-                    dataLogger.setChannelsToLog(rootConfig.logChannels);
+                    loggingController.setChannelsToLog(dataLogger, rootConfig.logChannels);
                 }
                 newDataLoggers.clear();
             }
@@ -610,56 +598,46 @@ public final class DataManager extends Thread implements DataAccessService, Conf
                 newDataLoggers.remove(dataLoggerToBeRemoved);
             }
             dataLoggerToBeRemoved = null;
+            loggingController.updateLoggers();
             dataLoggerRemovedSignal.countDown();
         }
+    }
 
-        synchronized (connectionFailures) {
-            if (currentTime == 0) {
-                currentTime = System.currentTimeMillis();
-            }
-            Device connectionFailureDevice;
-            while ((connectionFailureDevice = connectionFailures.poll()) != null) {
-                connectionFailureDevice.connectFailureSignal(currentTime);
-            }
-        }
+    /**
+     * Wakes up the data manager thread to handle changes of volatile state such as a new config or a new driver.
+     */
+    void signalStateChanged() {
+        inbox.offer(InboxEvent.Type.STATE_CHANGED, null);
+    }
 
-        synchronized (connectedDevices) {
-            if (currentTime == 0) {
-                currentTime = System.currentTimeMillis();
-            }
-            Device connectedDevice;
-            while ((connectedDevice = connectedDevices.poll()) != null) {
-                connectedDevice.connectedSignal(currentTime);
-            }
-        }
+    void samplingTaskFinished(SamplingTask samplingTask) {
+        inbox.offer(InboxEvent.Type.SAMPLING_TASK_FINISHED, samplingTask);
+    }
 
-        synchronized (newWriteTasks) {
-            addTasksAndClear(newWriteTasks);
-        }
+    void taskFinished(DeviceTask deviceTask) {
+        inbox.offer(InboxEvent.Type.TASK_FINISHED, deviceTask);
+    }
 
-        synchronized (newReadTasks) {
-            addTasksAndClear(newReadTasks);
-        }
+    void deviceConnected(Device device) {
+        inbox.offer(InboxEvent.Type.CONNECTED, device);
+    }
 
-        synchronized (disconnectedDevices) {
-            Device connectedDevice;
-            while ((connectedDevice = disconnectedDevices.poll()) != null) {
-                connectedDevice.disconnectedSignal();
-            }
-        }
+    void deviceConnectionFailed(Device device) {
+        inbox.offer(InboxEvent.Type.CONNECTION_FAILURE, device);
+    }
 
+    void deviceDisconnected(Device device) {
+        inbox.offer(InboxEvent.Type.DISCONNECTED, device);
     }
 
-    private <T extends DeviceTask & ConnectedTask> void addTasksAndClear(Queue<T> newTasksList) {
-        T nextTask;
-        while ((nextTask = newTasksList.poll()) != null) {
-            nextTask.device.addTask(nextTask);
-        }
+    <T extends DeviceTask & ConnectedTask> void addNewTask(T deviceTask) {
+        inbox.offer(InboxEvent.Type.NEW_TASK, deviceTask);
     }
 
     private void applyConfiguration(RootConfigImpl configWithoutDefaults, long currentTime) {
 
         RootConfigImpl newRootConfig = configWithoutDefaults.cloneWithDefaults();
+        loggingController.invalidateRouting();
 
         List<LogChannel> logChannels = new LinkedList<>();
 
@@ -734,7 +712,7 @@ public final class DataManager extends Thread implements DataAccessService, Conf
                 if (configChangeListener == null) {
                     continue;
                 }
-                executor.execute(configChangeListener::configurationChanged);
+                executors.common().execute(configChangeListener::configurationChanged);
             }
         }
 
@@ -754,7 +732,7 @@ public final class DataManager extends Thread implements DataAccessService, Conf
 
     private void setLoggerSpecific(DataLoggerService dataLogger, List<LogChannel> logChannels) {
         List<LogChannel> specificLogChannels = filterLogChannelsForSpecificLogger(dataLogger.getId(), logChannels);
-        dataLogger.setChannelsToLog(specificLogChannels);
+        loggingController.setChannelsToLog(dataLogger, specificLogChannels);
     }
 
     private void setLoggerSpecificAndWithoutSettings(DataLoggerService dataLogger, List<LogChannel> logChannels) {
@@ -765,7 +743,7 @@ public final class DataManager extends Thread implements DataAccessService, Conf
                 .collect(Collectors.toList());
 
         specificLogChannels.addAll(logChannelsWithoutLoggingSettings);
-        dataLogger.setChannelsToLog(logChannelsWithoutLoggingSettings);
+        loggingController.setChannelsToLog(dataLogger, logChannelsWithoutLoggingSettings);
     }
 
     private List<LogChannel> filterLogChannelsForSpecificLogger(String loggerId, List<LogChannel> logChannels) {
@@ -787,20 +765,9 @@ public final class DataManager extends Thread implements DataAccessService, Conf
 
     void addToSamplingCollections(ChannelImpl channel, Long time) {
 
-        ChannelCollection fittingSamplingCollection = null;
-        for (Action action : actions) {
-            if (action.samplingCollections != null) {
-                for (ChannelCollection samplingCollection : action.samplingCollections) {
-                    if (samplingCollection.interval == channel.getSamplingInterval()
-                            && samplingCollection.timeOffset == channel.getSamplingTimeOffset()
-                            && samplingCollection.samplingGroup.equals(channel.config.getSamplingGroup())
-                            && samplingCollection.device == channel.config.deviceParent.device) {
-                        fittingSamplingCollection = samplingCollection;
-                        break;
-                    }
-                }
-            }
-        }
+        ChannelCollection fittingSamplingCollection = actions.findSamplingCollection(channel.getSamplingInterval(),
+                channel.getSamplingTimeOffset(), channel.config.getSamplingGroup(),
+                channel.config.deviceParent.device);
 
         if (fittingSamplingCollection == null) {
             fittingSamplingCollection = new ChannelCollection(channel.getSamplingInterval(),
@@ -818,23 +785,13 @@ public final class DataManager extends Thread implements DataAccessService, Conf
                 return;
             }
         }
-        fittingSamplingCollection.channels.add(channel);
+        fittingSamplingCollection.add(channel);
         channel.samplingCollection = fittingSamplingCollection;
     }
 
     void addToLoggingCollections(ChannelImpl channel, Long time) {
-        ChannelCollection fittingLoggingCollection = null;
-        for (Action action : actions) {
-            if (action.loggingCollections != null) {
-                for (ChannelCollection loggingCollection : action.loggingCollections) {
-                    if (loggingCollection.interval == channel.getLoggingInterval()
-                            && loggingCollection.timeOffset == channel.getLoggingTimeOffset()) {
-                        fittingLoggingCollection = loggingCollection;
-                        break;
-                    }
-                }
-            }
-        }
+        ChannelCollection fittingLoggingCollection = actions.findLoggingCollection(channel.getLoggingInterval(),
+                channel.getLoggingTimeOffset());
         if (fittingLoggingCollection == null) {
             fittingLoggingCollection = new ChannelCollection(channel.getLoggingInterval(),
                     channel.getLoggingTimeOffset(), null, null);
@@ -851,33 +808,29 @@ public final class DataManager extends Thread implements DataAccessService, Conf
             }
         }
 
-        fittingLoggingCollection.channels.add(channel);
+        fittingLoggingCollection.add(channel);
         channel.loggingCollection = fittingLoggingCollection;
     }
 
     void removeFromLoggingCollections(ChannelImpl channel) {
-        channel.loggingCollection.channels.remove(channel);
+        channel.loggingCollection.remove(channel);
         if (channel.loggingCollection.channels.isEmpty()) {
-            channel.loggingCollection.action.loggingCollections.remove(channel.loggingCollection);
+            actions.removeLoggingCollection(channel.loggingCollection);
         }
         channel.loggingCollection = null;
     }
 
     void removeFromSamplingCollections(ChannelImpl channel) {
-        channel.samplingCollection.channels.remove(channel);
+        channel.samplingCollection.remove(channel);
         if (channel.samplingCollection.channels.isEmpty()) {
-            channel.samplingCollection.action.samplingCollections.remove(channel.samplingCollection);
+            actions.removeSamplingCollection(channel.samplingCollection);
         }
 
         channel.samplingCollection = null;
     }
 
     void removeFromConnectionRetry(Device device) {
-        for (Action action : actions) {
-            if (action.connectionRetryDevices != null && action.connectionRetryDevices.remove(device)) {
-                break;
-            }
-        }
+        actions.removeReconnectDevice(device);
     }
 
     @Reference(cardinality = ReferenceCardinality.MULTIPLE, policy = ReferencePolicy.DYNAMIC)
@@ -891,7 +844,7 @@ public final class DataManager extends Thread implements DataAccessService, Conf
                 return;
             }
             newDrivers.put(driverId, driver);
-            interrupt();
+            signalStateChanged();
         }
     }
 
@@ -964,7 +917,7 @@ public final class DataManager extends Thread implements DataAccessService, Conf
         if (dataManagerActivated) {
             driverToBeRemovedId = driverId;
             driverRemovedSignal = new CountDownLatch(1);
-            interrupt();
+            signalStateChanged();
             try {
                 driverRemovedSignal.await();
             } catch (InterruptedException e) {
@@ -982,7 +935,7 @@ public final class DataManager extends Thread implements DataAccessService, Conf
     void bindDataLoggerService(DataLoggerService dataLogger) {
         synchronized (newDataLoggers) {
             newDataLoggers.add(dataLogger);
-            interrupt();
+            signalStateChanged();
         }
     }
 
@@ -995,7 +948,7 @@ public final class DataManager extends Thread implements DataAccessService, Conf
         if (dataManagerActivated) {
             dataLoggerRemovedSignal = new CountDownLatch(1);
             dataLoggerToBeRemoved = dataLogger;
-            interrupt();
+            signalStateChanged();
             try {
                 dataLoggerRemovedSignal.await();
             } catch (InterruptedException e) {
@@ -1014,7 +967,8 @@ public final class DataManager extends Thread implements DataAccessService, Conf
     private void prepareStop() {
         // TODO tell all drivers to stop listening
         // Do I have to wait for all threads (such as SamplingTasks) to finish?
-        executor.shutdown();
+        executors.shutdown();
+        loggingController.shutdown();
     }
 
     @Override
@@ -1053,11 +1007,7 @@ public final class DataManager extends Thread implements DataAccessService, Conf
         for (ChannelRecordContainer container : recordContainers) {
             recordContainersCopy.add(container.copy());
         }
-        synchronized (receivedRecordContainers) {
-            receivedRecordContainers.add(recordContainersCopy);
-        }
-
-        interrupt();
+        inbox.offer(InboxEvent.Type.RECORDS_RECEIVED, recordContainersCopy);
 
     }
 
@@ -1149,7 +1099,7 @@ public final class DataManager extends Thread implements DataAccessService, Conf
         synchronized (this) {
             newConfigSignal = new CountDownLatch(1);
             newRootConfigWithoutDefaults = newConfigCopy;
-            interrupt();
+            signalStateChanged();
         }
         while (true) {
             try {
@@ -1207,7 +1157,7 @@ public final class DataManager extends Thread implements DataAccessService, Conf
         if (driver == null) {
             throw new DriverNotAvailableException();
         }
-        executor.execute(new ScanForDevicesTask(driver, settings, scanListener));
+        executors.forDriver(driverId).execute(new ScanForDevicesTask(driver, settings, scanListener));
     }
 
     @Override
@@ -1293,14 +1243,11 @@ public final class DataManager extends Thread implements DataAccessService, Conf
         }
         CountDownLatch writeTasksFinishedSignal = new CountDownLatch(containersByDevice.size());
 
-        synchronized (newWriteTasks) {
-            for (Entry<Device, List<WriteValueContainerImpl>> writeValueContainers : containersByDevice.entrySet()) {
-                WriteTask writeTask = new WriteTask(this, writeValueContainers.getKey(),
-                        writeValueContainers.getValue(), writeTasksFinishedSignal);
-                newWriteTasks.add(writeTask);
-            }
+        for (Entry<Device, List<WriteValueContainerImpl>> writeValueContainers : containersByDevice.entrySet()) {
+            WriteTask writeTask = new WriteTask(this, writeValueContainers.getKey(), writeValueContainers.getValue(),
+                    writeTasksFinishedSignal);
+            addNewTask(writeTask);
         }
-        interrupt();
 
         try {
             writeTasksFinishedSignal.await();
@@ -1330,15 +1277,12 @@ public final class DataManager extends Thread implements DataAccessService, Conf
         }
         CountDownLatch readTasksFinishedSignal = new CountDownLatch(containersByDevice.size());
 
-        synchronized (newReadTasks) {
-            for (Entry<Device, List<ChannelRecordContainerImpl>> channelRecordContainers : containersByDevice
-                    .entrySet()) {
-                ReadTask readTask = new ReadTask(this, channelRecordContainers.getKey(),
-                        channelRecordContainers.getValue(), readTasksFinishedSignal);
-                newReadTasks.add(readTask);
-            }
+        for (Entry<Device, List<ChannelRecordContainerImpl>> channelRecordContainers : containersByDevice
+                .entrySet()) {
+            ReadTask readTask = new ReadTask(this, channelRecordContainers.getKey(), channelRecordContainers.getValue(),
+                    readTasksFinishedSignal);
+            addNewTask(readTask);
         }
-        interrupt();
 
         try {
             readTasksFinishedSignal.await();
@@ -193,7 +193,7 @@ public final class Device {
     private void updateConfig(long currentTime, List<LogChannel> logChannels, ChannelConfigImpl oldChannelConfig,
             ChannelConfigImpl newChannelConfig) {
         newChannelConfig.channel = oldChannelConfig.channel;
-        newChannelConfig.channel.config = newChannelConfig;
+        newChannelConfig.channel.setConfig(newChannelConfig);
         newChannelConfig.channel.setNewDeviceState(oldChannelConfig.state,
                 newChannelConfig.channel.getLatestRecord().getFlag());
         if (!newChannelConfig.isDisabled() && (newChannelConfig.getLoggingInterval() > 0)) {
@@ -271,7 +271,7 @@ public final class Device {
             }
             else {
                 channelConfigImpl.channel = oldChannelConfig.channel;
-                channelConfigImpl.channel.config = channelConfigImpl;
+                channelConfigImpl.channel.setConfig(channelConfigImpl);
                 channelConfigImpl.channel.setNewDeviceState(channelState, flag);
                 if (!channelConfigImpl.isDisabled()) {
                     if (channelConfigImpl.getLoggingInterval() > 0 && !channelConfigImpl.isLoggingEvent()) {
@@ -321,7 +321,7 @@ public final class Device {
             }
             else {
                 newChannelConfig.channel = oldChannelConfig.channel;
-                newChannelConfig.channel.config = newChannelConfig;
+                newChannelConfig.channel.setConfig(newChannelConfig);
                 newChannelConfig.channel.setNewDeviceState(channelState, flag);
                 if (!newChannelConfigEntry.getValue().isDisabled()) {
                     if ((newChannelConfigEntry.getValue().getLoggingInterval() > 0
@@ -542,7 +542,7 @@ public final class Device {
                 dataManager);
         taskList.add(connectTask);
         if (containsOneTask()) {
-            dataManager.executor.execute(connectTask);
+            dataManager.executors.forDriver(deviceConfig.driverParent.id).execute(connectTask);
         }
     }
 
@@ -555,7 +555,7 @@ public final class Device {
                 dataManager);
         taskList.add(disconnectTask);
         if (containsOneTask()) {
-            dataManager.executor.execute(disconnectTask);
+            dataManager.executors.forDriver(deviceConfig.driverParent.id).execute(disconnectTask);
         }
     }
 
@@ -577,7 +577,7 @@ public final class Device {
             if (containsOneTask()) {
                 samplingTask.running = true;
                 state = DeviceState.READING;
-                dataManager.executor.execute(samplingTask);
+                dataManager.executors.forDriver(deviceConfig.driverParent.id).execute(samplingTask);
             }
             return true;
         }
@@ -593,7 +593,7 @@ public final class Device {
             taskList.add(deviceTask);
             if (containsOneTask()) {
                 state = deviceTask.getType().getResultingState();
-                dataManager.executor.execute(deviceTask);
+                dataManager.executors.forDriver(deviceConfig.driverParent.id).execute(deviceTask);
             }
         }
         else {
@@ -619,7 +619,7 @@ public final class Device {
                 ((SamplingTask) firstTask).startedLate = true;
             }
             state = firstTask.getType().getResultingState();
-            dataManager.executor.execute(firstTask);
+            dataManager.executors.forDriver(deviceConfig.driverParent.id).execute(firstTask);
         }
         else {
             state = DeviceState.CONNECTED;
@@ -635,7 +635,7 @@ public final class Device {
             taskList.add(startListenTask);
             if (containsOneTask()) {
                 state = DeviceState.STARTING_TO_LISTEN;
-                dataManager.executor.execute(startListenTask);
+                dataManager.executors.forDriver(deviceConfig.driverParent.id).execute(startListenTask);
             }
         }
     }
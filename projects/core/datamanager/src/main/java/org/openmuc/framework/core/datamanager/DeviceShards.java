@@ -0,0 +1,83 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Fixed set of single threaded event loops which take over the per record work of the data manager thread.
+ * <p>
+ * Every device is mapped to exactly one shard by the hash of its id. Storing sampled values, converting records of
+ * listening channels and notifying record listeners is executed on that shard, so records of a channel are still
+ * processed in order while devices on different shards are processed in parallel. The device state machine, the
+ * action scheduler, configuration changes and logger delivery stay on the data manager thread which acts as the
+ * coordinator.
+ * <p>
+ * Sharding is opt-in and enabled by setting the system property {@value #SHARDS_PROPERTY} to a value greater than 1.
+ */
+final class DeviceShards {
+
+    static final String SHARDS_PROPERTY = "org.openmuc.framework.datamanager.shards";
+
+    private final ExecutorService[] shards;
+
+    DeviceShards(int shardCount) {
+        shards = new ExecutorService[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = Executors
+                    .newSingleThreadExecutor(new NamedThreadFactory("OpenMUC Data Manager Shard " + i + " - thread-"));
+        }
+    }
+
+    /**
+     * Creates the shards configured by the system property {@value #SHARDS_PROPERTY}.
+     *
+     * @return the shards or <code>null</code> if sharding is disabled
+     */
+    static DeviceShards fromSystemProperty() {
+        int shardCount = Integer.getInteger(SHARDS_PROPERTY, 0);
+        if (shardCount <= 1) {
+            return null;
+        }
+        return new DeviceShards(shardCount);
+    }
+
+    int size() {
+        return shards.length;
+    }
+
+    int shardOf(Device device) {
+        return Math.floorMod(device.deviceConfig.getId().hashCode(), shards.length);
+    }
+
+    void execute(Device device, Runnable task) {
+        shards[shardOf(device)].execute(task);
+    }
+
+    void shutdown() {
+        for (ExecutorService shard : shards) {
+            shard.shutdown();
+        }
+    }
+
+}
@@ -36,10 +36,7 @@ public final class DisconnectTask extends DeviceTask {
 
         device.connection.disconnect();
 
-        synchronized (dataManager.disconnectedDevices) {
-            dataManager.disconnectedDevices.add(device);
-        }
-        dataManager.interrupt();
+        dataManager.deviceDisconnected(device);
 
     }
 
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free multi-producer/single-consumer queue of {@link InboxEvent}s consumed by the data manager thread.
+ * <p>
+ * Producers append with a single atomic swap and only unpark the consumer if it is actually waiting, so a burst of
+ * events results in one wakeup and the consumer drains the whole burst in one go.
+ */
+final class EventInbox {
+
+    private final AtomicReference<InboxEvent> head;
+    private final AtomicBoolean consumerWaiting = new AtomicBoolean(false);
+    private InboxEvent tail;
+    private volatile Thread consumer;
+
+    EventInbox() {
+        InboxEvent stub = new InboxEvent(InboxEvent.Type.STATE_CHANGED, null);
+        head = new AtomicReference<>(stub);
+        tail = stub;
+    }
+
+    /**
+     * Sets the thread which is unparked when new events arrive. Must be called by the consumer before waiting.
+     */
+    void setConsumer(Thread consumer) {
+        this.consumer = consumer;
+    }
+
+    /**
+     * Appends an event, can be called by any thread.
+     */
+    void offer(InboxEvent event) {
+        InboxEvent previous = head.getAndSet(event);
+        previous.next = event;
+
+        if (consumerWaiting.get() && consumerWaiting.compareAndSet(true, false)) {
+            Thread consumerThread = consumer;
+            if (consumerThread != null) {
+                LockSupport.unpark(consumerThread);
+            }
+        }
+    }
+
+    void offer(InboxEvent.Type type, Object payload) {
+        offer(new InboxEvent(type, payload));
+    }
+
+    /**
+     * Removes the oldest event. Must only be called by the consumer.
+     *
+     * @return the oldest event or <code>null</code> if the inbox is empty
+     */
+    InboxEvent poll() {
+        InboxEvent next = tail.next;
+        if (next == null) {
+            return null;
+        }
+        tail = next;
+        return next;
+    }
+
+    boolean isEmpty() {
+        return tail.next == null;
+    }
+
+    /**
+     * Parks the consumer until an event arrives or the timeout elapses. May return spuriously.
+     *
+     * @param timeoutNanos
+     *            maximum time to wait, a negative value waits without timeout
+     */
+    void await(long timeoutNanos) {
+        consumerWaiting.set(true);
+        if (isEmpty()) {
+            if (timeoutNanos < 0) {
+                LockSupport.park(this);
+            }
+            else {
+                LockSupport.parkNanos(this, timeoutNanos);
+            }
+        }
+        consumerWaiting.set(false);
+        // the inbox replaces interrupts for signalling, a stray interrupt must not make park() return immediately
+        Thread.interrupted();
+    }
+
+}
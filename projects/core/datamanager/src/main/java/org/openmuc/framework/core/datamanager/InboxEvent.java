@@ -21,22 +21,32 @@
 
 package org.openmuc.framework.core.datamanager;
 
-import org.openmuc.framework.data.Record;
-import org.openmuc.framework.dataaccess.RecordListener;
-
-public final class ListenerNotifier extends Thread {
-
-    RecordListener listener;
-    Record record;
+/**
+ * Event passed from driver and task threads to the data manager thread through the {@link EventInbox}.
+ * <p>
+ * The event is also the node of the inbox queue, so enqueuing an event does not allocate anything else.
+ */
+final class InboxEvent {
 
-    public ListenerNotifier(RecordListener listener, Record record) {
-        this.listener = listener;
-        this.record = record;
+    enum Type {
+        RECORDS_RECEIVED,
+        LOG_EVENTS_CONVERTED,
+        SAMPLING_TASK_FINISHED,
+        TASK_FINISHED,
+        CONNECTED,
+        CONNECTION_FAILURE,
+        DISCONNECTED,
+        NEW_TASK,
+        STATE_CHANGED
     }
 
-    @Override
-    public void run() {
-        listener.newRecord(record);
+    final Type type;
+    final Object payload;
+    volatile InboxEvent next;
+
+    InboxEvent(Type type, Object payload) {
+        this.type = type;
+        this.payload = payload;
     }
 
 }
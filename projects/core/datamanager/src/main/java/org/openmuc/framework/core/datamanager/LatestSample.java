@@ -0,0 +1,129 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import org.openmuc.framework.data.ByteValue;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.FloatValue;
+import org.openmuc.framework.data.IntValue;
+import org.openmuc.framework.data.LongValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.ShortValue;
+import org.openmuc.framework.data.Value;
+import org.openmuc.framework.data.ValueType;
+
+/**
+ * Mutable primitive slot holding the latest valid numeric sample of a channel. It is overwritten in place for every
+ * sample, a {@link Record} is only created by {@link #toRecord()} if somebody asks for the latest record. Only used
+ * for the numeric value types, see {@link ValueConverter#numeric()}.
+ * <p>
+ * Floating point types are stored in {@link #doubleValue}, integral types in {@link #longValue}. Access has to be
+ * synchronized on the instance.
+ */
+final class LatestSample {
+
+    private ValueType valueType;
+    private double doubleValue;
+    private long longValue;
+    private long timestamp;
+
+    /**
+     * Stores a double converted to the given value type the same way {@link Value} conversions do.
+     */
+    void setDouble(ValueType valueType, double value, long timestamp) {
+        this.valueType = valueType;
+        this.timestamp = timestamp;
+        switch (valueType) {
+        case BYTE:
+            longValue = (byte) value;
+            break;
+        case SHORT:
+            longValue = (short) value;
+            break;
+        case INTEGER:
+            longValue = (int) value;
+            break;
+        case LONG:
+            longValue = (long) value;
+            break;
+        case FLOAT:
+            doubleValue = (float) value;
+            break;
+        case DOUBLE:
+        default:
+            doubleValue = value;
+            break;
+        }
+    }
+
+    /**
+     * Stores a long converted to the given value type the same way {@link Value} conversions do.
+     */
+    void setLong(ValueType valueType, long value, long timestamp) {
+        this.valueType = valueType;
+        this.timestamp = timestamp;
+        switch (valueType) {
+        case BYTE:
+            longValue = (byte) value;
+            break;
+        case SHORT:
+            longValue = (short) value;
+            break;
+        case INTEGER:
+            longValue = (int) value;
+            break;
+        case LONG:
+            longValue = value;
+            break;
+        case FLOAT:
+            doubleValue = (float) value;
+            break;
+        case DOUBLE:
+        default:
+            doubleValue = value;
+            break;
+        }
+    }
+
+    Record toRecord() {
+        return new Record(toValue(), timestamp);
+    }
+
+    private Value toValue() {
+        switch (valueType) {
+        case BYTE:
+            return new ByteValue((byte) longValue);
+        case SHORT:
+            return new ShortValue((short) longValue);
+        case INTEGER:
+            return new IntValue((int) longValue);
+        case LONG:
+            return new LongValue(longValue);
+        case FLOAT:
+            return new FloatValue((float) doubleValue);
+        case DOUBLE:
+        default:
+            return new DoubleValue(doubleValue);
+        }
+    }
+
+}
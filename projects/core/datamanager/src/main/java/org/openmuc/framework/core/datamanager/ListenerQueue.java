@@ -0,0 +1,157 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.dataaccess.BatchRecordListener;
+import org.openmuc.framework.dataaccess.RecordListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded queue of records for one listener of one channel.
+ * <p>
+ * At most one delivery task per queue is submitted to the executor at a time, so a burst of records does not create a
+ * task per record and the listener receives the records of the channel in order. A {@link BatchRecordListener} gets
+ * all records pending at the time of delivery in one call, plain {@link RecordListener}s are called once per record.
+ * If the listener falls behind by more than the capacity the oldest records are dropped, coalescing batch listeners
+ * only ever keep the latest record.
+ * <p>
+ * The capacity is configured by the system property {@value #CAPACITY_PROPERTY}.
+ */
+final class ListenerQueue {
+
+    static final String CAPACITY_PROPERTY = "org.openmuc.framework.datamanager.listenerQueueCapacity";
+    private static final int DEFAULT_CAPACITY = 1000;
+
+    private static final Logger logger = LoggerFactory.getLogger(ListenerQueue.class);
+
+    private final RecordListener listener;
+    private final String channelId;
+    private final Executor executor;
+    private final int capacity;
+    private final ArrayDeque<Record> records = new ArrayDeque<>();
+
+    // guarded by this
+    private boolean scheduled;
+    private int dropped;
+
+    ListenerQueue(RecordListener listener, String channelId, Executor executor) {
+        this(listener, channelId, executor, capacityFromSystemProperty());
+    }
+
+    ListenerQueue(RecordListener listener, String channelId, Executor executor, int capacity) {
+        this.listener = listener;
+        this.channelId = channelId;
+        this.executor = executor;
+        if (listener instanceof BatchRecordListener && ((BatchRecordListener) listener).isCoalescing()) {
+            this.capacity = 1;
+        }
+        else {
+            this.capacity = capacity;
+        }
+    }
+
+    private static int capacityFromSystemProperty() {
+        return Math.max(1, Integer.getInteger(CAPACITY_PROPERTY, DEFAULT_CAPACITY));
+    }
+
+    /**
+     * Queues the record and schedules delivery on the executor if no delivery is pending.
+     */
+    void offer(Record record) {
+        synchronized (this) {
+            if (records.size() == capacity) {
+                records.pollFirst();
+                if (capacity > 1) {
+                    dropped++;
+                }
+            }
+            records.addLast(record);
+            if (scheduled) {
+                return;
+            }
+            scheduled = true;
+        }
+        schedule();
+    }
+
+    private void schedule() {
+        try {
+            executor.execute(this::deliver);
+        } catch (RejectedExecutionException e) {
+            // data manager is shutting down
+            synchronized (this) {
+                scheduled = false;
+                records.clear();
+            }
+        }
+    }
+
+    /**
+     * Delivers the pending records and resubmits itself if new records arrived meanwhile, so a busy channel does not
+     * occupy a pool thread for good.
+     */
+    private void deliver() {
+        List<Record> batch;
+        int droppedRecords;
+        synchronized (this) {
+            batch = new ArrayList<>(records);
+            records.clear();
+            droppedRecords = dropped;
+            dropped = 0;
+        }
+
+        if (droppedRecords > 0) {
+            logger.warn("Listener {} of channel {} is too slow, dropped {} records.", listener, channelId,
+                    droppedRecords);
+        }
+
+        try {
+            if (listener instanceof BatchRecordListener) {
+                ((BatchRecordListener) listener).newRecords(batch);
+            }
+            else {
+                for (Record record : batch) {
+                    listener.newRecord(record);
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.error("Record listener of channel {} threw an exception.", channelId, e);
+        }
+
+        synchronized (this) {
+            if (records.isEmpty()) {
+                scheduled = false;
+                return;
+            }
+        }
+        schedule();
+    }
+
+}
@@ -0,0 +1,394 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openmuc.framework.datalogger.spi.DataLoggerService;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Asynchronous delivery of logging batches to one {@link DataLoggerService}. Batches are put into a bounded queue by
+ * the data manager thread and handed to the logger by a worker thread of its own, so a slow logger does not delay
+ * sampling and the other scheduled actions.
+ * <p>
+ * What happens if the queue is full is configured by the system property {@value #OVERFLOW_PROPERTY}:
+ * <ul>
+ * <li><code>dropOldest</code> (default): the oldest queued batch is dropped.</li>
+ * <li><code>block</code>: the data manager thread waits until the logger caught up. No data is lost but a slow logger
+ * delays the data manager like it did when loggers were called synchronously.</li>
+ * <li><code>spill</code>: batches are appended to a file in the directory {@value #SPILL_DIR_PROPERTY} and delivered
+ * from there in order once the queue drained. The file survives restarts.</li>
+ * </ul>
+ * The queue capacity in batches is configured by {@value #CAPACITY_PROPERTY}.
+ * <p>
+ * Channel configurations are passed through the same queue by {@link #setChannelsToLog(List)}, so the worker is the
+ * only thread calling the logger and every batch is logged with the configuration that was valid when it was queued.
+ * Configurations are never dropped or spilled. Batches which were spilled before are therefore logged with the newer
+ * configuration.
+ */
+final class LoggerDelivery {
+
+    static final String CAPACITY_PROPERTY = "org.openmuc.framework.datamanager.loggerQueue.capacity";
+    static final String OVERFLOW_PROPERTY = "org.openmuc.framework.datamanager.loggerQueue.overflow";
+    static final String SPILL_DIR_PROPERTY = "org.openmuc.framework.datamanager.loggerQueue.spillDir";
+    private static final int DEFAULT_CAPACITY = 1000;
+    private static final String DEFAULT_SPILL_DIR = "data/logger-spill";
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 5000;
+
+    private static final Logger logger = LoggerFactory.getLogger(LoggerDelivery.class);
+
+    enum Overflow {
+        DROP_OLDEST,
+        BLOCK,
+        SPILL
+    }
+
+    static final class Batch {
+        final List<LoggingRecord> records;
+        final long timestamp;
+        final boolean event;
+        final long enqueuedAt = System.currentTimeMillis();
+        // not null if the batch carries a channel configuration instead of records
+        final List<LogChannel> channelsToLog;
+
+        Batch(List<LoggingRecord> records, long timestamp, boolean event) {
+            this.records = records;
+            this.timestamp = timestamp;
+            this.event = event;
+            this.channelsToLog = null;
+        }
+
+        Batch(List<LogChannel> channelsToLog) {
+            this.records = Collections.emptyList();
+            this.timestamp = 0;
+            this.event = false;
+            this.channelsToLog = channelsToLog;
+        }
+    }
+
+    private final DataLoggerService dataLogger;
+    private final BlockingQueue<Batch> queue;
+    private final Thread worker;
+    private Overflow overflow;
+
+    // guarded by this, spilling is true as long as the spill file contains batches which were not delivered
+    private SpillFile spillFile;
+    private boolean spilling = false;
+
+    private final AtomicLong deliveredBatches = new AtomicLong();
+    private final AtomicLong droppedBatches = new AtomicLong();
+    private final AtomicLong droppedRecords = new AtomicLong();
+    private final AtomicLong spilledBatches = new AtomicLong();
+    private volatile long lagMillis = 0;
+    private volatile boolean running = true;
+
+    LoggerDelivery(DataLoggerService dataLogger, int capacity, Overflow overflow, File spillDir) {
+        this.dataLogger = dataLogger;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.overflow = overflow;
+
+        if (overflow == Overflow.SPILL) {
+            try {
+                spillFile = new SpillFile(new File(spillDir, dataLogger.getId() + ".spill"));
+                spilling = !spillFile.isEmpty();
+            } catch (IOException e) {
+                logger.error("Unable to open spill file for logger {}, dropping oldest batches instead.",
+                        dataLogger.getId(), e);
+                this.overflow = Overflow.DROP_OLDEST;
+            }
+        }
+
+        worker = new Thread(this::run, "OpenMUC Data Manager Logger " + dataLogger.getId());
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    static LoggerDelivery fromSystemProperties(DataLoggerService dataLogger) {
+        int capacity = Math.max(1, Integer.getInteger(CAPACITY_PROPERTY, DEFAULT_CAPACITY));
+        String overflowName = System.getProperty(OVERFLOW_PROPERTY, "dropOldest");
+        Overflow overflow;
+        try {
+            overflow = Overflow.valueOf(overflowName.trim()
+                    .replaceAll("([a-z])([A-Z])", "$1_$2")
+                    .toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Unknown logger queue overflow policy \"{}\" in {}, using dropOldest.", overflowName,
+                    OVERFLOW_PROPERTY);
+            overflow = Overflow.DROP_OLDEST;
+        }
+        File spillDir = new File(System.getProperty(SPILL_DIR_PROPERTY, DEFAULT_SPILL_DIR));
+        return new LoggerDelivery(dataLogger, capacity, overflow, spillDir);
+    }
+
+    DataLoggerService getDataLogger() {
+        return dataLogger;
+    }
+
+    /**
+     * Queues the channel configuration behind the batches queued so far. In mode <code>block</code> this waits for
+     * room in the queue like batches do, otherwise the oldest batch is dropped if the queue is full.
+     */
+    void setChannelsToLog(List<LogChannel> channels) {
+        if (!running) {
+            return;
+        }
+        Batch batch = new Batch(channels);
+        if (overflow == Overflow.BLOCK) {
+            try {
+                queue.put(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        else if (!queue.offer(batch)) {
+            dropOldestAndOffer(batch);
+        }
+    }
+
+    void log(List<LoggingRecord> records, long timestamp) {
+        offer(new Batch(records, timestamp, false));
+    }
+
+    void logEvent(List<LoggingRecord> records, long timestamp) {
+        offer(new Batch(records, timestamp, true));
+    }
+
+    private void offer(Batch batch) {
+        if (!running) {
+            return;
+        }
+        switch (overflow) {
+        case BLOCK:
+            try {
+                queue.put(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            break;
+        case SPILL:
+            synchronized (this) {
+                if (!spilling && queue.offer(batch)) {
+                    return;
+                }
+                try {
+                    spillFile.append(batch);
+                    spilling = true;
+                    spilledBatches.incrementAndGet();
+                    return;
+                } catch (IOException e) {
+                    logger.error("Unable to spill logging batch of logger {}.", dataLogger.getId(), e);
+                }
+            }
+            dropOldestAndOffer(batch);
+            break;
+        case DROP_OLDEST:
+        default:
+            if (!queue.offer(batch)) {
+                dropOldestAndOffer(batch);
+            }
+            break;
+        }
+    }
+
+    private void dropOldestAndOffer(Batch batch) {
+        while (!queue.offer(batch)) {
+            Batch oldest = oldestRecordBatch();
+            if (oldest == null) {
+                if (batch.channelsToLog == null) {
+                    // the queue only holds configurations, which must not be dropped
+                    countDropped(batch);
+                    return;
+                }
+                // a queued configuration without batches behind it is replaced by the new one
+                queue.poll();
+            }
+            else if (queue.remove(oldest)) {
+                countDropped(oldest);
+            }
+        }
+    }
+
+    private Batch oldestRecordBatch() {
+        for (Batch queued : queue) {
+            if (queued.channelsToLog == null) {
+                return queued;
+            }
+        }
+        return null;
+    }
+
+    private void countDropped(Batch dropped) {
+        long droppedBefore = droppedBatches.getAndIncrement();
+        droppedRecords.addAndGet(dropped.records.size());
+        if (droppedBefore == 0 || (droppedBefore + 1) % 1000 == 0) {
+            logger.warn("Logger {} is too slow, dropped {} logging batches so far.", dataLogger.getId(),
+                    droppedBefore + 1);
+        }
+    }
+
+    private void run() {
+        while (running || !queue.isEmpty()) {
+            Batch batch = queue.poll();
+            if (batch == null) {
+                batch = readSpilled();
+            }
+            if (batch == null) {
+                try {
+                    batch = queue.poll(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+            if (batch != null) {
+                deliver(batch);
+            }
+        }
+        closeSpillFile();
+    }
+
+    private synchronized Batch readSpilled() {
+        if (!spilling || !queue.isEmpty()) {
+            return null;
+        }
+        try {
+            Batch batch = spillFile.read();
+            if (batch == null) {
+                spilling = false;
+            }
+            return batch;
+        } catch (IOException | RuntimeException e) {
+            logger.error("Unable to read spilled logging batches of logger {}, keeping them for the next start.",
+                    dataLogger.getId(), e);
+            spilling = false;
+            return null;
+        }
+    }
+
+    private void deliver(Batch batch) {
+        if (batch.channelsToLog != null) {
+            try {
+                dataLogger.setChannelsToLog(batch.channelsToLog);
+            } catch (RuntimeException e) {
+                logger.error("Logger {} threw an exception.", dataLogger.getId(), e);
+            }
+            return;
+        }
+        try {
+            if (batch.event) {
+                dataLogger.logEvent(batch.records, batch.timestamp);
+            }
+            else {
+                dataLogger.log(batch.records, batch.timestamp);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Logger {} threw an exception.", dataLogger.getId(), e);
+        }
+        deliveredBatches.incrementAndGet();
+        lagMillis = System.currentTimeMillis() - batch.enqueuedAt;
+    }
+
+    private synchronized void closeSpillFile() {
+        if (spillFile == null) {
+            return;
+        }
+        try {
+            spillFile.close();
+        } catch (IOException e) {
+            logger.warn("Unable to close spill file {}.", spillFile.getFile(), e);
+        }
+    }
+
+    /**
+     * Stops accepting batches and waits a few seconds for the worker to deliver the queued ones. Batches still in the
+     * spill file are kept for the next start.
+     */
+    void shutdown() {
+        running = false;
+        try {
+            worker.join(SHUTDOWN_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (worker.isAlive()) {
+            logger.warn("Logger {} did not finish in time, {} queued logging batches are lost.", dataLogger.getId(),
+                    queue.size());
+            worker.interrupt();
+        }
+    }
+
+    int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * @return time in milliseconds the last delivered batch waited in the queue
+     */
+    long getLagMillis() {
+        return lagMillis;
+    }
+
+    long getDeliveredBatches() {
+        return deliveredBatches.get();
+    }
+
+    long getDroppedBatches() {
+        return droppedBatches.get();
+    }
+
+    long getDroppedRecords() {
+        return droppedRecords.get();
+    }
+
+    long getSpilledBatches() {
+        return spilledBatches.get();
+    }
+
+    void appendMetrics(StringBuilder sb) {
+        sb.append(dataLogger.getId())
+                .append(": queued=")
+                .append(getQueueDepth())
+                .append(", lagMs=")
+                .append(getLagMillis())
+                .append(", delivered=")
+                .append(getDeliveredBatches())
+                .append(", dropped=")
+                .append(getDroppedBatches())
+                .append(" (")
+                .append(getDroppedRecords())
+                .append(" records), spilled=")
+                .append(getSpilledBatches())
+                .append('\n');
+    }
+
+}
@@ -24,143 +24,353 @@ package org.openmuc.framework.core.datamanager;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Deque;
-import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
-import org.openmuc.framework.data.Record;
-import org.openmuc.framework.dataaccess.Channel;
 import org.openmuc.framework.dataaccess.ChannelState;
 import org.openmuc.framework.datalogger.spi.DataLoggerService;
+import org.openmuc.framework.datalogger.spi.LogChannel;
 import org.openmuc.framework.datalogger.spi.LoggingRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Hands the latest records of logged channels to the data loggers.
+ * <p>
+ * Which loggers a channel is logged by is resolved from its logging settings only when the configuration or the set
+ * of active loggers changed. Loggers are referred to by their index in a snapshot of the active loggers, each channel
+ * gets an int array of logger indices and each logging collection caches the arrays of its channels together with the
+ * number of records per logger. A logging tick then only allocates one list of the exact size per logger and one
+ * {@link LoggingRecord} per channel which is shared by all loggers of that channel.
+ * <p>
+ * The records are not handed to the loggers directly but to a {@link LoggerDelivery} per logger which calls the
+ * logger on a thread of its own.
+ */
 public class LoggingController {
 
     private static final Logger logger = LoggerFactory.getLogger(LoggingController.class);
+    private static final int[] NO_LOGGERS = new int[0];
+
     private final Deque<DataLoggerService> activeDataLoggers;
-    private Map<String, List<LoggingRecord>> logContainerMap;
+    private DataLoggerService[] loggers = new DataLoggerService[0];
+    private volatile LoggerDelivery[] deliveries = new LoggerDelivery[0];
+    private int routingVersion = 0;
+
+    /**
+     * Routing of the channels of a logging collection. Only valid for the routing version it was built for.
+     */
+    static final class CollectionRoute {
+        private final int version;
+        private final ChannelImpl[] channels;
+        private final int[][] loggersOfChannel;
+        private final int[] recordsPerLogger;
+
+        private CollectionRoute(int version, ChannelImpl[] channels, int[][] loggersOfChannel,
+                int[] recordsPerLogger) {
+            this.version = version;
+            this.channels = channels;
+            this.loggersOfChannel = loggersOfChannel;
+            this.recordsPerLogger = recordsPerLogger;
+        }
+    }
 
     public LoggingController(Deque<DataLoggerService> activeDataLoggers) {
         this.activeDataLoggers = activeDataLoggers;
     }
 
+    /**
+     * Has to be called when the channel configuration changed so that the logging settings are parsed again.
+     */
+    public void invalidateRouting() {
+        routingVersion++;
+    }
+
     public boolean channelsHaveToBeLogged(Action currentAction) {
         return currentAction.loggingCollections != null && !currentAction.loggingCollections.isEmpty();
     }
 
     public List<Optional<ChannelCollection>> triggerLogging(Action currentAction) {
-        initLoggingRecordMap();
+        updateLoggers();
         List<Optional<ChannelCollection>> filledChannels = new ArrayList<>();
+        List<CollectionRoute> routes = new ArrayList<>(currentAction.loggingCollections.size());
+        int[] recordsPerLogger = new int[loggers.length];
 
         for (ChannelCollection loggingCollection : currentAction.loggingCollections) {
-            List<ChannelImpl> toRemove = new LinkedList<>();
+            removeDeletedChannels(loggingCollection);
 
-            for (ChannelImpl channel : loggingCollection.channels) {
-                if (channel.getChannelState() == ChannelState.DELETED) {
-                    toRemove.add(channel);
-                }
-                else if (!channel.config.isDisabled()) {
-                    fillLoggingRecordMapWithChannel(channel);
-                }
+            if (loggingCollection.channels != null && !loggingCollection.channels.isEmpty()) {
+                filledChannels.add(Optional.of(loggingCollection));
             }
 
-            for (ChannelImpl channel : toRemove) {
-                loggingCollection.channels.remove(channel);
+            CollectionRoute route = routeOf(loggingCollection);
+            routes.add(route);
+            for (int i = 0; i < recordsPerLogger.length; i++) {
+                recordsPerLogger[i] += route.recordsPerLogger[i];
             }
+        }
 
-            if (loggingCollection.channels != null && !loggingCollection.channels.isEmpty()) {
-                filledChannels.add(Optional.of(loggingCollection));
+        List<List<LoggingRecord>> logContainers = newLogContainers(recordsPerLogger);
+        for (CollectionRoute route : routes) {
+            for (int i = 0; i < route.channels.length; i++) {
+                addLoggingRecord(route.channels[i], route.loggersOfChannel[i], logContainers);
             }
         }
-        deliverLogsToLogServices(currentAction.startTime);
+
+        for (int i = 0; i < deliveries.length; i++) {
+            deliveries[i].log(logContainers.get(i), currentAction.startTime);
+        }
 
         return filledChannels;
     }
 
     public void deliverLogsToEventBasedLogServices(List<ChannelRecordContainerImpl> channelRecordContainerList) {
-        initLoggingRecordMap();
-        channelRecordContainerList.stream()
-                .forEach(channelRecord -> fillLoggingRecordMapWithChannel(channelRecord.getChannel()));
+        updateLoggers();
+        int[][] loggersOfChannel = new int[channelRecordContainerList.size()][];
+        int[] recordsPerLogger = new int[loggers.length];
+        for (int i = 0; i < loggersOfChannel.length; i++) {
+            loggersOfChannel[i] = routeOf(channelRecordContainerList.get(i).getChannel());
+            for (int loggerIndex : loggersOfChannel[i]) {
+                recordsPerLogger[loggerIndex]++;
+            }
+        }
 
-        for (DataLoggerService dataLogger : activeDataLoggers) {
-            List<LoggingRecord> logContainers = logContainerMap.get(dataLogger.getId());
+        List<List<LoggingRecord>> logContainers = newLogContainers(recordsPerLogger);
+        for (int i = 0; i < loggersOfChannel.length; i++) {
+            addLoggingRecord(channelRecordContainerList.get(i).getChannel(), loggersOfChannel[i], logContainers);
+        }
 
-            if (!logContainers.isEmpty()) {
-                dataLogger.logEvent(logContainers, System.currentTimeMillis());
+        long timestamp = System.currentTimeMillis();
+        for (int i = 0; i < deliveries.length; i++) {
+            if (!logContainers.get(i).isEmpty()) {
+                deliveries[i].logEvent(logContainers.get(i), timestamp);
             }
         }
     }
 
-    private void initLoggingRecordMap() {
-        logContainerMap = new HashMap<>();
-        for (DataLoggerService dataLogger : activeDataLoggers) {
-            logContainerMap.put(dataLogger.getId(), new ArrayList<>());
+    private void removeDeletedChannels(ChannelCollection loggingCollection) {
+        List<ChannelImpl> toRemove = null;
+        for (ChannelImpl channel : loggingCollection.channels) {
+            if (channel.getChannelState() == ChannelState.DELETED) {
+                if (toRemove == null) {
+                    toRemove = new LinkedList<>();
+                }
+                toRemove.add(channel);
+            }
+        }
+
+        if (toRemove != null) {
+            for (ChannelImpl channel : toRemove) {
+                loggingCollection.remove(channel);
+            }
         }
     }
 
-    private void fillLoggingRecordMapWithChannel(ChannelImpl channel) {
-        String logSettings = channel.getLoggingSettings();
+    private static void addLoggingRecord(ChannelImpl channel, int[] loggerIndices,
+            List<List<LoggingRecord>> logContainers) {
+        if (loggerIndices.length == 0) {
+            return;
+        }
+        // LoggingRecord is immutable, so all loggers share it
+        LoggingRecord loggingRecord = new LoggingRecord(channel.getId(), channel.getLatestRecord());
+        for (int loggerIndex : loggerIndices) {
+            logContainers.get(loggerIndex).add(loggingRecord);
+        }
+    }
 
-        if (logSettings != null && !logSettings.isEmpty()) {
-            extendMapForDefinedLoggerFromSettings(channel, logSettings);
+    /**
+     * Lists are created for every tick because loggers may keep the list they were given.
+     */
+    private static List<List<LoggingRecord>> newLogContainers(int[] recordsPerLogger) {
+        List<List<LoggingRecord>> logContainers = new ArrayList<>(recordsPerLogger.length);
+        for (int records : recordsPerLogger) {
+            logContainers.add(new ArrayList<>(records));
         }
-        else {
-            addRecordToAllLoggerWhichNotRequiresSettings(channel);
+        return logContainers;
+    }
+
+    /**
+     * Takes a new snapshot of the active loggers if loggers were added or removed since the last call. Deliveries are
+     * started for new loggers, the deliveries of removed loggers are shut down after the queued batches were
+     * delivered. Has to be called when a logger was removed so that it is not called any more.
+     */
+    void updateLoggers() {
+        Iterator<DataLoggerService> it = activeDataLoggers.iterator();
+        int i = 0;
+        boolean changed = false;
+        while (it.hasNext()) {
+            if (i >= loggers.length || it.next() != loggers[i]) {
+                changed = true;
+                break;
+            }
+            i++;
+        }
+        if (changed || i != loggers.length) {
+            loggers = activeDataLoggers.toArray(new DataLoggerService[0]);
+            updateDeliveries();
+            routingVersion++;
+        }
+    }
+
+    private void updateDeliveries() {
+        Map<DataLoggerService, LoggerDelivery> oldDeliveries = new IdentityHashMap<>();
+        for (LoggerDelivery delivery : deliveries) {
+            oldDeliveries.put(delivery.getDataLogger(), delivery);
+        }
+
+        LoggerDelivery[] newDeliveries = new LoggerDelivery[loggers.length];
+        for (int i = 0; i < loggers.length; i++) {
+            newDeliveries[i] = oldDeliveries.remove(loggers[i]);
+            if (newDeliveries[i] == null) {
+                newDeliveries[i] = LoggerDelivery.fromSystemProperties(loggers[i]);
+            }
+        }
+        deliveries = newDeliveries;
+
+        for (LoggerDelivery removedDelivery : oldDeliveries.values()) {
+            removedDelivery.shutdown();
         }
     }
 
-    private void addRecordToAllLoggerWhichNotRequiresSettings(Channel channel) {
-        Record latestRecord = channel.getLatestRecord();
-        logContainerMap.forEach((k, v) -> {
-            if (loggerWithIdNotRequiresSettings(k)) {
-                v.add(new LoggingRecord(channel.getId(), latestRecord));
+    /**
+     * Passes the channels to log to the delivery of the logger, so that the logger is only called by its delivery
+     * thread and receives the configuration in order with the batches.
+     */
+    void setChannelsToLog(DataLoggerService dataLogger, List<LogChannel> channels) {
+        updateLoggers();
+        for (LoggerDelivery delivery : deliveries) {
+            if (delivery.getDataLogger() == dataLogger) {
+                delivery.setChannelsToLog(channels);
+                return;
             }
-        });
+        }
+        logger.warn("Data logger {} is not active, channels to log are not passed on.", dataLogger.getId());
     }
 
-    private boolean loggerWithIdNotRequiresSettings(String loggerId) {
-        return activeDataLoggers.stream()
-                .filter((DataLoggerService::logSettingsRequired))
-                .map(logger -> logger.getId())
-                .noneMatch(filteredId -> filteredId.equals(loggerId));
+    /**
+     * Delivers the queued batches and stops the delivery threads.
+     */
+    void shutdown() {
+        for (LoggerDelivery delivery : deliveries) {
+            delivery.shutdown();
+        }
+        deliveries = new LoggerDelivery[0];
+        loggers = new DataLoggerService[0];
     }
 
-    private void extendMapForDefinedLoggerFromSettings(ChannelImpl channel, String logSettings) {
-        List<String> definedLoggerInChannel = parseDefinedLogger(logSettings);
+    /**
+     * @return queue depth, lag, delivered, dropped and spilled batches of every logger
+     */
+    String metrics() {
+        StringBuilder sb = new StringBuilder();
+        for (LoggerDelivery delivery : deliveries) {
+            delivery.appendMetrics(sb);
+        }
+        return sb.toString();
+    }
 
-        logger.trace("logcontainer map contains: {}", logContainerMap.keySet());
+    private CollectionRoute routeOf(ChannelCollection loggingCollection) {
+        CollectionRoute route = loggingCollection.loggingRoute;
+        if (route != null && route.version == routingVersion) {
+            return route;
+        }
 
-        for (String definedLogger : definedLoggerInChannel) {
-            if (logContainerMap.get(definedLogger) != null) {
-                Record latestRecord = channel.getLatestRecord();
-                logContainerMap.get(definedLogger).add(new LoggingRecord(channel.getId(), latestRecord));
+        List<ChannelImpl> channels = new ArrayList<>(loggingCollection.channels.size());
+        List<int[]> loggersOfChannel = new ArrayList<>(loggingCollection.channels.size());
+        int[] recordsPerLogger = new int[loggers.length];
+        for (ChannelImpl channel : loggingCollection.channels) {
+            if (channel.config.isDisabled()) {
+                continue;
             }
-            else {
-                logger.warn("DataLoggerService with Id {} not found for channel {}", definedLogger,
-                        channel.config.getId());
-                logger.warn("Correct configuration in channel.xml?");
+            int[] loggerIndices = routeOf(channel);
+            channels.add(channel);
+            loggersOfChannel.add(loggerIndices);
+            for (int loggerIndex : loggerIndices) {
+                recordsPerLogger[loggerIndex]++;
             }
         }
+
+        route = new CollectionRoute(routingVersion, channels.toArray(new ChannelImpl[0]),
+                loggersOfChannel.toArray(new int[0][]), recordsPerLogger);
+        loggingCollection.loggingRoute = route;
+        return route;
     }
 
-    private List<String> parseDefinedLogger(String logSettings) {
-        String[] loggerSegments = logSettings.split(";");
-        List<String> definedLogger = Arrays.stream(loggerSegments)
-                .map(seg -> seg.split(":")[0])
-                .collect(Collectors.toList());
+    private int[] routeOf(ChannelImpl channel) {
+        if (channel.loggingRoute != null && channel.loggingRouteVersion == routingVersion) {
+            return channel.loggingRoute;
+        }
+        int[] route = resolveLoggers(channel);
+        channel.loggingRoute = route;
+        channel.loggingRouteVersion = routingVersion;
+        return route;
+    }
 
-        return definedLogger;
+    /**
+     * Channels with logging settings are logged by the loggers named in the settings, all others by the loggers which
+     * do not require settings.
+     */
+    private int[] resolveLoggers(ChannelImpl channel) {
+        String logSettings = channel.getLoggingSettings();
+        int[] loggerIndices = NO_LOGGERS;
+
+        if (logSettings != null && !logSettings.isEmpty()) {
+            for (String definedLogger : parseDefinedLogger(logSettings)) {
+                int loggerIndex = indexOfLogger(definedLogger);
+                if (loggerIndex >= 0) {
+                    loggerIndices = append(loggerIndices, loggerIndex);
+                }
+                else {
+                    logger.warn("DataLoggerService with Id {} not found for channel {}", definedLogger,
+                            channel.config.getId());
+                    logger.warn("Correct configuration in channel.xml?");
+                }
+            }
+        }
+        else {
+            for (int i = 0; i < loggers.length; i++) {
+                if (!loggerWithIdRequiresSettings(loggers[i].getId())) {
+                    loggerIndices = append(loggerIndices, i);
+                }
+            }
+        }
+
+        return loggerIndices;
     }
 
-    private void deliverLogsToLogServices(long startTime) {
-        for (DataLoggerService dataLogger : activeDataLoggers) {
-            List<LoggingRecord> logContainers = logContainerMap.get(dataLogger.getId());
-            dataLogger.log(logContainers, startTime);
+    private boolean loggerWithIdRequiresSettings(String loggerId) {
+        for (DataLoggerService dataLogger : loggers) {
+            if (dataLogger.logSettingsRequired() && dataLogger.getId().equals(loggerId)) {
+                return true;
+            }
         }
+        return false;
     }
+
+    private int indexOfLogger(String loggerId) {
+        for (int i = 0; i < loggers.length; i++) {
+            if (loggers[i].getId().equals(loggerId)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int[] append(int[] array, int value) {
+        int[] result = Arrays.copyOf(array, array.length + 1);
+        result[array.length] = value;
+        return result;
+    }
+
+    private static String[] parseDefinedLogger(String logSettings) {
+        String[] loggerSegments = logSettings.split(";");
+        for (int i = 0; i < loggerSegments.length; i++) {
+            loggerSegments[i] = loggerSegments[i].split(":")[0];
+        }
+        return loggerSegments;
+    }
+
 }
@@ -65,10 +65,7 @@ public class ReadTask extends DeviceTask implements ConnectedTask {
                 driverChannel.setRecord(new Record(Flag.ACCESS_METHOD_NOT_SUPPORTED));
             }
             readTaskFinishedSignal.countDown();
-            synchronized (dataManager.disconnectedDevices) {
-                dataManager.disconnectedDevices.add(device);
-            }
-            dataManager.interrupt();
+            dataManager.deviceDisconnected(device);
             return;
         } catch (Exception e) {
             logger.warn("unexpected exception thrown by read function of driver ", e);
@@ -112,10 +109,7 @@ public class ReadTask extends DeviceTask implements ConnectedTask {
 
         readTaskFinishedSignal.countDown();
 
-        synchronized (dataManager.tasksFinished) {
-            dataManager.tasksFinished.add(this);
-        }
-        dataManager.interrupt();
+        dataManager.taskFinished(this);
     }
 
     protected void taskAborted() {
@@ -52,10 +52,26 @@ public final class SamplingTask extends DeviceTask {
 
     // called by main thread
     public void storeValues() {
+        if (disable()) {
+            applyValues();
+        }
+    }
+
+    /**
+     * Disables the task so a later timeout is ignored. Called by main thread.
+     *
+     * @return <code>false</code> if the task was already disabled because it timed out
+     */
+    boolean disable() {
         if (disabled) {
-            return;
+            return false;
         }
         disabled = true;
+        return true;
+    }
+
+    // called by main thread or by the shard owning the device
+    void applyValues() {
         if (methodNotExceptedExceptionThrown) {
             for (ChannelRecordContainerImpl channelRecordContainer : channelRecordContainers) {
                 channelRecordContainer.getChannel().setFlag(Flag.ACCESS_METHOD_NOT_SUPPORTED);
@@ -68,7 +84,7 @@ public final class SamplingTask extends DeviceTask {
         }
         else {
             for (ChannelRecordContainerImpl channelRecordContainer : channelRecordContainers) {
-                channelRecordContainer.getChannel().setNewRecord(channelRecordContainer.getRecord());
+                channelRecordContainer.applyToChannel();
             }
         }
     }
@@ -94,10 +110,7 @@ public final class SamplingTask extends DeviceTask {
             logger.warn("Connection to device {} lost because {}. Trying to reconnect...", device.deviceConfig.getId(),
                     e.getMessage());
 
-            synchronized (dataManager.disconnectedDevices) {
-                dataManager.disconnectedDevices.add(device);
-            }
-            dataManager.interrupt();
+            dataManager.deviceDisconnected(device);
             return;
         } catch (Exception e) {
             logger.warn("unexpected exception thrown by read function of driver ", e);
@@ -108,10 +121,7 @@ public final class SamplingTask extends DeviceTask {
             channelRecordContainer.getChannel().handle = channelRecordContainer.getChannelHandle();
         }
 
-        synchronized (dataManager.samplingTaskFinished) {
-            dataManager.samplingTaskFinished.add(this);
-        }
-        dataManager.interrupt();
+        dataManager.samplingTaskFinished(this);
     }
 
     // called by main thread
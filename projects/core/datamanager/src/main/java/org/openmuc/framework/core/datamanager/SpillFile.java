@@ -0,0 +1,332 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openmuc.framework.data.BooleanValue;
+import org.openmuc.framework.data.ByteArrayValue;
+import org.openmuc.framework.data.ByteValue;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.FloatValue;
+import org.openmuc.framework.data.IntValue;
+import org.openmuc.framework.data.LongValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.ShortValue;
+import org.openmuc.framework.data.StringValue;
+import org.openmuc.framework.data.Value;
+import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append only file holding the logging batches which did not fit into the delivery queue of a logger. Batches are
+ * read back in the order they were written. When everything was read the file is truncated. The file is kept if the
+ * data manager stops so the batches are delivered when the logger is registered again.
+ * <p>
+ * The file starts with the read position, followed by the batches. Each batch is written as its length followed by the
+ * event flag, the timestamp and the records. The read position is stored when the next batch is read and on close, so
+ * after a crash the batch which was delivered last is delivered again. An incomplete batch at the end of the file, e.g.
+ * of a write interrupted by a crash, is cut off when the file is opened, corrupt batches are skipped. Not thread safe.
+ */
+final class SpillFile {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpillFile.class);
+
+    private static final int HEADER_SIZE = 8;
+    /**
+     * event flag, timestamp and record count
+     */
+    private static final int MIN_BATCH_SIZE = 13;
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private long readPosition = HEADER_SIZE;
+    private long storedReadPosition = HEADER_SIZE;
+
+    SpillFile(File file) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory " + parent);
+        }
+        this.file = file;
+        this.raf = new RandomAccessFile(file, "rw");
+        open();
+    }
+
+    private void open() throws IOException {
+        if (raf.length() < HEADER_SIZE) {
+            raf.setLength(0);
+            return;
+        }
+        raf.seek(0);
+        long position = raf.readLong();
+        if (position < HEADER_SIZE || position > raf.length()) {
+            logger.warn("Invalid read position {} in {}, reading all batches.", position, file);
+            position = HEADER_SIZE;
+        }
+        readPosition = position;
+        storedReadPosition = position;
+
+        long length = raf.length();
+        while (position + 4 <= length) {
+            raf.seek(position);
+            int batchLength = raf.readInt();
+            if (batchLength < MIN_BATCH_SIZE || position + 4 + batchLength > length) {
+                break;
+            }
+            position += 4 + batchLength;
+        }
+        if (position < length) {
+            logger.warn("Discarding {} bytes of an incomplete batch at the end of {}.", length - position, file);
+            raf.setLength(position);
+        }
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    boolean isEmpty() throws IOException {
+        return readPosition >= raf.length();
+    }
+
+    void append(LoggerDelivery.Batch batch) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + batch.records.size() * 32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeBoolean(batch.event);
+        out.writeLong(batch.timestamp);
+        out.writeInt(batch.records.size());
+        for (LoggingRecord loggingRecord : batch.records) {
+            out.writeUTF(loggingRecord.getChannelId());
+            writeRecord(out, loggingRecord.getRecord());
+        }
+        out.flush();
+
+        if (raf.length() == 0) {
+            raf.seek(0);
+            raf.writeLong(readPosition);
+        }
+        raf.seek(raf.length());
+        raf.writeInt(bytes.size());
+        raf.write(bytes.toByteArray());
+    }
+
+    /**
+     * Returns the oldest unread batch. The previous batch is regarded as delivered and the read position is stored.
+     *
+     * @return the oldest unread batch or <code>null</code> if all batches were read
+     */
+    LoggerDelivery.Batch read() throws IOException {
+        while (!isEmpty()) {
+            storeReadPosition();
+            long remaining = raf.length() - readPosition;
+            raf.seek(readPosition);
+            int length = remaining >= 4 ? raf.readInt() : -1;
+            if (length < MIN_BATCH_SIZE || length > remaining - 4) {
+                logger.warn("Discarding {} bytes of a corrupt batch at the end of {}.", remaining, file);
+                raf.setLength(readPosition);
+                break;
+            }
+            byte[] bytes = new byte[length];
+            raf.readFully(bytes);
+            readPosition += 4 + length;
+
+            try {
+                return decode(bytes);
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Skipping corrupt batch of {} bytes in {}: {}", length, file, e.toString());
+            }
+        }
+        truncate();
+        return null;
+    }
+
+    void close() throws IOException {
+        try {
+            storeReadPosition();
+        } finally {
+            raf.close();
+        }
+    }
+
+    private void storeReadPosition() throws IOException {
+        if (readPosition == storedReadPosition || raf.length() == 0) {
+            return;
+        }
+        raf.seek(0);
+        raf.writeLong(readPosition);
+        storedReadPosition = readPosition;
+    }
+
+    private void truncate() throws IOException {
+        if (raf.length() > 0) {
+            raf.setLength(0);
+        }
+        readPosition = HEADER_SIZE;
+        storedReadPosition = HEADER_SIZE;
+    }
+
+    private static LoggerDelivery.Batch decode(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        boolean event = in.readBoolean();
+        long timestamp = in.readLong();
+        int size = readLength(in);
+        List<LoggingRecord> records = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String channelId = in.readUTF();
+            records.add(new LoggingRecord(channelId, readRecord(in)));
+        }
+        return new LoggerDelivery.Batch(records, timestamp, event);
+    }
+
+    /**
+     * Reads a record count or byte length, which can't be larger than the remaining bytes of the batch.
+     */
+    private static int readLength(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) {
+            throw new IOException("Invalid length " + length);
+        }
+        return length;
+    }
+
+    private static void writeRecord(DataOutputStream out, Record record) throws IOException {
+        if (record == null) {
+            out.writeByte(-1);
+            return;
+        }
+        out.writeByte(record.getFlag().getCode());
+        Long timestamp = record.getTimestamp();
+        out.writeBoolean(timestamp != null);
+        if (timestamp != null) {
+            out.writeLong(timestamp);
+        }
+
+        Value value = record.getValue();
+        if (value == null) {
+            out.writeByte(-1);
+            return;
+        }
+        ValueType valueType = value.getValueType();
+        out.writeByte(valueType.ordinal());
+        switch (valueType) {
+        case BOOLEAN:
+            out.writeBoolean(value.asBoolean());
+            break;
+        case BYTE:
+            out.writeByte(value.asByte());
+            break;
+        case SHORT:
+            out.writeShort(value.asShort());
+            break;
+        case INTEGER:
+            out.writeInt(value.asInt());
+            break;
+        case LONG:
+            out.writeLong(value.asLong());
+            break;
+        case FLOAT:
+            out.writeFloat(value.asFloat());
+            break;
+        case DOUBLE:
+            out.writeDouble(value.asDouble());
+            break;
+        case BYTE_ARRAY:
+            byte[] bytes = value.asByteArray();
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            break;
+        case STRING:
+        default:
+            byte[] string = value.asString().getBytes("UTF-8");
+            out.writeInt(string.length);
+            out.write(string);
+            break;
+        }
+    }
+
+    private static Record readRecord(DataInputStream in) throws IOException {
+        byte flagCode = in.readByte();
+        if (flagCode == -1) {
+            return null;
+        }
+        Flag flag = Flag.newFlag(flagCode);
+        Long timestamp = in.readBoolean() ? in.readLong() : null;
+
+        byte valueTypeOrdinal = in.readByte();
+        if (valueTypeOrdinal == -1) {
+            return new Record(null, timestamp, flag);
+        }
+        if (valueTypeOrdinal < 0 || valueTypeOrdinal >= ValueType.values().length) {
+            throw new IOException("Invalid value type " + valueTypeOrdinal);
+        }
+
+        Value value;
+        switch (ValueType.values()[valueTypeOrdinal]) {
+        case BOOLEAN:
+            value = new BooleanValue(in.readBoolean());
+            break;
+        case BYTE:
+            value = new ByteValue(in.readByte());
+            break;
+        case SHORT:
+            value = new ShortValue(in.readShort());
+            break;
+        case INTEGER:
+            value = new IntValue(in.readInt());
+            break;
+        case LONG:
+            value = new LongValue(in.readLong());
+            break;
+        case FLOAT:
+            value = new FloatValue(in.readFloat());
+            break;
+        case DOUBLE:
+            value = new DoubleValue(in.readDouble());
+            break;
+        case BYTE_ARRAY:
+            byte[] bytes = new byte[readLength(in)];
+            in.readFully(bytes);
+            value = new ByteArrayValue(bytes);
+            break;
+        case STRING:
+        default:
+            byte[] string = new byte[readLength(in)];
+            in.readFully(string);
+            value = new StringValue(new String(string, "UTF-8"));
+            break;
+        }
+        return new Record(value, timestamp, flag);
+    }
+
+}
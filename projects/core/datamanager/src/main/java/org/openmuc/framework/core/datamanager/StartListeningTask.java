@@ -65,10 +65,7 @@ public final class StartListeningTask extends DeviceTask implements ConnectedTas
             // TODO set flag?
         }
 
-        synchronized (dataManager.tasksFinished) {
-            dataManager.tasksFinished.add(this);
-        }
-        dataManager.interrupt();
+        dataManager.taskFinished(this);
     }
 
     @Override
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Thread pools executing the work of the data manager.
+ * <p>
+ * Device tasks (connect, disconnect, sampling, read, write, listening) and scans are executed on the executor of their
+ * driver, see {@link #forDriver(String)}. Record listener and config change notifications are executed on the
+ * {@link #common()} executor. Which pools exist depends on the strategy selected by the system property
+ * {@value #STRATEGY_PROPERTY}:
+ * <ul>
+ * <li><code>cached</code> (default): a single unbounded cached thread pool for everything.</li>
+ * <li><code>bounded</code>: device tasks share one pool of at most {@value #POOL_SIZE_PROPERTY} threads, further tasks
+ * are queued.</li>
+ * <li><code>perDriver</code>: every driver gets its own bounded pool so a hung driver cannot starve the others.</li>
+ * <li><code>virtual</code>: a virtual thread per task. Needs Java 21 or later, falls back to <code>cached</code>
+ * otherwise.</li>
+ * </ul>
+ * Except for <code>virtual</code>, the common executor is a cached pool. Record listeners only ever have one delivery
+ * task pending, so it grows with the number of listeners and not with the number of records.
+ */
+final class TaskExecutors {
+
+    static final String STRATEGY_PROPERTY = "org.openmuc.framework.datamanager.executor";
+    static final String POOL_SIZE_PROPERTY = "org.openmuc.framework.datamanager.executor.poolSize";
+    private static final int DEFAULT_POOL_SIZE = 32;
+
+    private static final Logger logger = LoggerFactory.getLogger(TaskExecutors.class);
+
+    enum Strategy {
+        CACHED,
+        BOUNDED,
+        PER_DRIVER,
+        VIRTUAL
+    }
+
+    private final Strategy strategy;
+    private final int poolSize;
+    private final MeteredExecutor common;
+    private final MeteredExecutor devices;
+    private final Map<String, MeteredExecutor> driverPools = new ConcurrentHashMap<>();
+    private volatile boolean shutdown = false;
+
+    TaskExecutors(Strategy strategy, int poolSize) {
+        if (strategy == Strategy.VIRTUAL && !virtualThreadsAvailable()) {
+            logger.warn("Virtual threads need Java 21 or later, using a cached thread pool instead.");
+            strategy = Strategy.CACHED;
+        }
+        this.strategy = strategy;
+        this.poolSize = poolSize;
+
+        switch (strategy) {
+        case VIRTUAL:
+            common = new MeteredExecutor("virtual", newVirtualThreadPerTaskExecutor());
+            devices = common;
+            break;
+        case BOUNDED:
+            common = new MeteredExecutor("common", newCachedPool("OpenMUC Data Manager Pool - thread-"));
+            devices = new MeteredExecutor("devices", newBoundedPool("OpenMUC Data Manager Device Pool - thread-"));
+            break;
+        case PER_DRIVER:
+            common = new MeteredExecutor("common", newCachedPool("OpenMUC Data Manager Pool - thread-"));
+            devices = null;
+            break;
+        case CACHED:
+        default:
+            common = new MeteredExecutor("common", newCachedPool("OpenMUC Data Manager Pool - thread-"));
+            devices = common;
+            break;
+        }
+    }
+
+    /**
+     * Creates the executors configured by the system properties {@value #STRATEGY_PROPERTY} and
+     * {@value #POOL_SIZE_PROPERTY}.
+     */
+    static TaskExecutors fromSystemProperties() {
+        String strategyName = System.getProperty(STRATEGY_PROPERTY, "cached");
+        Strategy strategy;
+        try {
+            strategy = Strategy.valueOf(strategyName.trim()
+                    .replaceAll("([a-z])([A-Z])", "$1_$2")
+                    .toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Unknown executor strategy \"{}\" in {}, using cached.", strategyName, STRATEGY_PROPERTY);
+            strategy = Strategy.CACHED;
+        }
+        int poolSize = Math.max(1, Integer.getInteger(POOL_SIZE_PROPERTY, DEFAULT_POOL_SIZE));
+        return new TaskExecutors(strategy, poolSize);
+    }
+
+    Strategy getStrategy() {
+        return strategy;
+    }
+
+    Executor common() {
+        return common;
+    }
+
+    Executor forDriver(String driverId) {
+        if (devices != null) {
+            return devices;
+        }
+        if (shutdown) {
+            // rejects the task
+            return common;
+        }
+        return driverPools.computeIfAbsent(driverId, id -> new MeteredExecutor("driver " + id,
+                newBoundedPool("OpenMUC Data Manager Driver " + id + " Pool - thread-")));
+    }
+
+    void shutdown() {
+        shutdown = true;
+        common.shutdown();
+        if (devices != null) {
+            devices.shutdown();
+        }
+        for (MeteredExecutor driverPool : driverPools.values()) {
+            driverPool.shutdown();
+        }
+    }
+
+    /**
+     * @return a human readable overview of the executors with their active task count, queue depth, number of
+     *         executed and rejected tasks
+     */
+    String metrics() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("strategy: ").append(strategy.name().toLowerCase(Locale.ENGLISH)).append('\n');
+        common.appendMetrics(sb);
+        if (devices != null && devices != common) {
+            devices.appendMetrics(sb);
+        }
+        for (MeteredExecutor driverPool : driverPools.values()) {
+            driverPool.appendMetrics(sb);
+        }
+        return sb.toString();
+    }
+
+    private ExecutorService newCachedPool(String threadName) {
+        return Executors.newCachedThreadPool(new NamedThreadFactory(threadName));
+    }
+
+    private ExecutorService newBoundedPool(String threadName) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new NamedThreadFactory(threadName));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private static boolean virtualThreadsAvailable() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            // Java 21 API, called reflectively because the data manager is compiled for Java 8
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to create virtual thread executor", e);
+        }
+    }
+
+    /**
+     * Executor which counts active, executed and rejected tasks.
+     */
+    static final class MeteredExecutor implements Executor {
+
+        private final String name;
+        private final ExecutorService executorService;
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+
+        MeteredExecutor(String name, ExecutorService executorService) {
+            this.name = name;
+            this.executorService = executorService;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            try {
+                executorService.execute(() -> {
+                    active.incrementAndGet();
+                    try {
+                        task.run();
+                    } finally {
+                        active.decrementAndGet();
+                        completed.incrementAndGet();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                rejected.incrementAndGet();
+                throw e;
+            }
+        }
+
+        int getActiveCount() {
+            return active.get();
+        }
+
+        int getQueueDepth() {
+            if (executorService instanceof ThreadPoolExecutor) {
+                return ((ThreadPoolExecutor) executorService).getQueue().size();
+            }
+            return 0;
+        }
+
+        long getCompletedCount() {
+            return completed.get();
+        }
+
+        long getRejectedCount() {
+            return rejected.get();
+        }
+
+        void shutdown() {
+            executorService.shutdown();
+        }
+
+        void appendMetrics(StringBuilder sb) {
+            sb.append(name)
+                    .append(": active=")
+                    .append(getActiveCount())
+                    .append(", queued=")
+                    .append(getQueueDepth())
+                    .append(", completed=")
+                    .append(getCompletedCount())
+                    .append(", rejected=")
+                    .append(getRejectedCount())
+                    .append('\n');
+        }
+    }
+
+}
@@ -0,0 +1,362 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import org.openmuc.framework.data.BooleanValue;
+import org.openmuc.framework.data.ByteArrayValue;
+import org.openmuc.framework.data.ByteValue;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.FloatValue;
+import org.openmuc.framework.data.IntValue;
+import org.openmuc.framework.data.LongValue;
+import org.openmuc.framework.data.ShortValue;
+import org.openmuc.framework.data.StringValue;
+import org.openmuc.framework.data.TypeConversionException;
+import org.openmuc.framework.data.Value;
+import org.openmuc.framework.data.ValueType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Conversion of valid sampled values to the value type of a channel including scaling factor and value offset. A
+ * converter is compiled once per channel configuration by {@link #compile(ChannelConfigImpl)} so that the per sample
+ * work does not have to look at the configuration again.
+ * <p>
+ * Numeric value types get a specialized converter which applies scaling and offset in a single step and returns the
+ * driver value unchanged if it already has the configured type and no scaling is configured. All other value types
+ * use the generic conversion through {@link DoubleValue}.
+ */
+abstract class ValueConverter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ValueConverter.class);
+
+    final ValueType valueType;
+
+    private ValueConverter(ValueType valueType) {
+        this.valueType = valueType;
+    }
+
+    static ValueConverter compile(ChannelConfigImpl config) {
+        return compile(config.getId(), config.getValueType(), config.getScalingFactor(), config.getValueOffset());
+    }
+
+    static ValueConverter compile(String channelId, ValueType valueType, Double scalingFactor, Double valueOffset) {
+        Coercion coercion = Coercion.of(valueType);
+        if (coercion == null) {
+            return new Generic(channelId, valueType, scalingFactor, valueOffset);
+        }
+        if (scalingFactor == null && valueOffset == null) {
+            return new Identity(valueType, coercion);
+        }
+        if (valueOffset == null) {
+            return new Scaled(valueType, coercion, scalingFactor);
+        }
+        if (scalingFactor == null) {
+            return new Offset(valueType, coercion, valueOffset);
+        }
+        return new OffsetScaled(valueType, coercion, scalingFactor, valueOffset);
+    }
+
+    /**
+     * Converts a valid value.
+     * 
+     * @return the converted value, this may be the given value itself
+     * @throws TypeConversionException
+     *             if the value can not be converted to the value type of the channel
+     */
+    abstract Value convert(Value value);
+
+    /**
+     * @return this converter if samples of this channel can be stored as primitives in a {@link LatestSample},
+     *         otherwise <code>null</code>
+     */
+    Numeric numeric() {
+        return null;
+    }
+
+    /**
+     * Converter of the numeric value types, which can also store converted primitive samples.
+     */
+    abstract static class Numeric extends ValueConverter {
+
+        final Coercion coercion;
+
+        private Numeric(ValueType valueType, Coercion coercion) {
+            super(valueType);
+            this.coercion = coercion;
+        }
+
+        @Override
+        Numeric numeric() {
+            return this;
+        }
+
+        abstract void store(double value, long timestamp, LatestSample sample);
+
+        abstract void store(long value, long timestamp, LatestSample sample);
+    }
+
+    /**
+     * Type coercion of the numeric value types. The casts match those of {@link Value#asInt()} and friends.
+     */
+    private enum Coercion {
+        BYTE {
+            @Override
+            Value coerce(Value value) {
+                return value instanceof ByteValue ? value : new ByteValue(value.asByte());
+            }
+
+            @Override
+            Value fromDouble(double value) {
+                return new ByteValue((byte) value);
+            }
+        },
+        SHORT {
+            @Override
+            Value coerce(Value value) {
+                return value instanceof ShortValue ? value : new ShortValue(value.asShort());
+            }
+
+            @Override
+            Value fromDouble(double value) {
+                return new ShortValue((short) value);
+            }
+        },
+        INTEGER {
+            @Override
+            Value coerce(Value value) {
+                return value instanceof IntValue ? value : new IntValue(value.asInt());
+            }
+
+            @Override
+            Value fromDouble(double value) {
+                return new IntValue((int) value);
+            }
+        },
+        LONG {
+            @Override
+            Value coerce(Value value) {
+                return value instanceof LongValue ? value : new LongValue(value.asLong());
+            }
+
+            @Override
+            Value fromDouble(double value) {
+                return new LongValue((long) value);
+            }
+        },
+        FLOAT {
+            @Override
+            Value coerce(Value value) {
+                return value instanceof FloatValue ? value : new FloatValue(value.asFloat());
+            }
+
+            @Override
+            Value fromDouble(double value) {
+                return new FloatValue((float) value);
+            }
+        },
+        DOUBLE {
+            @Override
+            Value coerce(Value value) {
+                return value instanceof DoubleValue ? value : new DoubleValue(value.asDouble());
+            }
+
+            @Override
+            Value fromDouble(double value) {
+                return new DoubleValue(value);
+            }
+        };
+
+        abstract Value coerce(Value value);
+
+        abstract Value fromDouble(double value);
+
+        static Coercion of(ValueType valueType) {
+            if (valueType == null) {
+                return null;
+            }
+            switch (valueType) {
+            case BYTE:
+                return BYTE;
+            case SHORT:
+                return SHORT;
+            case INTEGER:
+                return INTEGER;
+            case LONG:
+                return LONG;
+            case FLOAT:
+                return FLOAT;
+            case DOUBLE:
+                return DOUBLE;
+            default:
+                return null;
+            }
+        }
+    }
+
+    private static final class Identity extends Numeric {
+
+        Identity(ValueType valueType, Coercion coercion) {
+            super(valueType, coercion);
+        }
+
+        @Override
+        Value convert(Value value) {
+            return coercion.coerce(value);
+        }
+
+        @Override
+        void store(double value, long timestamp, LatestSample sample) {
+            sample.setDouble(valueType, value, timestamp);
+        }
+
+        @Override
+        void store(long value, long timestamp, LatestSample sample) {
+            sample.setLong(valueType, value, timestamp);
+        }
+    }
+
+    private static final class Scaled extends Numeric {
+
+        private final double scalingFactor;
+
+        Scaled(ValueType valueType, Coercion coercion, double scalingFactor) {
+            super(valueType, coercion);
+            this.scalingFactor = scalingFactor;
+        }
+
+        @Override
+        Value convert(Value value) {
+            return coercion.fromDouble(value.asDouble() * scalingFactor);
+        }
+
+        @Override
+        void store(double value, long timestamp, LatestSample sample) {
+            sample.setDouble(valueType, value * scalingFactor, timestamp);
+        }
+
+        @Override
+        void store(long value, long timestamp, LatestSample sample) {
+            sample.setDouble(valueType, value * scalingFactor, timestamp);
+        }
+    }
+
+    private static final class Offset extends Numeric {
+
+        private final double valueOffset;
+
+        Offset(ValueType valueType, Coercion coercion, double valueOffset) {
+            super(valueType, coercion);
+            this.valueOffset = valueOffset;
+        }
+
+        @Override
+        Value convert(Value value) {
+            return coercion.fromDouble(value.asDouble() + valueOffset);
+        }
+
+        @Override
+        void store(double value, long timestamp, LatestSample sample) {
+            sample.setDouble(valueType, value + valueOffset, timestamp);
+        }
+
+        @Override
+        void store(long value, long timestamp, LatestSample sample) {
+            sample.setDouble(valueType, value + valueOffset, timestamp);
+        }
+    }
+
+    private static final class OffsetScaled extends Numeric {
+
+        private final double scalingFactor;
+        private final double valueOffset;
+
+        OffsetScaled(ValueType valueType, Coercion coercion, double scalingFactor, double valueOffset) {
+            super(valueType, coercion);
+            this.scalingFactor = scalingFactor;
+            this.valueOffset = valueOffset;
+        }
+
+        @Override
+        Value convert(Value value) {
+            return coercion.fromDouble(value.asDouble() * scalingFactor + valueOffset);
+        }
+
+        @Override
+        void store(double value, long timestamp, LatestSample sample) {
+            sample.setDouble(valueType, value * scalingFactor + valueOffset, timestamp);
+        }
+
+        @Override
+        void store(long value, long timestamp, LatestSample sample) {
+            sample.setDouble(valueType, value * scalingFactor + valueOffset, timestamp);
+        }
+    }
+
+    /**
+     * Conversion for BOOLEAN, BYTE_ARRAY and STRING channels. Scaling is done through {@link DoubleValue} as before.
+     */
+    private static final class Generic extends ValueConverter {
+
+        private final String channelId;
+        private final Double scalingFactor;
+        private final Double valueOffset;
+
+        Generic(String channelId, ValueType valueType, Double scalingFactor, Double valueOffset) {
+            super(valueType);
+            this.channelId = channelId;
+            this.scalingFactor = scalingFactor;
+            this.valueOffset = valueOffset;
+        }
+
+        @Override
+        Value convert(Value value) {
+            if (scalingFactor != null || valueOffset != null) {
+                try {
+                    double scaled = value.asDouble();
+                    if (scalingFactor != null) {
+                        scaled *= scalingFactor;
+                    }
+                    if (valueOffset != null) {
+                        scaled += valueOffset;
+                    }
+                    value = new DoubleValue(scaled);
+                } catch (TypeConversionException e) {
+                    String msg = "Unable to apply scaling factor/offset to channel " + channelId
+                            + " because a TypeConversionError occurred.";
+                    logger.error(msg, e);
+                }
+            }
+
+            switch (valueType) {
+            case BOOLEAN:
+                return new BooleanValue(value.asBoolean());
+            case BYTE_ARRAY:
+                return new ByteArrayValue(value.asByteArray());
+            case STRING:
+            default:
+                return new StringValue(value.toString());
+            }
+        }
+    }
+
+}
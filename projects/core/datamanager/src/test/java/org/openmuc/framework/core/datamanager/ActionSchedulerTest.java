@@ -0,0 +1,145 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.core.datamanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.config.ChannelConfig;
+import org.openmuc.framework.config.IdCollisionException;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.dataaccess.ChannelState;
+
+public class ActionSchedulerTest {
+
+    @Test
+    public void testActionsAreOrderedByStartTime() {
+        ActionScheduler scheduler = new ActionScheduler();
+
+        scheduler.addLoggingCollection(new ChannelCollection(3000, 0, null, null), 3000L);
+        scheduler.addLoggingCollection(new ChannelCollection(1000, 0, null, null), 1000L);
+        scheduler.addSamplingCollection(new ChannelCollection(2000, 0, "", null), 2000L);
+
+        assertEquals(1000L, scheduler.removeFirst().startTime);
+        assertEquals(2000L, scheduler.removeFirst().startTime);
+        assertEquals(3000L, scheduler.removeFirst().startTime);
+        assertTrue(scheduler.isEmpty());
+        assertNull(scheduler.first());
+    }
+
+    @Test
+    public void testSameStartTimeSharesOneAction() {
+        ActionScheduler scheduler = new ActionScheduler();
+        ChannelCollection loggingCollection = new ChannelCollection(1000, 0, null, null);
+        ChannelCollection samplingCollection = new ChannelCollection(500, 0, "", null);
+
+        scheduler.addLoggingCollection(loggingCollection, 1000L);
+        scheduler.addSamplingCollection(samplingCollection, 1000L);
+
+        assertEquals(1, scheduler.size());
+        Action action = scheduler.first();
+        assertSame(action, loggingCollection.action);
+        assertSame(action, samplingCollection.action);
+        assertEquals(1, action.loggingCollections.size());
+        assertEquals(1, action.samplingCollections.size());
+    }
+
+    @Test
+    public void testCollectionsAreFoundByKey() {
+        ActionScheduler scheduler = new ActionScheduler();
+        ChannelCollection samplingCollection = new ChannelCollection(1000, 100, "group1", null);
+        ChannelCollection loggingCollection = new ChannelCollection(1000, 100, null, null);
+
+        scheduler.addSamplingCollection(samplingCollection, 1100L);
+        scheduler.addLoggingCollection(loggingCollection, 1100L);
+
+        assertSame(samplingCollection, scheduler.findSamplingCollection(1000, 100, "group1", null));
+        assertNull(scheduler.findSamplingCollection(1000, 100, "group2", null));
+        assertNull(scheduler.findSamplingCollection(1000, 0, "group1", null));
+        assertSame(loggingCollection, scheduler.findLoggingCollection(1000, 100));
+        assertNull(scheduler.findLoggingCollection(2000, 100));
+    }
+
+    @Test
+    public void testRescheduledCollectionStaysIndexed() {
+        ActionScheduler scheduler = new ActionScheduler();
+        ChannelCollection samplingCollection = new ChannelCollection(1000, 0, "", null);
+
+        scheduler.addSamplingCollection(samplingCollection, 1000L);
+        Action firstAction = scheduler.removeFirst();
+        scheduler.addSamplingCollection(samplingCollection, firstAction.startTime + samplingCollection.interval);
+
+        assertSame(samplingCollection, scheduler.findSamplingCollection(1000, 0, "", null));
+        assertEquals(2000L, samplingCollection.action.startTime);
+    }
+
+    @Test
+    public void testRemovedCollectionIsUnscheduled() {
+        ActionScheduler scheduler = new ActionScheduler();
+        ChannelCollection samplingCollection = new ChannelCollection(1000, 0, "", null);
+        ChannelCollection loggingCollection = new ChannelCollection(1000, 0, null, null);
+
+        scheduler.addSamplingCollection(samplingCollection, 1000L);
+        scheduler.addLoggingCollection(loggingCollection, 1000L);
+        scheduler.removeSamplingCollection(samplingCollection);
+        scheduler.removeLoggingCollection(loggingCollection);
+
+        assertNull(scheduler.findSamplingCollection(1000, 0, "", null));
+        assertNull(scheduler.findLoggingCollection(1000, 0));
+        assertTrue(scheduler.first().samplingCollections.isEmpty());
+        assertTrue(scheduler.first().loggingCollections.isEmpty());
+    }
+
+    @Test
+    public void testEmptyLoggingCollectionsAreRemoved() throws IdCollisionException {
+        ActionScheduler scheduler = new ActionScheduler();
+        ChannelCollection[] collections = new ChannelCollection[4];
+        for (int i = 0; i < collections.length; i++) {
+            collections[i] = new ChannelCollection(1000, i, null, null);
+            scheduler.addLoggingCollection(collections[i], 1000L);
+        }
+        ChannelConfigImpl config = (ChannelConfigImpl) new RootConfigImpl().addDriver("driver")
+                .addDevice("device")
+                .addChannel("channel");
+        config.setDisabled(false);
+        config.setListening(false);
+        config.setSamplingInterval(-1);
+        config.setLoggingInterval(ChannelConfig.LOGGING_INTERVAL_DEFAULT);
+        config.setLoggingEvent(false);
+        collections[2].add(new ChannelImpl(null, config, ChannelState.CONNECTED, Flag.VALID, 0, new ArrayList<>()));
+
+        Action action = scheduler.first();
+        scheduler.removeEmptyLoggingCollections(action);
+
+        assertEquals(1, action.loggingCollections.size());
+        assertSame(collections[2], action.loggingCollections.get(0));
+        assertSame(collections[2], scheduler.findLoggingCollection(1000, 2));
+        assertNull(scheduler.findLoggingCollection(1000, 0));
+        assertNull(scheduler.findLoggingCollection(1000, 1));
+        assertNull(scheduler.findLoggingCollection(1000, 3));
+    }
+
+}
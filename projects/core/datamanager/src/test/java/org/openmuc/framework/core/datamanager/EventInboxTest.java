@@ -0,0 +1,111 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.core.datamanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class EventInboxTest {
+
+    @Test
+    public void testEventsArePolledInOrder() {
+        EventInbox inbox = new EventInbox();
+        assertTrue(inbox.isEmpty());
+
+        for (int i = 0; i < 10; i++) {
+            inbox.offer(InboxEvent.Type.TASK_FINISHED, i);
+        }
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, inbox.poll().payload);
+        }
+        assertNull(inbox.poll());
+        assertTrue(inbox.isEmpty());
+    }
+
+    @Test
+    public void testConcurrentProducersKeepPerProducerOrder() throws Exception {
+        final int producers = 4;
+        final int eventsPerProducer = 10000;
+        EventInbox inbox = new EventInbox();
+        CountDownLatch start = new CountDownLatch(1);
+
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                for (int i = 0; i < eventsPerProducer; i++) {
+                    inbox.offer(InboxEvent.Type.RECORDS_RECEIVED, new int[] { producer, i });
+                }
+            }).start();
+        }
+
+        inbox.setConsumer(Thread.currentThread());
+        start.countDown();
+
+        int[] expectedNext = new int[producers];
+        int received = 0;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (received < producers * eventsPerProducer && System.nanoTime() < deadline) {
+            InboxEvent event = inbox.poll();
+            if (event == null) {
+                inbox.await(TimeUnit.MILLISECONDS.toNanos(10));
+                continue;
+            }
+            int[] payload = (int[]) event.payload;
+            assertEquals(expectedNext[payload[0]]++, payload[1]);
+            received++;
+        }
+        assertEquals(producers * eventsPerProducer, received);
+    }
+
+    @Test
+    public void testOfferWakesUpWaitingConsumer() throws Exception {
+        EventInbox inbox = new EventInbox();
+        inbox.setConsumer(Thread.currentThread());
+
+        new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inbox.offer(InboxEvent.Type.STATE_CHANGED, null);
+        }).start();
+
+        long start = System.nanoTime();
+        while (inbox.isEmpty() && System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10)) {
+            inbox.await(-1);
+        }
+        assertEquals(InboxEvent.Type.STATE_CHANGED, inbox.poll().type);
+    }
+
+}
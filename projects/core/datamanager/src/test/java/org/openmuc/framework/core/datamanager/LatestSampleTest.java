@@ -0,0 +1,89 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.LongValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.Value;
+import org.openmuc.framework.data.ValueType;
+
+public class LatestSampleTest {
+
+    private static final double[] DOUBLES = { 0, -1.5, 3.99, 1e10, -1e10, 70000.7, Double.NaN };
+    private static final long[] LONGS = { 0, -1, 255, 70000, Long.MAX_VALUE, Long.MIN_VALUE };
+    private static final ValueType[] NUMERIC_TYPES = { ValueType.BYTE, ValueType.SHORT, ValueType.INTEGER,
+            ValueType.LONG, ValueType.FLOAT, ValueType.DOUBLE };
+
+    @Test
+    public void doubleConversionMatchesValueConversion() {
+        LatestSample sample = new LatestSample();
+        for (double d : DOUBLES) {
+            Value expected = new DoubleValue(d);
+            for (ValueType valueType : NUMERIC_TYPES) {
+                sample.setDouble(valueType, d, 42L);
+                assertSameValue(valueType, expected, sample.toRecord());
+            }
+        }
+    }
+
+    @Test
+    public void longConversionMatchesValueConversion() {
+        LatestSample sample = new LatestSample();
+        for (long l : LONGS) {
+            Value expected = new LongValue(l);
+            for (ValueType valueType : NUMERIC_TYPES) {
+                sample.setLong(valueType, l, 42L);
+                assertSameValue(valueType, expected, sample.toRecord());
+            }
+        }
+    }
+
+    private static void assertSameValue(ValueType valueType, Value expected, Record record) {
+        assertEquals(42L, record.getTimestamp());
+        Value actual = record.getValue();
+        switch (valueType) {
+        case BYTE:
+            assertEquals(expected.asByte(), actual.asByte());
+            break;
+        case SHORT:
+            assertEquals(expected.asShort(), actual.asShort());
+            break;
+        case INTEGER:
+            assertEquals(expected.asInt(), actual.asInt());
+            break;
+        case LONG:
+            assertEquals(expected.asLong(), actual.asLong());
+            break;
+        case FLOAT:
+            assertEquals(expected.asFloat(), actual.asFloat());
+            break;
+        default:
+            assertEquals(expected.asDouble(), actual.asDouble());
+            break;
+        }
+    }
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.data.IntValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.dataaccess.BatchRecordListener;
+import org.openmuc.framework.dataaccess.RecordListener;
+
+public class ListenerQueueTest {
+
+    /**
+     * Executor which only runs submitted tasks when asked to.
+     */
+    private static class ManualExecutor implements Executor {
+        final Queue<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        void runAll() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+    }
+
+    private static class CollectingBatchListener implements BatchRecordListener {
+        final List<List<Integer>> batches = new ArrayList<>();
+        final boolean coalescing;
+
+        CollectingBatchListener(boolean coalescing) {
+            this.coalescing = coalescing;
+        }
+
+        @Override
+        public void newRecords(List<Record> records) {
+            List<Integer> values = new ArrayList<>();
+            for (Record record : records) {
+                values.add(record.getValue().asInt());
+            }
+            batches.add(values);
+        }
+
+        @Override
+        public boolean isCoalescing() {
+            return coalescing;
+        }
+    }
+
+    private static Record record(int value) {
+        return new Record(new IntValue(value), (long) value);
+    }
+
+    @Test
+    public void burstIsDeliveredInOrderWithSingleTask() {
+        ManualExecutor executor = new ManualExecutor();
+        List<Integer> received = new ArrayList<>();
+        RecordListener listener = record -> received.add(record.getValue().asInt());
+        ListenerQueue queue = new ListenerQueue(listener, "ch", executor, 100);
+
+        for (int i = 0; i < 50; i++) {
+            queue.offer(record(i));
+        }
+        assertEquals(1, executor.tasks.size());
+
+        executor.runAll();
+        assertEquals(50, received.size());
+        for (int i = 0; i < 50; i++) {
+            assertEquals(i, (int) received.get(i));
+        }
+    }
+
+    @Test
+    public void batchListenerGetsPendingRecordsAndOldestAreDropped() {
+        ManualExecutor executor = new ManualExecutor();
+        CollectingBatchListener listener = new CollectingBatchListener(false);
+        ListenerQueue queue = new ListenerQueue(listener, "ch", executor, 3);
+
+        for (int i = 0; i < 5; i++) {
+            queue.offer(record(i));
+        }
+        executor.runAll();
+        queue.offer(record(5));
+        executor.runAll();
+
+        assertEquals(Arrays.asList(Arrays.asList(2, 3, 4), Arrays.asList(5)), listener.batches);
+    }
+
+    @Test
+    public void coalescingListenerOnlyGetsLatestRecord() {
+        ManualExecutor executor = new ManualExecutor();
+        CollectingBatchListener listener = new CollectingBatchListener(true);
+        ListenerQueue queue = new ListenerQueue(listener, "ch", executor, 100);
+
+        for (int i = 0; i < 10; i++) {
+            queue.offer(record(i));
+        }
+        executor.runAll();
+
+        assertEquals(Arrays.asList(Arrays.asList(9)), listener.batches);
+    }
+
+    @Test
+    public void recordsArrivingDuringDeliveryAreDeliveredByResubmittedTask() {
+        ManualExecutor executor = new ManualExecutor();
+        List<Integer> received = new ArrayList<>();
+        ListenerQueue[] queue = new ListenerQueue[1];
+        RecordListener listener = record -> {
+            received.add(record.getValue().asInt());
+            if (record.getValue().asInt() == 0) {
+                queue[0].offer(record(1));
+            }
+        };
+        queue[0] = new ListenerQueue(listener, "ch", executor, 100);
+
+        queue[0].offer(record(0));
+        executor.runAll();
+
+        assertEquals(Arrays.asList(0, 1), received);
+        assertEquals(0, executor.tasks.size());
+    }
+
+}
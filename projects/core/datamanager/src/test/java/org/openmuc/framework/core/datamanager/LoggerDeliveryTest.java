@@ -0,0 +1,280 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.StringValue;
+import org.openmuc.framework.datalogger.spi.DataLoggerService;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+
+public class LoggerDeliveryTest {
+
+    @TempDir
+    File spillDir;
+
+    /**
+     * Logger which blocks in the first call until released and records the timestamps of all calls.
+     */
+    private static class BlockingLogger implements DataLoggerService {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Long> timestamps = new CopyOnWriteArrayList<>();
+        final List<LoggingRecord> records = new CopyOnWriteArrayList<>();
+        final List<String> calls = new CopyOnWriteArrayList<>();
+        final List<Thread> callers = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String getId() {
+            return "blocking";
+        }
+
+        @Override
+        public void setChannelsToLog(List<LogChannel> channels) {
+            calls.add("channels " + channels.size());
+            callers.add(Thread.currentThread());
+        }
+
+        @Override
+        public void log(List<LoggingRecord> containers, long timestamp) {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            calls.add("log " + timestamp);
+            callers.add(Thread.currentThread());
+            timestamps.add(timestamp);
+            records.addAll(containers);
+        }
+
+        @Override
+        public void logEvent(List<LoggingRecord> containers, long timestamp) {
+            log(containers, timestamp);
+        }
+
+        @Override
+        public boolean logSettingsRequired() {
+            return false;
+        }
+
+        @Override
+        public List<Record> getRecords(String channelId, long startTime, long endTime) throws IOException {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Record getLatestLogRecord(String channelId) throws IOException {
+            return null;
+        }
+    }
+
+    private static List<LoggingRecord> batch(long i) {
+        return Arrays.asList(new LoggingRecord("ch" + i, new Record(new DoubleValue(i), i)));
+    }
+
+    private static void awaitCalls(BlockingLogger logger, int calls) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (logger.timestamps.size() < calls && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    public void slowLoggerDoesNotBlockAndOldestBatchesAreDropped() throws InterruptedException {
+        BlockingLogger logger = new BlockingLogger();
+        LoggerDelivery delivery = new LoggerDelivery(logger, 2, LoggerDelivery.Overflow.DROP_OLDEST, spillDir);
+
+        delivery.log(batch(0), 0);
+        assertTrue(logger.entered.await(5, TimeUnit.SECONDS));
+        for (long i = 1; i <= 5; i++) {
+            delivery.log(batch(i), i);
+        }
+        assertEquals(2, delivery.getQueueDepth());
+        assertEquals(3, delivery.getDroppedBatches());
+
+        logger.release.countDown();
+        awaitCalls(logger, 3);
+        delivery.shutdown();
+
+        assertEquals(Arrays.asList(0L, 4L, 5L), logger.timestamps);
+    }
+
+    @Test
+    public void channelsToLogAreDeliveredInOrderAndNotDropped() throws InterruptedException {
+        BlockingLogger logger = new BlockingLogger();
+        LoggerDelivery delivery = new LoggerDelivery(logger, 2, LoggerDelivery.Overflow.DROP_OLDEST, spillDir);
+
+        delivery.log(batch(0), 0);
+        assertTrue(logger.entered.await(5, TimeUnit.SECONDS));
+        delivery.log(batch(1), 1);
+        delivery.setChannelsToLog(Collections.singletonList(null));
+        delivery.log(batch(2), 2);
+        delivery.log(batch(3), 3);
+        assertEquals(2, delivery.getDroppedBatches());
+
+        logger.release.countDown();
+        awaitCalls(logger, 2);
+        delivery.shutdown();
+
+        assertEquals(Arrays.asList("log 0", "channels 1", "log 3"), logger.calls);
+        for (Thread caller : logger.callers) {
+            assertTrue(caller != Thread.currentThread());
+        }
+    }
+
+    @Test
+    public void overflowIsSpilledAndDeliveredInOrder() throws InterruptedException {
+        BlockingLogger logger = new BlockingLogger();
+        LoggerDelivery delivery = new LoggerDelivery(logger, 2, LoggerDelivery.Overflow.SPILL, spillDir);
+
+        delivery.log(batch(0), 0);
+        assertTrue(logger.entered.await(5, TimeUnit.SECONDS));
+        for (long i = 1; i <= 6; i++) {
+            delivery.log(batch(i), i);
+        }
+        assertEquals(4, delivery.getSpilledBatches());
+
+        logger.release.countDown();
+        awaitCalls(logger, 7);
+        delivery.shutdown();
+
+        assertEquals(Arrays.asList(0L, 1L, 2L, 3L, 4L, 5L, 6L), logger.timestamps);
+        LoggingRecord spilled = logger.records.get(6);
+        assertEquals("ch6", spilled.getChannelId());
+        assertEquals(6d, spilled.getRecord().getValue().asDouble());
+        assertEquals(6L, (long) spilled.getRecord().getTimestamp());
+        assertEquals(0, new File(spillDir, "blocking.spill").length());
+    }
+
+    @Test
+    public void spillFileRoundTripsRecords() throws IOException {
+        SpillFile spillFile = new SpillFile(new File(spillDir, "test.spill"));
+        List<LoggingRecord> records = new ArrayList<>();
+        records.add(new LoggingRecord("a", new Record(new StringValue("text"), 1L)));
+        records.add(new LoggingRecord("b", new Record(Flag.DRIVER_ERROR_TIMEOUT)));
+        spillFile.append(new LoggerDelivery.Batch(records, 42L, true));
+
+        LoggerDelivery.Batch batch = spillFile.read();
+        spillFile.close();
+
+        assertTrue(batch.event);
+        assertEquals(42L, batch.timestamp);
+        assertEquals("text", batch.records.get(0).getRecord().getValue().asString());
+        assertEquals(Flag.DRIVER_ERROR_TIMEOUT, batch.records.get(1).getRecord().getFlag());
+        assertEquals(null, batch.records.get(1).getRecord().getValue());
+    }
+
+    private static LoggerDelivery.Batch spilledBatch(long timestamp) {
+        List<LoggingRecord> records = new ArrayList<>();
+        records.add(new LoggingRecord("a", new Record(new StringValue("text"), timestamp)));
+        return new LoggerDelivery.Batch(records, timestamp, false);
+    }
+
+    @Test
+    public void spillFileDiscardsTruncatedTail() throws IOException {
+        File file = new File(spillDir, "test.spill");
+        SpillFile spillFile = new SpillFile(file);
+        spillFile.append(spilledBatch(1L));
+        spillFile.append(spilledBatch(2L));
+        spillFile.close();
+
+        // simulates a write interrupted by a crash
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        spillFile = new SpillFile(file);
+        spillFile.append(spilledBatch(3L));
+        assertEquals(1L, spillFile.read().timestamp);
+        assertEquals(3L, spillFile.read().timestamp);
+        assertNull(spillFile.read());
+        spillFile.close();
+    }
+
+    @Test
+    public void spillFileSkipsCorruptBatch() throws IOException {
+        File file = new File(spillDir, "test.spill");
+        SpillFile spillFile = new SpillFile(file);
+        spillFile.append(spilledBatch(1L));
+        long secondBatch = file.length();
+        spillFile.append(spilledBatch(2L));
+        spillFile.append(spilledBatch(3L));
+        spillFile.close();
+
+        // record count of the second batch larger than the batch
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(secondBatch + 4 + 9);
+            raf.writeInt(Integer.MAX_VALUE);
+        }
+
+        spillFile = new SpillFile(file);
+        assertEquals(1L, spillFile.read().timestamp);
+        assertEquals(3L, spillFile.read().timestamp);
+        assertNull(spillFile.read());
+        spillFile.close();
+    }
+
+    @Test
+    public void spillFileResumesAfterRestart() throws IOException {
+        File file = new File(spillDir, "test.spill");
+        SpillFile spillFile = new SpillFile(file);
+        for (long i = 1; i <= 4; i++) {
+            spillFile.append(spilledBatch(i));
+        }
+        assertEquals(1L, spillFile.read().timestamp);
+        assertEquals(2L, spillFile.read().timestamp);
+        spillFile.close();
+
+        spillFile = new SpillFile(file);
+        assertEquals(3L, spillFile.read().timestamp);
+        spillFile.close();
+
+        spillFile = new SpillFile(file);
+        assertEquals(4L, spillFile.read().timestamp);
+        assertNull(spillFile.read());
+        assertTrue(spillFile.isEmpty());
+        spillFile.close();
+        assertEquals(0, file.length());
+    }
+
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingDeque;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.config.ChannelConfig;
+import org.openmuc.framework.config.DeviceConfig;
+import org.openmuc.framework.config.IdCollisionException;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.dataaccess.ChannelState;
+import org.openmuc.framework.datalogger.spi.DataLoggerService;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+
+public class LoggingControllerTest {
+
+    private static class TestLogger implements DataLoggerService {
+        private final String id;
+        private final boolean settingsRequired;
+        final List<List<String>> logged = new CopyOnWriteArrayList<>();
+
+        TestLogger(String id, boolean settingsRequired) {
+            this.id = id;
+            this.settingsRequired = settingsRequired;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public void setChannelsToLog(List<LogChannel> channels) {
+        }
+
+        @Override
+        public void log(List<LoggingRecord> containers, long timestamp) {
+            List<String> ids = new ArrayList<>();
+            for (LoggingRecord container : containers) {
+                ids.add(container.getChannelId());
+            }
+            logged.add(ids);
+        }
+
+        @Override
+        public void logEvent(List<LoggingRecord> containers, long timestamp) {
+            log(containers, timestamp);
+        }
+
+        @Override
+        public boolean logSettingsRequired() {
+            return settingsRequired;
+        }
+
+        @Override
+        public List<Record> getRecords(String channelId, long startTime, long endTime) throws IOException {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Record getLatestLogRecord(String channelId) throws IOException {
+            return null;
+        }
+    }
+
+    private final Deque<DataLoggerService> activeLoggers = new LinkedBlockingDeque<>();
+    private final LoggingController controller = new LoggingController(activeLoggers);
+    private DeviceConfig deviceConfig;
+    private ChannelCollection collection;
+    private Action action;
+
+    @BeforeEach
+    public void setup() throws IdCollisionException {
+        deviceConfig = new RootConfigImpl().addDriver("driver").addDevice("device");
+        collection = new ChannelCollection(1000, 0, null, null);
+        action = new Action(0);
+        action.loggingCollections = new ArrayList<>(Arrays.asList(collection));
+    }
+
+    @AfterEach
+    public void shutdown() {
+        controller.shutdown();
+    }
+
+    /**
+     * Triggers logging and waits until the loggers were called asynchronously.
+     */
+    private void tick(TestLogger... loggers) throws InterruptedException {
+        int[] expected = new int[loggers.length];
+        for (int i = 0; i < loggers.length; i++) {
+            expected[i] = loggers[i].logged.size() + 1;
+        }
+        controller.triggerLogging(action);
+        for (int i = 0; i < loggers.length; i++) {
+            awaitLogged(loggers[i], expected[i]);
+        }
+    }
+
+    private static void awaitLogged(TestLogger logger, int batches) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (logger.logged.size() < batches && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(batches, logger.logged.size());
+    }
+
+    private ChannelImpl addChannel(String id, String loggingSettings) throws IdCollisionException {
+        ChannelConfigImpl config = (ChannelConfigImpl) deviceConfig.addChannel(id);
+        config.setDisabled(false);
+        config.setListening(false);
+        config.setSamplingInterval(-1);
+        config.setLoggingInterval(ChannelConfig.LOGGING_INTERVAL_DEFAULT);
+        config.setLoggingEvent(false);
+        config.setLoggingSettings(loggingSettings);
+        ChannelImpl channel = new ChannelImpl(null, config, ChannelState.CONNECTED, Flag.VALID, 0,
+                new ArrayList<>());
+        collection.add(channel);
+        return channel;
+    }
+
+    @Test
+    public void channelsAreRoutedBySettings() throws IdCollisionException, InterruptedException {
+        TestLogger ascii = new TestLogger("asciilogger", false);
+        TestLogger mqtt = new TestLogger("mqttlogger", true);
+        activeLoggers.add(ascii);
+        activeLoggers.add(mqtt);
+
+        addChannel("a", null);
+        addChannel("b", "mqttlogger:topic=b");
+        addChannel("c", "asciilogger;mqttlogger:topic=c");
+        addChannel("d", "unknownlogger");
+
+        tick(ascii, mqtt);
+
+        assertEquals(Arrays.asList(Arrays.asList("a", "c")), ascii.logged);
+        assertEquals(Arrays.asList(Arrays.asList("b", "c")), mqtt.logged);
+    }
+
+    @Test
+    public void routeIsReusedUntilSomethingChanges() throws IdCollisionException, InterruptedException {
+        TestLogger ascii = new TestLogger("asciilogger", false);
+        activeLoggers.add(ascii);
+        ChannelImpl a = addChannel("a", null);
+
+        tick(ascii);
+        LoggingController.CollectionRoute route = collection.loggingRoute;
+        tick(ascii);
+        assertSame(route, collection.loggingRoute);
+
+        // new logger
+        TestLogger sql = new TestLogger("sqllogger", false);
+        activeLoggers.add(sql);
+        tick(ascii, sql);
+        assertEquals(Arrays.asList("a"), sql.logged.get(0));
+
+        // changed settings are picked up after the configuration was applied
+        a.config.setLoggingSettings("sqllogger");
+        controller.invalidateRouting();
+        tick(ascii, sql);
+        assertEquals(4, ascii.logged.size());
+        assertEquals(Collections.emptyList(), ascii.logged.get(3));
+        assertEquals(Arrays.asList("a"), sql.logged.get(1));
+
+        // new channel
+        addChannel("b", null);
+        tick(ascii, sql);
+        assertEquals(Arrays.asList("b"), ascii.logged.get(4));
+    }
+
+    @Test
+    public void eventsAreOnlyDeliveredToLoggersWithRecords() throws IdCollisionException, InterruptedException {
+        TestLogger ascii = new TestLogger("asciilogger", false);
+        TestLogger mqtt = new TestLogger("mqttlogger", true);
+        activeLoggers.add(ascii);
+        activeLoggers.add(mqtt);
+        ChannelImpl b = addChannel("b", "mqttlogger:topic=b");
+
+        controller.deliverLogsToEventBasedLogServices(Arrays.asList(b.createChannelRecordContainer()));
+        awaitLogged(mqtt, 1);
+        controller.shutdown();
+
+        assertEquals(Collections.emptyList(), ascii.logged);
+        assertEquals(Arrays.asList(Arrays.asList("b")), mqtt.logged);
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.core.datamanager.TaskExecutors.MeteredExecutor;
+
+public class TaskExecutorsTest {
+
+    @AfterEach
+    public void clearProperties() {
+        System.clearProperty(TaskExecutors.STRATEGY_PROPERTY);
+        System.clearProperty(TaskExecutors.POOL_SIZE_PROPERTY);
+    }
+
+    @Test
+    public void strategyIsReadFromSystemProperty() {
+        System.setProperty(TaskExecutors.STRATEGY_PROPERTY, "perDriver");
+        TaskExecutors executors = TaskExecutors.fromSystemProperties();
+        assertEquals(TaskExecutors.Strategy.PER_DRIVER, executors.getStrategy());
+        executors.shutdown();
+
+        System.setProperty(TaskExecutors.STRATEGY_PROPERTY, "unknown");
+        executors = TaskExecutors.fromSystemProperties();
+        assertEquals(TaskExecutors.Strategy.CACHED, executors.getStrategy());
+        executors.shutdown();
+    }
+
+    @Test
+    public void hungDriverDoesNotBlockOtherDrivers() throws InterruptedException {
+        TaskExecutors executors = new TaskExecutors(TaskExecutors.Strategy.PER_DRIVER, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch hung = new CountDownLatch(1);
+        CountDownLatch otherDriverDone = new CountDownLatch(1);
+        try {
+            assertSame(executors.forDriver("a"), executors.forDriver("a"));
+            assertNotSame(executors.forDriver("a"), executors.forDriver("b"));
+
+            executors.forDriver("a").execute(() -> {
+                hung.countDown();
+                awaitQuietly(release);
+            });
+            assertTrue(hung.await(5, TimeUnit.SECONDS));
+            executors.forDriver("a").execute(() -> {
+            });
+            executors.forDriver("b").execute(otherDriverDone::countDown);
+
+            assertTrue(otherDriverDone.await(5, TimeUnit.SECONDS));
+            assertTrue(executors.metrics().contains("driver a: active=1, queued=1"));
+        } finally {
+            release.countDown();
+            executors.shutdown();
+        }
+    }
+
+    @Test
+    public void rejectedTasksAreCounted() {
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        MeteredExecutor executor = new MeteredExecutor("test", executorService);
+        executorService.shutdown();
+
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> {
+        }));
+        assertEquals(1, executor.getRejectedCount());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.openmuc.framework.data.BooleanValue;
+import org.openmuc.framework.data.ByteArrayValue;
+import org.openmuc.framework.data.ByteValue;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.FloatValue;
+import org.openmuc.framework.data.IntValue;
+import org.openmuc.framework.data.LongValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.ShortValue;
+import org.openmuc.framework.data.StringValue;
+import org.openmuc.framework.data.TypeConversionException;
+import org.openmuc.framework.data.Value;
+import org.openmuc.framework.data.ValueType;
+
+public class ValueConverterTest {
+
+    private static final Value[] INPUTS = { new DoubleValue(-3.75), new DoubleValue(1e12), new IntValue(-7),
+            new LongValue(Long.MAX_VALUE), new BooleanValue(true), new StringValue("12.5") };
+
+    private static final Double[][] SCALINGS = { { null, null }, { 0.1, null }, { null, -40d }, { 2.5, 3d } };
+
+    @ParameterizedTest
+    @EnumSource(ValueType.class)
+    public void compiledConversionMatchesReference(ValueType valueType) {
+        for (Double[] scaling : SCALINGS) {
+            ValueConverter converter = ValueConverter.compile("test", valueType, scaling[0], scaling[1]);
+            for (Value input : INPUTS) {
+                Value expected;
+                try {
+                    expected = referenceConversion(valueType, scaling[0], scaling[1], input);
+                } catch (RuntimeException e) {
+                    assertThrows(e.getClass(), () -> converter.convert(input));
+                    continue;
+                }
+                Value actual = converter.convert(input);
+                assertEquals(valueType, actual.getValueType());
+                assertSameContent(expected, actual);
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = ValueType.class, names = { "BYTE", "SHORT", "INTEGER", "LONG", "FLOAT", "DOUBLE" })
+    public void primitivePathMatchesRecordPath(ValueType valueType) {
+        LatestSample sample = new LatestSample();
+        for (Double[] scaling : SCALINGS) {
+            ValueConverter.Numeric converter = ValueConverter.compile("test", valueType, scaling[0], scaling[1])
+                    .numeric();
+
+            converter.store(-3.75, 5L, sample);
+            Record record = sample.toRecord();
+            assertEquals(5L, (long) record.getTimestamp());
+            assertSameContent(converter.convert(new DoubleValue(-3.75)), record.getValue());
+
+            converter.store(70000L, 6L, sample);
+            assertSameContent(converter.convert(new LongValue(70000L)), sample.toRecord().getValue());
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = ValueType.class, names = { "BYTE", "SHORT", "INTEGER", "LONG", "FLOAT", "DOUBLE" })
+    public void valueOfConfiguredTypeIsNotReboxed(ValueType valueType) {
+        ValueConverter converter = ValueConverter.compile("test", valueType, null, null);
+        Value value = ValueConverter.compile("test", valueType, 1d, null).convert(new DoubleValue(42));
+        assertSame(value, converter.convert(value));
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = ValueType.class, names = { "BOOLEAN", "BYTE_ARRAY", "STRING" })
+    public void nonNumericTypesHaveNoPrimitivePath(ValueType valueType) {
+        assertNull(ValueConverter.compile("test", valueType, null, null).numeric());
+        assertNull(ValueConverter.compile("test", valueType, 2d, 1d).numeric());
+    }
+
+    private static void assertSameContent(Value expected, Value actual) {
+        if (expected.getValueType() == ValueType.BYTE_ARRAY) {
+            assertArrayEquals(expected.asByteArray(), actual.asByteArray());
+        }
+        else {
+            assertEquals(expected.toString(), actual.toString());
+        }
+    }
+
+    /**
+     * The conversion done by ChannelImpl before it was compiled per channel.
+     */
+    private static Value referenceConversion(ValueType valueType, Double scalingFactor, Double valueOffset,
+            Value value) {
+        if (scalingFactor != null) {
+            try {
+                value = new DoubleValue(value.asDouble() * scalingFactor);
+            } catch (TypeConversionException e) {
+                // ignored like before
+            }
+        }
+        if (valueOffset != null) {
+            try {
+                value = new DoubleValue(value.asDouble() + valueOffset);
+            } catch (TypeConversionException e) {
+                // ignored like before
+            }
+        }
+        switch (valueType) {
+        case BOOLEAN:
+            return new BooleanValue(value.asBoolean());
+        case BYTE:
+            return new ByteValue(value.asByte());
+        case SHORT:
+            return new ShortValue(value.asShort());
+        case INTEGER:
+            return new IntValue(value.asInt());
+        case LONG:
+            return new LongValue(value.asLong());
+        case FLOAT:
+            return new FloatValue(value.asFloat());
+        case DOUBLE:
+            return new DoubleValue(value.asDouble());
+        case BYTE_ARRAY:
+            return new ByteArrayValue(value.asByteArray());
+        case STRING:
+        default:
+            return new StringValue(value.toString());
+        }
+    }
+
+}
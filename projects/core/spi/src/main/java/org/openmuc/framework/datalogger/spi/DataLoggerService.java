@@ -23,6 +23,7 @@ package org.openmuc.framework.datalogger.spi;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.openmuc.framework.data.Record;
 
@@ -65,6 +66,56 @@ public interface DataLoggerService {
      */
     List<Record> getRecords(String channelId, long startTime, long endTime) throws IOException;
 
+    /**
+     * Returns the logged data of the channel with the given <code>channelId</code> from <code>startTime</code> to
+     * <code>endTime</code> at a resolution of at most <code>resolution</code>. Loggers which keep downsampled data may
+     * return one aggregated record per interval, timestamped with the start of the interval, instead of every logged
+     * record. The default implementation returns all logged records.
+     *
+     * @param channelId
+     *            the channel ID.
+     * @param startTime
+     *            the starting time in milliseconds since midnight, January 1, 1970 UTC. inclusive
+     * @param endTime
+     *            the ending time in milliseconds since midnight, January 1, 1970 UTC. inclusive
+     * @param resolution
+     *            the largest acceptable interval between two records in milliseconds, 0 for all logged records.
+     * @return the logged or aggregated data records from <code>startTime</code> to <code>endTime</code>.
+     * @throws IOException
+     *             if any kind of error occurs accessing the logged data.
+     */
+    default List<Record> getRecords(String channelId, long startTime, long endTime, long resolution)
+            throws IOException {
+        return getRecords(channelId, startTime, endTime);
+    }
+
+    /**
+     * Passes all logged data records with timestamps from <code>startTime</code> to <code>endTime</code> for the
+     * channel with the given <code>channelId</code> to the <code>consumer</code> in ascending order of their
+     * timestamps. Unlike {@link #getRecords(String, long, long)} implementations read the records in chunks and do not
+     * hold all records of the time span in memory, so this method should be used for long time spans.
+     * <p>
+     * The default implementation passes the records returned by {@link #getRecords(String, long, long)}. Exceptions
+     * thrown by the consumer are passed on to the caller.
+     *
+     * @param channelId
+     *            the channel ID.
+     * @param startTime
+     *            the starting time in milliseconds since midnight, January 1, 1970 UTC. inclusive
+     * @param endTime
+     *            the ending time in milliseconds since midnight, January 1, 1970 UTC. inclusive
+     * @param consumer
+     *            receives the records
+     * @throws IOException
+     *             if any kind of error occurs accessing the logged data.
+     */
+    default void readRecords(String channelId, long startTime, long endTime, Consumer<Record> consumer)
+            throws IOException {
+        for (Record record : getRecords(channelId, startTime, endTime)) {
+            consumer.accept(record);
+        }
+    }
+
     /**
      * Returns the Record with the highest timestamp available in all logged data for the channel with the given
      * <code>channelId</code>. If there are multiple Records with the same timestamp, results may not be consistent.
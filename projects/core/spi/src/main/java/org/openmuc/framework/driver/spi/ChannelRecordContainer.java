@@ -21,6 +21,8 @@
 
 package org.openmuc.framework.driver.spi;
 
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.LongValue;
 import org.openmuc.framework.data.Record;
 import org.openmuc.framework.dataaccess.ReadRecordContainer;
 
@@ -34,6 +36,32 @@ public interface ChannelRecordContainer extends ReadRecordContainer {
 
     void setRecord(Record record);
 
+    /**
+     * Sets a valid numeric sample without creating a {@link Record}. Drivers reading numeric channels at high rates
+     * should prefer this method because the data manager can convert and store the sample without allocating value
+     * objects. A record is only created if one is requested later on.
+     * 
+     * @param value
+     *            the sampled value
+     * @param timestamp
+     *            the timestamp of the sample
+     */
+    default void setDoubleRecord(double value, long timestamp) {
+        setRecord(new Record(new DoubleValue(value), timestamp));
+    }
+
+    /**
+     * Sets a valid integral sample without creating a {@link Record}. See {@link #setDoubleRecord(double, long)}.
+     * 
+     * @param value
+     *            the sampled value
+     * @param timestamp
+     *            the timestamp of the sample
+     */
+    default void setLongRecord(long value, long timestamp) {
+        setRecord(new Record(new LongValue(value), timestamp));
+    }
+
     ChannelRecordContainer copy();
 
 }
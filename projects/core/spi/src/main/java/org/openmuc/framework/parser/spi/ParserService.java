@@ -21,6 +21,10 @@
 
 package org.openmuc.framework.parser.spi;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.List;
 
 import org.openmuc.framework.data.Record;
@@ -67,4 +71,91 @@ public interface ParserService {
      * @return deserialized instance of {@link org.openmuc.framework.data.Record}
      */
     Record deserialize(byte[] byteArray, ValueType valueType);
+
+    /**
+     * Serializes a logging record into the buffer, starting at its position. The position is advanced by the number of
+     * bytes written. Implementations should override this method to avoid the intermediate byte array.
+     *
+     * @param openMucRecord
+     *            logging record for serializing
+     * @param buffer
+     *            buffer receiving the serialized record
+     * @throws SerializationException
+     *             when something goes wrong while serializing
+     * @throws BufferOverflowException
+     *             if the serialized record does not fit into the remaining space of the buffer, the buffer is not
+     *             modified in this case
+     */
+    default void serialize(LoggingRecord openMucRecord, ByteBuffer buffer) throws SerializationException {
+        buffer.put(serialize(openMucRecord));
+    }
+
+    /**
+     * Serializes a list of logging records into the buffer like {@link #serialize(List)}, starting at its position.
+     *
+     * @param openMucRecords
+     *            list of logging records for serializing
+     * @param buffer
+     *            buffer receiving the serialized records
+     * @throws SerializationException
+     *             when something goes wrong while serializing
+     * @throws BufferOverflowException
+     *             if the serialized records do not fit into the remaining space of the buffer, the buffer is not
+     *             modified in this case
+     */
+    default void serialize(List<LoggingRecord> openMucRecords, ByteBuffer buffer) throws SerializationException {
+        buffer.put(serialize(openMucRecords));
+    }
+
+    /**
+     * Serializes a logging record to the output stream. The stream is neither flushed nor closed.
+     *
+     * @param openMucRecord
+     *            logging record for serializing
+     * @param outputStream
+     *            stream receiving the serialized record
+     * @throws SerializationException
+     *             when something goes wrong while serializing
+     * @throws IOException
+     *             if writing to the stream fails
+     */
+    default void serialize(LoggingRecord openMucRecord, OutputStream outputStream)
+            throws SerializationException, IOException {
+        outputStream.write(serialize(openMucRecord));
+    }
+
+    /**
+     * Serializes a list of logging records to the output stream like {@link #serialize(List)}. The stream is neither
+     * flushed nor closed.
+     *
+     * @param openMucRecords
+     *            list of logging records for serializing
+     * @param outputStream
+     *            stream receiving the serialized records
+     * @throws SerializationException
+     *             when something goes wrong while serializing
+     * @throws IOException
+     *             if writing to the stream fails
+     */
+    default void serialize(List<LoggingRecord> openMucRecords, OutputStream outputStream)
+            throws SerializationException, IOException {
+        outputStream.write(serialize(openMucRecords));
+    }
+
+    /**
+     * Deserializes one record from the remaining bytes of the buffer. The position of the buffer is advanced past the
+     * bytes of the record. Implementations should override this method to read the buffer without copying it.
+     *
+     * @param buffer
+     *            received message
+     * @param valueType
+     *            defines the type of the value, which is encapsulated in the received message
+     *            {@link org.openmuc.framework.data.ValueType}
+     * @return deserialized instance of {@link org.openmuc.framework.data.Record}
+     */
+    default Record deserialize(ByteBuffer buffer, ValueType valueType) {
+        byte[] byteArray = new byte[buffer.remaining()];
+        buffer.get(byteArray);
+        return deserialize(byteArray, valueType);
+    }
 }
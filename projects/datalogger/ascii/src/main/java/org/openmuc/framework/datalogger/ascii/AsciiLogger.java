@@ -24,15 +24,16 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.RandomAccessFile;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.function.Consumer;
 
 import org.openmuc.framework.data.Record;
 import org.openmuc.framework.datalogger.ascii.utils.Const;
@@ -57,6 +58,10 @@ public class AsciiLogger implements DataLoggerService {
     private final String loggerDirectory;
     private final HashMap<String, LogChannel> logChannelList = new HashMap<>();
     private boolean isFillUpFiles = true;
+    private long flushInterval = 0;
+    private final Map<String, IntervalGroup> channelGroups = new HashMap<>();
+    private final List<IntervalGroup> intervalGroups = new ArrayList<>();
+    private final Calendar logCalendar = new GregorianCalendar(Locale.getDefault());
     private static final long MS_PER_DAY = 86400000;
 
     public AsciiLogger() {
@@ -211,6 +216,7 @@ public class AsciiLogger implements DataLoggerService {
     protected void deactivate(ComponentContext context) {
 
         logger.info("Deactivating Ascii Logger");
+        closeWriters();
     }
 
     private void createDirectory(String loggerDirectory) {
@@ -232,10 +238,11 @@ public class AsciiLogger implements DataLoggerService {
      * Will called if OpenMUC starts the logger
      */
     @Override
-    public void setChannelsToLog(List<LogChannel> logChannels) {
+    public synchronized void setChannelsToLog(List<LogChannel> logChannels) {
 
         Calendar calendar = new GregorianCalendar(Locale.getDefault());
         logChannelList.clear();
+        closeWriters();
 
         logger.trace("channels to log:");
         for (LogChannel logChannel : logChannels) {
@@ -274,59 +281,69 @@ public class AsciiLogger implements DataLoggerService {
             LoggerUtils.renameAllFilesToOld(loggerDirectory, calendar);
         }
 
+        createIntervalGroups(logChannels);
+    }
+
+    /**
+     * Groups the channels by logging interval and offset in the order of the channel list, which is the column order
+     * of the files.
+     */
+    private void createIntervalGroups(List<LogChannel> logChannels) {
+        Map<String, List<LogChannel>> channelsByInterval = new LinkedHashMap<>();
+        for (LogChannel logChannel : logChannels) {
+            String key = logChannel.getLoggingInterval() + Const.TIME_SEPERATOR_STRING
+                    + logChannel.getLoggingTimeOffset();
+            channelsByInterval.computeIfAbsent(key, k -> new ArrayList<>()).add(logChannel);
+        }
+
+        for (List<LogChannel> channels : channelsByInterval.values()) {
+            IntervalGroup group = new IntervalGroup(channels, new LogFileWriter(loggerDirectory, isFillUpFiles));
+            intervalGroups.add(group);
+            for (LogChannel logChannel : channels) {
+                channelGroups.put(logChannel.getId(), group);
+            }
+        }
+    }
+
+    private synchronized void flushWriters() {
+        for (IntervalGroup group : intervalGroups) {
+            group.writer.flush();
+        }
+    }
+
+    private synchronized void closeWriters() {
+        for (IntervalGroup group : intervalGroups) {
+            group.writer.close();
+        }
+        intervalGroups.clear();
+        channelGroups.clear();
     }
 
     @Override
     public synchronized void log(List<LoggingRecord> loggingRecords, long timestamp) {
-        HashMap<List<Integer>, LogIntervalContainerGroup> logIntervalGroups = new HashMap<>();
 
-        // add each container to a group with the same logging interval
+        // add each container to the group with its logging interval
         for (LoggingRecord container : loggingRecords) {
-
-            int logInterval = -1;
-            int logTimeOffset = 0;
-            List<Integer> logTimeArray = Arrays.asList(logInterval, logTimeOffset);
-            String channelId = container.getChannelId();
-
-            if (logChannelList.containsKey(channelId)) {
-                logInterval = logChannelList.get(channelId).getLoggingInterval();
-                logTimeOffset = logChannelList.get(channelId).getLoggingTimeOffset();
-                logTimeArray = Arrays.asList(logInterval, logTimeOffset);
+            IntervalGroup group = channelGroups.get(container.getChannelId());
+            if (group != null) {
+                group.set(container);
             }
             else {
                 // TODO there might be a change in the channel config file
+                logger.debug("Channel {} is not a logging channel.", container.getChannelId());
             }
-
-            if (logIntervalGroups.containsKey(logTimeArray)) {
-                // add the container to an existing group
-                LogIntervalContainerGroup group = logIntervalGroups.get(logTimeArray);
-                group.add(container);
-            }
-            else {
-                // create a new group and add the container
-                LogIntervalContainerGroup group = new LogIntervalContainerGroup();
-                group.add(container);
-                logIntervalGroups.put(logTimeArray, group);
-            }
-
         }
 
-        // alle gruppen loggen
-        Iterator<Entry<List<Integer>, LogIntervalContainerGroup>> it = logIntervalGroups.entrySet().iterator();
-        List<Integer> logTimeArray;
-
-        Calendar calendar = new GregorianCalendar(Locale.getDefault());
-
-        while (it.hasNext()) {
+        logCalendar.setTimeInMillis(timestamp);
 
-            logTimeArray = it.next().getKey();
-            LogIntervalContainerGroup group = logIntervalGroups.get(logTimeArray);
-            LogFileWriter fileOutHandler = new LogFileWriter(loggerDirectory, isFillUpFiles);
-
-            calendar.setTimeInMillis(timestamp);
-
-            fileOutHandler.log(group, logTimeArray.get(0), logTimeArray.get(1), calendar, logChannelList);
-            setLastLoggedLineTimeStamp(logTimeArray.get(0), logTimeArray.get(1), calendar.getTimeInMillis());
+        for (IntervalGroup group : intervalGroups) {
+            if (group.append(logCalendar, logChannelList)) {
+                if (flushInterval == 0 || timestamp - group.lastFlush >= flushInterval) {
+                    group.writer.flush();
+                    group.lastFlush = timestamp;
+                }
+                setLastLoggedLineTimeStamp(group.loggingInterval, group.loggingTimeOffset, timestamp);
+            }
         }
     }
 
@@ -337,6 +354,7 @@ public class AsciiLogger implements DataLoggerService {
         LogFileReader reader = null;
 
         if (logChannel != null) {
+            flushWriters();
             reader = new LogFileReader(loggerDirectory, logChannel);
             return reader.getValues(startTime, endTime).get(channelId);
         } // TODO: hier einfuegen, dass nach Logdateien gesucht werden soll, die vorhanden
@@ -349,9 +367,21 @@ public class AsciiLogger implements DataLoggerService {
         }
     }
 
+    @Override
+    public void readRecords(String channelId, long startTime, long endTime, Consumer<Record> consumer)
+            throws IOException {
+
+        LogChannel logChannel = logChannelList.get(channelId);
+        if (logChannel == null) {
+            throw new IOException("ChannelID (" + channelId + ") not available. It's not a logging Channel.");
+        }
+        flushWriters();
+        new LogFileReader(loggerDirectory, logChannel).readValues(startTime, endTime, consumer);
+    }
+
     /**
-     * Get the latest logged Record for the given value. This is achieved by searching within a few times the
-     * loggingInterval from the current time for any record and then selecting the one with the highest timestamp
+     * Get the latest logged Record for the given value. This is achieved by reading the last rows of the files of the
+     * last day, starting with the latest file, and falling back to the last row of the latest file in the directory.
      * 
      * @param channelId
      *            to be searched
@@ -365,18 +395,17 @@ public class AsciiLogger implements DataLoggerService {
         if (logChannel == null) {
             throw new IOException("ChannelID (" + channelId + ") not available. It's not a logging Channel.");
         }
+        flushWriters();
         reader = new LogFileReader(loggerDirectory, logChannel);
         // attempt to find a record within the last day
         long endTime = System.currentTimeMillis();
         long startTime = endTime - MS_PER_DAY;
-        Map<String, List<Record>> recordsMap = reader.getValues(startTime, endTime);
-        Map<String, Record> latestRecordsMap = LoggerUtils.findLatestValue(recordsMap);
-        Record record = latestRecordsMap.get(channelId);
+        Record record = reader.getLatestValue(startTime, endTime);
         if (record != null) {
             return record;
         }
 
-        // Fallback: read all files and find the latest record within these
+        // Fallback: find the latest record in the latest file
         List<File> files = LoggerUtils.getAllDataFiles(loggerDirectory);
         if (files == null) {
             return null;
@@ -385,10 +414,7 @@ public class AsciiLogger implements DataLoggerService {
         if (file == null) {
             return null;
         }
-        recordsMap = reader.getValues(file.getPath());
-        latestRecordsMap = LoggerUtils.findLatestValue(recordsMap);
-        record = latestRecordsMap.get(channelId);
-        return record;
+        return reader.getLatestValue(file.getPath());
     }
 
     private void setSystemProperties() {
@@ -407,6 +433,19 @@ public class AsciiLogger implements DataLoggerService {
             logger.debug("Property: {} not found in system.properties. Using default value: true", fillUpPropertyStr);
             isFillUpFiles = true;
         }
+
+        String flushIntervalPropertyStr = AsciiLogger.class.getPackage().getName().toLowerCase() + ".flushInterval";
+        String flushIntervalProperty = System.getProperty(flushIntervalPropertyStr);
+
+        if (flushIntervalProperty != null) {
+            try {
+                flushInterval = Math.max(0, Long.parseLong(flushIntervalProperty.trim()));
+                logger.debug("Property: {} is set to {}", flushIntervalPropertyStr, flushInterval);
+            } catch (NumberFormatException e) {
+                logger.warn("Property: {} is not a number: {}. Using default value: 0", flushIntervalPropertyStr,
+                        flushIntervalProperty);
+            }
+        }
     }
 
     @Override
@@ -418,4 +457,57 @@ public class AsciiLogger implements DataLoggerService {
     public boolean logSettingsRequired() {
         return false;
     }
+
+    /**
+     * The channels of one logging interval and offset, written to the same file. The records of a tick are collected
+     * in the column order of the file, a channel without a record in the tick is logged as an error.
+     */
+    private static final class IntervalGroup {
+
+        private final int loggingInterval;
+        private final int loggingTimeOffset;
+        private final Map<String, Integer> columns = new HashMap<>();
+        private final LoggingRecord[] emptyRecords;
+        private final LogIntervalContainerGroup containers = new LogIntervalContainerGroup();
+        private final LogFileWriter writer;
+        private boolean hasRecords;
+        private long lastFlush;
+
+        IntervalGroup(List<LogChannel> channels, LogFileWriter writer) {
+            this.loggingInterval = channels.get(0).getLoggingInterval();
+            this.loggingTimeOffset = channels.get(0).getLoggingTimeOffset();
+            this.writer = writer;
+            emptyRecords = new LoggingRecord[channels.size()];
+            for (int i = 0; i < emptyRecords.length; i++) {
+                String channelId = channels.get(i).getId();
+                columns.put(channelId, i);
+                emptyRecords[i] = new LoggingRecord(channelId, null);
+                containers.add(emptyRecords[i]);
+            }
+        }
+
+        void set(LoggingRecord loggingRecord) {
+            containers.getList().set(columns.get(loggingRecord.getChannelId()), loggingRecord);
+            hasRecords = true;
+        }
+
+        /**
+         * Appends the collected records as one line and resets the columns for the next tick.
+         *
+         * @return false if no record was collected since the last line
+         */
+        boolean append(Calendar calendar, Map<String, LogChannel> logChannelList) {
+            if (!hasRecords) {
+                return false;
+            }
+            writer.append(containers, loggingInterval, loggingTimeOffset, calendar, logChannelList);
+
+            List<LoggingRecord> list = containers.getList();
+            for (int i = 0; i < emptyRecords.length; i++) {
+                list.set(i, emptyRecords[i]);
+            }
+            hasRecords = false;
+            return true;
+        }
+    }
 }
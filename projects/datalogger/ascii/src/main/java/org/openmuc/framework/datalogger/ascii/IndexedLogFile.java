@@ -0,0 +1,615 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.datalogger.ascii;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.BiConsumer;
+
+import org.openmuc.framework.data.ByteArrayValue;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.StringValue;
+import org.openmuc.framework.datalogger.ascii.utils.Const;
+import org.openmuc.framework.datalogger.ascii.utils.LoggerUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the rows of a single log file through a buffered {@link FileChannel}.
+ * <p>
+ * The {@link LogFileWriter} pads every value to the size of its value type, so all rows of a file have the length of
+ * the first row and row {@code n} starts at {@code dataStart + n * rowSize}. The file is thereby its own time stamp
+ * index: the row of a time stamp is computed from the first time stamp and the logging interval and verified by reading
+ * that row, a binary search over the rows covers gaps left when files are not filled up. Only the time stamp column and
+ * the requested columns of a row are parsed. A row that does not match the layout of the first row makes the reader
+ * continue line by line from there.
+ */
+final class IndexedLogFile implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexedLogFile.class);
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final byte LINE_END = (byte) Const.LINESEPARATOR;
+    private static final byte COMMENT = (byte) Const.COMMENT_SIGN.charAt(0);
+    private static final byte SEPARATOR_FIRST = (byte) Const.SEPARATOR.charAt(0);
+    private static final byte SEPARATOR_SECOND = (byte) Const.SEPARATOR.charAt(1);
+
+    private final FileChannel channel;
+    private final int loggingInterval;
+
+    private String[] ids;
+    private int[] columns;
+    private int timestampIndex;
+
+    private long dataStart;
+    private int rowSize;
+    private long rowCount;
+    private long firstTimestamp;
+    private boolean fixedRows;
+    private int[] fixedStarts;
+    private int[] fixedEnds;
+    private int[] starts;
+    private int[] ends;
+
+    private byte[] bytes = new byte[CHUNK_SIZE];
+    private ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    private long windowStart;
+    private int windowLength;
+    private boolean windowAtEndOfFile;
+
+    private IndexedLogFile(FileChannel channel, int loggingInterval) {
+        this.channel = channel;
+        this.loggingInterval = loggingInterval;
+    }
+
+    /**
+     * Opens the file and reads its header.
+     *
+     * @param file
+     *            the log file
+     * @param ids
+     *            the columns to read, has to contain {@link Const#TIMESTAMP_STRING}
+     * @param loggingInterval
+     *            the logging interval of the file in ms
+     * @return the opened file or <code>null</code> if the file does not exist or has no time stamp column
+     * @throws IOException
+     *             if the file could not be read
+     */
+    static IndexedLogFile open(File file, String[] ids, int loggingInterval) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            logger.warn("Requested logfile: '{}' not found.", file.getAbsolutePath());
+            return null;
+        }
+
+        IndexedLogFile logFile = new IndexedLogFile(channel, loggingInterval);
+        try {
+            if (logFile.readHeader(ids)) {
+                return logFile;
+            }
+            logger.warn("Logfile '{}' has no {} column.", file.getAbsolutePath(), Const.TIMESTAMP_STRING);
+        } catch (IOException | RuntimeException e) {
+            logFile.close();
+            throw e;
+        }
+        logFile.close();
+        return null;
+    }
+
+    private boolean readHeader(String[] requestedIds) throws IOException {
+        long position = 0;
+        int lineEnd;
+        int lineStart;
+        do {
+            lineEnd = lineEnd(position);
+            if (lineEnd < 0) {
+                return false;
+            }
+            lineStart = (int) (position - windowStart);
+            position += lineEnd - lineStart + 1;
+        } while (lineEnd > lineStart && bytes[lineStart] == COMMENT);
+
+        String columnLine = new String(bytes, lineStart, lineEnd - lineStart, Const.CHAR_SET);
+        Map<String, Integer> columnsMap = LoggerUtils.getColumnNumbersByNames(columnLine, requestedIds);
+        if (!columnsMap.containsKey(Const.TIMESTAMP_STRING)) {
+            return false;
+        }
+
+        ids = new String[columnsMap.size()];
+        columns = new int[columnsMap.size()];
+        int i = 0;
+        for (String id : requestedIds) {
+            Integer column = columnsMap.get(id);
+            if (column != null) {
+                if (Const.TIMESTAMP_STRING.equals(id)) {
+                    timestampIndex = i;
+                }
+                ids[i] = id;
+                columns[i++] = column;
+            }
+        }
+        starts = new int[columns.length];
+        ends = new int[columns.length];
+
+        dataStart = position;
+        lineEnd = lineEnd(dataStart);
+        if (lineEnd < 0) {
+            return true;
+        }
+        lineStart = (int) (dataStart - windowStart);
+        rowSize = lineEnd - lineStart + 1;
+        rowCount = (channel.size() - dataStart) / rowSize;
+
+        if (bytes[lineStart] != COMMENT && locateFields(lineStart, lineEnd)) {
+            try {
+                firstTimestamp = parseTimestamp(starts[timestampIndex], ends[timestampIndex]);
+                fixedStarts = new int[columns.length];
+                fixedEnds = new int[columns.length];
+                for (int j = 0; j < columns.length; j++) {
+                    fixedStarts[j] = starts[j] - lineStart;
+                    fixedEnds[j] = ends[j] - lineStart;
+                }
+                fixedRows = true;
+            } catch (NumberFormatException e) {
+                logger.debug("First row of the logfile has no time stamp, reading it line by line.");
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Passes the values of all rows with a time stamp within start and end time stamp to the sink.
+     *
+     * @param startTimestamp
+     *            start time stamp
+     * @param endTimestamp
+     *            end time stamp
+     * @param sink
+     *            receives the records by column ID
+     * @throws IOException
+     *             if the file could not be read
+     */
+    void read(long startTimestamp, long endTimestamp, BiConsumer<String, Record> sink) throws IOException {
+        if (!fixedRows) {
+            scan(dataStart, startTimestamp, endTimestamp, sink);
+            return;
+        }
+
+        long row = firstRowAtOrAfter(startTimestamp);
+        if (row < 0) {
+            scan(dataStart, startTimestamp, endTimestamp, sink);
+            return;
+        }
+
+        int rowsPerChunk = Math.max(1, CHUNK_SIZE / rowSize);
+        while (row < rowCount) {
+            int rows = (int) Math.min(rowsPerChunk, rowCount - row);
+            load(dataStart + row * rowSize, rows * rowSize);
+            rows = windowLength / rowSize;
+            if (rows == 0) {
+                return;
+            }
+
+            for (int i = 0; i < rows; i++, row++) {
+                int rowStart = i * rowSize;
+                int rowEnd = rowStart + rowSize - 1;
+                if (bytes[rowEnd] != LINE_END) {
+                    logger.debug("Row {} does not match the row size of the logfile, reading it line by line.", row);
+                    scan(dataStart + row * rowSize, startTimestamp, endTimestamp, sink);
+                    return;
+                }
+                if (bytes[rowStart] == COMMENT || !(matchesFixedFields(rowStart) || locateFields(rowStart, rowEnd))) {
+                    continue;
+                }
+                if (!emitRow(startTimestamp, endTimestamp, sink)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Passes the values of the latest row with a time stamp within start and end time stamp to the sink.
+     *
+     * @param startTimestamp
+     *            start time stamp
+     * @param endTimestamp
+     *            end time stamp
+     * @param sink
+     *            receives the records by column ID
+     * @throws IOException
+     *             if the file could not be read
+     */
+    void readLatest(long startTimestamp, long endTimestamp, BiConsumer<String, Record> sink) throws IOException {
+        if (fixedRows) {
+            long row = endTimestamp == Long.MAX_VALUE ? rowCount : firstRowAtOrAfter(endTimestamp + 1);
+            if (row == 0) {
+                return;
+            }
+            long timestamp = row > 0 ? timestampAt(row - 1) : -1;
+            if (timestamp >= 0) {
+                if (timestamp >= startTimestamp) {
+                    read(timestamp, timestamp, sink);
+                }
+                return;
+            }
+        }
+
+        Map<String, Record> latest = new LinkedHashMap<>();
+        scan(dataStart, startTimestamp, endTimestamp, latest::put);
+        for (Entry<String, Record> entry : latest.entrySet()) {
+            sink.accept(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Reads the file line by line from the given position on, independent of the row size.
+     */
+    private void scan(long position, long startTimestamp, long endTimestamp, BiConsumer<String, Record> sink)
+            throws IOException {
+        int lineEnd;
+        while ((lineEnd = lineEnd(position)) >= 0) {
+            int lineStart = (int) (position - windowStart);
+            position += lineEnd - lineStart + 1;
+
+            if (lineEnd == lineStart || bytes[lineStart] == COMMENT) {
+                continue;
+            }
+            if (!locateFields(lineStart, lineEnd)) {
+                logger.error("Row ending at position {} has less columns than the header.", position);
+                continue;
+            }
+            if (!emitRow(startTimestamp, endTimestamp, sink)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Passes the located fields of a row to the sink if its time stamp is within the requested interval.
+     *
+     * @return false if the time stamp of the row is after the end time stamp
+     */
+    private boolean emitRow(long startTimestamp, long endTimestamp, BiConsumer<String, Record> sink) {
+        long timestamp;
+        try {
+            timestamp = parseTimestamp(starts[timestampIndex], ends[timestampIndex]);
+        } catch (NumberFormatException e) {
+            logger.warn("It's not a timestamp. {}", e.getMessage());
+            return true;
+        }
+        if (timestamp > endTimestamp) {
+            return false;
+        }
+        if (timestamp >= startTimestamp) {
+            for (int i = 0; i < columns.length; i++) {
+                sink.accept(ids[i], convertLogfileEntryToRecord(fieldString(starts[i], ends[i]), timestamp));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the first row with a time stamp at or after the given one. The row is computed from the logging interval
+     * and confirmed with the previous row, a binary search is used only if rows are missing.
+     *
+     * @return the row number or -1 if a row did not match the layout of the first row
+     */
+    private long firstRowAtOrAfter(long timestamp) throws IOException {
+        if (timestamp <= firstTimestamp || rowCount == 0) {
+            return 0;
+        }
+
+        long low = 0;
+        long high = rowCount;
+        long guess = loggingInterval > 0 ? (timestamp - firstTimestamp + loggingInterval - 1) / loggingInterval : 0;
+        guess = Math.min(guess, rowCount - 1);
+
+        long guessTimestamp = timestampAt(guess);
+        if (guessTimestamp < 0) {
+            return -1;
+        }
+        if (guessTimestamp >= timestamp) {
+            high = guess;
+            long previousTimestamp = guess > 0 ? timestampAt(guess - 1) : -1;
+            if (guess > 0 && previousTimestamp < 0) {
+                return -1;
+            }
+            if (previousTimestamp < timestamp) {
+                return guess;
+            }
+        }
+        else {
+            low = guess + 1;
+        }
+
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            long middleTimestamp = timestampAt(middle);
+            if (middleTimestamp < 0) {
+                return -1;
+            }
+            if (middleTimestamp >= timestamp) {
+                high = middle;
+            }
+            else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Reads the time stamp of the given row.
+     *
+     * @return the time stamp in ms or -1 if the row is not aligned to the row size
+     */
+    private long timestampAt(long row) throws IOException {
+        int start = fixedStarts[timestampIndex];
+        int end = fixedEnds[timestampIndex];
+        load(dataStart + row * rowSize - 1, end + 3);
+        if (windowLength < end + 3 || bytes[0] != LINE_END || !isFieldStart(start + 1) || !isFieldEnd(end + 1)) {
+            return -1;
+        }
+        try {
+            return parseTimestamp(start + 1, end + 1);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private boolean matchesFixedFields(int rowStart) {
+        for (int i = 0; i < columns.length; i++) {
+            int start = rowStart + fixedStarts[i];
+            int end = rowStart + fixedEnds[i];
+            if (!isFieldStart(start) || !isFieldEnd(end)) {
+                return false;
+            }
+            starts[i] = start;
+            ends[i] = end;
+        }
+        return true;
+    }
+
+    private boolean isFieldStart(int index) {
+        return index == 0 || bytes[index - 1] == LINE_END
+                || (bytes[index - 1] == SEPARATOR_SECOND && bytes[index - 2] == SEPARATOR_FIRST);
+    }
+
+    private boolean isFieldEnd(int index) {
+        return bytes[index] == LINE_END || (bytes[index] == SEPARATOR_FIRST && bytes[index + 1] == SEPARATOR_SECOND);
+    }
+
+    /**
+     * Locates the requested columns of the row between the given indexes of the buffer.
+     *
+     * @return false if the row has less columns than requested
+     */
+    private boolean locateFields(int rowStart, int rowEnd) {
+        int found = 0;
+        int column = 0;
+        int fieldStart = rowStart;
+        for (int i = rowStart; i <= rowEnd && found < columns.length; i++) {
+            if (i == rowEnd || (bytes[i] == SEPARATOR_FIRST && i + 1 < rowEnd && bytes[i + 1] == SEPARATOR_SECOND)) {
+                for (int j = 0; j < columns.length; j++) {
+                    if (columns[j] == column) {
+                        starts[j] = fieldStart;
+                        ends[j] = i;
+                        ++found;
+                    }
+                }
+                ++column;
+                fieldStart = ++i + 1;
+            }
+        }
+        return found == columns.length;
+    }
+
+    /**
+     * Parses a unix time stamp in seconds with up to millisecond precision without going through a double.
+     */
+    private long parseTimestamp(int start, int end) {
+        int i = start;
+        while (i < end && bytes[i] == ' ') {
+            ++i;
+        }
+        int digitsStart = i;
+        long seconds = 0;
+        for (; i < end && bytes[i] >= '0' && bytes[i] <= '9'; i++) {
+            seconds = seconds * 10 + (bytes[i] - '0');
+        }
+        boolean hasDigits = i > digitsStart;
+
+        long millis = 0;
+        int fractionDigits = 0;
+        if (i < end && bytes[i] == Const.DECIMAL_SEPARATOR) {
+            for (++i; i < end && bytes[i] >= '0' && bytes[i] <= '9'; i++) {
+                if (fractionDigits < 3) {
+                    millis = millis * 10 + (bytes[i] - '0');
+                    ++fractionDigits;
+                }
+                hasDigits = true;
+            }
+        }
+        while (i < end && bytes[i] == ' ') {
+            ++i;
+        }
+        if (!hasDigits || i < end) {
+            throw new NumberFormatException("For input string: \"" + fieldString(start, end) + "\"");
+        }
+        for (; fractionDigits < 3; fractionDigits++) {
+            millis *= 10;
+        }
+        return seconds * 1000 + millis;
+    }
+
+    private String fieldString(int start, int end) {
+        while (start < end && bytes[start] == ' ') {
+            ++start;
+        }
+        while (end > start && bytes[end - 1] == ' ') {
+            --end;
+        }
+        return new String(bytes, start, end - start, Const.CHAR_SET);
+    }
+
+    /**
+     * Returns the index of the line end of the line starting at the given position in the buffer, loading the line
+     * into the buffer if necessary.
+     *
+     * @return the index of the line end or -1 if the line is not complete
+     */
+    private int lineEnd(long position) throws IOException {
+        if (position < windowStart || position > windowStart + windowLength) {
+            load(position, bytes.length);
+        }
+        while (true) {
+            int lineStart = (int) (position - windowStart);
+            for (int i = lineStart; i < windowLength; i++) {
+                if (bytes[i] == LINE_END) {
+                    return i;
+                }
+            }
+            if (windowAtEndOfFile) {
+                return -1;
+            }
+            load(position, lineStart == 0 ? bytes.length * 2 : bytes.length);
+        }
+    }
+
+    private void load(long position, int length) throws IOException {
+        if (bytes.length < length) {
+            bytes = new byte[length];
+            buffer = ByteBuffer.wrap(bytes);
+        }
+        buffer.clear();
+        buffer.limit(length);
+        int read = 0;
+        while (buffer.hasRemaining() && read >= 0) {
+            read = channel.read(buffer, position + buffer.position());
+        }
+        windowStart = position;
+        windowLength = buffer.position();
+        windowAtEndOfFile = windowLength < length;
+    }
+
+    // TODO support ints, booleans, ...
+
+    /**
+     * Converts an entry from the logging file into a record
+     *
+     * @param strValue
+     *            string value
+     * @param timestamp
+     *            time stamp
+     * @return the converted logfile entry.
+     */
+    private static Record convertLogfileEntryToRecord(String strValue, long timestamp) {
+
+        Record record = null;
+        if (isNumber(strValue)) {
+            record = new Record(new DoubleValue(Double.parseDouble(strValue)), timestamp, Flag.VALID);
+        }
+        else {
+            record = getRecordFromNonNumberValue(strValue, timestamp);
+        }
+        return record;
+    }
+
+    /**
+     * Returns the record from a non number value read from the logfile. This is the case if the value is an error like
+     * "e0" or a normal ByteArrayValue
+     *
+     * @param strValue
+     *            string value
+     * @param timestamp
+     *            time stamp
+     * @return the value in a record.
+     */
+    private static Record getRecordFromNonNumberValue(String strValue, long timestamp) {
+
+        Record record = null;
+
+        if (strValue.startsWith(Const.ERROR)) {
+
+            String errorFlag = strValue.substring(Const.ERROR.length()).trim();
+
+            if (isNumber(errorFlag)) {
+                record = new Record(null, timestamp, Flag.newFlag(Integer.parseInt(errorFlag)));
+            }
+            else {
+                record = new Record(null, timestamp, Flag.NO_VALUE_RECEIVED_YET);
+            }
+        }
+        else if (strValue.startsWith(Const.HEXADECIMAL)) {
+            record = new Record(new ByteArrayValue(strValue.getBytes(Const.CHAR_SET)), timestamp, Flag.VALID);
+        }
+        else {
+            record = new Record(new StringValue(strValue), timestamp, Flag.VALID);
+        }
+        return record;
+    }
+
+    /**
+     * Checks if the string value is a number
+     *
+     * @param strValue
+     *            string value
+     * @return True on success, otherwise false
+     */
+    private static boolean isNumber(String strValue) {
+
+        boolean isDecimalSeparatorFound = false;
+
+        if (strValue.isEmpty() || (!Character.isDigit(strValue.charAt(0)) && strValue.charAt(0) != Const.MINUS_SIGN
+                && strValue.charAt(0) != Const.PLUS_SIGN)) {
+            return false;
+        }
+
+        for (char charactor : strValue.substring(1).toCharArray()) {
+            if (!Character.isDigit(charactor)) {
+                if (charactor == Const.DECIMAL_SEPARATOR && !isDecimalSeparatorFound) {
+                    isDecimalSeparatorFound = true;
+                    continue;
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+}
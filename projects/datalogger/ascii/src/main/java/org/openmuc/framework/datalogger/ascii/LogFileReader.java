@@ -22,19 +22,16 @@ package org.openmuc.framework.datalogger.ascii;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
-import org.openmuc.framework.data.ByteArrayValue;
-import org.openmuc.framework.data.DoubleValue;
 import org.openmuc.framework.data.Flag;
 import org.openmuc.framework.data.Record;
-import org.openmuc.framework.data.StringValue;
 import org.openmuc.framework.datalogger.ascii.utils.Const;
 import org.openmuc.framework.datalogger.ascii.utils.LoggerUtils;
 import org.openmuc.framework.datalogger.spi.LogChannel;
@@ -49,10 +46,6 @@ public class LogFileReader {
     private final String path;
     private final int loggingInterval;
     private final int logTimeOffset;
-    private int unixTimestampColumn;
-    private long startTimestamp;
-    private long endTimestamp;
-    private long firstTimestampFromFile;
 
     /**
      * LogFileReader Constructor
@@ -68,7 +61,6 @@ public class LogFileReader {
         ids = new String[] { logChannel.getId(), Const.TIMESTAMP_STRING };
         this.loggingInterval = logChannel.getLoggingInterval();
         this.logTimeOffset = logChannel.getLoggingTimeOffset();
-        firstTimestampFromFile = -1;
     }
 
     /**
@@ -81,37 +73,54 @@ public class LogFileReader {
      * @return All records of the given time span
      */
     public Map<String, List<Record>> getValues(long startTimestamp, long endTimestamp) {
-
-        this.startTimestamp = startTimestamp;
-        this.endTimestamp = endTimestamp;
-
-        List<String> filenames = LoggerUtils.getFilenames(loggingInterval, logTimeOffset, this.startTimestamp,
-                this.endTimestamp);
         Map<String, List<Record>> recordsMap = new HashMap<>();
         for (String id : ids) {
             recordsMap.put(id, new ArrayList<>());
         }
+        readValues(startTimestamp, endTimestamp, (id, record) -> addToMap(recordsMap, id, record));
+        return recordsMap;
+    }
 
-        for (int i = 0; i < filenames.size(); i++) {
-            Boolean nextFile = false;
-            if (logger.isTraceEnabled()) {
-                logger.trace("using " + filenames.get(i));
+    /**
+     * Passes the records of the channel between start time stamp and end time stamp to the consumer while the files
+     * are read, without collecting them.
+     *
+     * @param startTimestamp
+     *            start time stamp
+     * @param endTimestamp
+     *            end time stamp
+     * @param consumer
+     *            receives the records of the channel in ascending order of their time stamps
+     */
+    public void readValues(long startTimestamp, long endTimestamp, Consumer<Record> consumer) {
+        String channelId = ids[0];
+        readValues(startTimestamp, endTimestamp, (id, record) -> {
+            if (id.equals(channelId)) {
+                consumer.accept(record);
             }
+        });
+    }
 
-            String filepath;
-            if (path.endsWith(File.separator)) {
-                filepath = path + filenames.get(i);
-            }
-            else {
-                filepath = path + File.separatorChar + filenames.get(i);
-            }
+    private void readValues(long startTimestamp, long endTimestamp, BiConsumer<String, Record> sink) {
 
-            if (i > 0) {
-                nextFile = true;
+        List<String> filenames = LoggerUtils.getFilenames(loggingInterval, logTimeOffset, startTimestamp,
+                endTimestamp);
+
+        for (String filename : filenames) {
+            if (logger.isTraceEnabled()) {
+                logger.trace("using " + filename);
             }
-            processFile(recordsMap, filepath, nextFile);
+            processFile(sink, getFilepath(filename), startTimestamp, endTimestamp, false);
+        }
+    }
+
+    private String getFilepath(String filename) {
+        if (path.endsWith(File.separator)) {
+            return path + filename;
+        }
+        else {
+            return path + File.separatorChar + filename;
         }
-        return recordsMap;
     }
 
     /**
@@ -122,16 +131,25 @@ public class LogFileReader {
      * @return All records in the given file as a Map of String channelId and List of records for this channel
      */
     public Map<String, List<Record>> getValues(String filePath) {
-        this.startTimestamp = 0;
-        this.endTimestamp = 9223372036854775807l; // max long
         Map<String, List<Record>> recordsMap = new HashMap<>();
         for (String id : ids) {
             recordsMap.put(id, new ArrayList<>());
         }
-        recordsMap = processFile(recordsMap, filePath, true);
+        if (!processFile((id, record) -> addToMap(recordsMap, id, record), filePath, 0, Long.MAX_VALUE, false)) {
+            return null;
+        }
         return recordsMap;
     }
 
+    private static void addToMap(Map<String, List<Record>> recordsMap, String id, Record record) {
+        List<Record> list = recordsMap.get(id);
+        if (list == null) {
+            list = new ArrayList<>();
+            recordsMap.put(id, list);
+        }
+        list.add(record);
+    }
+
     /**
      * get a single record from single channel of time stamp
      *
@@ -176,261 +194,65 @@ public class LogFileReader {
     }
 
     /**
-     * Reads the file line by line
-     *
-     * @param filepath
-     *            file path
-     * @param nextFile
-     *            if it is the next file and not the first between a time span
-     * @return records on success, otherwise null
-     */
-    private Map<String, List<Record>> processFile(Map<String, List<Record>> recordsMap, String filepath,
-            Boolean nextFile) {
-
-        String line = null;
-        long currentPosition = 0;
-        long rowSize;
-        long firstTimestamp = 0;
-        String firstValueLine = null;
-        long currentTimestamp = 0;
-
-        RandomAccessFile raf = LoggerUtils.getRandomAccessFile(new File(filepath), "r");
-        if (raf == null) {
-            return null;
-        }
-        try {
-            Map<String, Integer> channelsColumnsMap = null;
-            while (channelsColumnsMap == null) {
-                line = raf.readLine();
-                channelsColumnsMap = LoggerUtils.getColumnNumbersByNames(line, ids);
-            }
-            unixTimestampColumn = channelsColumnsMap.get(Const.TIMESTAMP_STRING);
-            firstValueLine = raf.readLine();
-
-            rowSize = firstValueLine.length() + 1l; // +1 because of "\n"
-
-            // rewind the position to the start of the firstValue line
-            currentPosition = raf.getFilePointer() - rowSize;
-
-            firstTimestamp = (long) (Double.valueOf((firstValueLine.split(Const.SEPARATOR))[unixTimestampColumn])
-                    * 1000);
-
-            if (nextFile || startTimestamp < firstTimestamp) {
-                startTimestamp = firstTimestamp;
-            }
-
-            if (startTimestamp >= firstTimestamp) {
-                long filepos = getFilePosition(loggingInterval, startTimestamp, firstTimestamp, currentPosition,
-                        rowSize);
-                raf.seek(filepos);
-
-                currentTimestamp = startTimestamp;
-
-                while ((line = raf.readLine()) != null && currentTimestamp <= endTimestamp) {
-
-                    processLine(line, channelsColumnsMap, recordsMap);
-                    currentTimestamp += loggingInterval;
-                }
-                raf.close();
-            }
-            else {
-                recordsMap = null; // because the column of the channel was not identified
-            }
-        } catch (IOException e) {
-            logger.error(e.getMessage());
-            recordsMap = null;
-        }
-        return recordsMap;
-    }
-
-    /**
-     * Process the line: ignore comments, read records
-     *
-     * @param line
-     *            the line to process
-     * @param recordsMap
-     *            list of records
-     */
-    private void processLine(String line, Map<String, Integer> channelsColumnsMap,
-            Map<String, List<Record>> recordsMap) {
-
-        if (!line.startsWith(Const.COMMENT_SIGN)) {
-            readRecordsFromLine(line, channelsColumnsMap, recordsMap);
-        }
-    }
-
-    /**
-     * read the records from a line.
+     * Get the latest record of the channel between start time stamp and end time stamp. Only the last rows of the files
+     * are read, starting with the latest file.
      *
-     * @param line
-     *            to read
-     * @return Records read from line
-     */
-    private void readRecordsFromLine(String line, Map<String, Integer> channelsColumnsMap,
-            Map<String, List<Record>> recordsMap) {
-
-        String columnValue[] = line.split(Const.SEPARATOR);
-
-        try {
-            Double timestampS = Double.parseDouble(columnValue[unixTimestampColumn]);
-
-            long timestampMS = ((Double) (timestampS * (1000))).longValue();
-
-            if (isTimestampPartOfRequestedInterval(timestampMS)) {
-                for (Entry<String, Integer> entry : channelsColumnsMap.entrySet()) {
-                    Record record = convertLogfileEntryToRecord(columnValue[entry.getValue()].trim(), timestampMS);
-                    List<Record> list = recordsMap.get(entry.getKey());
-                    if (list == null) {
-                        recordsMap.put(entry.getKey(), new ArrayList<>());
-                        list = recordsMap.get(entry.getKey());
-                    }
-                    list.add(record);
-                }
-            }
-            else {
-                if (logger.isTraceEnabled()) {
-                    SimpleDateFormat sdf = new SimpleDateFormat("HH:mm:ss.SSS");
-                    logger.trace("timestampMS: " + sdf.format(timestampMS) + " " + timestampMS);
-                }
-            }
-        } catch (NumberFormatException e) {
-            logger.warn("It's not a timestamp.\n", e.getMessage());
-        } catch (ArrayIndexOutOfBoundsException e) {
-            logger.error("Array Index Out Of Bounds Exception. ", e);
-        }
-    }
-
-    /**
-     * Checks if the time stamp read from file is part of the requested logging interval
-     *
-     * @param lineTimestamp
-     *            time stamp to check if it is part of the time span
-     * @return true if it is a part of the requested interval, if not false.
-     */
-    private boolean isTimestampPartOfRequestedInterval(long lineTimestamp) {
-        boolean result = false;
-
-        // TODO tidy up, move to better place, is asked each line!
-        if (firstTimestampFromFile == -1) {
-            firstTimestampFromFile = lineTimestamp;
-        }
-
-        if (lineTimestamp >= startTimestamp && lineTimestamp <= endTimestamp) {
-            result = true;
-        }
-        return result;
-    }
-
-    /**
-     * Get the position of the startTimestamp, without Header.
-     *
-     * @param loggingInterval
-     *            logging interval
      * @param startTimestamp
      *            start time stamp
-     * @return the position of the start timestamp as long.
+     * @param endTimestamp
+     *            end time stamp
+     * @return the latest record or <code>null</code> if no record was logged within the time span
      */
-    private long getFilePosition(int loggingInterval, long startTimestamp, long firstTimestampOfFile,
-            long firstValuePos, long rowSize) {
+    public Record getLatestValue(long startTimestamp, long endTimestamp) {
+        List<String> filenames = LoggerUtils.getFilenames(loggingInterval, logTimeOffset, startTimestamp,
+                endTimestamp);
 
-        long timeOffsetMs = startTimestamp - firstTimestampOfFile;
-        long numberOfLinesToSkip = timeOffsetMs / loggingInterval;
-
-        // if offset isn't a multiple of loggingInterval add an additional line
-        if (timeOffsetMs % loggingInterval != 0) {
-            ++numberOfLinesToSkip;
+        Map<String, Record> recordMap = new HashMap<>();
+        for (int i = filenames.size() - 1; i >= 0 && recordMap.isEmpty(); i--) {
+            processFile(recordMap::put, getFilepath(filenames.get(i)), startTimestamp, endTimestamp, true);
         }
-
-        long pos = numberOfLinesToSkip * rowSize + firstValuePos;
-
-        return pos;
+        return recordMap.get(ids[0]);
     }
 
-    // TODO support ints, booleans, ...
-
     /**
-     * Converts an entry from the logging file into a record
+     * Get the latest record of the channel in the given file
      *
-     * @param strValue
-     *            string value
-     * @param timestamp
-     *            time stamp
-     * @return the converted logfile entry.
+     * @param filePath
+     *            to be read from
+     * @return the latest record or <code>null</code> if the file contains no record of the channel
      */
-    private Record convertLogfileEntryToRecord(String strValue, long timestamp) {
-
-        Record record = null;
-        if (isNumber(strValue)) {
-            record = new Record(new DoubleValue(Double.parseDouble(strValue)), timestamp, Flag.VALID);
-        }
-        else {
-            record = getRecordFromNonNumberValue(strValue, timestamp);
-        }
-        return record;
+    public Record getLatestValue(String filePath) {
+        Map<String, Record> recordMap = new HashMap<>();
+        processFile(recordMap::put, filePath, 0, Long.MAX_VALUE, true);
+        return recordMap.get(ids[0]);
     }
 
     /**
-     * Returns the record from a non number value read from the logfile. This is the case if the value is an error like
-     * "e0" or a normal ByteArrayValue
+     * Reads the records of the file between start time stamp and end time stamp
      *
-     * @param strValue
-     *            string value
-     * @param timestamp
-     *            time stamp
-     * @return the value in a record.
+     * @param filepath
+     *            file path
+     * @param latestOnly
+     *            if only the records of the latest row within the time span are read
+     * @return true on success, otherwise false
      */
-    private Record getRecordFromNonNumberValue(String strValue, long timestamp) {
-
-        Record record = null;
-
-        if (strValue.trim().startsWith(Const.ERROR)) {
+    private boolean processFile(BiConsumer<String, Record> sink, String filepath, long startTimestamp,
+            long endTimestamp, boolean latestOnly) {
 
-            int errorSize = Const.ERROR.length();
-            int stringLength = strValue.length();
-            String errorFlag = strValue.substring(errorSize, errorSize + stringLength - errorSize);
-            errorFlag = errorFlag.trim();
-
-            if (isNumber(errorFlag)) {
-                record = new Record(null, timestamp, Flag.newFlag(Integer.parseInt(errorFlag)));
+        try (IndexedLogFile logFile = IndexedLogFile.open(new File(filepath), ids, loggingInterval)) {
+            if (logFile == null) {
+                return false;
+            }
+            if (latestOnly) {
+                logFile.readLatest(startTimestamp, endTimestamp, sink);
             }
             else {
-                record = new Record(null, timestamp, Flag.NO_VALUE_RECEIVED_YET);
+                logFile.read(startTimestamp, endTimestamp, sink);
             }
-        }
-        else if (strValue.trim().startsWith(Const.HEXADECIMAL)) {
-            record = new Record(new ByteArrayValue(strValue.trim().getBytes(Const.CHAR_SET)), timestamp, Flag.VALID);
-        }
-        else {
-            record = new Record(new StringValue(strValue.trim()), timestamp, Flag.VALID);
-        }
-        return record;
-    }
-
-    /**
-     * Checks if the string value is a number
-     *
-     * @param strValue
-     *            string value
-     * @return True on success, otherwise false
-     */
-    private boolean isNumber(String strValue) {
-
-        boolean isDecimalSeparatorFound = false;
-
-        if (!Character.isDigit(strValue.charAt(0)) && strValue.charAt(0) != Const.MINUS_SIGN
-                && strValue.charAt(0) != Const.PLUS_SIGN) {
+        } catch (IOException e) {
+            logger.error(e.getMessage());
             return false;
         }
-
-        for (char charactor : strValue.substring(1).toCharArray()) {
-            if (!Character.isDigit(charactor)) {
-                if (charactor == Const.DECIMAL_SEPARATOR && !isDecimalSeparatorFound) {
-                    isDecimalSeparatorFound = true;
-                    continue;
-                }
-                return false;
-            }
-        }
         return true;
     }
 }
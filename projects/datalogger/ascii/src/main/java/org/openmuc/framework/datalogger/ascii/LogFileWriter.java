@@ -20,6 +20,8 @@
  */
 package org.openmuc.framework.datalogger.ascii;
 
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
@@ -45,14 +47,17 @@ import org.openmuc.framework.datalogger.spi.LoggingRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class LogFileWriter {
+public class LogFileWriter implements Closeable {
 
     private static final Logger logger = LoggerFactory.getLogger(LogFileWriter.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
     private final StringBuilder sb = new StringBuilder();
     private final StringBuilder sbValue = new StringBuilder();
     private final String directoryPath;
     private final boolean isFillUpFiles;
     private File actualFile;
+    private PrintStream openStream;
+    private String openFilename;
 
     public LogFileWriter(String directoryPath, boolean isFillUpFiles) {
 
@@ -83,9 +88,73 @@ public class LogFileWriter {
             return;
         }
 
-        List<LoggingRecord> logRecordContainer = group.getList();
+        write(group, loggingInterval, logTimeOffset, calendar, logChannelList, out);
+        out.flush();
+        out.close();
+    }
+
+    /**
+     * Appends the line of the group like {@link #log}, but keeps the file open for the next call. The line is written
+     * to the buffer of the file only, it reaches the file with {@link #flush()}. At midnight the file is closed and the
+     * file of the new day is opened.
+     *
+     * @param group
+     *            log interval container group, the order of its records has to be the same for all calls
+     * @param loggingInterval
+     *            logging interval
+     * @param logTimeOffset
+     *            logging time offset
+     * @param calendar
+     *            calendar of current time
+     * @param logChannelList
+     *            logging channel list
+     */
+    void append(LogIntervalContainerGroup group, int loggingInterval, int logTimeOffset, Calendar calendar,
+            Map<String, LogChannel> logChannelList) {
+
+        String filename = LoggerUtils.buildFilename(loggingInterval, logTimeOffset, calendar);
+        if (!filename.equals(openFilename)) {
+            close();
+            openStream = getStream(group, loggingInterval, logTimeOffset, calendar, logChannelList);
+            if (openStream == null) {
+                return;
+            }
+            openFilename = filename;
+        }
+
+        write(group, loggingInterval, logTimeOffset, calendar, logChannelList, openStream);
+    }
+
+    /**
+     * Writes the buffered lines of the open file to the file.
+     */
+    void flush() {
+        if (openStream == null) {
+            return;
+        }
+        openStream.flush();
+        if (openStream.checkError()) {
+            logger.error("Could not write to file " + actualFile.getAbsolutePath());
+            close();
+        }
+    }
+
+    /**
+     * Writes the buffered lines and closes the file kept open by {@link #append}.
+     */
+    @Override
+    public void close() {
+        if (openStream != null) {
+            openStream.close();
+            openStream = null;
+            openFilename = null;
+        }
+    }
+
+    private void write(LogIntervalContainerGroup group, int loggingInterval, int logTimeOffset, Calendar calendar,
+            Map<String, LogChannel> logChannelList, PrintStream out) {
 
-        // TODO match column with container id, so that they don't get mixed up
+        List<LoggingRecord> logRecordContainer = group.getList();
 
         if (isFillUpFiles) {
             fillUpFile(loggingInterval, logTimeOffset, calendar, logChannelList, logRecordContainer, out);
@@ -94,8 +163,6 @@ public class LogFileWriter {
         String logLine = getLoggingLine(logRecordContainer, logChannelList, calendar, false);
 
         out.print(logLine); // print because of println makes different newline char on different systems
-        out.flush();
-        out.close();
     }
 
     private void fillUpFile(int loggingInterval, int logTimeOffset, Calendar calendar,
@@ -310,10 +377,12 @@ public class LogFileWriter {
 
         try {
             if (file.exists()) {
-                out = new PrintStream(new FileOutputStream(file, true), false, Const.CHAR_SET.toString());
+                out = new PrintStream(new BufferedOutputStream(new FileOutputStream(file, true), BUFFER_SIZE), false,
+                        Const.CHAR_SET.toString());
             }
             else {
-                out = new PrintStream(new FileOutputStream(file, true), false, Const.CHAR_SET.toString());
+                out = new PrintStream(new BufferedOutputStream(new FileOutputStream(file, true), BUFFER_SIZE), false,
+                        Const.CHAR_SET.toString());
                 String headerString = LogFileHeader.getIESDataFormatHeaderString(group, file.getName(), loggingInterval,
                         logChannelList);
 
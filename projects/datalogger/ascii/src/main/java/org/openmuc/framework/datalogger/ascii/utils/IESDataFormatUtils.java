@@ -28,6 +28,22 @@ import org.openmuc.framework.datalogger.ascii.exceptions.WrongScalingException;
 
 public class IESDataFormatUtils {
 
+    private static final String[] FORMATS = { "#######0", "#####0.0", "####0.00", "###0.000" };
+
+    /**
+     * The formats of {@link #FORMATS} followed by the same formats with a leading plus sign. Creating a DecimalFormat
+     * costs more than formatting a value with it, and a DecimalFormat is not thread safe.
+     */
+    private static final ThreadLocal<DecimalFormat[]> DECIMAL_FORMATS = ThreadLocal.withInitial(() -> {
+        DecimalFormatSymbols symbols = new DecimalFormatSymbols(Locale.ENGLISH);
+        DecimalFormat[] decimalFormats = new DecimalFormat[FORMATS.length * 2];
+        for (int i = 0; i < FORMATS.length; i++) {
+            decimalFormats[i] = new DecimalFormat(FORMATS[i], symbols);
+            decimalFormats[FORMATS.length + i] = new DecimalFormat('+' + FORMATS[i], symbols);
+        }
+        return decimalFormats;
+    });
+
     /**
      * Convert a double value into a string with the maximal allowed length of maxLength.
      * 
@@ -43,7 +59,7 @@ public class IESDataFormatUtils {
      */
     public static void convertDoubleToStringWithMaxLength(StringBuilder sbValue, double value, int maxLength)
             throws WrongScalingException {
-        String format;
+        int format;
         double valueWork = value;
         long lValue = (long) (valueWork * 10000.0);
         valueWork = lValue / 10000.0;
@@ -53,13 +69,13 @@ public class IESDataFormatUtils {
             if (lValue >> 63 != 0) {
                 valueWork *= -1l;
             }
-            format = '+' + getFormat(valueWork);
+            format = FORMATS.length + getFormat(valueWork);
         }
         else {
             format = getFormat(valueWork);
         }
 
-        DecimalFormat df = new DecimalFormat(format, new DecimalFormatSymbols(Locale.ENGLISH));
+        DecimalFormat df = DECIMAL_FORMATS.get()[format];
         String doubleString = df.format(valueWork);
 
         if (doubleString.length() > maxLength) {
@@ -69,22 +85,25 @@ public class IESDataFormatUtils {
         sbValue.append(doubleString);
     }
 
-    private static String getFormat(double value) {
+    /**
+     * Returns the index of the format in {@link #FORMATS}.
+     */
+    private static int getFormat(double value) {
 
         long lValue = (long) value;
-        String format;
+        int format;
 
         if (lValue > 999999 || lValue < -999999) {
-            format = "#######0";
+            format = 0;
         }
         else if (lValue > 99999 || lValue < -99999) {
-            format = "#####0.0";
+            format = 1;
         }
         else if (lValue > 9999 || lValue < -9999) {
-            format = "####0.00";
+            format = 2;
         }
         else {
-            format = "###0.000";
+            format = 3;
         }
 
         return format;
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.datalogger.ascii.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.datalogger.ascii.AsciiLogger;
+import org.openmuc.framework.datalogger.ascii.utils.LoggerUtils;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+
+public class AsciiLoggerTest {
+
+    private static final int loggingInterval = 3000; // ms
+    private static final String dateFormat = "yyyyMMdd HH:mm:ss";
+    private static final String DAY = "20680808";
+    private static final String NEXT_DAY = "20680809";
+
+    private static AsciiLogger asciiLogger;
+
+    @BeforeAll
+    public static void setup() {
+        TestUtils.createTestFolder();
+
+        LogChannel power = new LogChannelTestImpl("power", "", "", "W", ValueType.DOUBLE, 0.0, 0.0, false, 1000, 0, "",
+                loggingInterval, 0, false, false);
+        LogChannel energy = new LogChannelTestImpl("energy", "", "", "Wh", ValueType.DOUBLE, 0.0, 0.0, false, 1000, 0,
+                "", loggingInterval, 0, false, false);
+
+        asciiLogger = new AsciiLogger(TestUtils.TESTFOLDERPATH);
+        asciiLogger.setChannelsToLog(Arrays.asList(power, energy));
+
+        // records arrive in any order, the last tick before midnight misses the energy record
+        long timestamp = TestUtils.stringToDate(dateFormat, DAY + " 23:59:54").getTimeInMillis();
+        for (int i = 0; i < 4; i++) {
+            LoggingRecord powerRecord = new LoggingRecord("power", new Record(new DoubleValue(i), timestamp));
+            LoggingRecord energyRecord = new LoggingRecord("energy", new Record(new DoubleValue(i * 10), timestamp));
+            if (i == 1) {
+                asciiLogger.log(Arrays.asList(powerRecord), timestamp);
+            }
+            else if (i % 2 == 0) {
+                asciiLogger.log(Arrays.asList(powerRecord, energyRecord), timestamp);
+            }
+            else {
+                asciiLogger.log(Arrays.asList(energyRecord, powerRecord), timestamp);
+            }
+            timestamp += loggingInterval;
+        }
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        TestUtils.deleteTestFolder();
+    }
+
+    @Test
+    public void recordsAreLoggedInColumnOfTheirChannel() throws IOException {
+        long start = TestUtils.stringToDate(dateFormat, DAY + " 23:59:54").getTimeInMillis();
+        long end = TestUtils.stringToDate(dateFormat, NEXT_DAY + " 00:00:03").getTimeInMillis();
+
+        List<Record> power = asciiLogger.getRecords("power", start, end);
+        List<Record> energy = asciiLogger.getRecords("energy", start, end);
+
+        assertEquals(4, power.size());
+        assertEquals(4, energy.size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i, power.get(i).getValue().asDouble());
+            if (i != 1) {
+                assertEquals(i * 10, energy.get(i).getValue().asDouble());
+            }
+        }
+        assertEquals(Flag.UNKNOWN_ERROR, energy.get(1).getFlag());
+    }
+
+    @Test
+    public void fileIsRotatedAtMidnight() {
+        Calendar day = TestUtils.stringToDate(dateFormat, DAY + " 12:00:00");
+        Calendar nextDay = TestUtils.stringToDate(dateFormat, NEXT_DAY + " 12:00:00");
+
+        assertTrue(new File(TestUtils.TESTFOLDERPATH
+                + LoggerUtils.getFilename(loggingInterval, 0, day.getTimeInMillis())).exists());
+        assertTrue(new File(TestUtils.TESTFOLDERPATH
+                + LoggerUtils.getFilename(loggingInterval, 0, nextDay.getTimeInMillis())).exists());
+    }
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.datalogger.ascii.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.datalogger.ascii.LogFileReader;
+import org.openmuc.framework.datalogger.ascii.LogFileWriter;
+import org.openmuc.framework.datalogger.ascii.LogIntervalContainerGroup;
+import org.openmuc.framework.datalogger.ascii.utils.Const;
+import org.openmuc.framework.datalogger.ascii.utils.LoggerUtils;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+
+/**
+ * Reads files whose rows are not at the positions computed from the logging interval, because ticks were not logged or
+ * a row has a different length.
+ */
+public class LogFileReaderTestIrregularRows {
+
+    private static final String GAP_DATE = "20670707";
+    private static final String LONG_ROW_DATE = "20670708";
+    private static final int loggingInterval = 10000; // ms
+    private static final String CHANNEL_ID = "power";
+    private static final String dateFormat = "yyyyMMdd HH:mm:ss";
+
+    private static HashMap<String, LogChannel> logChannelList = new HashMap<>();
+
+    LogChannelTestImpl channelTestImpl = new LogChannelTestImpl(CHANNEL_ID, "", "Comment", "W", ValueType.DOUBLE, 0.0,
+            0.0, false, 1000, 0, "", loggingInterval, 0, false, false);
+
+    @BeforeAll
+    public static void setup() throws IOException {
+
+        TestUtils.createTestFolder();
+
+        logChannelList.put(CHANNEL_ID, new LogChannelTestImpl(CHANNEL_ID, "", "dummy description", "kW",
+                ValueType.DOUBLE, 0.0, 0.0, false, 1000, 0, "", loggingInterval, 0, false, false));
+
+        // one value every 10 s from 01:00:00 to 01:59:50 without the values from 01:10:00 to 01:19:50
+        Calendar calendar = TestUtils.stringToDate(dateFormat, GAP_DATE + " 01:00:00");
+        for (int i = 0; i < 360; i++) {
+            if (i < 60 || i >= 120) {
+                log(i, calendar);
+            }
+            calendar.add(Calendar.MILLISECOND, loggingInterval);
+        }
+
+        // 20 values from 01:00:00 on, the row of the value 10 is wider than the others
+        calendar = TestUtils.stringToDate(dateFormat, LONG_ROW_DATE + " 01:00:00");
+        for (int i = 0; i < 20; i++) {
+            if (i == 10) {
+                appendWideRow(i, calendar);
+            }
+            else {
+                log(i, calendar);
+            }
+            calendar.add(Calendar.MILLISECOND, loggingInterval);
+        }
+    }
+
+    private static void log(int value, Calendar calendar) {
+        LogIntervalContainerGroup group = new LogIntervalContainerGroup();
+        group.add(new LoggingRecord(CHANNEL_ID, new Record(new DoubleValue(value), calendar.getTimeInMillis())));
+        new LogFileWriter(TestUtils.TESTFOLDERPATH, false).log(group, loggingInterval, 0, calendar, logChannelList);
+    }
+
+    private static void appendWideRow(int value, Calendar calendar) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        LoggerUtils.setLoggerTimestamps(sb, calendar.getTimeInMillis());
+        sb.append("            ").append(value).append(".000").append(Const.LINESEPARATOR);
+
+        String filename = LoggerUtils.getFilename(loggingInterval, 0, calendar.getTimeInMillis());
+        try (OutputStream out = new FileOutputStream(TestUtils.TESTFOLDERPATH + filename, true)) {
+            out.write(sb.toString().getBytes(Const.CHAR_SET));
+        }
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        TestUtils.deleteTestFolder();
+    }
+
+    @Test
+    public void rangeAfterGapStartsAtRequestedTimestamp() {
+        long t1 = TestUtils.stringToDate(dateFormat, GAP_DATE + " 01:25:00").getTimeInMillis();
+        long t2 = TestUtils.stringToDate(dateFormat, GAP_DATE + " 01:26:00").getTimeInMillis();
+
+        List<Record> records = new LogFileReader(TestUtils.TESTFOLDERPATH, channelTestImpl).getValues(t1, t2)
+                .get(CHANNEL_ID);
+
+        assertEquals(7, records.size());
+        assertEquals(t1, records.get(0).getTimestamp());
+        assertEquals(150, records.get(0).getValue().asDouble());
+        assertEquals(t2, records.get(6).getTimestamp());
+    }
+
+    @Test
+    public void rangeAcrossGap() {
+        long t1 = TestUtils.stringToDate(dateFormat, GAP_DATE + " 01:05:00").getTimeInMillis();
+        long t2 = TestUtils.stringToDate(dateFormat, GAP_DATE + " 01:25:00").getTimeInMillis();
+
+        List<Record> records = new LogFileReader(TestUtils.TESTFOLDERPATH, channelTestImpl).getValues(t1, t2)
+                .get(CHANNEL_ID);
+
+        assertEquals(30 + 31, records.size());
+        assertEquals(59, records.get(29).getValue().asDouble());
+        assertEquals(120, records.get(30).getValue().asDouble());
+    }
+
+    @Test
+    public void latestValueBeforeGap() {
+        long t1 = TestUtils.stringToDate(dateFormat, GAP_DATE + " 01:00:00").getTimeInMillis();
+        long t2 = TestUtils.stringToDate(dateFormat, GAP_DATE + " 01:15:00").getTimeInMillis();
+
+        Record record = new LogFileReader(TestUtils.TESTFOLDERPATH, channelTestImpl).getLatestValue(t1, t2);
+
+        assertEquals(TestUtils.stringToDate(dateFormat, GAP_DATE + " 01:09:50").getTimeInMillis(),
+                record.getTimestamp());
+        assertEquals(59, record.getValue().asDouble());
+    }
+
+    @Test
+    public void latestValueOfFile() {
+        Calendar calendar = TestUtils.stringToDate(dateFormat, GAP_DATE + " 01:00:00");
+        String filename = LoggerUtils.getFilename(loggingInterval, 0, calendar.getTimeInMillis());
+
+        Record record = new LogFileReader(TestUtils.TESTFOLDERPATH, channelTestImpl)
+                .getLatestValue(TestUtils.TESTFOLDERPATH + filename);
+
+        assertEquals(359, record.getValue().asDouble());
+    }
+
+    @Test
+    public void rowsAfterWideRowAreRead() {
+        long t1 = TestUtils.stringToDate(dateFormat, LONG_ROW_DATE + " 01:00:00").getTimeInMillis();
+        long t2 = TestUtils.stringToDate(dateFormat, LONG_ROW_DATE + " 01:05:00").getTimeInMillis();
+        LogFileReader reader = new LogFileReader(TestUtils.TESTFOLDERPATH, channelTestImpl);
+
+        List<Record> records = reader.getValues(t1, t2).get(CHANNEL_ID);
+        assertEquals(20, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(i, records.get(i).getValue().asDouble());
+        }
+
+        long t3 = TestUtils.stringToDate(dateFormat, LONG_ROW_DATE + " 01:02:30").getTimeInMillis();
+        records = reader.getValues(t3, t2).get(CHANNEL_ID);
+        assertEquals(5, records.size());
+        assertEquals(15, records.get(0).getValue().asDouble());
+    }
+
+}
@@ -22,14 +22,18 @@
 package org.openmuc.framework.datalogger.mqtt;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.openmuc.framework.data.Record;
 import org.openmuc.framework.datalogger.mqtt.dto.MqttLogChannel;
 import org.openmuc.framework.datalogger.mqtt.dto.MqttLogMsg;
+import org.openmuc.framework.datalogger.mqtt.util.MqttLogBatcher;
 import org.openmuc.framework.datalogger.mqtt.util.MqttLogMsgBuilder;
 import org.openmuc.framework.datalogger.spi.DataLoggerService;
 import org.openmuc.framework.datalogger.spi.LogChannel;
@@ -50,11 +54,16 @@ public class MqttLogger implements DataLoggerService, ManagedService {
 
     private static final Logger logger = LoggerFactory.getLogger(MqttLogger.class);
     private static final String LOGGER_ID = "mqttlogger";
+    private static final long LINGER_TIMER_TIMEOUT_MILLIS = 1_000;
     private final HashMap<String, MqttLogChannel> channelsToLog = new HashMap<>();
     private final HashMap<String, ParserService> availableParsers = new HashMap<>();
     private final PropertyHandler propertyHandler;
     private String parser;
     private boolean isLogMultiple;
+    private int maxMessageSize = MqttLogMsgBuilder.DEFAULT_MAX_MESSAGE_SIZE;
+    private long lingerTime;
+    private volatile MqttLogBatcher batcher;
+    private ScheduledExecutorService lingerTimer;
     private MqttWriter mqttWriter;
     private SslManagerInterface sslManager;
     private boolean configLoaded = false;
@@ -126,31 +135,100 @@ public class MqttLogger implements DataLoggerService, ManagedService {
             return;
         }
 
-        // logger.info("============================");
-        // loggingRecordList.stream().map(LoggingRecord::getChannelId).forEach(id -> logger.info(id));
-
         // FIXME refactor OpenMUC core - actually the datamanager should only call logger.log()
         // with channels configured for this logger. If this is the case the containsKey check could be ignored
         // The filter serves as WORKAROUND to process only channels which were configured for mqtt logger
-        List<LoggingRecord> logRecordsForMqttLogger = loggingRecordList.stream()
-                .filter(record -> channelsToLog.containsKey(record.getChannelId()))
-                .collect(Collectors.toList());
-
-        // channelsToLog.values().stream().map(channel -> channel.topic).distinct().count();
+        List<LoggingRecord> logRecordsForMqttLogger = new ArrayList<>(loggingRecordList.size());
+        for (LoggingRecord loggingRecord : loggingRecordList) {
+            if (channelsToLog.containsKey(loggingRecord.getChannelId())) {
+                logRecordsForMqttLogger.add(loggingRecord);
+            }
+        }
 
         // Concept of the MqttLogMsgBuilder:
         // 1. cleaner code
         // 2. better testability: MqttLogMsgBuilder can be easily created in a test and the output of
         // MqttLogMsgBuilder.build() can be verified. It takes the input from logger.log() method, processes it
         // and creates ready to use messages for the mqttWriter
-        MqttLogMsgBuilder logMsgBuilder = new MqttLogMsgBuilder(channelsToLog, availableParsers.get(parser));
-        List<MqttLogMsg> logMessages = logMsgBuilder.buildLogMsg(logRecordsForMqttLogger, isLogMultiple);
+        if (isLogMultiple) {
+            write(getBatcher().add(logRecordsForMqttLogger, System.currentTimeMillis()));
+        }
+        else {
+            write(getBatcher().getLogMsgBuilder().buildLogMsg(logRecordsForMqttLogger, false));
+        }
+    }
+
+    /**
+     * The batcher is kept between ticks and only replaced if the parser service was replaced.
+     */
+    private MqttLogBatcher getBatcher() {
+        ParserService parserService = availableParsers.get(parser);
+        MqttLogBatcher batcher = this.batcher;
+        if (batcher == null || batcher.getLogMsgBuilder().getParserService() != parserService) {
+            if (batcher != null) {
+                write(batcher.releaseAll());
+            }
+            MqttLogMsgBuilder logMsgBuilder = new MqttLogMsgBuilder(channelsToLog, parserService, maxMessageSize);
+            batcher = new MqttLogBatcher(logMsgBuilder, lingerTime, maxMessageSize);
+            this.batcher = batcher;
+        }
+        return batcher;
+    }
+
+    private void write(List<MqttLogMsg> logMessages) {
         for (MqttLogMsg msg : logMessages) {
             logTraceMqttMessage(msg);
             mqttWriter.write(msg.topic, msg.message);
         }
     }
 
+    private void releaseExpiredBatches() {
+        MqttLogBatcher batcher = this.batcher;
+        if (batcher != null) {
+            try {
+                write(batcher.releaseExpired(System.currentTimeMillis()));
+            } catch (RuntimeException e) {
+                logger.error("Failed to publish collected log records", e);
+            }
+        }
+    }
+
+    private void startLingerTimer() {
+        if (isLogMultiple && lingerTime > 0) {
+            lingerTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "MqttLoggerLinger");
+                thread.setDaemon(true);
+                return thread;
+            });
+            // a batch waits at most a quarter of the linger time longer than configured
+            long period = Math.max(1, lingerTime / 4);
+            lingerTimer.scheduleAtFixedRate(this::releaseExpiredBatches, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void stopLingerTimer() {
+        if (lingerTimer != null) {
+            // a running flush has to finish before the remaining batches are released and the writer shuts down
+            lingerTimer.shutdown();
+            try {
+                if (!lingerTimer.awaitTermination(LINGER_TIMER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    logger.warn("Flushing collected log records did not finish within {} ms",
+                            LINGER_TIMER_TIMEOUT_MILLIS);
+                    lingerTimer.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            lingerTimer = null;
+        }
+        MqttLogBatcher batcher = this.batcher;
+        this.batcher = null;
+        if (batcher != null) {
+            // the writer buffers the messages if the connection is already closed
+            write(batcher.releaseAll());
+        }
+    }
+
     private void logTraceMqttMessage(MqttLogMsg msg) {
         if (logger.isTraceEnabled()) {
             logger.trace("{}\n{}: {}", msg.channelId, msg.topic, new String(msg.message));
@@ -187,6 +265,7 @@ public class MqttLogger implements DataLoggerService, ManagedService {
         MqttConnection connection = new MqttConnection(settings);
         connection.setSslManager(sslManager);
         mqttWriter = new MqttWriter(connection, getId());
+        startLingerTimer();
         if (settings.isSsl()) {
             if (isLoggerReady()) {
                 logger.info("Connecting to MQTT Broker");
@@ -226,8 +305,9 @@ public class MqttLogger implements DataLoggerService, ManagedService {
                 propertyHandler.getString(MqttLoggerSettings.FIRST_WILL_PAYLOAD).getBytes(),
                 propertyHandler.getInt(MqttLoggerSettings.RECOVERY_CHUNK_SIZE),
                 propertyHandler.getInt(MqttLoggerSettings.RECOVERY_DELAY),
-                propertyHandler.getBoolean(MqttLoggerSettings.WEB_SOCKET
-                ),retainedMessages);
+                propertyHandler.getBoolean(MqttLoggerSettings.WEB_SOCKET),
+                retainedMessages,
+                propertyHandler.getInt(MqttLoggerSettings.MAX_IN_FLIGHT));
         // @formatter:on
 
         logger.info("MqttSettings for MqttConnection \n", settings.toString());
@@ -271,10 +351,15 @@ public class MqttLogger implements DataLoggerService, ManagedService {
         parser = propertyHandler.getString(MqttLoggerSettings.PARSER);
         isLogMultiple = propertyHandler.getBoolean(MqttLoggerSettings.MULTIPLE);
         shutdown();
+        maxMessageSize = propertyHandler.getInt(MqttLoggerSettings.MAX_MESSAGE_SIZE) * 1024;
+        lingerTime = propertyHandler.getInt(MqttLoggerSettings.LINGER_TIME);
         connect();
     }
 
     public void shutdown() {
+        // collected records are passed to the writer before it saves its buffer
+        stopLingerTimer();
+
         // Saves RAM buffer to file and terminates running reconnects
         mqttWriter.shutdown();
 
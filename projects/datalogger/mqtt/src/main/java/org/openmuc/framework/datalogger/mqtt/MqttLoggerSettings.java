@@ -21,6 +21,7 @@
 
 package org.openmuc.framework.datalogger.mqtt;
 
+import org.openmuc.framework.lib.mqtt.MqttSettings;
 import org.openmuc.framework.lib.osgi.config.GenericSettings;
 import org.openmuc.framework.lib.osgi.config.ServiceProperty;
 
@@ -33,6 +34,8 @@ public class MqttLoggerSettings extends GenericSettings {
     public static final String PASSWORD = "password";
     public static final String PARSER = "parser";
     public static final String MULTIPLE = "multiple";
+    public static final String MAX_MESSAGE_SIZE = "maxMessageSize";
+    public static final String LINGER_TIME = "lingerTime";
     public static final String MAX_FILE_COUNT = "maxFileCount";
     public static final String MAX_FILE_SIZE = "maxFileSize";
     public static final String MAX_BUFFER_SIZE = "maxBufferSize";
@@ -47,6 +50,7 @@ public class MqttLoggerSettings extends GenericSettings {
     public static final String RECOVERY_CHUNK_SIZE = "recoveryChunkSize";
     public static final String RECOVERY_DELAY = "recoveryDelay";
     public static final String WEB_SOCKET = "webSocket";
+    public static final String MAX_IN_FLIGHT = "maxInFlight";
 
     public MqttLoggerSettings() {
         super();
@@ -69,6 +73,11 @@ public class MqttLoggerSettings extends GenericSettings {
                 "directory for file buffered messages", "data/logger/mqtt", false));
         properties.put(MULTIPLE, new ServiceProperty(MULTIPLE,
                 "if true compose log records of different channels to one mqtt message", "false", true));
+        properties.put(MAX_MESSAGE_SIZE, new ServiceProperty(MAX_MESSAGE_SIZE,
+                "maximum size in kB of a message composed of multiple log records", "64", false));
+        properties.put(LINGER_TIME, new ServiceProperty(LINGER_TIME,
+                "time in ms log records are collected to compose one message per topic, 0 = every logging tick",
+                "0", false));
         properties.put(MAX_FILE_COUNT,
                 new ServiceProperty(MAX_FILE_COUNT, "file buffering: number of files to be created", "2", true));
         properties.put(MAX_FILE_SIZE,
@@ -76,9 +85,13 @@ public class MqttLoggerSettings extends GenericSettings {
         properties.put(MAX_BUFFER_SIZE,
                 new ServiceProperty(MAX_BUFFER_SIZE, "file buffering: buffer size in kB", "1000", true));
         properties.put(RECOVERY_CHUNK_SIZE, new ServiceProperty(RECOVERY_CHUNK_SIZE,
-                "number of messages which will be recovered simultaneously, 0 = disabled", "0", false));
+                "maximum number of recovered messages not yet acknowledged by the broker, 0 = maxInFlight", "0",
+                false));
         properties.put(RECOVERY_DELAY, new ServiceProperty(RECOVERY_DELAY,
-                "delay between recovery chunk sending in ms, 0 = disabled", "0", false));
+                "not used anymore, recovery is paced by the acknowledgements of the broker", "0", false));
+        properties.put(MAX_IN_FLIGHT, new ServiceProperty(MAX_IN_FLIGHT,
+                "maximum number of published messages not yet acknowledged by the broker",
+                String.valueOf(MqttSettings.DEFAULT_MAX_IN_FLIGHT), false));
 
         // properties for LAST WILL / FIRST WILL
         properties.put(LAST_WILL_TOPIC,
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.mqtt.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openmuc.framework.datalogger.mqtt.dto.MqttLogMsg;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+
+/**
+ * Collects the records of multiple logging ticks per topic so they share one message. A topic's records are released
+ * when the first of them waited the linger time or when they fill a message of the maximum size. With a linger time
+ * of 0 every tick is released at once, grouped by topic.
+ * <p>
+ * The methods are synchronized since records arrive from the logging thread and expired batches are released by a
+ * timer.
+ */
+public class MqttLogBatcher {
+
+    private final MqttLogMsgBuilder logMsgBuilder;
+    private final long lingerTime;
+    private final int maxMessageSize;
+    private final Map<String, Batch> batches = new LinkedHashMap<>();
+
+    private static class Batch {
+        final List<LoggingRecord> records = new ArrayList<>();
+        final long firstAddedAt;
+        int recordSize;
+
+        Batch(long firstAddedAt) {
+            this.firstAddedAt = firstAddedAt;
+        }
+    }
+
+    /**
+     * @param lingerTime
+     *            time in ms records wait for records of following ticks
+     * @param maxMessageSize
+     *            maximum payload in bytes of a message
+     */
+    public MqttLogBatcher(MqttLogMsgBuilder logMsgBuilder, long lingerTime, int maxMessageSize) {
+        this.logMsgBuilder = logMsgBuilder;
+        this.lingerTime = lingerTime;
+        this.maxMessageSize = maxMessageSize;
+    }
+
+    public MqttLogMsgBuilder getLogMsgBuilder() {
+        return logMsgBuilder;
+    }
+
+    /**
+     * Adds the records of a tick.
+     *
+     * @param now
+     *            current time in ms
+     * @return the messages of all topics whose batch is full or expired
+     */
+    public synchronized List<MqttLogMsg> add(List<LoggingRecord> loggingRecords, long now) {
+        for (Map.Entry<String, List<LoggingRecord>> topicRecords : logMsgBuilder.groupByTopic(loggingRecords)
+                .entrySet()) {
+            Batch batch = batches.get(topicRecords.getKey());
+            if (batch == null) {
+                batch = new Batch(now);
+                batch.recordSize = logMsgBuilder.estimateRecordSize(topicRecords.getValue().get(0));
+                batches.put(topicRecords.getKey(), batch);
+            }
+            batch.records.addAll(topicRecords.getValue());
+        }
+        return release(now, false);
+    }
+
+    /**
+     * @param now
+     *            current time in ms
+     * @return the messages of all topics whose batch expired
+     */
+    public synchronized List<MqttLogMsg> releaseExpired(long now) {
+        return release(now, false);
+    }
+
+    /**
+     * @return the messages of all collected records, e.g. before shutdown
+     */
+    public synchronized List<MqttLogMsg> releaseAll() {
+        return release(0, true);
+    }
+
+    public synchronized int getPendingRecords() {
+        int pending = 0;
+        for (Batch batch : batches.values()) {
+            pending += batch.records.size();
+        }
+        return pending;
+    }
+
+    private List<MqttLogMsg> release(long now, boolean all) {
+        List<MqttLogMsg> logMessages = new ArrayList<>();
+        Iterator<Map.Entry<String, Batch>> iterator = batches.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Batch> entry = iterator.next();
+            Batch batch = entry.getValue();
+            if (all || now - batch.firstAddedAt >= lingerTime
+                    || (long) batch.records.size() * batch.recordSize >= maxMessageSize) {
+                logMsgBuilder.buildTopicMsg(entry.getKey(), batch.records, logMessages);
+                iterator.remove();
+            }
+        }
+        return logMessages;
+    }
+
+}
@@ -23,8 +23,9 @@ package org.openmuc.framework.datalogger.mqtt.util;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 import org.openmuc.framework.datalogger.mqtt.dto.MqttLogChannel;
 import org.openmuc.framework.datalogger.mqtt.dto.MqttLogMsg;
@@ -38,12 +39,33 @@ public class MqttLogMsgBuilder {
 
     private static final Logger logger = LoggerFactory.getLogger(MqttLogMsgBuilder.class);
 
+    /**
+     * default maximum payload of a message composed of multiple records, used if no limit is given
+     */
+    public static final int DEFAULT_MAX_MESSAGE_SIZE = 64 * 1024;
+
     private final HashMap<String, MqttLogChannel> channelsToLog;
     private final ParserService parserService;
+    private final int maxMessageSize;
 
     public MqttLogMsgBuilder(HashMap<String, MqttLogChannel> channelsToLog, ParserService parserService) {
+        this(channelsToLog, parserService, DEFAULT_MAX_MESSAGE_SIZE);
+    }
+
+    /**
+     * @param maxMessageSize
+     *            maximum payload in bytes of a message composed of multiple records. A single record exceeding the
+     *            limit is still sent in a message of its own.
+     */
+    public MqttLogMsgBuilder(HashMap<String, MqttLogChannel> channelsToLog, ParserService parserService,
+            int maxMessageSize) {
         this.channelsToLog = channelsToLog;
         this.parserService = parserService;
+        this.maxMessageSize = maxMessageSize;
+    }
+
+    public ParserService getParserService() {
+        return parserService;
     }
 
     public List<MqttLogMsg> buildLogMsg(List<LoggingRecord> loggingRecordList, boolean isLogMultiple) {
@@ -73,52 +95,90 @@ public class MqttLogMsgBuilder {
     }
 
     private List<MqttLogMsg> logMultiple(List<LoggingRecord> loggingRecords) {
-
         List<MqttLogMsg> logMessages = new ArrayList<>();
+        for (Map.Entry<String, List<LoggingRecord>> topicRecords : groupByTopic(loggingRecords).entrySet()) {
+            buildTopicMsg(topicRecords.getKey(), topicRecords.getValue(), logMessages);
+        }
+        return logMessages;
+    }
 
-        if (hasDifferentTopics()) {
-
-            throw new UnsupportedOperationException(
-                    "logMultiple feature is an experimental feature: logMultiple=true is not possible with "
-                            + "different topics in logSettings. Set logMultiple=false OR leave it true "
-                            + "and assign same topic to all channels.");
-
-            // TODO make improvement: check only for given channels
+    /**
+     * Groups the records by the topic of their channel, records of channels which are not logged are dropped. The
+     * topics and the records of a topic keep the order of the given list.
+     */
+    public Map<String, List<LoggingRecord>> groupByTopic(List<LoggingRecord> loggingRecords) {
+        Map<String, List<LoggingRecord>> recordsByTopic = new LinkedHashMap<>();
+        for (LoggingRecord loggingRecord : loggingRecords) {
+            MqttLogChannel logChannel = channelsToLog.get(loggingRecord.getChannelId());
+            if (logChannel != null) {
+                recordsByTopic.computeIfAbsent(logChannel.topic, topic -> new ArrayList<>()).add(loggingRecord);
+            }
+        }
+        return recordsByTopic;
+    }
 
-            // TODO make improvement:
-            // CASE A - OK
-            // ch1, ch2, ch3 = 5 s - topic1
-            // CASE B - NOT SUPPORTED YET
-            // ch1, ch2 logInterval = 5 s - topic1
-            // ch3, ch3 logInterval = 10 s - topic2
-            // ch4 logInterval 20 s - topic 3
-            // if isLogMultiple=true, then group channels per topic
-            // or default: log warning and use logSingle instead
+    /**
+     * Serializes records of the same topic into as few messages as possible, each at most {@code maxMessageSize}
+     * bytes.
+     *
+     * @param topic
+     *            topic of all records
+     * @param loggingRecords
+     *            records to send
+     * @param logMessages
+     *            receives the messages
+     */
+    public void buildTopicMsg(String topic, List<LoggingRecord> loggingRecords, List<MqttLogMsg> logMessages) {
+        if (loggingRecords.isEmpty()) {
+            return;
+        }
+        byte[] message;
+        try {
+            message = parserService.serialize(loggingRecords);
+        } catch (SerializationException e) {
+            logger.error("failed to parse records {}", e.getMessage());
+            return;
+        }
 
+        int size = loggingRecords.size();
+        if (message.length <= maxMessageSize || size == 1) {
+            logMessages.add(new MqttLogMsg(channelIds(loggingRecords), message, topic));
+            return;
         }
-        else {
-            try {
-                // since all topics are the same, get the topic of
-                String topic = channelsToLog.get(loggingRecords.get(0).getChannelId()).topic;
-                byte[] message = parserService.serialize(loggingRecords);
-                String channelIds = loggingRecords.stream()
-                        .map(record -> record.getChannelId())
-                        .collect(Collectors.toList())
-                        .toString();
-                logMessages.add(new MqttLogMsg(channelIds, message, topic));
-            } catch (SerializationException e) {
-                logger.error("failed to parse records {}", e.getMessage());
-            }
 
+        // split into chunks which fit assuming records of equal size, chunks still too large are split again
+        int chunks = (int) Math.min(size, (message.length + (long) maxMessageSize - 1) / maxMessageSize + 1);
+        int chunkSize = (size + chunks - 1) / chunks;
+        for (int from = 0; from < size; from += chunkSize) {
+            buildTopicMsg(topic, loggingRecords.subList(from, Math.min(size, from + chunkSize)), logMessages);
         }
+    }
 
-        return logMessages;
+    /**
+     * Estimates the payload of one record of a multiple record message, used to decide when a batch of records is
+     * full.
+     *
+     * @return payload of a message of the record, at least 1
+     */
+    public int estimateRecordSize(LoggingRecord loggingRecord) {
+        List<LoggingRecord> single = new ArrayList<>(1);
+        single.add(loggingRecord);
+        try {
+            return Math.max(1, parserService.serialize(single).length);
+        } catch (SerializationException e) {
+            return 1;
+        }
     }
 
-    private boolean hasDifferentTopics() {
-        long distinct = channelsToLog.values().stream().map(channel -> channel.topic).distinct().count();
-        // If the count of this stream is smaller or equal to 1, then all the elements are equal. so > 1 means unequal
-        return distinct > 1;
+    private static String channelIds(List<LoggingRecord> loggingRecords) {
+        StringBuilder sb = new StringBuilder().append('[');
+        for (int i = 0; i < loggingRecords.size(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(loggingRecords.get(i).getChannelId());
+        }
+        return sb.append(']').toString();
     }
 
 }
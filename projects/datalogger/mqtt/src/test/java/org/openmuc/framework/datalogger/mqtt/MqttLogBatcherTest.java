@@ -0,0 +1,143 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.mqtt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.datalogger.mqtt.dto.MqttLogChannel;
+import org.openmuc.framework.datalogger.mqtt.dto.MqttLogMsg;
+import org.openmuc.framework.datalogger.mqtt.util.MqttLogBatcher;
+import org.openmuc.framework.datalogger.mqtt.util.MqttLogMsgBuilder;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+import org.openmuc.framework.lib.parser.openmuc.OpenmucParserServiceImpl;
+
+public class MqttLogBatcherTest {
+
+    private static final int CHANNELS = 1000;
+    private static final int TOPICS = 10;
+    private static final long LOGGING_INTERVAL = 1000;
+
+    private final HashMap<String, MqttLogChannel> channelsToLog = new HashMap<>();
+
+    @BeforeEach
+    public void setup() {
+        for (int i = 0; i < CHANNELS; i++) {
+            LogChannel logChannel = Mockito.mock(LogChannel.class);
+            Mockito.when(logChannel.getId()).thenReturn("channel" + i);
+            Mockito.when(logChannel.getLoggingSettings()).thenReturn("mqttlogger:topic=topic" + (i % TOPICS));
+            channelsToLog.put(logChannel.getId(), new MqttLogChannel(logChannel));
+        }
+    }
+
+    @Test
+    public void ticksWithinLingerTimeShareOneMessagePerTopic() {
+        MqttLogBatcher batcher = new MqttLogBatcher(newBuilder(1024 * 1024), 10 * LOGGING_INTERVAL, 1024 * 1024);
+
+        List<MqttLogMsg> messages = new ArrayList<>();
+        long timestamp = 0;
+        for (int tick = 0; tick < 10; tick++) {
+            messages.addAll(batcher.add(tick(timestamp), timestamp));
+            timestamp += LOGGING_INTERVAL;
+        }
+        assertEquals(0, messages.size());
+        assertEquals(10 * CHANNELS, batcher.getPendingRecords());
+
+        messages.addAll(batcher.add(tick(timestamp), timestamp));
+
+        // 11 ticks of 1000 channels in 10 messages instead of 11000
+        assertEquals(TOPICS, messages.size());
+        assertEquals(0, batcher.getPendingRecords());
+        assertEquals(11 * CHANNELS, countRecords(messages));
+    }
+
+    @Test
+    public void expiredBatchesAreReleasedWithoutNewTick() {
+        MqttLogBatcher batcher = new MqttLogBatcher(newBuilder(1024 * 1024), 5000, 1024 * 1024);
+
+        batcher.add(tick(0), 0);
+        assertEquals(0, batcher.releaseExpired(4999).size());
+        assertEquals(TOPICS, batcher.releaseExpired(5000).size());
+        assertEquals(0, batcher.getPendingRecords());
+    }
+
+    @Test
+    public void fullBatchIsReleasedBeforeLingerTime() {
+        int maxMessageSize = 16 * 1024;
+        MqttLogBatcher batcher = new MqttLogBatcher(newBuilder(maxMessageSize), 3600_000, maxMessageSize);
+
+        List<MqttLogMsg> messages = new ArrayList<>();
+        for (int tick = 0; tick < 10; tick++) {
+            messages.addAll(batcher.add(tick(tick * LOGGING_INTERVAL), tick * LOGGING_INTERVAL));
+        }
+        messages.addAll(batcher.releaseAll());
+
+        assertTrue(messages.size() > TOPICS);
+        for (MqttLogMsg message : messages) {
+            assertTrue(message.message.length <= maxMessageSize);
+        }
+        assertEquals(10 * CHANNELS, countRecords(messages));
+    }
+
+    @Test
+    public void zeroLingerTimeReleasesEveryTick() {
+        MqttLogBatcher batcher = new MqttLogBatcher(newBuilder(1024 * 1024), 0, 1024 * 1024);
+
+        assertEquals(TOPICS, batcher.add(tick(0), 0).size());
+        assertEquals(0, batcher.getPendingRecords());
+    }
+
+    private MqttLogMsgBuilder newBuilder(int maxMessageSize) {
+        return new MqttLogMsgBuilder(channelsToLog, new OpenmucParserServiceImpl(), maxMessageSize);
+    }
+
+    private static List<LoggingRecord> tick(long timestamp) {
+        List<LoggingRecord> records = new ArrayList<>(CHANNELS);
+        for (int i = 0; i < CHANNELS; i++) {
+            records.add(new LoggingRecord("channel" + i, new Record(new DoubleValue(i), timestamp)));
+        }
+        return records;
+    }
+
+    private static int countRecords(List<MqttLogMsg> messages) {
+        int records = 0;
+        for (MqttLogMsg message : messages) {
+            for (byte b : message.message) {
+                if (b == '\n') {
+                    records++;
+                }
+            }
+        }
+        return records;
+    }
+
+}
@@ -22,12 +22,12 @@
 package org.openmuc.framework.datalogger.mqtt;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
-import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
@@ -225,6 +225,7 @@ public class MqttLogMsgBuilderTest {
         // 1. prepare channels to log - equal to logger.setChannelsToLog(...) call
         HashMap<String, MqttLogChannel> channelsToLog = new HashMap<>();
         channelsToLog.put(logChannelMockA.getId(), new MqttLogChannel(logChannelMockA));
+        channelsToLog.put(logChannelMockB.getId(), new MqttLogChannel(logChannelMockB));
         channelsToLog.put(logChannelMockC.getId(), new MqttLogChannel(logChannelMockC));
 
         // 2. apply settings to logger
@@ -234,14 +235,47 @@ public class MqttLogMsgBuilderTest {
         List<LoggingRecord> records = new ArrayList<>();
         records.add(new LoggingRecord(logChannelMockA.getId(), record3));
         records.add(new LoggingRecord(logChannelMockC.getId(), record7));
+        records.add(new LoggingRecord(logChannelMockB.getId(), record5));
 
         // 4. equal to calling logger.log(..) method
         MqttLogMsgBuilder builder = new MqttLogMsgBuilder(channelsToLog, parser);
+        List<MqttLogMsg> messages = builder.buildLogMsg(records, isLogMultiple);
+
+        printDebug(isDebugEnabled, messages);
 
-        Assertions.assertThrows(UnsupportedOperationException.class, () -> {
-            List<MqttLogMsg> messages = builder.buildLogMsg(records, isLogMultiple);
-        });
+        // one message per topic, in the order the topics appear in the records
+        assertEquals(2, messages.size());
+        assertEquals(TOPIC_1, messages.get(0).topic);
+        assertEquals("[ChannelA, ChannelB]", messages.get(0).channelId);
+        assertEquals("{\"timestamp\":" + TIMESTAMP + ",\"flag\":\"VALID\",\"value\":3.0}\n" + "{\"timestamp\":"
+                + TIMESTAMP + ",\"flag\":\"VALID\",\"value\":5.0}\n", new String(messages.get(0).message));
+        assertEquals(TOPIC_2, messages.get(1).topic);
+        assertEquals("{\"timestamp\":" + TIMESTAMP + ",\"flag\":\"VALID\",\"value\":7.0}\n",
+                new String(messages.get(1).message));
+    }
+
+    @Test
+    public void test_logManyChannels_multipleTrue_splitByMaxMessageSize() {
 
+        HashMap<String, MqttLogChannel> channelsToLog = new HashMap<>();
+        channelsToLog.put(logChannelMockA.getId(), new MqttLogChannel(logChannelMockA));
+
+        List<LoggingRecord> records = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            records.add(new LoggingRecord(logChannelMockA.getId(), record3));
+        }
+        int recordSize = ("{\"timestamp\":" + TIMESTAMP + ",\"flag\":\"VALID\",\"value\":3.0}\n").length();
+
+        MqttLogMsgBuilder builder = new MqttLogMsgBuilder(channelsToLog, parser, 10 * recordSize);
+        List<MqttLogMsg> messages = builder.buildLogMsg(records, true);
+
+        int recordCount = 0;
+        for (MqttLogMsg message : messages) {
+            assertTrue(message.message.length <= 10 * recordSize);
+            recordCount += message.message.length / recordSize;
+        }
+        assertEquals(100, recordCount);
+        assertEquals(10, messages.size());
     }
 
     private void printDebug(boolean isEnabled, List<MqttLogMsg> messages) {
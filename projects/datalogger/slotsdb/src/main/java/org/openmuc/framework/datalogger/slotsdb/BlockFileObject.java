@@ -0,0 +1,365 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.slotsdb;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Vector;
+
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+
+/**
+ * A <code>.slots</code> file in the block format: a {@value #HEADER_SIZE} byte header followed by compressed
+ * {@link ValueBlock}s of {@link #BLOCK_SLOTS} slots each.
+ * 
+ * <pre>
+ * long magic number, distinguishes the format from files starting with a timestamp
+ * long start timestamp
+ * long storage period
+ * int  slots per block
+ * int  reserved
+ * </pre>
+ * 
+ * All blocks but the last one are full and never change. The last block is kept in memory while it is appended to and
+ * rewritten in place on {@link #flush()}. Reads and summaries of full blocks only read the blocks which overlap the
+ * requested range, summaries of blocks which are completely in the range only read the block header.
+ */
+final class BlockFileObject extends FileObject {
+
+    static final long MAGIC = 0xFFFF534C4F545301L;
+    static final int HEADER_SIZE = 32;
+    static final int BLOCK_SLOTS = 256;
+
+    private int blockSlots = BLOCK_SLOTS;
+    /*
+     * Offsets of the full blocks. The last block starts at committedLength.
+     */
+    private long[] blockOffsets = new long[8];
+    private int fullBlocks;
+    private int lastBlockSize;
+    /*
+     * The last block, loaded when the file is appended to.
+     */
+    private ValueBlock lastBlock;
+    private boolean dirty;
+
+    BlockFileObject(File file) throws IOException {
+        super(file);
+        long length = dataFile.length();
+        if (length < HEADER_SIZE) {
+            return;
+        }
+        try (FileChannel fileChannel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ)) {
+            // the block headers are scanned through a mapping to not read every header with a system call
+            ByteBuffer content = fileChannel.map(MapMode.READ_ONLY, 0, length);
+            content.getLong();
+            startTimeStamp = content.getLong();
+            storagePeriod = content.getLong();
+            blockSlots = content.getInt();
+
+            /*
+             * Scan the block headers. An incomplete last block (e.g. after a power failure while the block was
+             * rewritten) is ignored.
+             */
+            int position = HEADER_SIZE;
+            committedLength = position;
+            while (position + ValueBlock.HEADER_SIZE <= length) {
+                content.position(position);
+                int blockLength = ValueBlock.length(content);
+                int size = ValueBlock.size(content);
+                if (position + (long) blockLength > length || size <= 0 || size > blockSlots) {
+                    break;
+                }
+                if (size < blockSlots) {
+                    lastBlockSize = size;
+                    break;
+                }
+                addBlockOffset(position);
+                position += blockLength;
+                committedLength = position;
+            }
+        }
+    }
+
+    @Override
+    public void createFileAndHeader(long startTimeStamp, long stepIntervall) throws IOException {
+        if (dataFile.exists() && dataFile.length() >= HEADER_SIZE) {
+            return;
+        }
+        dataFile.getParentFile().mkdirs();
+        if (dataFile.exists()) {
+            // file corrupted (header incomplete)
+            close();
+            dataFile.delete();
+        }
+        dataFile.createNewFile();
+        this.startTimeStamp = startTimeStamp;
+        storagePeriod = stepIntervall;
+        blockSlots = BLOCK_SLOTS;
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putLong(MAGIC);
+        header.putLong(startTimeStamp);
+        header.putLong(stepIntervall);
+        header.putInt(blockSlots);
+        header.putInt(0);
+        header.flip();
+        write(header, 0);
+        committedLength = HEADER_SIZE;
+        fullBlocks = 0;
+        lastBlockSize = 0;
+        lastBlock = new ValueBlock(blockSlots);
+        appending = true;
+    }
+
+    private void addBlockOffset(long offset) {
+        if (fullBlocks == blockOffsets.length) {
+            blockOffsets = Arrays.copyOf(blockOffsets, fullBlocks * 2);
+        }
+        blockOffsets[fullBlocks++] = offset;
+    }
+
+    private long slotCount() {
+        return (long) fullBlocks * blockSlots + lastBlockSize;
+    }
+
+    /*
+     * Rounds the timestamp to the closest slot like SlotFileObject.
+     */
+    private long slotIndex(long timestamp) {
+        double pos = (double) (timestamp - startTimeStamp) / storagePeriod;
+        if (pos % 1 != 0) {
+            pos = Math.round(pos);
+        }
+        return (long) pos;
+    }
+
+    @Override
+    public long getTimestampForLatestValue() {
+        return startTimeStamp + (slotCount() - 1) * storagePeriod;
+    }
+
+    @Override
+    public void append(double value, long timestamp, byte flag) throws IOException {
+        if (timestamp < startTimeStamp) {
+            return;
+        }
+        long slot = slotIndex(timestamp);
+        if (slot < slotCount()) {
+            // value has already been stored for this timeslot
+            return;
+        }
+        loadLastBlock();
+
+        /*
+         * there are missing some values missing -> fill up with NaN!
+         */
+        while (slotCount() < slot) {
+            addSlot(Double.NaN, Flag.NO_VALUE_RECEIVED_YET.getCode());
+        }
+        addSlot(value, flag);
+        /*
+         * Data will be written to disk after calling flush() method.
+         */
+    }
+
+    private void loadLastBlock() throws IOException {
+        if (lastBlock != null) {
+            return;
+        }
+        long end = committedLength;
+        if (lastBlockSize > 0) {
+            ByteBuffer block = readLastBlock();
+            lastBlock = ValueBlock.decode(block, blockSlots);
+            end += lastBlock.encodedLength();
+        }
+        else {
+            lastBlock = new ValueBlock(blockSlots);
+        }
+        // drop an incomplete block after the last complete one
+        if (channel().size() > end) {
+            channel().truncate(end);
+        }
+        appending = true;
+    }
+
+    private void addSlot(double value, byte flag) throws IOException {
+        lastBlock.add(value, flag);
+        lastBlockSize++;
+        dirty = true;
+        if (lastBlock.isFull()) {
+            long offset = committedLength;
+            int length = lastBlock.encodedLength();
+            flush();
+            addBlockOffset(offset);
+            committedLength = offset + length;
+            lastBlock = new ValueBlock(blockSlots);
+            lastBlockSize = 0;
+        }
+    }
+
+    @Override
+    public Record read(long timestamp) throws IOException {
+        timestamp = getClosestTimestamp(timestamp); // round to: startTimestamp
+        // + n*stepIntervall
+        if (timestamp >= startTimeStamp && timestamp <= getTimestampForLatestValue()) {
+            long slot = slotIndex(timestamp);
+            BlockReader reader = new BlockReader();
+            reader.load((int) (slot / blockSlots));
+            int index = (int) (slot % blockSlots);
+            double value = reader.values[index];
+            if (!Double.isNaN(value)) {
+                return new Record(new DoubleValue(value), timestamp, Flag.newFlag(reader.flags[index]));
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public List<Record> read(long start, long end) throws IOException {
+        List<Record> toReturn = new Vector<>();
+        long startSlot = Math.max(0, slotIndex(start));
+        long endSlot = Math.min(slotCount() - 1, slotIndex(end));
+        if (start > end || startSlot > endSlot) {
+            return toReturn;
+        }
+
+        BlockReader reader = new BlockReader();
+        long slot = startSlot;
+        while (slot <= endSlot) {
+            int block = (int) (slot / blockSlots);
+            reader.load(block);
+            long blockEnd = Math.min(endSlot, (long) block * blockSlots + reader.size - 1);
+            for (; slot <= blockEnd; slot++) {
+                int index = (int) (slot % blockSlots);
+                double value = reader.values[index];
+                if (!Double.isNaN(value)) {
+                    toReturn.add(new Record(new DoubleValue(value), startTimeStamp + slot * storagePeriod,
+                            Flag.newFlag(reader.flags[index])));
+                }
+            }
+        }
+        return toReturn;
+    }
+
+    @Override
+    public ValueSummary summarize(long start, long end) throws IOException {
+        ValueSummary summary = new ValueSummary();
+        long startSlot = Math.max(0, slotIndex(start));
+        long endSlot = Math.min(slotCount() - 1, slotIndex(end));
+        if (start > end || startSlot > endSlot) {
+            return summary;
+        }
+
+        BlockReader reader = new BlockReader();
+        long slot = startSlot;
+        while (slot <= endSlot) {
+            int block = (int) (slot / blockSlots);
+            long blockStart = (long) block * blockSlots;
+            long blockEnd = blockStart + blockSlots - 1;
+            if (block < fullBlocks && slot == blockStart && blockEnd <= endSlot) {
+                // block is completely in the range, the header is enough
+                summary.add(ValueBlock.summary(readCommitted(blockOffsets[block], ValueBlock.HEADER_SIZE)));
+                slot = blockEnd + 1;
+                continue;
+            }
+            reader.load(block);
+            blockEnd = Math.min(endSlot, blockStart + reader.size - 1);
+            for (; slot <= blockEnd; slot++) {
+                double value = reader.values[(int) (slot % blockSlots)];
+                if (!Double.isNaN(value)) {
+                    summary.add(value);
+                }
+            }
+        }
+        return summary;
+    }
+
+    private ByteBuffer fullBlock(int block) throws IOException {
+        long offset = blockOffsets[block];
+        long end = block + 1 < fullBlocks ? blockOffsets[block + 1] : committedLength;
+        return readCommitted(offset, (int) (end - offset));
+    }
+
+    private ByteBuffer readLastBlock() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(ValueBlock.HEADER_SIZE);
+        readFully(channel(), header, committedLength);
+        header.flip();
+        ByteBuffer block = ByteBuffer.allocate(ValueBlock.length(header));
+        readFully(channel(), block, committedLength);
+        block.flip();
+        return block;
+    }
+
+    /**
+     * Decodes blocks for reading, reusing its arrays.
+     */
+    private final class BlockReader {
+
+        private final double[] values = new double[blockSlots];
+        private final byte[] flags = new byte[blockSlots];
+        private int size;
+
+        void load(int block) throws IOException {
+            if (block < fullBlocks) {
+                size = ValueBlock.decode(fullBlock(block), values, flags);
+            }
+            else if (lastBlock != null) {
+                size = lastBlock.size();
+                for (int i = 0; i < size; i++) {
+                    values[i] = lastBlock.value(i);
+                    flags[i] = lastBlock.flag(i);
+                }
+            }
+            else {
+                size = ValueBlock.decode(readLastBlock(), values, flags);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        super.close();
+        lastBlock = null;
+        appending = false;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (!dirty) {
+            return;
+        }
+        ByteBuffer block = ByteBuffer.allocate(lastBlock.encodedLength());
+        lastBlock.writeTo(block);
+        block.flip();
+        write(block, committedLength);
+        dirty = false;
+    }
+}
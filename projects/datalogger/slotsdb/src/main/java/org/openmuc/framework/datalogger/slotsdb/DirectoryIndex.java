@@ -0,0 +1,253 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.slotsdb;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * In-memory index of the files of a SlotsDB: the day folders and, per encoded label, the start timestamps of its files
+ * with the day folder they are stored in.
+ * <p>
+ * The index is built from the directory tree once on startup and then kept up to date by the {@link FileObjectProxy}
+ * when files are created and day folders are deleted, so looking up the files of a time range does not list
+ * directories. The files of a label are only modified while the label is locked for writing or the whole database is
+ * locked.
+ */
+final class DirectoryIndex {
+
+    private final ConcurrentSkipListSet<String> days = new ConcurrentSkipListSet<>();
+    private final ConcurrentHashMap<String, LabelFiles> labels = new ConcurrentHashMap<>();
+
+    /**
+     * A file of a label.
+     */
+    static final class FileEntry {
+
+        private final String day;
+        private final long startTimeStamp;
+
+        FileEntry(String day, long startTimeStamp) {
+            this.day = day;
+            this.startTimeStamp = startTimeStamp;
+        }
+
+        String getDay() {
+            return day;
+        }
+
+        long getStartTimeStamp() {
+            return startTimeStamp;
+        }
+    }
+
+    /*
+     * Files of one label sorted by start timestamp. Usually there is one file per day.
+     */
+    private static final class LabelFiles {
+
+        private long[] starts = new long[4];
+        private String[] days = new String[4];
+        private int size;
+
+        void add(String day, long start) {
+            int index = search(start);
+            if (index >= 0) {
+                return;
+            }
+            index = -index - 1;
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                days = Arrays.copyOf(days, size * 2);
+            }
+            System.arraycopy(starts, index, starts, index + 1, size - index);
+            System.arraycopy(days, index, days, index + 1, size - index);
+            starts[index] = start;
+            days[index] = day;
+            size++;
+        }
+
+        void removeDay(String day) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (!days[i].equals(day)) {
+                    starts[kept] = starts[i];
+                    days[kept] = days[i];
+                    kept++;
+                }
+            }
+            Arrays.fill(days, kept, size, null);
+            size = kept;
+        }
+
+        int search(long start) {
+            return Arrays.binarySearch(starts, 0, size, start);
+        }
+
+        /*
+         * index of the last file starting at or before timestamp, -1 if there is none
+         */
+        int floor(long timestamp) {
+            int index = search(timestamp);
+            return index >= 0 ? index : -index - 2;
+        }
+
+        FileEntry get(int index) {
+            return new FileEntry(days[index], starts[index]);
+        }
+    }
+
+    /**
+     * Builds the index from the files in <code>rootNode</code>.
+     */
+    static DirectoryIndex load(File rootNode) {
+        DirectoryIndex index = new DirectoryIndex();
+        File[] dayFolders = rootNode.listFiles();
+        if (dayFolders == null) {
+            return index;
+        }
+        for (File dayFolder : dayFolders) {
+            String day = dayFolder.getName();
+            if (!dayFolder.isDirectory() || !isDay(day)) {
+                continue;
+            }
+            index.days.add(day);
+            File[] labelFolders = dayFolder.listFiles();
+            if (labelFolders == null) {
+                continue;
+            }
+            for (File labelFolder : labelFolders) {
+                String[] files = labelFolder.list();
+                if (files == null) {
+                    continue;
+                }
+                for (String file : files) {
+                    if (!file.endsWith(SlotsDb.FILE_EXTENSION)) {
+                        continue;
+                    }
+                    try {
+                        long start = Long.parseLong(
+                                file.substring(0, file.length() - SlotsDb.FILE_EXTENSION.length()));
+                        index.labelFiles(labelFolder.getName()).add(day, start);
+                    } catch (NumberFormatException e) {
+                        // not a file of the database
+                    }
+                }
+            }
+        }
+        return index;
+    }
+
+    private static boolean isDay(String name) {
+        if (name.length() != 8) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (!Character.isDigit(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private LabelFiles labelFiles(String label) {
+        return labels.computeIfAbsent(label, key -> new LabelFiles());
+    }
+
+    /**
+     * Adds a new file of a label.
+     */
+    void add(String day, String label, long startTimeStamp) {
+        days.add(day);
+        labelFiles(label).add(day, startTimeStamp);
+    }
+
+    /**
+     * Removes a deleted day folder and its files.
+     */
+    void removeDay(String day) {
+        days.remove(day);
+        for (LabelFiles files : labels.values()) {
+            files.removeDay(day);
+        }
+        labels.values().removeIf(files -> files.size == 0);
+    }
+
+    /**
+     * @return the days in ascending order
+     */
+    NavigableSet<String> getDays() {
+        return days;
+    }
+
+    /**
+     * Returns the files of a label which may contain data between start and end in ascending order: the last file
+     * starting at or before start and all files starting until end.
+     */
+    List<FileEntry> getFiles(String label, long start, long end) {
+        LabelFiles files = labels.get(label);
+        if (files == null || start > end) {
+            return Collections.emptyList();
+        }
+        int first = Math.max(0, files.floor(start));
+        int last = files.floor(end);
+        List<FileEntry> entries = new ArrayList<>(Math.max(0, last - first + 1));
+        for (int i = first; i <= last; i++) {
+            entries.add(files.get(i));
+        }
+        return entries;
+    }
+
+    /**
+     * @return the file of a label which may contain timestamp or <code>null</code>
+     */
+    FileEntry getFile(String label, long timestamp) {
+        LabelFiles files = labels.get(label);
+        if (files == null) {
+            return null;
+        }
+        int index = files.floor(timestamp);
+        return index < 0 ? null : files.get(index);
+    }
+
+    /**
+     * @return the files of a label in its latest day folder in ascending order
+     */
+    List<FileEntry> getLatestDayFiles(String label) {
+        LabelFiles files = labels.get(label);
+        if (files == null || files.size == 0) {
+            return Collections.emptyList();
+        }
+        String day = files.days[files.size - 1];
+        List<FileEntry> entries = new ArrayList<>(1);
+        for (int i = files.size - 1; i >= 0 && files.days[i].equals(day); i--) {
+            entries.add(0, files.get(i));
+        }
+        return entries;
+    }
+}
@@ -21,160 +21,118 @@
 
 package org.openmuc.framework.datalogger.slotsdb;
 
-import java.io.BufferedOutputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.Collections;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
-import java.util.Vector;
 
-import org.openmuc.framework.data.DoubleValue;
-import org.openmuc.framework.data.Flag;
 import org.openmuc.framework.data.Record;
 
-public final class FileObject {
+/**
+ * A file of a SlotsDB containing the values of one channel with a fixed storage period, starting at the timestamp in
+ * the file name.
+ * <p>
+ * There are two file formats. {@link SlotFileObject} stores one uncompressed slot per storage period,
+ * {@link BlockFileObject} stores compressed blocks of slots. Both are read with {@link #open(File)}, new files are
+ * created in the format configured by {@link SlotsDb#FILE_FORMAT}.
+ * <p>
+ * Committed parts of a file are read through a read only mapping of the file and with positional reads for the part
+ * written since the file was mapped, so reading never closes or flushes the writer. The owner has to make sure that
+ * appends are not concurrent with other calls on the same file.
+ */
+public abstract class FileObject {
 
-    private long startTimeStamp; // byte 0-7 in file (cached)
-    private long storagePeriod; // byte 8-15 in file (cached)
-    private final File dataFile;
-    private DataOutputStream dos;
-    private BufferedOutputStream bos;
-    private FileOutputStream fos;
-    private DataInputStream dis;
-    private FileInputStream fis;
-    private boolean canWrite;
-    private boolean canRead;
     /*
-     * File length will be cached to avoid system calls an improve I/O Performance
+     * A file which is still written is mapped again when this many bytes have been written since it was mapped. The
+     * part in between is read with positional reads.
      */
-    private long length = 0;
+    private static final long REMAP_THRESHOLD = 64 * 1024;
 
-    public FileObject(String filename) throws IOException {
-        canWrite = false;
-        canRead = false;
-        dataFile = new File(filename);
-        length = dataFile.length();
-        if (dataFile.exists() && length >= 16) {
-            /*
-             * File already exists -> get file Header (startTime and step-frequency) TODO: compare to starttime and
-             * frequency in constructor! new file needed? update to file-array!
-             */
-            try {
-                fis = new FileInputStream(dataFile);
-                try {
-                    dis = new DataInputStream(fis);
-                    try {
-                        startTimeStamp = dis.readLong();
-                        storagePeriod = dis.readLong();
-                    } finally {
-                        if (dis != null) {
-                            dis.close();
-                            dis = null;
-                        }
-                    }
-                } finally {
-                    if (dis != null) {
-                        dis.close();
-                        dis = null;
-                    }
-                }
-            } finally {
-                if (fis != null) {
-                    fis.close();
-                    fis = null;
-                }
-            }
-        }
-    }
+    protected final File dataFile;
+    protected long startTimeStamp;
+    protected long storagePeriod;
 
-    public FileObject(File file) throws IOException {
-        canWrite = false;
-        canRead = false;
-        dataFile = file;
-        length = dataFile.length();
-        if (dataFile.exists() && length >= 16) {
-            /*
-             * File already exists -> get file Header (startTime and step-frequency)
-             */
-            fis = new FileInputStream(dataFile);
-            try {
-                dis = new DataInputStream(fis);
-                try {
-                    startTimeStamp = dis.readLong();
-                    storagePeriod = dis.readLong();
-                } finally {
-                    if (dis != null) {
-                        dis.close();
-                        dis = null;
-                    }
-                }
-            } finally {
-                if (fis != null) {
-                    fis.close();
-                    fis = null;
-                }
-            }
+    private FileChannel channel;
+    private MappedByteBuffer mapping;
+    /*
+     * Bytes were written to the channel which are not forced to the storage device yet.
+     */
+    private boolean unforced;
+    /*
+     * Length of the part of the file on disk which does not change anymore.
+     */
+    protected long committedLength;
+    /*
+     * Set by subclasses when the file is appended to. Files which are appended to are not mapped on every read.
+     */
+    protected boolean appending;
 
-        }
+    protected FileObject(File dataFile) {
+        this.dataFile = dataFile;
     }
 
-    private void enableOutput() throws IOException {
-        /*
-         * Close Input Streams, for enabling output.
-         */
-        if (dis != null) {
-            dis.close();
-            dis = null;
+    /**
+     * Opens an existing file in the format of its header.
+     * 
+     * @param file
+     *            the file
+     * @return the file object or <code>null</code> if the file has no complete header
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public static FileObject open(File file) throws IOException {
+        long length = file.length();
+        if (length < SlotFileObject.HEADER_SIZE) {
+            return null;
         }
-        if (fis != null) {
-            fis.close();
-            fis = null;
+        long firstLong;
+        try (FileChannel headerChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(8);
+            readFully(headerChannel, header, 0);
+            header.flip();
+            firstLong = header.getLong();
         }
-
-        /*
-         * enabling output
-         */
-        if (fos == null || dos == null || bos == null) {
-            fos = new FileOutputStream(dataFile, true);
-            bos = new BufferedOutputStream(fos);
-            dos = new DataOutputStream(bos);
+        if (firstLong == BlockFileObject.MAGIC) {
+            if (length < BlockFileObject.HEADER_SIZE) {
+                return null;
+            }
+            return new BlockFileObject(file);
         }
-        canRead = false;
-        canWrite = true;
+        return new SlotFileObject(file);
     }
 
-    private void enableInput() throws IOException {
-        /*
-         * Close Output Streams for enabling input.
-         */
-        if (dos != null) {
-            dos.flush();
-            dos.close();
-            dos = null;
-        }
-        if (bos != null) {
-            bos.close();
-            bos = null;
-        }
-        if (fos != null) {
-            fos.close();
-            fos = null;
-        }
+    public static FileObject open(String filename) throws IOException {
+        return open(new File(filename));
+    }
 
-        /*
-         * enabling input
-         */
-        if (fis == null || dis == null) {
-            fis = new FileInputStream(dataFile);
-            dis = new DataInputStream(fis);
+    /**
+     * Creates a new file in the configured format.
+     * 
+     * @param filename
+     *            name of the file
+     * @param startTimeStamp
+     *            for file header
+     * @param storagePeriod
+     *            for file header
+     * @return the file object
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public static FileObject create(String filename, long startTimeStamp, long storagePeriod) throws IOException {
+        FileObject fileObject;
+        if (SlotsDb.FILE_FORMAT_SLOTS.equals(SlotsDb.FILE_FORMAT)) {
+            fileObject = new SlotFileObject(filename);
+        }
+        else {
+            fileObject = new BlockFileObject(new File(filename));
         }
-        canWrite = false;
-        canRead = true;
+        fileObject.createFileAndHeader(startTimeStamp, storagePeriod);
+        return fileObject;
     }
 
     /**
@@ -205,114 +163,86 @@ public final class FileObject {
      * @throws IOException
      *             if an I/O error occurs.
      */
-    public void createFileAndHeader(long startTimeStamp, long stepIntervall) throws IOException {
-        if (!dataFile.exists() || length < 16) {
-            dataFile.getParentFile().mkdirs();
-            if (dataFile.exists() && length < 16) {
-                dataFile.delete(); // file corrupted (header shorter that 16
-            }
-            // bytes)
-            dataFile.createNewFile();
-            this.startTimeStamp = startTimeStamp;
-            storagePeriod = stepIntervall;
+    public abstract void createFileAndHeader(long startTimeStamp, long stepIntervall) throws IOException;
 
-            /*
-             * Do not close Output streams, because after writing the header -> data will follow!
-             */
-            fos = new FileOutputStream(dataFile);
-            bos = new BufferedOutputStream(fos);
-            dos = new DataOutputStream(bos);
-            dos.writeLong(startTimeStamp);
-            dos.writeLong(stepIntervall);
-            dos.flush();
-            length += 16; /* wrote 2*8 Bytes */
-            canWrite = true;
-            canRead = false;
-        }
-    }
+    public abstract void append(double value, long timestamp, byte flag) throws IOException;
 
-    public void append(double value, long timestamp, byte flag) throws IOException {
-        long writePosition = getBytePosition(timestamp);
-        if (writePosition == length) {
-            /*
-             * value for this timeslot has not been saved yet "AND" some value has been stored in last timeslot
-             */
-            if (!canWrite) {
-                enableOutput();
-            }
+    public abstract long getTimestampForLatestValue();
 
-            dos.writeDouble(value);
-            dos.writeByte(flag);
-            length += 9;
-        }
-        else {
-            if (length > writePosition) {
-                /*
-                 * value has already been stored for this timeslot -> handle? AVERAGE, MIN, MAX, LAST speichern?!
-                 */
-            }
-            else {
-                /*
-                 * there are missing some values missing -> fill up with NaN!
-                 */
-                if (!canWrite) {
-                    enableOutput();
-                }
-                long rowsToFillWithNan = (writePosition - length) / 9;// TODO:
-                                                                      // stimmt
-                                                                      // Berechnung?
-                for (int i = 0; i < rowsToFillWithNan; i++) {
-                    dos.writeDouble(Double.NaN); // TODO: festlegen welcher Wert
-                                                 // undefined sein soll NaN
-                                                 // ok?
-                    dos.writeByte(Flag.NO_VALUE_RECEIVED_YET.getCode()); // TODO:
-                                                                         // festlegen
-                    // welcher Wert
-                    // undefined sein
-                    // soll 00 ok?
-                    length += 9;
-                }
-                dos.writeDouble(value);
-                dos.writeByte(flag);
-                length += 9;
-            }
-        }
-        /*
-         * close(); OutputStreams will not be closed or flushed. Data will be written to disk after calling flush()
-         * method.
-         */
-    }
+    public abstract Record read(long timestamp) throws IOException;
+
+    /**
+     * Returns a List of Value Objects containing the measured Values between provided start and end timestamp
+     * 
+     * @param start
+     *            start timestamp
+     * @param end
+     *            end timestamp
+     * @return a list of records
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public abstract List<Record> read(long start, long end) throws IOException;
 
-    public long getTimestampForLatestValue() {
-        return startTimeStamp + (((length - 16) / 9) - 1) * storagePeriod;
+    public List<Record> readFully() throws IOException {
+        return read(startTimeStamp, getTimestampForLatestValue());
     }
 
     /**
-     * calculates the position in a file for a certain timestamp
+     * Returns count, minimum, maximum and sum of the values between provided start and end timestamp.
      * 
-     * @param timestamp
-     *            the searched timestamp
-     * @return position the position of the timestamp
+     * @param start
+     *            start timestamp
+     * @param end
+     *            end timestamp
+     * @return the summary, empty if there are no values in the range
+     * @throws IOException
+     *             if an I/O error occurs.
      */
-    private long getBytePosition(long timestamp) {
-        if (timestamp >= startTimeStamp) {
+    public ValueSummary summarize(long start, long end) throws IOException {
+        ValueSummary summary = new ValueSummary();
+        for (Record record : read(start, end)) {
+            summary.add(record.getValue().asDouble());
+        }
+        return summary;
+    }
 
-            /*
-             * get position for timestamp 117 000: 117 000 - 100 000 = 17 000 17 * 000 / 5 000 = 3.4 Math.round(3.4) = 3
-             * 3*(8+1) = 27 27 + 16 = 43 = position to store to!
-             */
-            // long pos = (Math.round((double) (timestamp - startTimeStamp) /
-            // storagePeriod) * 9) + 16; /* slower */
+    /**
+     * Writes the buffered values to the file.
+     * 
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public abstract void flush() throws IOException;
 
-            double pos = (double) (timestamp - startTimeStamp) / storagePeriod;
-            if (pos % 1 != 0) { /* faster */
-                pos = Math.round(pos);
-            }
-            return (long) (pos * 9 + 16);
+    /**
+     * Writes the buffered values to the file and forces the written bytes to the storage device, so they survive a
+     * power loss.
+     * 
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public synchronized void force() throws IOException {
+        flush();
+        if (unforced) {
+            channel.force(false);
+            unforced = false;
         }
-        else {
-            // not in file! should never happen...
-            return -1;
+    }
+
+    /**
+     * Flushes the buffered values, forces them to the storage device and closes the file. A closed file is opened
+     * again on the next access.
+     * 
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public synchronized void close() throws IOException {
+        force();
+        mapping = null;
+        if (channel != null) {
+            channel.close();
+            channel = null;
         }
     }
 
@@ -320,11 +250,7 @@ public final class FileObject {
      * Calculates the closest timestamp to wanted timestamp getByteposition does a similar thing (Math.round()), for
      * byte position.
      */
-    private long getClosestTimestamp(long timestamp) {
-        // return Math.round((double) (timestamp -
-        // startTimeStamp)/storagePeriod)*storagePeriod+startTimeStamp; /*
-        // slower */
-
+    protected long getClosestTimestamp(long timestamp) {
         double ts = (double) (timestamp - startTimeStamp) / storagePeriod;
         if (ts % 1 != 0) {
             ts = Math.round(ts);
@@ -332,124 +258,70 @@ public final class FileObject {
         return (long) ts * storagePeriod + startTimeStamp;
     }
 
-    public Record read(long timestamp) throws IOException {
-        timestamp = getClosestTimestamp(timestamp); // round to: startTimestamp
-        // + n*stepIntervall
-        if (timestamp >= startTimeStamp && timestamp <= getTimestampForLatestValue()) {
-            if (!canRead) {
-                enableInput();
-            }
-            fis.getChannel().position(getBytePosition(timestamp));
-            Double toReturn = dis.readDouble();
-            if (!Double.isNaN(toReturn)) {
-                return new Record(new DoubleValue(toReturn), timestamp, Flag.newFlag(dis.readByte()));
-            }
+    /**
+     * Returns <code>count</code> committed bytes starting at <code>position</code>.
+     */
+    protected ByteBuffer readCommitted(long position, int count) throws IOException {
+        long end = position + count;
+        MappedByteBuffer mapped = mapping(end);
+        if (mapped != null) {
+            ByteBuffer bytes = mapped.duplicate();
+            bytes.position((int) position);
+            bytes.limit((int) end);
+            return bytes.slice();
         }
-        return null;
+        ByteBuffer bytes = ByteBuffer.allocate(count);
+        readFully(channel(), bytes, position);
+        bytes.flip();
+        return bytes;
     }
 
     /**
-     * Returns a List of Value Objects containing the measured Values between provided start and end timestamp
-     * 
-     * @param start
-     *            start timestamp
-     * @param end
-     *            end timestamp
-     * @return a list of records
-     * @throws IOException
-     *             if an I/O error occurs.
+     * Returns a mapping of the file containing <code>end</code> bytes or <code>null</code> if the bytes should be read
+     * with a positional read.
      */
-    public List<Record> read(long start, long end) throws IOException {
-        start = getClosestTimestamp(start); // round to: startTimestamp +
-                                            // n*stepIntervall
-        end = getClosestTimestamp(end); // round to: startTimestamp +
-                                        // n*stepIntervall
-
-        List<Record> toReturn = new Vector<>();
-
-        if (start < end) {
-            if (start < startTimeStamp) {
-                // of this file.
-                start = startTimeStamp;
-            }
-            if (end > getTimestampForLatestValue()) {
-                end = getTimestampForLatestValue();
-            }
-
-            if (!canRead) {
-                enableInput();
-            }
-
-            long timestampcounter = start;
-            long startPos = getBytePosition(start);
-            long endPos = getBytePosition(end);
-
-            fis.getChannel().position(startPos);
-
-            byte[] b = new byte[(int) (endPos - startPos) + 9];
-            dis.read(b, 0, b.length);
-            ByteBuffer bb = ByteBuffer.wrap(b);
-            bb.rewind();
-
-            for (int i = 0; i <= (endPos - startPos) / 9; i++) {
-                double d = bb.getDouble();
-                Flag s = Flag.newFlag(bb.get());
-                if (!Double.isNaN(d)) {
-                    toReturn.add(new Record(new DoubleValue(d), timestampcounter, s));
-                }
-                timestampcounter += storagePeriod;
+    private synchronized MappedByteBuffer mapping(long end) throws IOException {
+        if (mapping == null || mapping.capacity() < end) {
+            long mappedLength = mapping == null ? 0 : mapping.capacity();
+            if (appending && committedLength - mappedLength < REMAP_THRESHOLD) {
+                // file is written, map it again once it grew enough
+                return null;
             }
-
-        }
-        else if (start == end) {
-            toReturn.add(read(start));
-            toReturn.removeAll(Collections.singleton(null));
+            mapping = channel().map(MapMode.READ_ONLY, 0, committedLength);
         }
-        return toReturn; // Always return a list -> might be empty -> never is
-                         // null, to avoid NP's
+        return mapping;
     }
 
-    public List<Record> readFully() throws IOException {
-        return read(startTimeStamp, getTimestampForLatestValue());
+    protected synchronized FileChannel channel() throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        return channel;
     }
 
     /**
-     * Closes and Flushes underlying Input- and OutputStreams
-     * 
-     * @throws IOException
-     *             if an I/O error occurs.
+     * Writes the bytes to the file at <code>position</code>. They are forced to the storage device by {@link #force()}
+     * or {@link #close()}.
      */
-    public void close() throws IOException {
-        canRead = false;
-        canWrite = false;
-        if (dos != null) {
-            dos.flush();
-            dos.close();
-            dos = null;
-        }
-        if (fos != null) {
-            fos.close();
-            fos = null;
-        }
-        if (dis != null) {
-            dis.close();
-            dis = null;
-        }
-        if (fis != null) {
-            fis.close();
-            fis = null;
+    protected synchronized void write(ByteBuffer buffer, long position) throws IOException {
+        writeFully(channel(), buffer, position);
+        unforced = true;
+    }
+
+    protected static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int offset = buffer.position();
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position() - offset);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of slots file at position " + (position + buffer.position()));
+            }
         }
     }
 
-    /**
-     * Flushes the underlying Data Streams.
-     * 
-     * @throws IOException
-     *             if an I/O error occurs.
-     */
-    public void flush() throws IOException {
-        if (dos != null) {
-            dos.flush();
+    protected static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int offset = buffer.position();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position() - offset);
         }
     }
 }
@@ -89,14 +89,17 @@ public final class FileObjectList {
         files = new Vector<>(1);
         if (folder.isDirectory()) {
             for (File file : folder.listFiles()) {
-                if (file.length() >= 16) { // otherwise is corrupted or empty
-                                           // file.
-                    String[] split = file.getName().split("\\.");
-                    if (("." + split[split.length - 1]).equals(SlotsDb.FILE_EXTENSION)) {
-                        files.add(new FileObject(file));
+                String[] split = file.getName().split("\\.");
+                if (("." + split[split.length - 1]).equals(SlotsDb.FILE_EXTENSION)) {
+                    FileObject fileObject = FileObject.open(file);
+                    if (fileObject != null) {
+                        files.add(fileObject);
+                    }
+                    else { // corrupted or empty file.
+                        file.delete();
                     }
                 }
-                else {
+                else if (file.length() < 16) {
                     file.delete();
                 }
             }
@@ -189,6 +192,22 @@ public final class FileObjectList {
         }
     }
 
+    /**
+     * Returns the FileObject in this List starting at a certain Timestamp or null if there is none.
+     * 
+     * @param startTimeStamp
+     *            the start timestamp of the FileObject
+     * @return FileObject with this start timestamp
+     */
+    public FileObject getFileObject(long startTimeStamp) {
+        for (FileObject f : files) {
+            if (f.getStartTimeStamp() == startTimeStamp) {
+                return f;
+            }
+        }
+        return null;
+    }
+
     /**
      * Returns a FileObject in this List for a certain Timestamp. If there is no FileObject containing this Value, null
      * will be returned.
@@ -316,4 +335,16 @@ public final class FileObjectList {
             f.flush();
         }
     }
+
+    /**
+     * Flushes all FileObjects in this list and forces them to the storage device.
+     * 
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public void force() throws IOException {
+        for (FileObject f : files) {
+            f.force();
+        }
+    }
 }
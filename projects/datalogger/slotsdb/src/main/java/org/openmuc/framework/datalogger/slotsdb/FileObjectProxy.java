@@ -27,34 +27,55 @@ import java.net.URLEncoder;
 import java.nio.charset.Charset;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
 import org.openmuc.framework.data.Record;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Access to the files of a SlotsDB.
+ * <p>
+ * Appends and reads lock the channel label they access with one of {@value #LOCK_STRIPES} striped read/write locks, so
+ * different channels are written and read in parallel. Operations on all open files (flushing, closing files on a new
+ * day, deleting old data) lock the whole database.
+ * <p>
+ * Appended values are also added to the configured {@link RollupTier rollup tiers}, which serve reads of long time
+ * ranges at a coarser resolution.
+ */
 public final class FileObjectProxy {
 
     private static final Logger logger = LoggerFactory.getLogger(FileObjectProxy.class);
 
+    private static final int LOCK_STRIPES = 64;
+
     private final File rootNode;
-    private HashMap<String, FileObjectList> openFilesHM;
-    private final HashMap<String, String> encodedLabels;
+    private final ConcurrentHashMap<String, FileObjectList> openFilesHM;
+    private final ConcurrentHashMap<String, String> encodedLabels;
+    private final ReentrantReadWriteLock databaseLock = new ReentrantReadWriteLock();
+    private final ReentrantReadWriteLock[] labelLocks = new ReentrantReadWriteLock[LOCK_STRIPES];
     private final SimpleDateFormat sdf;
     private final Date date;
     private final Timer timer;
-    private List<File> days;
+    private final DirectoryIndex index;
+    private final List<RollupTier> rollupTiers = new ArrayList<>();
     private long size;
+    private final boolean flushOnAppend;
 
     /*
      * Flush Period in Seconds. if flush_period == 0 -> write directly to disk.
@@ -64,9 +85,19 @@ public final class FileObjectProxy {
     private int limit_size;
     private int max_open_files;
 
-    private String strCurrentDay;
-    private long currentDayFirstTS;
-    private long currentDayLastTS;
+    private volatile CurrentDay currentDay;
+
+    private static final class CurrentDay {
+        private final String strDay;
+        private final long firstTS;
+        private final long lastTS;
+
+        CurrentDay(String strDay, long firstTS) {
+            this.strDay = strDay;
+            this.firstTS = firstTS;
+            this.lastTS = firstTS + 86399999;
+        }
+    }
 
     /**
      * Creates an instance of a FileObjectProxy<br>
@@ -76,6 +107,20 @@ public final class FileObjectProxy {
      *            root node path
      */
     public FileObjectProxy(String rootNodePath) {
+        this(rootNodePath, true);
+    }
+
+    /**
+     * Creates an instance of a FileObjectProxy.
+     * 
+     * @param rootNodePath
+     *            root node path
+     * @param flushOnAppend
+     *            <code>false</code> to not write every value directly to disk if no flush period is set, because the
+     *            values are written to a write-ahead log
+     */
+    FileObjectProxy(String rootNodePath, boolean flushOnAppend) {
+        this.flushOnAppend = flushOnAppend;
         timer = new Timer();
         date = new Date();
         sdf = new SimpleDateFormat("yyyyMMdd");
@@ -87,10 +132,14 @@ public final class FileObjectProxy {
 
         rootNode = new File(rootNodePath);
         rootNode.mkdirs();
-        openFilesHM = new HashMap<>();
-        encodedLabels = new HashMap<>();
+        openFilesHM = new ConcurrentHashMap<>();
+        encodedLabels = new ConcurrentHashMap<>();
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            labelLocks[i] = new ReentrantReadWriteLock();
+        }
 
-        loadDays();
+        index = DirectoryIndex.load(rootNode);
+        logger.info("Found " + index.getDays().size() + " days in database.");
 
         if (SlotsDb.FLUSH_PERIOD != null) {
             flush_period = Integer.parseInt(SlotsDb.FLUSH_PERIOD);
@@ -130,36 +179,35 @@ public final class FileObjectProxy {
             max_open_files = SlotsDb.MAX_OPEN_FOLDERS_DEFAULT;
             logger.info("Maximum open Files for Database is set to: " + max_open_files + " (default).");
         }
+
+        createRollupTiers();
     }
 
     /*
-     * loads a sorted list of all days in SLOTSDB. Necessary for search- and delete jobs.
+     * Rollup resolutions in milliseconds, comma separated, define with JVM flag:
+     * org.openmuc.framework.datalogger.slotsdb.rollups. Tiers are sorted from fine to coarse.
      */
-    private void loadDays() {
-        days = new Vector<>();
-        for (File f : rootNode.listFiles()) {
-            if (f.isDirectory()) {
-                days.add(f);
+    private void createRollupTiers() {
+        String resolutions = SlotsDb.ROLLUPS != null ? SlotsDb.ROLLUPS : SlotsDb.ROLLUPS_DEFAULT;
+        File rollupFolder = new File(rootNode, SlotsDb.ROLLUP_FOLDER);
+        for (String resolution : resolutions.split(",")) {
+            resolution = resolution.trim();
+            if (resolution.isEmpty()) {
+                continue;
             }
-        }
-        days = sortFolders(days);
-    }
-
-    private List<File> sortFolders(List<File> days) {
-        Collections.sort(days, new Comparator<File>() {
-
-            @Override
-            public int compare(File f1, File f2) {
-                int i = 0;
-                try {
-                    i = Long.valueOf(sdf.parse(f1.getName()).getTime()).compareTo(sdf.parse(f2.getName()).getTime());
-                } catch (ParseException e) {
-                    logger.error("Error during sorting Files: Folder doesn't match yyyymmdd Format?");
+            try {
+                long millis = Long.parseLong(resolution);
+                if (millis <= 0) {
+                    throw new NumberFormatException();
                 }
-                return i;
+                rollupTiers.add(new RollupTier(new File(rollupFolder, resolution), millis, 86400000L * limit_days,
+                        this));
+            } catch (NumberFormatException e) {
+                logger.error("Ignoring invalid rollup resolution: " + resolution);
             }
-        });
-        return days;
+        }
+        rollupTiers.sort((a, b) -> Long.compare(a.getResolution(), b.getResolution()));
+        logger.info("Maintaining " + rollupTiers.size() + " rollup tiers.");
     }
 
     /**
@@ -190,10 +238,13 @@ public final class FileObjectProxy {
 
         @Override
         public void run() {
+            databaseLock.writeLock().lock();
             try {
                 deleteFoldersOlderThen(limit_days);
             } catch (IOException e) {
                 logger.error("Deleting old Data failed in IOException: " + e.getMessage());
+            } finally {
+                databaseLock.writeLock().unlock();
             }
         }
 
@@ -201,21 +252,21 @@ public final class FileObjectProxy {
             Calendar limit = Calendar.getInstance();
             limit.setTimeInMillis(System.currentTimeMillis() - (86400000L * limit_days));
             try {
-                for (File curElement : days) {
-                    if (sdf.parse(curElement.getName()).getTime() + 86400000 < limit
-                            .getTimeInMillis()) { /*
-                                                   * compare folder 's oldest value to limit
-                                                   */
-                        logger.info("Folder: " + curElement.getName() + " is older then " + limit_days
-                                + " Days. Will be deleted.");
-                        deleteRecursiveFolder(curElement);
+                for (String day : index.getDays()) {
+                    if (parseDay(day) + 86400000 < limit.getTimeInMillis()) { /*
+                                                                                * compare folder 's oldest value to
+                                                                                * limit
+                                                                                */
+                        logger.info("Folder: " + day + " is older then " + limit_days + " Days. Will be deleted.");
+                        deleteRecursiveFolder(new File(rootNode, day));
+                        index.removeDay(day);
+                        clearOpenFilesHashMap();
                     }
                     else {
                         /* oldest existing Folder is not to be deleted yet */
                         break;
                     }
                 }
-                loadDays();
             } catch (ParseException e) {
                 logger.error("Error during sorting Files: Any Folder doesn't match yyyymmdd Format?");
             }
@@ -230,30 +281,34 @@ public final class FileObjectProxy {
 
         @Override
         public void run() {
+            databaseLock.writeLock().lock();
             try {
-                while ((getDiskUsage(rootNode) / 1000000 > limit_size)
-                        && (days.size() >= 2)) { /*
+                while ((getDiskUsage() / 1000000 > limit_size)
+                        && (index.getDays().size() >= 2)) { /*
                                                   * avoid deleting current folder
                                                   */
                     deleteOldestFolder();
                 }
             } catch (IOException e) {
                 logger.error("Deleting old Data failed in IOException: " + e.getMessage());
+            } finally {
+                databaseLock.writeLock().unlock();
             }
         }
 
         private void deleteOldestFolder() throws IOException {
-            if (days.size() >= 2) {
+            if (index.getDays().size() >= 2) {
+                File oldest = new File(rootNode, index.getDays().first());
                 logger.info("Exceeded Maximum Database Size: " + limit_size + " MB. Current size: " + (size / 1000000)
-                        + " MB. Deleting: " + days.get(0).getCanonicalPath());
-                deleteRecursiveFolder(days.get(0));
-                days.remove(0);
+                        + " MB. Deleting: " + oldest.getCanonicalPath());
+                deleteRecursiveFolder(oldest);
+                index.removeDay(oldest.getName());
                 clearOpenFilesHashMap();
             }
         }
     }
 
-    private synchronized void deleteRecursiveFolder(File folder) {
+    private void deleteRecursiveFolder(File folder) {
         if (folder.exists()) {
             for (File f : folder.listFiles()) {
                 if (f.isDirectory()) {
@@ -271,11 +326,17 @@ public final class FileObjectProxy {
     }
 
     /*
-     * recursive function to get the size of a folder. sums up all files. needs an initial LONG to store size to.
+     * sums up the files of the day folders. Only day folders are deleted when the size limit is exceeded, so the rollup
+     * tiers, which are limited by their own lifetime, and the write-ahead log are not counted.
      */
-    private long getDiskUsage(File folder) throws IOException {
+    private long getDiskUsage() throws IOException {
         size = 0;
-        recursive_size_walker(folder);
+        for (String day : index.getDays()) {
+            File folder = new File(rootNode, day);
+            if (folder.isDirectory()) {
+                recursive_size_walker(folder);
+            }
+        }
         return size;
     }
 
@@ -304,10 +365,9 @@ public final class FileObjectProxy {
      * @throws IOException
      *             if an I/O error occurs.
      */
-    public synchronized void appendValue(String id, double value, long timestamp, byte state, long storingPeriod)
+    public void appendValue(String id, double value, long timestamp, byte state, long storingPeriod)
             throws IOException {
-        FileObject toStoreIn = null;
-
+        String label = id;
         id = encodeLabel(id);
 
         String strDate = getStrDate(timestamp);
@@ -320,72 +380,98 @@ public final class FileObjectProxy {
         if (!openFilesHM.containsKey(id + strDate)) {
             deleteEntryFromLastDay(timestamp, id);
             controlHashtableSize();
-            FileObjectList first = new FileObjectList(rootNode.getPath() + "/" + strDate + "/" + id);
-            openFilesHM.put(id + strDate, first);
+        }
 
-            /*
-             * If FileObjectList for this label does not contain any FileObjects yet, a new one will be created. Data
-             * will be stored and List reloaded for next Value to store.
-             */
-            if (first.size() == 0) {
-                toStoreIn = new FileObject(
-                        rootNode.getPath() + "/" + strDate + "/" + id + "/" + timestamp + SlotsDb.FILE_EXTENSION);
-                toStoreIn.createFileAndHeader(timestamp, storingPeriod);
-                toStoreIn.append(value, timestamp, state);
-                toStoreIn.close(); /* close() also calls flush(). */
-                openFilesHM.get(id + strDate).reLoadFolder();
-                return;
-            }
+        databaseLock.readLock().lock();
+        Lock labelLock = labelLock(id).writeLock();
+        labelLock.lock();
+        try {
+            appendToList(id, strDate, value, timestamp, state, storingPeriod);
+        } finally {
+            labelLock.unlock();
+            databaseLock.readLock().unlock();
+        }
+
+        for (RollupTier rollupTier : rollupTiers) {
+            rollupTier.add(label, id, value, timestamp, state);
+        }
+    }
+
+    private void appendToList(String id, String strDate, double value, long timestamp, byte state,
+            long storingPeriod) throws IOException {
+        FileObject toStoreIn = null;
+
+        FileObjectList listToStoreIn = openFilesHM.get(id + strDate);
+        if (listToStoreIn == null) {
+            listToStoreIn = new FileObjectList(rootNode.getPath() + "/" + strDate + "/" + id);
+            openFilesHM.put(id + strDate, listToStoreIn);
+        }
+
+        /*
+         * If FileObjectList for this label does not contain any FileObjects yet, a new one will be created. Data will
+         * be stored and List reloaded for next Value to store.
+         */
+        if (listToStoreIn.size() == 0) {
+            toStoreIn = FileObject.create(
+                    rootNode.getPath() + "/" + strDate + "/" + id + "/" + timestamp + SlotsDb.FILE_EXTENSION,
+                    timestamp, storingPeriod);
+            index.add(strDate, id, timestamp);
+            toStoreIn.append(value, timestamp, state);
+            toStoreIn.close(); /* close() also calls flush(). */
+            listToStoreIn.reLoadFolder();
+            return;
         }
 
         /*
          * There is a FileObjectList for this day.
          */
-        FileObjectList listToStoreIn = openFilesHM.get(id + strDate);
-        if (listToStoreIn.size() > 0) {
-            toStoreIn = listToStoreIn.getCurrentFileObject();
+        toStoreIn = listToStoreIn.getCurrentFileObject();
 
-            /*
-             * If StartTimeStamp is newer then the Timestamp of the value to store, this value can't be stored.
-             */
-            if (toStoreIn.getStartTimeStamp() > timestamp) {
-                return;
-            }
-        }
-        if (toStoreIn == null) {
-            throw new IOException("\"Store in\" is null.");
+        /*
+         * If StartTimeStamp is newer then the Timestamp of the value to store, this value can't be stored.
+         */
+        if (toStoreIn.getStartTimeStamp() > timestamp) {
+            return;
         }
 
         /*
          * The storing Period may have changed. In this case, a new FileObject must be created.
          */
         if (toStoreIn.getStoringPeriod() == storingPeriod || toStoreIn.getStoringPeriod() == 0) {
-            toStoreIn = openFilesHM.get(id + strDate).getCurrentFileObject();
             toStoreIn.append(value, timestamp, state);
-            if (flush_period == 0) {
+            if (flush_period == 0 && flushOnAppend) {
                 toStoreIn.flush();
             }
-            else {
-                return;
-            }
         }
         else {
             /*
              * Intervall changed -> create new File (if there are no newer values for this day, or file)
              */
             if (toStoreIn.getTimestampForLatestValue() < timestamp) {
-                toStoreIn = new FileObject(
-                        rootNode.getPath() + "/" + strDate + "/" + id + "/" + timestamp + SlotsDb.FILE_EXTENSION);
-                toStoreIn.createFileAndHeader(timestamp, storingPeriod);
+                toStoreIn = FileObject.create(
+                        rootNode.getPath() + "/" + strDate + "/" + id + "/" + timestamp + SlotsDb.FILE_EXTENSION,
+                        timestamp, storingPeriod);
+                index.add(strDate, id, timestamp);
                 toStoreIn.append(value, timestamp, state);
-                if (flush_period == 0) {
-                    toStoreIn.flush();
-                }
-                openFilesHM.get(id + strDate).reLoadFolder();
+                toStoreIn.close();
+                listToStoreIn.reLoadFolder();
             }
         }
     }
 
+    private ReentrantReadWriteLock labelLock(String encodedLabel) {
+        int hash = encodedLabel.hashCode();
+        return labelLocks[(hash ^ (hash >>> 16)) & (LOCK_STRIPES - 1)];
+    }
+
+    /**
+     * Returns the open FileObjectList of a label and day or <code>null</code> if the files of the day are not open.
+     * Lists returned by this method are shared with the writer and must not be closed.
+     */
+    private FileObjectList openFileObjectList(String encodedLabel, String strDate) {
+        return openFilesHM.get(encodedLabel + strDate);
+    }
+
     private String encodeLabel(String label) throws IOException {
         String encodedLabel = encodedLabels.get(label);
         if (encodedLabel == null) {
@@ -396,27 +482,35 @@ public final class FileObjectProxy {
         return encodedLabel;
     }
 
-    public synchronized Record read(String label, long timestamp) throws IOException {
+    public Record read(String label, long timestamp) throws IOException {
         // label = URLEncoder.encode(label,Charset.defaultCharset().toString());
         // //encodes label to supported String for Filenames.
         label = encodeLabel(label);
 
-        String strDate = getStrDate(timestamp);
+        List<FileObject> opened = new Vector<>();
 
-        if (!openFilesHM.containsKey(label + strDate)) {
-            controlHashtableSize();
-            FileObjectList fol = new FileObjectList(rootNode.getPath() + "/" + strDate + "/" + label);
-            openFilesHM.put(label + strDate, fol);
-        }
-        FileObject toReadFrom = openFilesHM.get(label + strDate).getFileObjectForTimestamp(timestamp);
-        if (toReadFrom != null) {
-            return toReadFrom.read(timestamp); // null if no value for timestamp
-                                               // is available
+        databaseLock.readLock().lock();
+        Lock labelLock = labelLock(label).readLock();
+        labelLock.lock();
+        try {
+            DirectoryIndex.FileEntry entry = index.getFile(label, timestamp);
+            if (entry == null) {
+                return null;
+            }
+            FileObject toReadFrom = fileObject(label, entry, opened);
+            if (toReadFrom != null) {
+                return toReadFrom.read(timestamp); // null if no value for timestamp
+                                                   // is available
+            }
+            return null;
+        } finally {
+            closeAll(opened);
+            labelLock.unlock();
+            databaseLock.readLock().unlock();
         }
-        return null;
     }
 
-    public synchronized List<Record> read(String label, long start, long end) throws IOException {
+    public List<Record> read(String label, long start, long end) throws IOException {
         if (logger.isTraceEnabled()) {
             logger.trace("Called: read(" + label + ", " + start + ", " + end + ")");
         }
@@ -443,89 +537,30 @@ public final class FileObjectProxy {
         // //encodes label to supported String for Filenames.
         label = encodeLabel(label);
 
-        String strStartDate = getStrDate(start);
-        String strEndDate = getStrDate(end);
-
-        List<FileObject> toRead = new Vector<>();
-
-        if (!strStartDate.equals(strEndDate)) {
-            logger.trace("Reading Multiple Days. Scanning for Folders.");
-            List<FileObjectList> days = new Vector<>();
-
-            /*
-             * Check for Folders matching criteria: Folder contains data between start & end timestamp. Folder contains
-             * label.
-             */
-            String strSubfolder;
-            for (File folder : rootNode.listFiles()) {
-                if (folder.isDirectory()) {
-                    if (isFolderBetweenStartAndEnd(folder.getName(), start, end)) {
-                        if (Arrays.asList(folder.list()).contains(label)) {
-                            strSubfolder = rootNode.getPath() + "/" + folder.getName() + "/" + label;
-                            days.add(new FileObjectList(strSubfolder));
-                            logger.trace(strSubfolder + " contains " + SlotsDb.FILE_EXTENSION + " files to read from.");
-                        }
-                    }
-                }
-            }
-            /*
-             * Sort days, because rootNode.listFiles() is unsorted. FileObjectLists MUST be sorted, otherwise data
-             * output wouldn't be sorted.
-             */
-            Collections.sort(days, new Comparator<FileObjectList>() {
+        /*
+         * FileObjects that are not open for appending are only opened for this request and closed afterwards.
+         * FileObjects of the writer are shared and stay open.
+         */
+        List<FileObject> opened = new Vector<>();
 
-                @Override
-                public int compare(FileObjectList f1, FileObjectList f2) {
-                    return Long.valueOf(f1.getFirstTS()).compareTo(f2.getFirstTS());
-                }
-            });
+        databaseLock.readLock().lock();
+        Lock labelLock = labelLock(label).readLock();
+        labelLock.lock();
+        try {
+            List<FileObject> toRead = fileObjectsBetween(label, start, end, opened);
+            logger.trace("Found " + toRead.size() + " " + SlotsDb.FILE_EXTENSION + " files to read from.");
 
             /*
-             * Create a list with all file-objects that must be read for this reading request.
+             * Read all FileObjects: first (2nd,3rd,4th....n-1) last first and last will be read separately, to not
+             * exceed timestamp range.
              */
-            if (days.size() == 0) {
-                return toReturn;
-            }
-            else if (days.size() == 1) {
-                toRead.addAll(days.get(0).getFileObjectsFromTo(start, end));
-            }
-            else { // days.size()>1
-                toRead.addAll(days.get(0).getFileObjectsStartingAt(start));
-                for (int i = 1; i < days.size() - 1; i++) {
-                    toRead.addAll(days.get(i).getAllFileObjects());
-                }
-                toRead.addAll(days.get(days.size() - 1).getFileObjectsUntil(end));
-            }
-            toRead.removeAll(Collections.singleton(null));
-        }
-        else { // Start == End Folder -> only 1 FileObjectList must be read.
-            File folder = new File(rootNode.getPath() + "/" + strStartDate + "/" + label);
-            FileObjectList fol;
-            if (folder.list() != null) {
-                if (folder.list().length > 0) { // Are there Files in the
-                                                // folder, that should be read?
-                    fol = new FileObjectList(rootNode.getPath() + "/" + strStartDate + "/" + label);
-                    toRead.addAll(fol.getFileObjectsFromTo(start, end));
-                }
-            }
-        }
-        logger.trace("Found " + toRead.size() + " " + SlotsDb.FILE_EXTENSION + " files to read from.");
-
-        /*
-         * Read all FileObjects: first (2nd,3rd,4th....n-1) last first and last will be read separately, to not exceed
-         * timestamp range.
-         */
-        if (toRead != null) {
             if (toRead.size() > 1) {
                 toReturn.addAll(toRead.get(0).read(start, toRead.get(0).getTimestampForLatestValue()));
-                toRead.get(0).close();
                 for (int i = 1; i < toRead.size() - 1; i++) {
                     toReturn.addAll(toRead.get(i).readFully());
-                    toRead.get(i).close();
                 }
                 toReturn.addAll(
                         toRead.get(toRead.size() - 1).read(toRead.get(toRead.size() - 1).getStartTimeStamp(), end));
-                toRead.get(toRead.size() - 1).close();
 
                 /*
                  * Some Values might be null -> remove
@@ -537,147 +572,346 @@ public final class FileObjectProxy {
                 toReturn.addAll(toRead.get(0).read(start, end));
                 toReturn.removeAll(Collections.singleton(null));
             }
+        } finally {
+            closeAll(opened);
+            labelLock.unlock();
+            databaseLock.readLock().unlock();
         }
         logger.trace("Selected " + SlotsDb.FILE_EXTENSION + " files contain " + toReturn.size() + " Values.");
         return toReturn;
     }
 
-    public synchronized Record readLatest(String label) throws IOException {
-        if (logger.isTraceEnabled()) {
-            logger.trace("Called: readLatest(" + label + ")");
+    /**
+     * Passes the values of a label between start and end to the consumer. The files are read one at a time and the
+     * label is only locked while a file is read, so neither the whole range is held in memory nor a slow consumer
+     * blocks appends.
+     * 
+     * @param label
+     *            the label
+     * @param start
+     *            start timestamp
+     * @param end
+     *            end timestamp
+     * @param consumer
+     *            receives the values in ascending order of their timestamps
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public void read(String label, long start, long end, Consumer<Record> consumer) throws IOException {
+        if (start > end) {
+            return;
+        }
+        if (start == end) {
+            Record record = read(label, start);
+            if (record != null) {
+                consumer.accept(record);
+            }
+            return;
+        }
+        if (end > 50000000000000L) {
+            end = 50000000000000L;
         }
         label = encodeLabel(label);
 
-        /*
-         * Checks for the folder with the latest day
-         */
-        long latestDay = 0;
-        File latestFolder = null;
-        for (File folder : rootNode.listFiles()) {
-            if (folder.isDirectory()) {
-                if (getFolderTimestamp(folder.getName()) > latestDay) {
-                    latestFolder = folder;
-                    latestDay = getFolderTimestamp(folder.getName());
+        List<DirectoryIndex.FileEntry> entries;
+        databaseLock.readLock().lock();
+        Lock labelLock = labelLock(label).readLock();
+        labelLock.lock();
+        try {
+            entries = index.getFiles(label, start, end);
+        } finally {
+            labelLock.unlock();
+            databaseLock.readLock().unlock();
+        }
+
+        for (DirectoryIndex.FileEntry entry : entries) {
+            for (Record record : read(label, entry, start, end)) {
+                if (record != null) {
+                    consumer.accept(record);
                 }
             }
         }
-        if (latestFolder == null) {
-            return null;
-        }
+    }
 
-        /*
-         * Get list of all fileObjects
-         */
-        String strSubfolder;
-        FileObjectList fileObjects = null;
-        if (Arrays.asList(latestFolder.list()).contains(label)) {
-            strSubfolder = rootNode.getPath() + "/" + latestFolder.getName() + "/" + label;
-            fileObjects = new FileObjectList(strSubfolder);
-            logger.trace(strSubfolder + " contains " + SlotsDb.FILE_EXTENSION + " files to read from.");
-        }
+    /*
+     * Reads the values between start and end from one file of an encoded label.
+     */
+    private List<Record> read(String encodedLabel, DirectoryIndex.FileEntry entry, long start, long end)
+            throws IOException {
+        List<FileObject> opened = new Vector<>();
 
-        /*
-         * For each file get the latest Record and compare those
-         */
-        List<FileObject> toRead = new Vector<>();
-        toRead = fileObjects.getAllFileObjects();
-        long latestTimestamp = 0;
-        Record latestRecord = null;
-        for (FileObject file : toRead) {
-            long timestamp = file.getTimestampForLatestValue();
-            if (timestamp > latestTimestamp) {
-                latestTimestamp = timestamp;
-                latestRecord = file.read(timestamp); // function calculates closest available timestamp to given
-                                                     // timestamp. This should always be equal though
+        databaseLock.readLock().lock();
+        Lock labelLock = labelLock(encodedLabel).readLock();
+        labelLock.lock();
+        try {
+            FileObject fileObject = fileObject(encodedLabel, entry, opened);
+            if (fileObject == null || fileObject.getStartTimeStamp() > end
+                    || fileObject.getTimestampForLatestValue() < start) {
+                return Collections.emptyList();
             }
+            return fileObject.read(Math.max(start, fileObject.getStartTimeStamp()),
+                    Math.min(end, fileObject.getTimestampForLatestValue()));
+        } finally {
+            closeAll(opened);
+            labelLock.unlock();
+            databaseLock.readLock().unlock();
         }
-        return latestRecord;
     }
 
     /**
-     * Return timestamp of the folder with given name
+     * Reads the values of a label between start and end at a resolution of at most the given one. The averages of the
+     * coarsest rollup tier whose resolution does not exceed the given one are returned, timestamped with the start of
+     * their bucket. If there is no such tier the stored values are returned.
      * 
-     * @param name
-     *            of the folder
-     * @return timestamp in ms
+     * @param label
+     *            the label
+     * @param start
+     *            start timestamp
+     * @param end
+     *            end timestamp
+     * @param resolution
+     *            the coarsest acceptable distance between two records in milliseconds, 0 for all stored values
+     * @return the records
+     * @throws IOException
+     *             if an I/O error occurs.
      */
-    private long getFolderTimestamp(String name) {
-        try {
-            sdf.parse(name);
-        } catch (ParseException e) {
-            logger.error("Unable to parse Timestamp from: " + name + " folder. " + e.getMessage());
+    public List<Record> read(String label, long start, long end, long resolution) throws IOException {
+        RollupTier rollupTier = rollupTier(resolution);
+        if (rollupTier == null || start == end) {
+            return read(label, start, end);
+        }
+        List<Record> records = new Vector<>();
+        for (Rollup rollup : rollupTier.read(encodeLabel(label), start, end)) {
+            records.add(new Record(new DoubleValue(rollup.getAverage()), rollup.getTimestamp()));
         }
-        return sdf.getCalendar().getTimeInMillis();
+        return records;
     }
 
     /**
-     * Parses a Timestamp in Milliseconds from a String in yyyyMMdd Format <br>
-     * e.g.: 25.Sept.2011: 20110925 <br>
-     * would return: 1316901600000 ms. equal to (25.09.2011 - 00:00:00) <br>
+     * Returns the rollups of a label starting between start and end from the coarsest rollup tier whose resolution
+     * does not exceed the given one. If there is no such tier, rollups of the given resolution are computed from the
+     * stored values.
      * 
-     * @param name
-     *            in "yyyyMMdd" Format
+     * @param label
+     *            the label
      * @param start
-     *            start time stamp
+     *            start timestamp
      * @param end
-     *            end time stamp
-     * @return boolean true if yes else false
+     *            end timestamp
+     * @param resolution
+     *            the coarsest acceptable resolution in milliseconds
+     * @return the rollups containing values, sorted by timestamp
+     * @throws IOException
+     *             if an I/O error occurs.
      */
-    private boolean isFolderBetweenStartAndEnd(String name, long start, long end) {
+    public List<Rollup> readRollups(String label, long start, long end, long resolution) throws IOException {
+        RollupTier rollupTier = rollupTier(resolution);
+        if (rollupTier != null) {
+            return rollupTier.read(encodeLabel(label), start, end);
+        }
+
+        List<Rollup> rollups = new ArrayList<>();
+        if (resolution <= 0) {
+            return rollups;
+        }
+        long first = Math.floorDiv(start + resolution - 1, resolution) * resolution;
+        Rollup rollup = null;
+        for (Record record : read(label, first, end)) {
+            if (record.getFlag() != Flag.VALID || record.getValue() == null
+                    || Double.isNaN(record.getValue().asDouble())) {
+                continue;
+            }
+            long bucket = Math.floorDiv(record.getTimestamp(), resolution) * resolution;
+            if (rollup == null || rollup.getTimestamp() != bucket) {
+                rollup = new Rollup(bucket);
+                rollups.add(rollup);
+            }
+            rollup.add(record.getValue().asDouble());
+        }
+        return rollups;
+    }
+
+    private RollupTier rollupTier(long resolution) {
+        RollupTier coarsest = null;
+        for (RollupTier rollupTier : rollupTiers) {
+            if (rollupTier.getResolution() <= resolution) {
+                coarsest = rollupTier;
+            }
+        }
+        return coarsest;
+    }
+
+    /**
+     * Returns count, minimum, maximum and sum of the values of a label between start and end. Files in the block format
+     * are summarized from their block headers where blocks lie completely in the range.
+     * 
+     * @param label
+     *            the label
+     * @param start
+     *            start timestamp
+     * @param end
+     *            end timestamp
+     * @return the summary, empty if there are no values in the range
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public ValueSummary summarize(String label, long start, long end) throws IOException {
+        ValueSummary summary = new ValueSummary();
+        if (start > end) {
+            return summary;
+        }
+        label = encodeLabel(label);
+
+        List<FileObject> opened = new Vector<>();
+
+        databaseLock.readLock().lock();
+        Lock labelLock = labelLock(label).readLock();
+        labelLock.lock();
         try {
-            sdf.parse(name);
-        } catch (ParseException e) {
-            logger.error("Unable to parse Timestamp from: " + name + " folder. " + e.getMessage());
+            for (FileObject fileObject : fileObjectsBetween(label, start, end, opened)) {
+                summary.add(fileObject.summarize(start, end));
+            }
+        } finally {
+            closeAll(opened);
+            labelLock.unlock();
+            databaseLock.readLock().unlock();
         }
-        if (start <= sdf.getCalendar().getTimeInMillis() + 86399999 && sdf.getCalendar().getTimeInMillis() <= end) { // if
-                                                                                                                     // start
-                                                                                                                     // <=
-                                                                                                                     // folder.lastTSofDay
-                                                                                                                     // &&
-                                                                                                                     // folder.firstTSofDay
-                                                                                                                     // <=
-                                                                                                                     // end
-            return true;
+        return summary;
+    }
+
+    /*
+     * Returns the FileObjects of a label containing data between start and end, sorted by their start timestamp.
+     */
+    private List<FileObject> fileObjectsBetween(String label, long start, long end, List<FileObject> opened)
+            throws IOException {
+        List<FileObject> toRead = new Vector<>();
+        for (DirectoryIndex.FileEntry entry : index.getFiles(label, start, end)) {
+            FileObject fileObject = fileObject(label, entry, opened);
+            if (fileObject != null && fileObject.getStartTimeStamp() <= end
+                    && fileObject.getTimestampForLatestValue() >= start) {
+                toRead.add(fileObject);
+            }
         }
-        return false;
+        return toRead;
     }
 
     /*
-     * strCurrentDay holds the current Day in yyyyMMdd format, because SimpleDateFormat uses a lot cpu-time.
-     * currentDayFirstTS and ... currentDayLastTS mark the first and last timestamp of this day. If a TS exceeds this
-     * range, strCurrentDay, currentDayFirstTS, currentDayLastTS will be updated.
+     * Returns the FileObject of the writer or opens the file and adds it to the opened list. Returns null if the file
+     * does not exist anymore.
      */
-    private String getStrDate(long timestamp) throws IOException {
-        if (strCurrentDay != null) {
-            if (timestamp >= currentDayFirstTS && timestamp <= currentDayLastTS) {
-                return strCurrentDay;
+    private FileObject fileObject(String encodedLabel, DirectoryIndex.FileEntry entry, List<FileObject> opened)
+            throws IOException {
+        FileObjectList fol = openFileObjectList(encodedLabel, entry.getDay());
+        if (fol != null) {
+            FileObject fileObject = fol.getFileObject(entry.getStartTimeStamp());
+            if (fileObject != null) {
+                return fileObject;
+            }
+        }
+        FileObject fileObject = FileObject.open(rootNode.getPath() + "/" + entry.getDay() + "/" + encodedLabel + "/"
+                + entry.getStartTimeStamp() + SlotsDb.FILE_EXTENSION);
+        if (fileObject != null) {
+            opened.add(fileObject);
+        }
+        return fileObject;
+    }
+
+    private static void closeAll(List<FileObject> fileObjects) throws IOException {
+        for (FileObject fileObject : fileObjects) {
+            fileObject.close();
+        }
+    }
+
+    public Record readLatest(String label) throws IOException {
+        if (logger.isTraceEnabled()) {
+            logger.trace("Called: readLatest(" + label + ")");
+        }
+        label = encodeLabel(label);
+
+        List<FileObject> opened = new Vector<>();
+
+        databaseLock.readLock().lock();
+        Lock labelLock = labelLock(label).readLock();
+        labelLock.lock();
+        try {
+            /*
+             * For each file of the latest day get the latest Record and compare those
+             */
+            long latestTimestamp = 0;
+            Record latestRecord = null;
+            for (DirectoryIndex.FileEntry entry : index.getLatestDayFiles(label)) {
+                FileObject file = fileObject(label, entry, opened);
+                if (file == null) {
+                    continue;
+                }
+                long timestamp = file.getTimestampForLatestValue();
+                if (timestamp > latestTimestamp) {
+                    latestTimestamp = timestamp;
+                    latestRecord = file.read(timestamp); // function calculates closest available timestamp to given
+                                                         // timestamp. This should always be equal though
+                }
             }
+            return latestRecord;
+        } finally {
+            closeAll(opened);
+            labelLock.unlock();
+            databaseLock.readLock().unlock();
+        }
+    }
+
+    /*
+     * SimpleDateFormat is not thread-safe, every use of sdf and date is synchronized on sdf.
+     */
+    private long parseDay(String strDay) throws ParseException {
+        synchronized (sdf) {
+            return sdf.parse(strDay).getTime();
+        }
+    }
+
+    /*
+     * currentDay holds the current Day in yyyyMMdd format, because SimpleDateFormat uses a lot cpu-time. It also marks
+     * the first and last timestamp of this day. If a TS exceeds this range, currentDay will be replaced.
+     */
+    private String getStrDate(long timestamp) throws IOException {
+        CurrentDay day = currentDay;
+        if (day != null && timestamp >= day.firstTS && timestamp <= day.lastTS) {
+            return day.strDay;
         }
         /*
          * timestamp for other day or not initialized yet.
          */
-        date.setTime(timestamp);
-        strCurrentDay = sdf.format(date);
-        try {
-            currentDayFirstTS = sdf.parse(strCurrentDay).getTime();
-        } catch (ParseException e) {
-            logger.error("Unable to parse Timestamp from: " + currentDayFirstTS + " String.");
+        String strDay;
+        long firstTS = 0;
+        synchronized (sdf) {
+            date.setTime(timestamp);
+            strDay = sdf.format(date);
+            try {
+                firstTS = sdf.parse(strDay).getTime();
+            } catch (ParseException e) {
+                logger.error("Unable to parse Timestamp from: " + strDay + " String.");
+            }
         }
-        currentDayLastTS = currentDayFirstTS + 86399999;
-        return strCurrentDay;
+        currentDay = new CurrentDay(strDay, firstTS);
+        return strDay;
     }
 
     private void deleteEntryFromLastDay(long timestamp, String label) throws IOException {
         String strDate = getStrDate(timestamp - 86400000);
         if (openFilesHM.containsKey(label + strDate)) {
-            /*
-             * Value for new day has been registered! Close and flush all connections! Empty Hashtable!
-             */
-            clearOpenFilesHashMap();
-            logger.info(
-                    "Started logging to a new Day. <" + strDate + "> Folder has been closed and flushed completely.");
-            /* reload days */
-            loadDays();
+            databaseLock.writeLock().lock();
+            try {
+                if (!openFilesHM.containsKey(label + strDate)) {
+                    return;
+                }
+                /*
+                 * Value for new day has been registered! Close and flush all connections! Empty Hashtable!
+                 */
+                clearOpenFilesHashMap();
+                logger.info("Started logging to a new Day. <" + strDate
+                        + "> Folder has been closed and flushed completely.");
+            } finally {
+                databaseLock.writeLock().unlock();
+            }
         }
     }
 
@@ -685,8 +919,8 @@ public final class FileObjectProxy {
         Iterator<FileObjectList> itr = openFilesHM.values().iterator();
         while (itr.hasNext()) { // kick out everything
             itr.next().closeAllFiles();
+            itr.remove();
         }
-        openFilesHM = new HashMap<>();
     }
 
     private void controlHashtableSize() throws IOException {
@@ -696,22 +930,25 @@ public final class FileObjectProxy {
          * storage Intervall is reconfigured. Continuous reconfiguring of measurement points may lead to a
          * "Too many open files" Exception. In this case SlotsDb.MAX_OPEN_FOLDERS should be decreased...
          */
-        if (openFilesHM.size() > max_open_files) {
+        if (openFilesHM.size() <= max_open_files) {
+            return;
+        }
+        databaseLock.writeLock().lock();
+        try {
+            if (openFilesHM.size() <= max_open_files) {
+                return;
+            }
             logger.debug("More then " + max_open_files
                     + " DataStreams are opened. Flushing and closing some to not exceed OS-Limit.");
             Iterator<FileObjectList> itr = openFilesHM.values().iterator();
-            for (int i = 0; i < (max_open_files / 5); i++) { // randomly kick
-                                                             // out some of
-                                                             // the
-                                                             // FileObjectLists.
-                                                             // -> the needed
-                                                             // ones will be
-                                                             // reinitialized,
-                                                             // no problem
-                                                             // here.
+            for (int i = 0; i < (max_open_files / 5) && itr.hasNext(); i++) { // randomly kick out some of the
+                                                                              // FileObjectLists. -> the needed ones
+                                                                              // will be reinitialized, no problem here.
                 itr.next().closeAllFiles();
                 itr.remove();
             }
+        } finally {
+            databaseLock.writeLock().unlock();
         }
     }
 
@@ -721,13 +958,62 @@ public final class FileObjectProxy {
      * @throws IOException
      *             if an I/O error occurs.
      */
-    public synchronized void flush() throws IOException {
+    public void flush() throws IOException {
+        flushOpenFiles(false);
+        logger.info("Data from " + openFilesHM.size() + " Folders flushed to disk.");
+    }
 
-        Iterator<FileObjectList> itr = openFilesHM.values().iterator();
-        while (itr.hasNext()) {
-            itr.next().flush();
+    /**
+     * Flushes all open files and forces them to the storage device, e.g. before the write-ahead log containing their
+     * values is deleted. Costs one fsync per file written since it was last forced.
+     * 
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public void force() throws IOException {
+        flushOpenFiles(true);
+    }
+
+    private void flushOpenFiles(boolean force) throws IOException {
+        databaseLock.readLock().lock();
+        try {
+            for (Map.Entry<String, FileObjectList> entry : openFilesHM.entrySet()) {
+                String key = entry.getKey();
+                // keys are the encoded label followed by the day in yyyyMMdd format
+                Lock labelLock = labelLock(key.substring(0, key.length() - 8)).writeLock();
+                labelLock.lock();
+                try {
+                    if (force) {
+                        entry.getValue().force();
+                    }
+                    else {
+                        entry.getValue().flush();
+                    }
+                } finally {
+                    labelLock.unlock();
+                }
+            }
+        } finally {
+            databaseLock.readLock().unlock();
         }
+    }
 
-        logger.info("Data from " + openFilesHM.size() + " Folders flushed to disk.");
+    /**
+     * Stops the scheduled jobs, writes the rollups of the current buckets, flushes and closes all open files.
+     * 
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public void close() throws IOException {
+        timer.cancel();
+        for (RollupTier rollupTier : rollupTiers) {
+            rollupTier.close();
+        }
+        databaseLock.writeLock().lock();
+        try {
+            clearOpenFilesHashMap();
+        } finally {
+            databaseLock.writeLock().unlock();
+        }
     }
 }
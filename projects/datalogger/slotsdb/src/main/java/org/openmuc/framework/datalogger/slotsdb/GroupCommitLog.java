@@ -0,0 +1,175 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.slotsdb;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Group-commit mode of a SlotsDB: the values of a logging tick are written to the {@link WriteAheadLog} with one fsync
+ * and applied to the slot files by a background thread.
+ * <p>
+ * The applier does not flush the slot files after every value. When the first batch of a new log segment is applied,
+ * all values of the older segments are applied, so the slot files are flushed and the older segments are deleted.
+ * Values in the log which were not flushed to the slot files before a crash are applied again on startup. Appending a
+ * value twice has no effect, so replaying values which already are in the slot files is harmless.
+ */
+final class GroupCommitLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(GroupCommitLog.class);
+
+    static final long SEGMENT_SIZE = 4 * 1024 * 1024;
+    private static final int APPLIER_QUEUE_CAPACITY = 64;
+
+    private final WriteAheadLog wal;
+    private final FileObjectProxy fileObjectProxy;
+    private final ThreadPoolExecutor applier;
+
+    // accessed by the applier thread only
+    private long appliedSequence;
+
+    private final AtomicLong appliedValues = new AtomicLong();
+    private final AtomicLong checkpoints = new AtomicLong();
+
+    private long rateTime;
+    private long rateAppends;
+    private long rateFsyncs;
+
+    /**
+     * Replays the segments in <code>folder</code> and starts a new log.
+     */
+    GroupCommitLog(File folder, FileObjectProxy fileObjectProxy) throws IOException {
+        this.fileObjectProxy = fileObjectProxy;
+        replay(folder, fileObjectProxy);
+        wal = new WriteAheadLog(folder, SEGMENT_SIZE);
+        rateTime = System.nanoTime();
+
+        /*
+         * A full queue blocks the logging thread until the applier caught up, which slows logging down to the speed of
+         * the slot files instead of growing the backlog. The values must be applied in order, so the logging thread
+         * must not apply them itself.
+         */
+        applier = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(APPLIER_QUEUE_CAPACITY), runnable -> {
+                    Thread thread = new Thread(runnable, "SlotsDb WAL applier");
+                    thread.setDaemon(true);
+                    return thread;
+                }, (runnable, executor) -> {
+                    if (executor.isShutdown()) {
+                        throw new RejectedExecutionException("write-ahead log is closed");
+                    }
+                    try {
+                        executor.getQueue().put(runnable);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RejectedExecutionException(e);
+                    }
+                });
+    }
+
+    /**
+     * Applies the values of the segments in <code>folder</code> to the slot files, forces them to disk and deletes the
+     * segments.
+     */
+    static void replay(File folder, FileObjectProxy fileObjectProxy) throws IOException {
+        long replayed = WriteAheadLog.replay(folder, entry -> fileObjectProxy.appendValue(entry.label, entry.value,
+                entry.timestamp, entry.flag, entry.storingPeriod));
+        if (replayed > 0) {
+            fileObjectProxy.force();
+            logger.info("Replayed {} values from the write-ahead log.", replayed);
+        }
+        WriteAheadLog.deleteSegments(folder);
+    }
+
+    /**
+     * Writes the values to the log and queues them for the slot files.
+     */
+    void log(List<WriteAheadLog.Entry> entries) throws IOException {
+        long sequence = wal.append(entries);
+        applier.execute(() -> apply(entries, sequence));
+    }
+
+    private void apply(List<WriteAheadLog.Entry> entries, long sequence) {
+        try {
+            if (sequence > appliedSequence) {
+                // all values of the older segments are applied, the slot files have to be on disk before the
+                // segments are deleted
+                fileObjectProxy.force();
+                wal.deleteSegmentsBefore(sequence);
+                appliedSequence = sequence;
+                checkpoints.incrementAndGet();
+            }
+            for (WriteAheadLog.Entry entry : entries) {
+                fileObjectProxy.appendValue(entry.label, entry.value, entry.timestamp, entry.flag,
+                        entry.storingPeriod);
+            }
+            appliedValues.addAndGet(entries.size());
+        } catch (IOException e) {
+            logger.error("error applying values from the write-ahead log", e);
+        }
+    }
+
+    /**
+     * Applies the queued values, forces the slot files to disk and deletes the log.
+     */
+    void close() throws IOException {
+        applier.shutdown();
+        try {
+            if (!applier.awaitTermination(1, TimeUnit.MINUTES)) {
+                logger.warn("Write-ahead log applier did not finish, values are replayed on next start.");
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        fileObjectProxy.force();
+        wal.close();
+    }
+
+    /**
+     * @return appended, applied values and fsyncs with their rates since the previous call
+     */
+    synchronized String metrics() {
+        long now = System.nanoTime();
+        long appends = wal.getAppendedValues();
+        long fsyncs = wal.getFsyncs();
+        double seconds = Math.max(now - rateTime, 1) / 1e9;
+        String metrics = String.format(
+                "appends=%d (%.1f/s), fsyncs=%d (%.1f/s), applied=%d, queuedBatches=%d, checkpoints=%d", appends,
+                (appends - rateAppends) / seconds, fsyncs, (fsyncs - rateFsyncs) / seconds, appliedValues.get(),
+                applier.getQueue().size(), checkpoints.get());
+        rateTime = now;
+        rateAppends = appends;
+        rateFsyncs = fsyncs;
+        return metrics;
+    }
+}
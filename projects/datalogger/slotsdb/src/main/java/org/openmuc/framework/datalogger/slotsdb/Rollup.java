@@ -0,0 +1,116 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.slotsdb;
+
+/**
+ * Count, minimum, maximum, sum and last of the valid values of a channel in one time bucket of a rollup tier.
+ */
+public final class Rollup {
+
+    private final long timestamp;
+    private int count;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+    private double sum;
+    private double last = Double.NaN;
+
+    Rollup(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    Rollup(long timestamp, int count, double min, double max, double sum, double last) {
+        this.timestamp = timestamp;
+        this.count = count;
+        this.min = min;
+        this.max = max;
+        this.sum = sum;
+        this.last = last;
+    }
+
+    void add(double value) {
+        if (count == 0 || value < min) {
+            min = value;
+        }
+        if (count == 0 || value > max) {
+            max = value;
+        }
+        sum += value;
+        last = value;
+        count++;
+    }
+
+    Rollup copy() {
+        return new Rollup(timestamp, count, min, max, sum, last);
+    }
+
+    /**
+     * @return start of the bucket in milliseconds since midnight, January 1, 1970 UTC
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return number of values
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return the smallest value or NaN if there are no values
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * @return the largest value or NaN if there are no values
+     */
+    public double getMax() {
+        return max;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    /**
+     * @return the average or NaN if there are no values
+     */
+    public double getAverage() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    /**
+     * @return the latest value or NaN if there are no values
+     */
+    public double getLast() {
+        return last;
+    }
+
+    @Override
+    public String toString() {
+        return "timestamp: " + timestamp + "; count: " + count + "; min: " + min + "; max: " + max + "; sum: " + sum
+                + "; last: " + last;
+    }
+}
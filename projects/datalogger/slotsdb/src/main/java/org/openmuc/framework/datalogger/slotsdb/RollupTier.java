@@ -0,0 +1,337 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.slotsdb;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Rollups of all channels at one resolution, e.g. one rollup per channel and minute.
+ * <p>
+ * The values of a channel are added to the rollup of the current bucket in memory while they are appended. When a value
+ * of a later bucket arrives the completed rollup is written to the file of the channel. Every file holds
+ * {@value #BUCKETS_PER_FILE} buckets of fixed size and is named after the start of its first bucket, so a bucket is read
+ * and written at a computed position. Buckets without a value are left empty.
+ * <p>
+ * After a restart the current and the previous bucket of a channel are restored from the SlotsDB files when the first
+ * value of the channel is added.
+ */
+final class RollupTier {
+
+    private static final Logger logger = LoggerFactory.getLogger(RollupTier.class);
+
+    static final String FILE_EXTENSION = ".rollup";
+    static final int BUCKETS_PER_FILE = 1440;
+
+    /*
+     * count (int), min, max, sum, last (double)
+     */
+    private static final int BUCKET_SIZE = 36;
+
+    private final long resolution;
+    private final long fileSpan;
+    private final File folder;
+    private final long lifetime;
+    private final FileObjectProxy proxy;
+    private final ConcurrentHashMap<String, Series> series = new ConcurrentHashMap<>();
+
+    /*
+     * Current bucket of a channel.
+     */
+    private static final class Series {
+
+        private final File folder;
+        private Rollup current;
+        private long latestTimestamp = Long.MIN_VALUE;
+
+        Series(File folder) {
+            this.folder = folder;
+        }
+    }
+
+    /**
+     * @param folder
+     *            folder of the tier
+     * @param resolution
+     *            length of a bucket in milliseconds
+     * @param lifetime
+     *            files ending more than this many milliseconds before the latest value are deleted, 0 to keep all
+     *            files
+     * @param proxy
+     *            SlotsDB the values are restored from after a restart
+     */
+    RollupTier(File folder, long resolution, long lifetime, FileObjectProxy proxy) {
+        this.folder = folder;
+        this.resolution = resolution;
+        this.fileSpan = resolution * BUCKETS_PER_FILE;
+        this.lifetime = lifetime;
+        this.proxy = proxy;
+    }
+
+    long getResolution() {
+        return resolution;
+    }
+
+    /**
+     * Adds a value appended to the SlotsDB. Values which are not newer than the latest value of the channel are
+     * ignored, so values replayed from the write-ahead log are not counted twice. Values which are not valid are not
+     * counted but complete the buckets before them.
+     * 
+     * @param label
+     *            the channel label
+     * @param encodedLabel
+     *            the label as used for folder names
+     * @param value
+     *            the value
+     * @param timestamp
+     *            timestamp of the value
+     * @param state
+     *            flag code of the value
+     * @throws IOException
+     *             if a completed rollup cannot be written
+     */
+    void add(String label, String encodedLabel, double value, long timestamp, byte state) throws IOException {
+        Series channelSeries = series(encodedLabel);
+        synchronized (channelSeries) {
+            if (channelSeries.current == null) {
+                restore(channelSeries, label, timestamp);
+            }
+            if (timestamp <= channelSeries.latestTimestamp) {
+                return;
+            }
+            channelSeries.latestTimestamp = timestamp;
+
+            long bucket = bucketStart(timestamp);
+            if (channelSeries.current.getTimestamp() != bucket) {
+                write(channelSeries, channelSeries.current);
+                channelSeries.current = new Rollup(bucket);
+            }
+            if (isValid(value, state)) {
+                channelSeries.current.add(value);
+            }
+        }
+    }
+
+    /**
+     * Returns the rollups of a channel starting between start and end which contain values, including the rollup of
+     * the current bucket.
+     * 
+     * @param encodedLabel
+     *            the label as used for folder names
+     * @param start
+     *            start timestamp, inclusive
+     * @param end
+     *            end timestamp, inclusive
+     * @return the rollups sorted by timestamp
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    List<Rollup> read(String encodedLabel, long start, long end) throws IOException {
+        List<Rollup> rollups = new ArrayList<>();
+        long first = bucketStart(start);
+        if (first < start) {
+            first += resolution;
+        }
+        if (first > end) {
+            return rollups;
+        }
+        long last = bucketStart(end);
+
+        File channelFolder = new File(folder, encodedLabel);
+        for (long fileStart = fileStart(first); fileStart <= last; fileStart += fileSpan) {
+            File file = new File(channelFolder, fileStart + FILE_EXTENSION);
+            if (!file.exists()) {
+                continue;
+            }
+            long from = Math.max(first, fileStart);
+            long to = Math.min(last, fileStart + fileSpan - resolution);
+            readFile(file, fileStart, from, to, rollups);
+        }
+
+        Series channelSeries = series.get(encodedLabel);
+        if (channelSeries != null) {
+            Rollup current;
+            synchronized (channelSeries) {
+                current = channelSeries.current == null ? null : channelSeries.current.copy();
+            }
+            if (current != null && current.getCount() > 0 && current.getTimestamp() >= first
+                    && current.getTimestamp() <= last) {
+                if (!rollups.isEmpty() && rollups.get(rollups.size() - 1).getTimestamp() == current.getTimestamp()) {
+                    rollups.remove(rollups.size() - 1);
+                }
+                rollups.add(current);
+            }
+        }
+        return rollups;
+    }
+
+    /**
+     * Writes the rollups of the current buckets, so they are available after a restart.
+     * 
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    void close() throws IOException {
+        for (Series channelSeries : series.values()) {
+            synchronized (channelSeries) {
+                if (channelSeries.current != null) {
+                    write(channelSeries, channelSeries.current);
+                }
+            }
+        }
+    }
+
+    private Series series(String encodedLabel) {
+        Series channelSeries = series.get(encodedLabel);
+        if (channelSeries == null) {
+            channelSeries = new Series(new File(folder, encodedLabel));
+            Series existing = series.putIfAbsent(encodedLabel, channelSeries);
+            if (existing != null) {
+                channelSeries = existing;
+            }
+        }
+        return channelSeries;
+    }
+
+    /*
+     * Rebuilds the current and the previous bucket from the values stored before the given timestamp. The previous
+     * bucket is written because it may not have been completed before a restart.
+     */
+    private void restore(Series channelSeries, String label, long timestamp) throws IOException {
+        long bucket = bucketStart(timestamp);
+        Rollup previous = new Rollup(bucket - resolution);
+        Rollup current = new Rollup(bucket);
+
+        for (Record record : proxy.read(label, bucket - resolution, timestamp - 1)) {
+            long recordTimestamp = record.getTimestamp();
+            channelSeries.latestTimestamp = Math.max(channelSeries.latestTimestamp, recordTimestamp);
+            double value = record.getValue() == null ? Double.NaN : record.getValue().asDouble();
+            if (!isValid(value, record.getFlag().getCode())) {
+                continue;
+            }
+            if (recordTimestamp < bucket) {
+                previous.add(value);
+            }
+            else {
+                current.add(value);
+            }
+        }
+        write(channelSeries, previous);
+        channelSeries.current = current;
+    }
+
+    private void write(Series channelSeries, Rollup rollup) throws IOException {
+        if (rollup.getCount() == 0) {
+            return;
+        }
+        long fileStart = fileStart(rollup.getTimestamp());
+        File file = new File(channelSeries.folder, fileStart + FILE_EXTENSION);
+        boolean newFile = !file.exists();
+        if (newFile) {
+            channelSeries.folder.mkdirs();
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(BUCKET_SIZE);
+        buffer.putInt(rollup.getCount());
+        buffer.putDouble(rollup.getMin());
+        buffer.putDouble(rollup.getMax());
+        buffer.putDouble(rollup.getSum());
+        buffer.putDouble(rollup.getLast());
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE)) {
+            FileObject.writeFully(channel, buffer, (rollup.getTimestamp() - fileStart) / resolution * BUCKET_SIZE);
+        }
+
+        if (newFile && lifetime > 0) {
+            deleteFilesEndingBefore(channelSeries.folder, rollup.getTimestamp() - lifetime);
+        }
+    }
+
+    private void readFile(File file, long fileStart, long from, long to, List<Rollup> rollups) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long position = (from - fileStart) / resolution * BUCKET_SIZE;
+            long length = Math.min((to - from) / resolution * BUCKET_SIZE + BUCKET_SIZE, channel.size() - position);
+            if (length <= 0) {
+                return;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) length);
+            FileObject.readFully(channel, buffer, position);
+            buffer.flip();
+
+            for (long timestamp = from; buffer.remaining() >= BUCKET_SIZE; timestamp += resolution) {
+                int count = buffer.getInt();
+                double min = buffer.getDouble();
+                double max = buffer.getDouble();
+                double sum = buffer.getDouble();
+                double last = buffer.getDouble();
+                if (count > 0) {
+                    rollups.add(new Rollup(timestamp, count, min, max, sum, last));
+                }
+            }
+        }
+    }
+
+    private void deleteFilesEndingBefore(File channelFolder, long timestamp) {
+        String[] files = channelFolder.list();
+        if (files == null) {
+            return;
+        }
+        for (String name : files) {
+            if (!name.endsWith(FILE_EXTENSION)) {
+                continue;
+            }
+            try {
+                long fileStart = Long.parseLong(name.substring(0, name.length() - FILE_EXTENSION.length()));
+                if (fileStart + fileSpan < timestamp) {
+                    logger.debug("Deleting expired rollup file " + name + " of " + channelFolder.getName());
+                    new File(channelFolder, name).delete();
+                }
+            } catch (NumberFormatException e) {
+                // not a rollup file
+            }
+        }
+    }
+
+    private long bucketStart(long timestamp) {
+        return Math.floorDiv(timestamp, resolution) * resolution;
+    }
+
+    private long fileStart(long timestamp) {
+        return Math.floorDiv(timestamp, fileSpan) * fileSpan;
+    }
+
+    private static boolean isValid(double value, byte state) {
+        return state == Flag.VALID.getCode() && !Double.isNaN(value);
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.slotsdb;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.Vector;
+
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+
+/**
+ * A <code>.slots</code> file in the original format: a 16 byte header (start timestamp and storage period) followed by
+ * one 9 byte slot (double value and flag) per storage period.
+ * <p>
+ * Appends are collected in a write buffer and written with positional writes on {@link #flush()}.
+ */
+final class SlotFileObject extends FileObject {
+
+    static final int HEADER_SIZE = 16;
+    static final int SLOT_SIZE = 9;
+
+    private static final int WRITE_BUFFER_SLOTS = 910;
+
+    private ByteBuffer writeBuffer;
+    /*
+     * File length will be cached to avoid system calls an improve I/O Performance. Includes the slots in the write
+     * buffer.
+     */
+    private long length = 0;
+
+    SlotFileObject(String filename) throws IOException {
+        this(new File(filename));
+    }
+
+    SlotFileObject(File file) throws IOException {
+        super(file);
+        length = dataFile.length();
+        committedLength = length;
+        if (dataFile.exists() && length >= HEADER_SIZE) {
+            /*
+             * File already exists -> get file Header (startTime and step-frequency)
+             */
+            try (FileChannel headerChannel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                readFully(headerChannel, header, 0);
+                header.flip();
+                startTimeStamp = header.getLong();
+                storagePeriod = header.getLong();
+            }
+        }
+    }
+
+    @Override
+    public void createFileAndHeader(long startTimeStamp, long stepIntervall) throws IOException {
+        if (!dataFile.exists() || length < HEADER_SIZE) {
+            dataFile.getParentFile().mkdirs();
+            if (dataFile.exists() && length < HEADER_SIZE) {
+                // file corrupted (header shorter that 16 bytes)
+                close();
+                dataFile.delete();
+            }
+            dataFile.createNewFile();
+            this.startTimeStamp = startTimeStamp;
+            storagePeriod = stepIntervall;
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putLong(startTimeStamp);
+            header.putLong(stepIntervall);
+            header.flip();
+            write(header, 0);
+            length = HEADER_SIZE;
+            committedLength = HEADER_SIZE;
+        }
+    }
+
+    @Override
+    public void append(double value, long timestamp, byte flag) throws IOException {
+        long writePosition = getBytePosition(timestamp);
+        if (writePosition < length) {
+            /*
+             * value has already been stored for this timeslot or timestamp is before the start of this file -> handle?
+             * AVERAGE, MIN, MAX, LAST speichern?!
+             */
+            return;
+        }
+
+        if (writeBuffer == null) {
+            writeBuffer = ByteBuffer.allocate(WRITE_BUFFER_SLOTS * SLOT_SIZE);
+            appending = true;
+        }
+
+        /*
+         * there are missing some values missing -> fill up with NaN!
+         */
+        while (length < writePosition) {
+            putSlot(Double.NaN, Flag.NO_VALUE_RECEIVED_YET.getCode());
+        }
+        putSlot(value, flag);
+        /*
+         * Data will be written to disk after calling flush() method.
+         */
+    }
+
+    private void putSlot(double value, byte flag) throws IOException {
+        if (writeBuffer.remaining() < SLOT_SIZE) {
+            flush();
+        }
+        writeBuffer.putDouble(value);
+        writeBuffer.put(flag);
+        length += SLOT_SIZE;
+    }
+
+    @Override
+    public long getTimestampForLatestValue() {
+        return startTimeStamp + (((length - HEADER_SIZE) / SLOT_SIZE) - 1) * storagePeriod;
+    }
+
+    /**
+     * calculates the position in a file for a certain timestamp
+     * 
+     * @param timestamp
+     *            the searched timestamp
+     * @return position the position of the timestamp
+     */
+    private long getBytePosition(long timestamp) {
+        if (timestamp >= startTimeStamp) {
+
+            /*
+             * get position for timestamp 117 000: 117 000 - 100 000 = 17 000 17 * 000 / 5 000 = 3.4 Math.round(3.4) = 3
+             * 3*(8+1) = 27 27 + 16 = 43 = position to store to!
+             */
+            double pos = (double) (timestamp - startTimeStamp) / storagePeriod;
+            if (pos % 1 != 0) { /* faster */
+                pos = Math.round(pos);
+            }
+            return (long) (pos * SLOT_SIZE + HEADER_SIZE);
+        }
+        else {
+            // not in file! should never happen...
+            return -1;
+        }
+    }
+
+    @Override
+    public Record read(long timestamp) throws IOException {
+        timestamp = getClosestTimestamp(timestamp); // round to: startTimestamp
+        // + n*stepIntervall
+        if (timestamp >= startTimeStamp && timestamp <= getTimestampForLatestValue()) {
+            ByteBuffer slot = readBytes(getBytePosition(timestamp), SLOT_SIZE);
+            double toReturn = slot.getDouble();
+            if (!Double.isNaN(toReturn)) {
+                return new Record(new DoubleValue(toReturn), timestamp, Flag.newFlag(slot.get()));
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public List<Record> read(long start, long end) throws IOException {
+        start = getClosestTimestamp(start); // round to: startTimestamp +
+                                            // n*stepIntervall
+        end = getClosestTimestamp(end); // round to: startTimestamp +
+                                        // n*stepIntervall
+
+        List<Record> toReturn = new Vector<>();
+
+        if (start < end) {
+            if (start < startTimeStamp) {
+                // of this file.
+                start = startTimeStamp;
+            }
+            if (end > getTimestampForLatestValue()) {
+                end = getTimestampForLatestValue();
+            }
+            if (start > end) {
+                return toReturn;
+            }
+
+            long timestampcounter = start;
+            long startPos = getBytePosition(start);
+            long endPos = getBytePosition(end);
+
+            ByteBuffer bb = readBytes(startPos, (int) (endPos - startPos) + SLOT_SIZE);
+
+            for (int i = 0; i <= (endPos - startPos) / SLOT_SIZE; i++) {
+                double d = bb.getDouble();
+                byte flag = bb.get();
+                if (!Double.isNaN(d)) {
+                    toReturn.add(new Record(new DoubleValue(d), timestampcounter, Flag.newFlag(flag)));
+                }
+                timestampcounter += storagePeriod;
+            }
+
+        }
+        else if (start == end) {
+            toReturn.add(read(start));
+            toReturn.removeAll(Collections.singleton(null));
+        }
+        return toReturn; // Always return a list -> might be empty -> never is
+                         // null, to avoid NP's
+    }
+
+    /**
+     * Returns <code>count</code> bytes starting at <code>position</code>, including slots which are not flushed yet.
+     */
+    private ByteBuffer readBytes(long position, int count) throws IOException {
+        long end = position + count;
+        if (end <= committedLength) {
+            return readCommitted(position, count);
+        }
+
+        ByteBuffer bytes = ByteBuffer.allocate(count);
+        if (position < committedLength) {
+            bytes.put(readCommitted(position, (int) (committedLength - position)));
+        }
+        int offset = (int) (Math.max(position, committedLength) - committedLength);
+        bytes.put(writeBuffer.array(), offset, bytes.remaining());
+        bytes.flip();
+        return bytes;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        super.close();
+        writeBuffer = null;
+        appending = false;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (writeBuffer == null || writeBuffer.position() == 0) {
+            return;
+        }
+        writeBuffer.flip();
+        write(writeBuffer, committedLength);
+        committedLength += writeBuffer.limit();
+        writeBuffer.clear();
+    }
+}
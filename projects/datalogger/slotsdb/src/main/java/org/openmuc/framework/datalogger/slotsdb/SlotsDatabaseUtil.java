@@ -21,11 +21,10 @@
 
 package org.openmuc.framework.datalogger.slotsdb;
 
-import java.io.DataInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 
+import org.openmuc.framework.data.Record;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,16 +38,18 @@ public final class SlotsDatabaseUtil {
             return;
         }
         else {
-            DataInputStream dis = new DataInputStream(new FileInputStream(file));
-            try {
-                if (file.length() >= 16) {
-                    logger.debug("StartTimestamp: " + dis.readLong() + "  -  StepIntervall: " + dis.readLong());
-                    while (dis.available() >= 9) {
-                        logger.debug(dis.readDouble() + "  -\t  Flag: " + dis.readByte());
+            FileObject fileObject = FileObject.open(file);
+            if (fileObject != null) {
+                try {
+                    logger.debug("StartTimestamp: " + fileObject.getStartTimeStamp() + "  -  StepIntervall: "
+                            + fileObject.getStoringPeriod());
+                    for (Record record : fileObject.readFully()) {
+                        logger.debug(record.getTimestamp() + ": " + record.getValue().asDouble() + "  -\t  Flag: "
+                                + record.getFlag().getCode());
                     }
+                } finally {
+                    fileObject.close();
                 }
-            } finally {
-                dis.close();
             }
         }
     }
@@ -21,9 +21,15 @@
 
 package org.openmuc.framework.datalogger.slotsdb;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+import org.apache.felix.service.command.CommandProcessor;
 
 import org.openmuc.framework.data.Record;
 import org.openmuc.framework.data.TypeConversionException;
@@ -37,7 +43,8 @@ import org.osgi.service.component.annotations.Deactivate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-@Component
+@Component(property = { CommandProcessor.COMMAND_SCOPE + ":String=openmuc",
+        CommandProcessor.COMMAND_FUNCTION + ":String=slotsdb" })
 public final class SlotsDb implements DataLoggerService {
 
     /*
@@ -79,10 +86,39 @@ public final class SlotsDb implements DataLoggerService {
     public static final String DATA_LIFETIME_IN_DAYS = System
             .getProperty(SlotsDb.class.getPackage().getName().toLowerCase() + ".limit_days");
     /*
-     * configures the maximum Database Size (in MB).
+     * configures the maximum Database Size (in MB). Only the day folders are counted, the oldest day is deleted when
+     * they exceed the limit.
      */
     public static final String MAX_DATABASE_SIZE = System
             .getProperty(SlotsDb.class.getPackage().getName().toLowerCase() + ".limit_size");
+    /*
+     * format of new files: "block" (default) for compressed blocks with summaries or "slots" for one uncompressed slot
+     * per value. Files of both formats are read.
+     */
+    public static final String FILE_FORMAT = System
+            .getProperty(SlotsDb.class.getPackage().getName().toLowerCase() + ".file_format");
+    public static final String FILE_FORMAT_BLOCK = "block";
+    public static final String FILE_FORMAT_SLOTS = "slots";
+    /*
+     * set to true to write the values of a logging tick to a write-ahead log with one fsync and apply them to the slot
+     * files in the background instead of writing every value directly.
+     */
+    public static final String WRITE_AHEAD_LOG = System
+            .getProperty(SlotsDb.class.getPackage().getName().toLowerCase() + ".wal");
+    /*
+     * Folder of the write-ahead log in the root folder.
+     */
+    public static final String WRITE_AHEAD_LOG_FOLDER = "wal";
+    /*
+     * comma separated resolutions in milliseconds of the rollup tiers. Set to an empty string to not maintain rollups.
+     */
+    public static final String ROLLUPS = System
+            .getProperty(SlotsDb.class.getPackage().getName().toLowerCase() + ".rollups");
+    public static final String ROLLUPS_DEFAULT = "60000,900000,3600000";
+    /*
+     * Folder of the rollup tiers in the root folder.
+     */
+    public static final String ROLLUP_FOLDER = "rollup";
     /*
      * Minimum Size for SLOTSDB (in MB).
      */
@@ -98,6 +134,7 @@ public final class SlotsDb implements DataLoggerService {
     private static final Logger logger = LoggerFactory.getLogger(SlotsDb.class);
     private final HashMap<String, Integer> loggingIntervalsById = new HashMap<>();
     private FileObjectProxy fileObjectProxy;
+    private GroupCommitLog groupCommitLog;
 
     @Activate
     protected void activate(ComponentContext context) {
@@ -106,12 +143,39 @@ public final class SlotsDb implements DataLoggerService {
             rootFolder = SlotsDb.DEFAULT_DB_ROOT_FOLDER;
         }
 
-        fileObjectProxy = new FileObjectProxy(rootFolder);
+        boolean groupCommit = Boolean.parseBoolean(WRITE_AHEAD_LOG);
+        fileObjectProxy = new FileObjectProxy(rootFolder, !groupCommit);
+
+        File walFolder = new File(rootFolder, WRITE_AHEAD_LOG_FOLDER);
+        try {
+            if (groupCommit) {
+                groupCommitLog = new GroupCommitLog(walFolder, fileObjectProxy);
+                logger.info("Group commit enabled, write-ahead log in " + walFolder);
+            }
+            else if (walFolder.isDirectory()) {
+                GroupCommitLog.replay(walFolder, fileObjectProxy);
+            }
+        } catch (IOException e) {
+            logger.error("error opening slotsdb write-ahead log, writing values directly: " + e.getMessage());
+            groupCommitLog = null;
+        }
     }
 
     @Deactivate
     protected void deactivate(ComponentContext context) {
-        // TODO
+        if (fileObjectProxy == null) {
+            return;
+        }
+        try {
+            if (groupCommitLog != null) {
+                groupCommitLog.close();
+                groupCommitLog = null;
+            }
+            fileObjectProxy.close();
+        } catch (IOException e) {
+            logger.error("error closing slotsdb files: " + e.getMessage());
+        }
+        fileObjectProxy = null;
     }
 
     @Override
@@ -124,6 +188,39 @@ public final class SlotsDb implements DataLoggerService {
         return fileObjectProxy.read(channelId, startTime, endTime);
     }
 
+    @Override
+    public List<Record> getRecords(String channelId, long startTime, long endTime, long resolution)
+            throws IOException {
+        return fileObjectProxy.read(channelId, startTime, endTime, resolution);
+    }
+
+    @Override
+    public void readRecords(String channelId, long startTime, long endTime, Consumer<Record> consumer)
+            throws IOException {
+        fileObjectProxy.read(channelId, startTime, endTime, consumer);
+    }
+
+    /**
+     * Returns count, minimum, maximum, average and last value of a channel per bucket of the coarsest rollup tier whose
+     * resolution does not exceed the given one.
+     * 
+     * @param channelId
+     *            the channel ID.
+     * @param startTime
+     *            start of the first bucket in milliseconds since midnight, January 1, 1970 UTC. inclusive
+     * @param endTime
+     *            start of the last bucket in milliseconds since midnight, January 1, 1970 UTC. inclusive
+     * @param resolution
+     *            the coarsest acceptable resolution in milliseconds
+     * @return the rollups of buckets with valid values, sorted by timestamp
+     * @throws IOException
+     *             if any kind of error occurs accessing the logged data.
+     */
+    public List<Rollup> getRollups(String channelId, long startTime, long endTime, long resolution)
+            throws IOException {
+        return fileObjectProxy.readRollups(channelId, startTime, endTime, resolution);
+    }
+
     @Override
     public Record getLatestLogRecord(String channelId) throws IOException {
         return fileObjectProxy.readLatest(channelId);
@@ -137,20 +234,37 @@ public final class SlotsDb implements DataLoggerService {
         }
     }
 
+    /**
+     * Shell command printing the appends and fsyncs of the write-ahead log.
+     */
+    public String slotsdb() {
+        GroupCommitLog groupCommitLog = this.groupCommitLog;
+        if (groupCommitLog == null) {
+            return "group commit disabled";
+        }
+        return groupCommitLog.metrics();
+    }
+
     @Override
     public void log(List<LoggingRecord> containers, long timestamp) {
-        for (LoggingRecord container : containers) {
-            Double value;
-            if (container.getRecord().getValue() == null) {
-                value = Double.NaN;
+        GroupCommitLog groupCommitLog = this.groupCommitLog;
+        if (groupCommitLog != null) {
+            List<WriteAheadLog.Entry> entries = new ArrayList<>(containers.size());
+            for (LoggingRecord container : containers) {
+                String channelId = container.getChannelId();
+                entries.add(new WriteAheadLog.Entry(channelId, doubleValue(container), timestamp,
+                        container.getRecord().getFlag().getCode(), loggingIntervalsById.get(channelId)));
             }
-            else {
-                try {
-                    value = container.getRecord().getValue().asDouble();
-                } catch (TypeConversionException e) {
-                    value = Double.NaN;
-                }
+            try {
+                groupCommitLog.log(entries);
+                return;
+            } catch (IOException | RejectedExecutionException e) {
+                logger.error("error writing to write-ahead log, writing values directly", e);
             }
+        }
+
+        for (LoggingRecord container : containers) {
+            Double value = doubleValue(container);
 
             // Long timestamp = container.getRecord().getTimestamp();
             // if (timestamp == null) {
@@ -167,6 +281,17 @@ public final class SlotsDb implements DataLoggerService {
         }
     }
 
+    private static double doubleValue(LoggingRecord container) {
+        if (container.getRecord().getValue() == null) {
+            return Double.NaN;
+        }
+        try {
+            return container.getRecord().getValue().asDouble();
+        } catch (TypeConversionException e) {
+            return Double.NaN;
+        }
+    }
+
     @Override
     public void logEvent(List<LoggingRecord> containers, long timestamp) {
         logger.warn("Event logging is not implemented, yet.");
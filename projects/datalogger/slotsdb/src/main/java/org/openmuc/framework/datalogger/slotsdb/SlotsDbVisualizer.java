@@ -87,8 +87,11 @@ public final class SlotsDbVisualizer extends JFrame {
                 file = fc.getSelectedFile();
                 java.util.List<Record> res = null;
                 try {
-                    FileObject fo = new FileObject(file);
-                    res = fo.readFully();
+                    FileObject fo = FileObject.open(file);
+                    if (fo != null) {
+                        res = fo.readFully();
+                        fo.close();
+                    }
                 } catch (IOException e1) {
                     logger.error("error read fully. ", e);
                     e1.printStackTrace();
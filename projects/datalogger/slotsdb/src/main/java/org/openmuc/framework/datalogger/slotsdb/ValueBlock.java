@@ -0,0 +1,335 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.slotsdb;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A block of consecutive slots of a {@link BlockFileObject}.
+ * <p>
+ * On disk a block consists of a {@value #HEADER_SIZE} byte header followed by the values and the flags:
+ * 
+ * <pre>
+ * int    slot count
+ * int    value count (slots which are not NaN)
+ * double minimum value
+ * double maximum value
+ * double sum of the values
+ * int    length of the values in bytes
+ * int    length of the flags in bytes
+ * </pre>
+ * 
+ * The values are compressed by XOR with the previous value like in Facebook's Gorilla: an unchanged value takes one
+ * bit, a value differing in the same bits as the previous one takes two bits plus the differing bits. Gaps are stored
+ * as NaN and cost one bit per slot. The flags are run length encoded as pairs of a variable length run length and the
+ * flag.
+ * <p>
+ * The values are encoded while they are added, so writing a block only copies the encoded bytes.
+ */
+final class ValueBlock {
+
+    static final int HEADER_SIZE = 40;
+
+    private final double[] values;
+    private final byte[] flags;
+    private int size;
+    private final ValueSummary summary = new ValueSummary();
+
+    private byte[] valueBits = new byte[64];
+    private long bitCount;
+    private long previousBits;
+    private int previousLeading = -1;
+    private int previousTrailing;
+
+    private int[] runLengths = new int[4];
+    private byte[] runFlags = new byte[4];
+    private int runs;
+
+    ValueBlock(int capacity) {
+        values = new double[capacity];
+        flags = new byte[capacity];
+    }
+
+    /**
+     * Decodes a block from <code>block</code> to continue appending to it.
+     */
+    static ValueBlock decode(ByteBuffer block, int capacity) {
+        ValueBlock valueBlock = new ValueBlock(capacity);
+        double[] values = new double[capacity];
+        byte[] flags = new byte[capacity];
+        int size = decode(block, values, flags);
+        for (int i = 0; i < size; i++) {
+            valueBlock.add(values[i], flags[i]);
+        }
+        return valueBlock;
+    }
+
+    /**
+     * Decodes the slots of the block at the position of <code>block</code> into <code>values</code> and
+     * <code>flags</code>.
+     * 
+     * @return the number of slots
+     */
+    static int decode(ByteBuffer block, double[] values, byte[] flags) {
+        int start = block.position();
+        int size = block.getInt(start);
+        int valuesLength = block.getInt(start + 32);
+        int flagsLength = block.getInt(start + 36);
+
+        BitReader reader = new BitReader(block, start + HEADER_SIZE);
+        long bits = 0;
+        int leading = 0;
+        int meaningful = 0;
+        for (int i = 0; i < size; i++) {
+            if (i == 0) {
+                bits = reader.read(64);
+            }
+            else if (reader.read(1) != 0) {
+                if (reader.read(1) != 0) {
+                    leading = (int) reader.read(5);
+                    meaningful = (int) reader.read(6) + 1;
+                }
+                bits ^= reader.read(meaningful) << (64 - leading - meaningful);
+            }
+            values[i] = Double.longBitsToDouble(bits);
+        }
+
+        ByteBuffer flagBytes = block.duplicate();
+        flagBytes.position(start + HEADER_SIZE + valuesLength);
+        int i = 0;
+        while (i < size) {
+            int runLength = readVarInt(flagBytes);
+            Arrays.fill(flags, i, i + runLength, flagBytes.get());
+            i += runLength;
+        }
+
+        block.position(start + HEADER_SIZE + valuesLength + flagsLength);
+        return size;
+    }
+
+    /**
+     * Returns the summary in the header of the block at the position of <code>block</code>.
+     */
+    static ValueSummary summary(ByteBuffer block) {
+        int start = block.position();
+        return new ValueSummary(block.getInt(start + 4), block.getDouble(start + 8), block.getDouble(start + 16),
+                block.getDouble(start + 24));
+    }
+
+    /**
+     * Returns the number of slots of the block at the position of <code>block</code>.
+     */
+    static int size(ByteBuffer block) {
+        return block.getInt(block.position());
+    }
+
+    /**
+     * Returns the length of the block at the position of <code>block</code> including its header.
+     */
+    static int length(ByteBuffer block) {
+        int start = block.position();
+        return HEADER_SIZE + block.getInt(start + 32) + block.getInt(start + 36);
+    }
+
+    void add(double value, byte flag) {
+        values[size] = value;
+        flags[size] = flag;
+        if (!Double.isNaN(value)) {
+            summary.add(value);
+        }
+        addValueBits(Double.doubleToRawLongBits(value));
+        addFlag(flag);
+        size++;
+    }
+
+    private void addValueBits(long bits) {
+        if (size == 0) {
+            writeBits(bits, 64);
+            previousBits = bits;
+            return;
+        }
+        long xor = bits ^ previousBits;
+        previousBits = bits;
+        if (xor == 0) {
+            writeBits(0, 1);
+            return;
+        }
+        int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+        int trailing = Long.numberOfTrailingZeros(xor);
+        if (previousLeading != -1 && leading >= previousLeading && trailing >= previousTrailing) {
+            // differing bits fit into the window of the previous value
+            writeBits(2, 2);
+            int meaningful = 64 - previousLeading - previousTrailing;
+            writeBits(xor >>> previousTrailing, meaningful);
+        }
+        else {
+            writeBits(3, 2);
+            int meaningful = 64 - leading - trailing;
+            writeBits(leading, 5);
+            writeBits(meaningful - 1, 6);
+            writeBits(xor >>> trailing, meaningful);
+            previousLeading = leading;
+            previousTrailing = trailing;
+        }
+    }
+
+    private void writeBits(long bits, int count) {
+        int needed = (int) ((bitCount + count + 7) >>> 3);
+        if (needed > valueBits.length) {
+            valueBits = Arrays.copyOf(valueBits, Math.max(needed, valueBits.length * 2));
+        }
+        while (count > 0) {
+            int free = 8 - (int) (bitCount & 7);
+            int take = Math.min(free, count);
+            int chunk = (int) (bits >>> (count - take)) & ((1 << take) - 1);
+            valueBits[(int) (bitCount >>> 3)] |= chunk << (free - take);
+            bitCount += take;
+            count -= take;
+        }
+    }
+
+    private void addFlag(byte flag) {
+        if (runs > 0 && runFlags[runs - 1] == flag) {
+            runLengths[runs - 1]++;
+            return;
+        }
+        if (runs == runFlags.length) {
+            runLengths = Arrays.copyOf(runLengths, runs * 2);
+            runFlags = Arrays.copyOf(runFlags, runs * 2);
+        }
+        runLengths[runs] = 1;
+        runFlags[runs] = flag;
+        runs++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isFull() {
+        return size == values.length;
+    }
+
+    double value(int index) {
+        return values[index];
+    }
+
+    byte flag(int index) {
+        return flags[index];
+    }
+
+    ValueSummary summary() {
+        return summary;
+    }
+
+    private int valuesLength() {
+        return (int) ((bitCount + 7) >>> 3);
+    }
+
+    private int flagsLength() {
+        int length = 0;
+        for (int i = 0; i < runs; i++) {
+            length += varIntLength(runLengths[i]) + 1;
+        }
+        return length;
+    }
+
+    /**
+     * @return the length of the encoded block including its header
+     */
+    int encodedLength() {
+        return HEADER_SIZE + valuesLength() + flagsLength();
+    }
+
+    /**
+     * Writes the encoded block to <code>buffer</code>.
+     */
+    void writeTo(ByteBuffer buffer) {
+        int valuesLength = valuesLength();
+        buffer.putInt(size);
+        buffer.putInt(summary.getCount());
+        buffer.putDouble(summary.getMin());
+        buffer.putDouble(summary.getMax());
+        buffer.putDouble(summary.getSum());
+        buffer.putInt(valuesLength);
+        buffer.putInt(flagsLength());
+        buffer.put(valueBits, 0, valuesLength);
+        for (int i = 0; i < runs; i++) {
+            writeVarInt(buffer, runLengths[i]);
+            buffer.put(runFlags[i]);
+        }
+    }
+
+    private static int varIntLength(int value) {
+        int length = 1;
+        while ((value >>>= 7) != 0) {
+            length++;
+        }
+        return length;
+    }
+
+    private static void writeVarInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int readVarInt(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static final class BitReader {
+
+        private final ByteBuffer buffer;
+        private final int start;
+        private long bitPosition;
+
+        BitReader(ByteBuffer buffer, int start) {
+            this.buffer = buffer;
+            this.start = start;
+        }
+
+        long read(int count) {
+            long bits = 0;
+            while (count > 0) {
+                int available = 8 - (int) (bitPosition & 7);
+                int take = Math.min(available, count);
+                int b = buffer.get(start + (int) (bitPosition >>> 3)) & 0xFF;
+                bits = (bits << take) | ((b >>> (available - take)) & ((1 << take) - 1));
+                bitPosition += take;
+                count -= take;
+            }
+            return bits;
+        }
+    }
+}
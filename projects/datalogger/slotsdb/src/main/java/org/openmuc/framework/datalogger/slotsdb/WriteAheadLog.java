@@ -0,0 +1,243 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.slotsdb;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead log of a SlotsDB in group-commit mode.
+ * <p>
+ * {@link #append(List)} writes the values of one logging tick as one batch to the current segment and forces it to
+ * disk with one fsync. Segments are files named <code>&lt;sequence&gt;.wal</code>. A new segment is started when the
+ * current one exceeds the segment size, segments are deleted once their values are flushed to the slot files.
+ * <p>
+ * A batch consists of the payload length (int), the CRC32 of the payload (int) and the payload: the number of values
+ * (int) followed by label (modified UTF-8), value (double), timestamp (long), flag (byte) and storing period (long) of
+ * each value. A batch which was not written completely is detected by its length or checksum and ignored on replay.
+ */
+final class WriteAheadLog {
+
+    static final String FILE_EXTENSION = ".wal";
+
+    private static final int BATCH_HEADER_SIZE = 8;
+
+    private final File folder;
+    private final long segmentSize;
+
+    private FileChannel segment;
+    private long sequence;
+    private long segmentLength;
+
+    private final AtomicLong appendedValues = new AtomicLong();
+    private final AtomicLong fsyncs = new AtomicLong();
+
+    /**
+     * A value in the log.
+     */
+    static final class Entry {
+
+        final String label;
+        final double value;
+        final long timestamp;
+        final byte flag;
+        final long storingPeriod;
+
+        Entry(String label, double value, long timestamp, byte flag, long storingPeriod) {
+            this.label = label;
+            this.value = value;
+            this.timestamp = timestamp;
+            this.flag = flag;
+            this.storingPeriod = storingPeriod;
+        }
+    }
+
+    interface EntryConsumer {
+        void accept(Entry entry) throws IOException;
+    }
+
+    /**
+     * Opens a new segment after the existing ones. Existing segments should have been replayed before.
+     */
+    WriteAheadLog(File folder, long segmentSize) throws IOException {
+        this.folder = folder;
+        this.segmentSize = segmentSize;
+        folder.mkdirs();
+        List<Long> sequences = segmentSequences(folder);
+        sequence = sequences.isEmpty() ? 0 : sequences.get(sequences.size() - 1) + 1;
+        openSegment();
+    }
+
+    /**
+     * Passes all values in the segments of <code>folder</code> to <code>consumer</code> in the order they were
+     * appended.
+     * 
+     * @return the number of values
+     */
+    static long replay(File folder, EntryConsumer consumer) throws IOException {
+        long count = 0;
+        for (long segmentSequence : segmentSequences(folder)) {
+            ByteBuffer segment = ByteBuffer.wrap(Files.readAllBytes(segmentFile(folder, segmentSequence).toPath()));
+            while (segment.remaining() >= BATCH_HEADER_SIZE) {
+                int length = segment.getInt();
+                int checksum = segment.getInt();
+                if (length < 0 || length > segment.remaining()) {
+                    break;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(segment.array(), segment.position(), length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                DataInputStream payload = new DataInputStream(
+                        new ByteArrayInputStream(segment.array(), segment.position(), length));
+                int entries = payload.readInt();
+                for (int i = 0; i < entries; i++) {
+                    consumer.accept(new Entry(payload.readUTF(), payload.readDouble(), payload.readLong(),
+                            payload.readByte(), payload.readLong()));
+                    count++;
+                }
+                segment.position(segment.position() + length);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Deletes all segments in <code>folder</code>.
+     */
+    static void deleteSegments(File folder) {
+        for (long segmentSequence : segmentSequences(folder)) {
+            segmentFile(folder, segmentSequence).delete();
+        }
+    }
+
+    private static List<Long> segmentSequences(File folder) {
+        String[] names = folder.list();
+        if (names == null) {
+            return Collections.emptyList();
+        }
+        List<Long> sequences = new ArrayList<>();
+        for (String name : names) {
+            if (name.endsWith(FILE_EXTENSION)) {
+                try {
+                    sequences.add(Long.parseLong(name.substring(0, name.length() - FILE_EXTENSION.length())));
+                } catch (NumberFormatException e) {
+                    // not a segment
+                }
+            }
+        }
+        Collections.sort(sequences);
+        return sequences;
+    }
+
+    private static File segmentFile(File folder, long sequence) {
+        return new File(folder, sequence + FILE_EXTENSION);
+    }
+
+    private void openSegment() throws IOException {
+        segment = FileChannel.open(segmentFile(folder, sequence).toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        segmentLength = 0;
+    }
+
+    /**
+     * Appends the values as one batch and forces them to disk.
+     * 
+     * @return the sequence of the segment the values were written to
+     */
+    synchronized long append(List<Entry> entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(BATCH_HEADER_SIZE + entries.size() * 40);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(0); // place holder for the batch header
+        out.writeInt(entries.size());
+        for (Entry entry : entries) {
+            out.writeUTF(entry.label);
+            out.writeDouble(entry.value);
+            out.writeLong(entry.timestamp);
+            out.writeByte(entry.flag);
+            out.writeLong(entry.storingPeriod);
+        }
+        out.flush();
+
+        ByteBuffer batch = ByteBuffer.wrap(bytes.toByteArray());
+        int payloadLength = batch.limit() - BATCH_HEADER_SIZE;
+        CRC32 crc = new CRC32();
+        crc.update(batch.array(), BATCH_HEADER_SIZE, payloadLength);
+        batch.putInt(0, payloadLength);
+        batch.putInt(4, (int) crc.getValue());
+
+        if (segmentLength > 0 && segmentLength + batch.limit() > segmentSize) {
+            segment.close();
+            sequence++;
+            openSegment();
+        }
+        while (batch.hasRemaining()) {
+            segment.write(batch);
+        }
+        segment.force(false);
+        segmentLength += batch.limit();
+        appendedValues.addAndGet(entries.size());
+        fsyncs.incrementAndGet();
+        return sequence;
+    }
+
+    /**
+     * Deletes the segments before the segment with the given sequence.
+     */
+    synchronized void deleteSegmentsBefore(long sequence) {
+        for (long segmentSequence : segmentSequences(folder)) {
+            if (segmentSequence < sequence) {
+                segmentFile(folder, segmentSequence).delete();
+            }
+        }
+    }
+
+    /**
+     * Closes the log and deletes all segments. Must only be called after all values were flushed to the slot files.
+     */
+    synchronized void close() throws IOException {
+        segment.close();
+        deleteSegments(folder);
+    }
+
+    long getAppendedValues() {
+        return appendedValues.get();
+    }
+
+    long getFsyncs() {
+        return fsyncs.get();
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.slotsdb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+
+public class BlockFileObjectTest {
+
+    private static final long START = 1704103200000L;
+    private static final long PERIOD = 1000;
+
+    @TempDir
+    File folder;
+
+    @Test
+    public void roundTripWithGapsAndFlags() throws Exception {
+        File file = new File(folder, START + SlotsDb.FILE_EXTENSION);
+        BlockFileObject fileObject = new BlockFileObject(file);
+        fileObject.createFileAndHeader(START, PERIOD);
+
+        int slots = 1000;
+        double[] expected = values(slots);
+        for (int i = 0; i < slots; i++) {
+            if (!Double.isNaN(expected[i])) {
+                fileObject.append(expected[i], START + i * PERIOD, flag(i).getCode());
+            }
+        }
+        assertRecords(expected, fileObject.readFully());
+        fileObject.close();
+
+        FileObject reopened = FileObject.open(file);
+        assertTrue(reopened instanceof BlockFileObject);
+        assertRecords(expected, reopened.readFully());
+        assertNull(reopened.read(START + 10 * PERIOD));
+        assertEquals(expected[11], reopened.read(START + 11 * PERIOD).getValue().asDouble());
+        // slot 510 is a gap
+        assertEquals(99, reopened.read(START + 500 * PERIOD, START + 599 * PERIOD).size());
+        reopened.close();
+    }
+
+    @Test
+    public void appendsAfterReopenContinueLastBlock() throws Exception {
+        File file = new File(folder, START + SlotsDb.FILE_EXTENSION);
+        FileObject fileObject = FileObject.create(file.getPath(), START, PERIOD);
+        for (int i = 0; i < 300; i++) {
+            fileObject.append(i, START + i * PERIOD, Flag.VALID.getCode());
+        }
+        fileObject.close();
+
+        fileObject = FileObject.open(file);
+        for (int i = 300; i < 600; i++) {
+            fileObject.append(i, START + i * PERIOD, Flag.VALID.getCode());
+        }
+        fileObject.flush();
+
+        List<Record> records = FileObject.open(file).readFully();
+        assertEquals(600, records.size());
+        for (int i = 0; i < 600; i++) {
+            assertEquals(i, records.get(i).getValue().asDouble());
+            assertEquals(START + i * PERIOD, records.get(i).getTimestamp().longValue());
+        }
+        fileObject.close();
+    }
+
+    @Test
+    public void incompleteLastBlockIsIgnored() throws Exception {
+        File file = new File(folder, START + SlotsDb.FILE_EXTENSION);
+        FileObject fileObject = FileObject.create(file.getPath(), START, PERIOD);
+        for (int i = 0; i < 300; i++) {
+            fileObject.append(i, START + i * PERIOD, Flag.VALID.getCode());
+        }
+        fileObject.close();
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        fileObject = FileObject.open(file);
+        assertEquals(START + (BlockFileObject.BLOCK_SLOTS - 1) * PERIOD, fileObject.getTimestampForLatestValue());
+        fileObject.append(1000, START + 400 * PERIOD, Flag.VALID.getCode());
+        fileObject.close();
+
+        List<Record> records = FileObject.open(file).readFully();
+        assertEquals(BlockFileObject.BLOCK_SLOTS + 1, records.size());
+        assertEquals(1000, records.get(BlockFileObject.BLOCK_SLOTS).getValue().asDouble());
+    }
+
+    @Test
+    public void summaryMatchesValues() throws Exception {
+        FileObject fileObject = FileObject.create(new File(folder, START + SlotsDb.FILE_EXTENSION).getPath(), START,
+                PERIOD);
+        int slots = 2000;
+        double[] expected = values(slots);
+        for (int i = 0; i < slots; i++) {
+            if (!Double.isNaN(expected[i])) {
+                fileObject.append(expected[i], START + i * PERIOD, Flag.VALID.getCode());
+            }
+        }
+
+        int from = 100;
+        int to = 1800;
+        ValueSummary expectedSummary = new ValueSummary();
+        for (int i = from; i <= to; i++) {
+            if (!Double.isNaN(expected[i])) {
+                expectedSummary.add(expected[i]);
+            }
+        }
+        ValueSummary summary = fileObject.summarize(START + from * PERIOD, START + to * PERIOD);
+        assertEquals(expectedSummary.getCount(), summary.getCount());
+        assertEquals(expectedSummary.getMin(), summary.getMin());
+        assertEquals(expectedSummary.getMax(), summary.getMax());
+        assertEquals(expectedSummary.getSum(), summary.getSum(), 1e-6);
+        fileObject.close();
+    }
+
+    @Test
+    public void slotFilesAreStillRead() throws Exception {
+        File file = new File(folder, START + SlotsDb.FILE_EXTENSION);
+        SlotFileObject slotFile = new SlotFileObject(file);
+        slotFile.createFileAndHeader(START, PERIOD);
+        for (int i = 0; i < 100; i++) {
+            slotFile.append(i * 0.5, START + i * PERIOD, Flag.VALID.getCode());
+        }
+        slotFile.close();
+        assertEquals(SlotFileObject.HEADER_SIZE + 100 * SlotFileObject.SLOT_SIZE, file.length());
+
+        FileObject fileObject = FileObject.open(file);
+        assertTrue(fileObject instanceof SlotFileObject);
+        List<Record> records = fileObject.readFully();
+        assertEquals(100, records.size());
+        assertEquals(49.5, records.get(99).getValue().asDouble());
+        assertEquals(100, fileObject.summarize(START, START + 99 * PERIOD).getCount());
+    }
+
+    /*
+     * Constant runs, small changes, random values and gaps (NaN).
+     */
+    private static double[] values(int slots) {
+        Random random = new Random(42);
+        double[] values = new double[slots];
+        for (int i = 0; i < slots; i++) {
+            if (i % 100 == 10 || (i >= 700 && i < 900)) {
+                values[i] = Double.NaN;
+            }
+            else if (i % 3 == 0) {
+                values[i] = 230.0;
+            }
+            else if (i % 3 == 1) {
+                values[i] = 3.3 + i * 0.001;
+            }
+            else {
+                values[i] = random.nextGaussian() * 1e6;
+            }
+        }
+        return values;
+    }
+
+    private static Flag flag(int slot) {
+        return slot % 50 == 0 ? Flag.DRIVER_ERROR_TIMEOUT : Flag.VALID;
+    }
+
+    private static void assertRecords(double[] expected, List<Record> records) {
+        int r = 0;
+        for (int i = 0; i < expected.length; i++) {
+            if (Double.isNaN(expected[i])) {
+                continue;
+            }
+            Record record = records.get(r++);
+            assertEquals(START + i * PERIOD, record.getTimestamp().longValue());
+            assertEquals(expected[i], record.getValue().asDouble());
+            assertEquals(flag(i), record.getFlag());
+        }
+        assertEquals(r, records.size());
+    }
+}
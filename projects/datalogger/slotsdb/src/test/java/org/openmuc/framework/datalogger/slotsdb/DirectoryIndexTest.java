@@ -0,0 +1,79 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.slotsdb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class DirectoryIndexTest {
+
+    @TempDir
+    File rootNode;
+
+    @Test
+    public void loadsFilesFromDirectoryTree() throws Exception {
+        createFile("20240101", "ch1", 1000);
+        createFile("20240101", "ch1", 5000);
+        createFile("20240102", "ch1", 90000);
+        createFile("20240102", "ch2", 90000);
+        new File(rootNode, "notaday/ch1").mkdirs();
+
+        DirectoryIndex index = DirectoryIndex.load(rootNode);
+
+        assertEquals(2, index.getDays().size());
+        assertEquals("20240101", index.getDays().first());
+        List<DirectoryIndex.FileEntry> files = index.getFiles("ch1", 6000, 90000);
+        assertEquals(2, files.size());
+        assertEquals(5000, files.get(0).getStartTimeStamp());
+        assertEquals("20240102", files.get(1).getDay());
+        assertEquals(1000, index.getFile("ch1", 4999).getStartTimeStamp());
+        assertNull(index.getFile("ch1", 999));
+        assertEquals(1, index.getLatestDayFiles("ch2").size());
+    }
+
+    @Test
+    public void removeDayDropsItsFiles() {
+        DirectoryIndex index = new DirectoryIndex();
+        index.add("20240101", "ch1", 1000);
+        index.add("20240102", "ch1", 90000);
+        index.add("20240101", "ch2", 1000);
+
+        index.removeDay("20240101");
+
+        assertEquals(1, index.getDays().size());
+        assertEquals(1, index.getFiles("ch1", 0, Long.MAX_VALUE).size());
+        assertTrue(index.getFiles("ch2", 0, Long.MAX_VALUE).isEmpty());
+    }
+
+    private void createFile(String day, String label, long start) throws Exception {
+        File folder = new File(rootNode, day + "/" + label);
+        folder.mkdirs();
+        new File(folder, start + SlotsDb.FILE_EXTENSION).createNewFile();
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.slotsdb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+
+public class FileObjectProxyTest {
+
+    private static final long START = 1704103200000L; // 2024-01-01 10:00 UTC
+    private static final long INTERVAL = 1000;
+
+    @TempDir
+    File dbFolder;
+
+    private FileObjectProxy proxy;
+
+    @BeforeEach
+    public void setUp() {
+        proxy = new FileObjectProxy(dbFolder.getPath());
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        proxy.close();
+    }
+
+    @Test
+    public void appendAfterReadOfEmptyChannel() throws Exception {
+        assertNull(proxy.read("ch", START));
+
+        proxy.appendValue("ch", 1.0, START, Flag.VALID.getCode(), INTERVAL);
+        proxy.appendValue("ch", 2.0, START + INTERVAL, Flag.VALID.getCode(), INTERVAL);
+
+        List<Record> records = proxy.read("ch", START, START + INTERVAL);
+        assertEquals(2, records.size());
+        assertEquals(2.0, records.get(1).getValue().asDouble());
+    }
+
+    @Test
+    public void readsUnflushedValuesWhileAppending() throws Exception {
+        for (int i = 0; i < 2000; i++) {
+            proxy.appendValue("ch", i, START + i * INTERVAL, Flag.VALID.getCode(), INTERVAL);
+            if (i % 500 == 0) {
+                assertEquals(i + 1, proxy.read("ch", START, START + i * INTERVAL).size());
+            }
+        }
+        assertEquals(1999.0, proxy.readLatest("ch").getValue().asDouble());
+        assertEquals(1000.0, proxy.read("ch", START + 1000 * INTERVAL).getValue().asDouble());
+    }
+
+    @Test
+    public void concurrentAppendsAndReadsOfDifferentChannels() throws Exception {
+        int channels = 8;
+        int values = 1000;
+        ExecutorService executor = Executors.newFixedThreadPool(channels * 2);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int c = 0; c < channels; c++) {
+                String id = "ch" + c;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < values; i++) {
+                        proxy.appendValue(id, i, START + i * INTERVAL, Flag.VALID.getCode(), INTERVAL);
+                    }
+                    return null;
+                }));
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < values / 10; i++) {
+                        List<Record> records = proxy.read(id, START, START + values * INTERVAL);
+                        for (int j = 0; j < records.size(); j++) {
+                            assertEquals(j, records.get(j).getValue().asDouble());
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        for (int c = 0; c < channels; c++) {
+            assertEquals(values, proxy.read("ch" + c, START, START + values * INTERVAL).size());
+        }
+    }
+
+    @Test
+    public void readsMultipleDaysAfterRestart() throws Exception {
+        long day = 86400000L;
+        long interval = 3600000L;
+        int values = 24 * 3;
+        for (int i = 0; i < values; i++) {
+            proxy.appendValue("ch", i, START + i * interval, Flag.VALID.getCode(), interval);
+        }
+        assertEquals(values, proxy.read("ch", START, START + values * interval).size());
+        proxy.close();
+
+        proxy = new FileObjectProxy(dbFolder.getPath());
+        List<Record> records = proxy.read("ch", START + day, START + values * interval);
+        assertEquals(values - 24, records.size());
+        assertEquals(24.0, records.get(0).getValue().asDouble());
+        assertEquals(values - 1.0, proxy.readLatest("ch").getValue().asDouble());
+        assertEquals(30.0, proxy.read("ch", START + 30 * interval).getValue().asDouble());
+        assertEquals(values, proxy.summarize("ch", START, START + values * interval).getCount());
+        assertNull(proxy.readLatest("unknown"));
+    }
+
+    @Test
+    public void consumerReceivesSameValuesAsList() throws Exception {
+        long interval = 600000L;
+        int values = 6 * 24 * 3;
+        for (int i = 0; i < values; i++) {
+            proxy.appendValue("ch", i, START + i * interval, Flag.VALID.getCode(), interval);
+        }
+
+        long start = START + 5 * interval;
+        long end = START + (values - 5) * interval;
+        List<Record> streamed = new ArrayList<>();
+        proxy.read("ch", start, end, streamed::add);
+
+        List<Record> records = proxy.read("ch", start, end);
+        assertEquals(records.size(), streamed.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(records.get(i).getTimestamp(), streamed.get(i).getTimestamp());
+            assertEquals(records.get(i).getValue().asDouble(), streamed.get(i).getValue().asDouble());
+        }
+    }
+}
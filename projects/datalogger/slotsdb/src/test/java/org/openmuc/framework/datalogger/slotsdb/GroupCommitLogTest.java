@@ -0,0 +1,109 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.slotsdb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openmuc.framework.data.Flag;
+
+public class GroupCommitLogTest {
+
+    private static final long START = 1704103200000L;
+    private static final long INTERVAL = 1000;
+
+    @TempDir
+    File dbFolder;
+
+    @Test
+    public void appliesValuesWithOneFsyncPerTick() throws Exception {
+        File walFolder = new File(dbFolder, SlotsDb.WRITE_AHEAD_LOG_FOLDER);
+        FileObjectProxy proxy = new FileObjectProxy(dbFolder.getPath(), false);
+        GroupCommitLog groupCommitLog = new GroupCommitLog(walFolder, proxy);
+        for (int tick = 0; tick < 100; tick++) {
+            groupCommitLog.log(tick(tick, 10));
+        }
+        assertEquals(100, countFsyncs(groupCommitLog.metrics()));
+        groupCommitLog.close();
+
+        for (int channel = 0; channel < 10; channel++) {
+            assertEquals(100, proxy.read("ch" + channel, START, START + 99 * INTERVAL).size());
+        }
+        proxy.close();
+        assertEquals(0, walFolder.list().length);
+    }
+
+    @Test
+    public void valuesAreReplayedOnStartup() throws Exception {
+        File walFolder = new File(dbFolder, SlotsDb.WRITE_AHEAD_LOG_FOLDER);
+        // values were logged but not applied before a crash
+        WriteAheadLog wal = new WriteAheadLog(walFolder, GroupCommitLog.SEGMENT_SIZE);
+        for (int tick = 0; tick < 100; tick++) {
+            wal.append(tick(tick, 10));
+        }
+
+        FileObjectProxy proxy = new FileObjectProxy(dbFolder.getPath());
+        GroupCommitLog groupCommitLog = new GroupCommitLog(walFolder, proxy);
+        for (int channel = 0; channel < 10; channel++) {
+            assertEquals(100, proxy.read("ch" + channel, START, START + 99 * INTERVAL).size());
+        }
+        groupCommitLog.close();
+        proxy.close();
+    }
+
+    @Test
+    public void incompleteBatchIsIgnored() throws Exception {
+        File walFolder = new File(dbFolder, SlotsDb.WRITE_AHEAD_LOG_FOLDER);
+        WriteAheadLog wal = new WriteAheadLog(walFolder, GroupCommitLog.SEGMENT_SIZE);
+        wal.append(tick(0, 3));
+        wal.append(tick(1, 3));
+        try (FileOutputStream out = new FileOutputStream(new File(walFolder, "0" + WriteAheadLog.FILE_EXTENSION),
+                true)) {
+            out.write(new byte[] { 0, 0, 0, 100, 1, 2, 3 });
+        }
+
+        List<WriteAheadLog.Entry> entries = new ArrayList<>();
+        assertEquals(6, WriteAheadLog.replay(walFolder, entries::add));
+        assertEquals("ch2", entries.get(5).label);
+        assertEquals(START + INTERVAL, entries.get(5).timestamp);
+    }
+
+    private static List<WriteAheadLog.Entry> tick(int tick, int channels) {
+        List<WriteAheadLog.Entry> entries = new ArrayList<>();
+        for (int channel = 0; channel < channels; channel++) {
+            entries.add(new WriteAheadLog.Entry("ch" + channel, tick, START + tick * INTERVAL, Flag.VALID.getCode(),
+                    INTERVAL));
+        }
+        return entries;
+    }
+
+    private static long countFsyncs(String metrics) {
+        String fsyncs = metrics.substring(metrics.indexOf("fsyncs=") + 7);
+        return Long.parseLong(fsyncs.substring(0, fsyncs.indexOf(' ')));
+    }
+}
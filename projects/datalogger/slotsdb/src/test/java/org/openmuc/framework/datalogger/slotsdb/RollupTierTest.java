@@ -0,0 +1,123 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.slotsdb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+
+public class RollupTierTest {
+
+    private static final long START = 1704103200000L; // 2024-01-01 10:00 UTC
+    private static final long INTERVAL = 1000;
+    private static final long MINUTE = 60000;
+
+    @TempDir
+    File dbFolder;
+
+    private FileObjectProxy proxy;
+
+    @BeforeEach
+    public void setUp() {
+        proxy = new FileObjectProxy(dbFolder.getPath());
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        proxy.close();
+    }
+
+    @Test
+    public void completedAndCurrentBucketsAreRead() throws Exception {
+        append(0, 150);
+
+        List<Rollup> rollups = proxy.readRollups("ch", START, START + 3 * MINUTE, MINUTE);
+        assertEquals(3, rollups.size());
+        assertRollup(rollups.get(0), START, 0, 59);
+        assertRollup(rollups.get(1), START + MINUTE, 60, 119);
+        assertRollup(rollups.get(2), START + 2 * MINUTE, 120, 149);
+
+        List<Record> records = proxy.read("ch", START, START + 3 * MINUTE, 5 * MINUTE);
+        assertEquals(3, records.size());
+        assertEquals(89.5, records.get(1).getValue().asDouble());
+        assertEquals(START + MINUTE, records.get(1).getTimestamp());
+
+        assertEquals(1, proxy.readRollups("ch", START, START + 3 * MINUTE, 60 * MINUTE).size());
+        assertEquals(121, proxy.read("ch", START, START + 2 * MINUTE, MINUTE - 1).size());
+    }
+
+    @Test
+    public void bucketsAreRestoredAfterRestart() throws Exception {
+        append(0, 90);
+        proxy.close();
+
+        proxy = new FileObjectProxy(dbFolder.getPath());
+        append(90, 150);
+
+        List<Rollup> rollups = proxy.readRollups("ch", START, START + 3 * MINUTE, MINUTE);
+        assertEquals(3, rollups.size());
+        assertRollup(rollups.get(1), START + MINUTE, 60, 119);
+
+        // values are ignored when they are replayed
+        proxy.appendValue("ch", 1000, START + 149 * INTERVAL, Flag.VALID.getCode(), INTERVAL);
+        assertRollup(proxy.readRollups("ch", START + 2 * MINUTE, START + 2 * MINUTE, MINUTE).get(0),
+                START + 2 * MINUTE, 120, 149);
+    }
+
+    @Test
+    public void invalidValuesAreNotCounted() throws Exception {
+        proxy.appendValue("ch", 1, START, Flag.VALID.getCode(), INTERVAL);
+        proxy.appendValue("ch", Double.NaN, START + INTERVAL, Flag.VALID.getCode(), INTERVAL);
+        proxy.appendValue("ch", 5, START + 2 * INTERVAL, Flag.DRIVER_ERROR_TIMEOUT.getCode(), INTERVAL);
+        proxy.appendValue("ch", 3, START + 3 * INTERVAL, Flag.VALID.getCode(), INTERVAL);
+        proxy.appendValue("ch", Double.NaN, START + MINUTE, Flag.NO_VALUE_RECEIVED_YET.getCode(), INTERVAL);
+
+        List<Rollup> rollups = proxy.readRollups("ch", START, START + MINUTE, MINUTE);
+        assertEquals(1, rollups.size());
+        assertEquals(2, rollups.get(0).getCount());
+        assertEquals(2.0, rollups.get(0).getAverage());
+        assertEquals(3.0, rollups.get(0).getLast());
+    }
+
+    private void append(int from, int to) throws Exception {
+        for (int i = from; i < to; i++) {
+            proxy.appendValue("ch", i, START + i * INTERVAL, Flag.VALID.getCode(), INTERVAL);
+        }
+    }
+
+    private static void assertRollup(Rollup rollup, long timestamp, int first, int last) {
+        assertEquals(timestamp, rollup.getTimestamp());
+        assertEquals(last - first + 1, rollup.getCount());
+        assertEquals(first, rollup.getMin());
+        assertEquals(last, rollup.getMax());
+        assertEquals((first + last) / 2.0, rollup.getAverage());
+        assertEquals(last, rollup.getLast());
+    }
+}
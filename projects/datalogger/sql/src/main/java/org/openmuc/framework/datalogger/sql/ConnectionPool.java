@@ -0,0 +1,168 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.sql;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded pool of database connections opened by {@link DbConnector#openConnection()}. At most <code>size</code>
+ * connections are handed out at a time, further callers wait up to {@value #DEFAULT_ACQUIRE_TIMEOUT_MILLIS} ms for one
+ * to be released. Connections are opened on demand and the most recently released one is reused first.
+ */
+final class ConnectionPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionPool.class);
+    static final long DEFAULT_ACQUIRE_TIMEOUT_MILLIS = 30000;
+
+    private final DbConnector dbConnector;
+    private final int size;
+    private final long acquireTimeoutMillis;
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<Connection> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger open = new AtomicInteger();
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private volatile boolean closed = false;
+
+    ConnectionPool(DbConnector dbConnector, int size) {
+        this(dbConnector, size, DEFAULT_ACQUIRE_TIMEOUT_MILLIS);
+    }
+
+    ConnectionPool(DbConnector dbConnector, int size, long acquireTimeoutMillis) {
+        this.dbConnector = dbConnector;
+        this.size = size;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        permits = new Semaphore(size, true);
+    }
+
+    /**
+     * Hands out an idle connection or opens a new one. The connection has to be given back with
+     * {@link #release(Connection, boolean)}.
+     *
+     * @return a connection to the database
+     * @throws SQLException
+     *             if the pool is closed, no connection was released in time or a new connection could not be opened
+     */
+    Connection acquire() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeouts.incrementAndGet();
+                throw new SQLException("No database connection released within " + acquireTimeoutMillis
+                        + " ms, all " + size + " connections are in use");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        try {
+            Connection connection;
+            while ((connection = idle.pollFirst()) != null) {
+                if (!connection.isClosed()) {
+                    acquired.incrementAndGet();
+                    return connection;
+                }
+                open.decrementAndGet();
+            }
+            connection = dbConnector.openConnection();
+            if (connection == null) {
+                throw new SQLException("Not connected to the database");
+            }
+            open.incrementAndGet();
+            acquired.incrementAndGet();
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Gives a connection back to the pool.
+     *
+     * @param connection
+     *            connection returned by {@link #acquire()}
+     * @param broken
+     *            true if the connection failed and must not be handed out again
+     */
+    void release(Connection connection, boolean broken) {
+        if (broken || closed) {
+            close(connection);
+        }
+        else {
+            idle.offerFirst(connection);
+        }
+        permits.release();
+    }
+
+    /**
+     * Closes the idle connections and every connection released from now on.
+     */
+    void close() {
+        closed = true;
+        Connection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            close(connection);
+        }
+    }
+
+    private void close(Connection connection) {
+        open.decrementAndGet();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.debug("Unable to close database connection: {}", e.getMessage());
+        }
+    }
+
+    int getInUse() {
+        return size - permits.availablePermits();
+    }
+
+    void appendMetrics(StringBuilder sb) {
+        sb.append("pool: size=")
+                .append(size)
+                .append(", open=")
+                .append(open.get())
+                .append(", inUse=")
+                .append(getInUse())
+                .append(", waiting=")
+                .append(permits.getQueueLength())
+                .append(", acquired=")
+                .append(acquired.get())
+                .append(", timeouts=")
+                .append(timeouts.get())
+                .append('\n');
+    }
+
+}
@@ -24,12 +24,14 @@ package org.openmuc.framework.datalogger.sql;
 import static org.openmuc.framework.datalogger.sql.utils.SqlValues.POSTGRESQL;
 import static org.openmuc.framework.datalogger.sql.utils.SqlValues.VALUE;
 
+import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.openmuc.framework.data.BooleanValue;
 import org.openmuc.framework.data.ByteArrayValue;
@@ -46,14 +48,46 @@ import org.slf4j.LoggerFactory;
 
 public class DbAccess {
 
+    /*
+     * number of rows fetched from the database at a time while records are passed on
+     */
+    private static final int FETCH_SIZE = 1000;
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+    private static final int DEFAULT_POOL_SIZE = 4;
+    private static final int DEFAULT_WRITER_LANES = 2;
+    private static final int DEFAULT_WRITER_QUEUE_DEPTH = 100;
+
     private final Logger logger = LoggerFactory.getLogger(DbAccess.class);
     private final String url;
     private final DbConnector dbConnector;
+    private final int batchSize;
+    private final int writerLanes;
+    private final int writerQueueDepth;
+    private final ConnectionPool connectionPool;
+
+    /**
+     * Statements executed together by {@link DbAccess#executeInTransaction(Connection, Transaction)}.
+     */
+    @FunctionalInterface
+    public interface Transaction {
+        void execute(Connection connection) throws SQLException;
+    }
 
     public DbAccess() {
         dbConnector = new DbConnector();
         PropertyHandler propertyHandler = PropertyHandlerProvider.getInstance().getPropertyHandler();
         url = propertyHandler.getString(Settings.URL);
+        batchSize = Math.max(1, propertyHandler.getInt(Settings.BATCH_SIZE));
+        writerLanes = Math.max(1, propertyHandler.getInt(Settings.WRITER_LANES));
+        writerQueueDepth = Math.max(1, propertyHandler.getInt(Settings.WRITER_QUEUE_DEPTH));
+        int poolSize = propertyHandler.getInt(Settings.POOL_SIZE);
+        if (poolSize <= writerLanes) {
+            // every writer lane keeps a connection, reads need at least one more
+            logger.warn("{} is {} but has to be larger than {} {}, using {}", Settings.POOL_SIZE, poolSize,
+                    Settings.WRITER_LANES, writerLanes, writerLanes + 1);
+            poolSize = writerLanes + 1;
+        }
+        connectionPool = new ConnectionPool(dbConnector, poolSize);
         if (url.contains("h2") && url.contains("tcp")) {
             dbConnector.startH2Server();
         }
@@ -62,6 +96,10 @@ public class DbAccess {
     private DbAccess(DbConnector connector) { // for testing
         url = "";
         this.dbConnector = connector;
+        batchSize = DEFAULT_BATCH_SIZE;
+        writerLanes = DEFAULT_WRITER_LANES;
+        writerQueueDepth = DEFAULT_WRITER_QUEUE_DEPTH;
+        connectionPool = new ConnectionPool(connector, DEFAULT_POOL_SIZE);
     }
 
     static protected DbAccess getTestInstance(DbConnector connector) {
@@ -95,8 +133,68 @@ public class DbAccess {
         }
     }
 
+    /**
+     * Executes the statements of the transaction on the connection and commits them together. If the transaction
+     * throws, its statements are rolled back.
+     *
+     * @param connection
+     *            connection to execute the statements on
+     * @param transaction
+     *            the statements to execute
+     * @throws SQLException
+     *             if the transaction failed and was rolled back
+     */
+    public static void executeInTransaction(Connection connection, Transaction transaction) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            transaction.execute(connection);
+            connection.commit();
+        } catch (SQLException | RuntimeException e) {
+            try {
+                connection.rollback();
+            } catch (SQLException rollbackException) {
+                e.addSuppressed(rollbackException);
+            }
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * @return the maximum number of rows inserted into a table with one batch
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return the number of threads inserting records in parallel
+     */
+    public int getWriterLanes() {
+        return writerLanes;
+    }
+
+    /**
+     * @return the number of batches each writer lane queues before the logger waits
+     */
+    public int getWriterQueueDepth() {
+        return writerQueueDepth;
+    }
+
+    ConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
+
+    /**
+     * Executes a query with a small result, e.g. of metadata, in auto-commit mode. The statement is closed with the
+     * returned result set. Records are read by {@link #queryRecords(StringBuilder, ValueType, Consumer)}, which fetches
+     * them in chunks.
+     */
     public ResultSet executeQuery(StringBuilder sb) throws SQLException {
         Statement statement = dbConnector.createStatementWithConnection();
+        statement.closeOnCompletion();
         return statement.executeQuery(sb.toString());
     }
 
@@ -149,6 +247,7 @@ public class DbAccess {
     }
 
     public void closeConnection() {
+        connectionPool.close();
         dbConnector.closeConnection();
     }
 
@@ -159,37 +258,68 @@ public class DbAccess {
     public List<Record> queryRecords(StringBuilder sb, ValueType valuetype) {
         // retrieve numeric values from database and add them to the records list
         List<Record> records = new ArrayList<>();
-        if (!dbConnector.isConnected()) {
-            dbConnector.getConnectionToDb();
+        queryRecords(sb, valuetype, records::add);
+        return records;
+    }
+
+    /**
+     * Retrieves data from database and passes it to the consumer row by row. The query runs on a connection of the
+     * {@link ConnectionPool}, so it neither waits for nor delays the writers and other queries. Rows are fetched in
+     * chunks of {@value #FETCH_SIZE}, the query runs in a transaction because PostgreSQL ignores the fetch size in
+     * auto-commit mode.
+     */
+    public void queryRecords(StringBuilder sb, ValueType valuetype, Consumer<Record> consumer) {
+        Connection connection;
+        try {
+            connection = connectionPool.acquire();
+        } catch (SQLException e) {
+            logger.error(MessageFormat.format("Error executing SQL: \n{0}", sb), e.getMessage());
+            return;
         }
-        try (ResultSet resultSet = executeQuery(sb)) {
-            while (resultSet.next()) {
-                if (valuetype == ValueType.STRING) {
-                    Record rc = new Record(new StringValue(resultSet.getString(VALUE)),
-                            resultSet.getTimestamp("time").getTime(), Flag.VALID);
-                    records.add(rc);
-                }
-                else if (valuetype == ValueType.BYTE_ARRAY) {
-                    Record rc = new Record(new ByteArrayValue(resultSet.getBytes(VALUE)),
-                            resultSet.getTimestamp("time").getTime(), Flag.VALID);
-                    records.add(rc);
-                }
-                else if (valuetype == ValueType.BOOLEAN) {
-                    Record rc = new Record(new BooleanValue(resultSet.getBoolean(VALUE)),
-                            resultSet.getTimestamp("time").getTime(), Flag.VALID);
-                    records.add(rc);
-                }
-                else {
-                    Record rc = new Record(new DoubleValue(resultSet.getDouble(VALUE)),
-                            resultSet.getTimestamp("time").getTime(), Flag.VALID);
-                    records.add(rc);
+        boolean broken = false;
+        try {
+            executeInTransaction(connection, c -> {
+                try (Statement statement = c.createStatement()) {
+                    statement.setFetchSize(FETCH_SIZE);
+                    try (ResultSet resultSet = statement.executeQuery(sb.toString())) {
+                        while (resultSet.next()) {
+                            consumer.accept(toRecord(resultSet, valuetype));
+                        }
+                    }
                 }
-            }
+            });
         } catch (SQLException e) {
-            String sql = sb.toString();
-            logger.error(MessageFormat.format("Error executing SQL: \n{0}", sql), e.getMessage());
+            broken = isBroken(connection);
+            logger.error(MessageFormat.format("Error executing SQL: \n{0}", sb), e.getMessage());
+        } finally {
+            connectionPool.release(connection, broken);
         }
+    }
 
-        return records;
+    /**
+     * @return true if the connection was closed or does not respond, e.g. after the database restarted
+     */
+    static boolean isBroken(Connection connection) {
+        try {
+            return !connection.isValid(1);
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+    private static Record toRecord(ResultSet resultSet, ValueType valuetype) throws SQLException {
+        long time = resultSet.getTimestamp("time").getTime();
+        if (valuetype == ValueType.STRING) {
+            return new Record(new StringValue(resultSet.getString(VALUE)), time, Flag.VALID);
+        }
+        else if (valuetype == ValueType.BYTE_ARRAY) {
+            return new Record(new ByteArrayValue(resultSet.getBytes(VALUE)), time, Flag.VALID);
+        }
+        else if (valuetype == ValueType.BOOLEAN) {
+            return new Record(new BooleanValue(resultSet.getBoolean(VALUE)), time, Flag.VALID);
+        }
+        else {
+            return new Record(new DoubleValue(resultSet.getDouble(VALUE)), time, Flag.VALID);
+        }
     }
 }
@@ -115,7 +115,39 @@ public class DbConnector {
     }
 
     public Statement createStatementWithConnection() throws SQLException {
-        return connection.createStatement();
+        return getConnection().createStatement();
+    }
+
+    /**
+     * @return the connection to the database, null if not connected
+     */
+    protected Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Opens an additional connection to the database with the data source of {@link #getConnectionToDb()}, used by
+     * the {@link ConnectionPool}.
+     *
+     * @return a new connection
+     * @throws SQLException
+     *             if no data source is available or the connection could not be opened
+     */
+    protected Connection openConnection() throws SQLException {
+        if (dataSource == null) {
+            getConnectionToDb();
+        }
+        if (dataSource == null) {
+            throw new SQLException("No data source for " + url);
+        }
+        Thread thread = Thread.currentThread();
+        ClassLoader contextClassLoader = thread.getContextClassLoader();
+        thread.setContextClassLoader(DbConnector.class.getClassLoader());
+        try {
+            return dataSource.getConnection();
+        } finally {
+            thread.setContextClassLoader(contextClassLoader);
+        }
     }
 
     /**
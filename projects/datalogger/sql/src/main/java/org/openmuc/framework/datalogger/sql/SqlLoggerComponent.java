@@ -21,6 +21,7 @@
 
 package org.openmuc.framework.datalogger.sql;
 
+import org.apache.felix.service.command.CommandProcessor;
 import org.openmuc.framework.datalogger.spi.DataLoggerService;
 import org.openmuc.framework.lib.osgi.deployment.RegistrationHandler;
 import org.osgi.framework.BundleContext;
@@ -28,7 +29,8 @@ import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Deactivate;
 
-@Component
+@Component(immediate = true, service = SqlLoggerComponent.class, property = {
+        CommandProcessor.COMMAND_SCOPE + ":String=openmuc", CommandProcessor.COMMAND_FUNCTION + ":String=sqllogger" })
 public class SqlLoggerComponent {
 
     private RegistrationHandler registrationHandler;
@@ -42,6 +44,13 @@ public class SqlLoggerComponent {
         registrationHandler.provideInFramework(DataLoggerService.class.getName(), loggerService, pid);
     }
 
+    /**
+     * Shell command printing the metrics of the connection pool and the writer lanes.
+     */
+    public String sqllogger() {
+        return loggerService.sqllogger();
+    }
+
     @Deactivate
     public void deactivate() {
         registrationHandler.removeAllProvidedServices();
@@ -25,6 +25,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Dictionary;
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.openmuc.framework.data.Record;
 import org.openmuc.framework.datalogger.spi.DataLoggerService;
@@ -45,9 +46,9 @@ public class SqlLoggerService implements DataLoggerService, ManagedService {
     private final Settings settings;
     private final PropertyHandler propertyHandler;
     private final List<LoggingRecord> eventBuffer;
-    private SqlWriter writer;
+    private volatile SqlWriter writer;
     private SqlReader reader;
-    private DbAccess dbAccess;
+    private volatile DbAccess dbAccess;
     private List<LogChannel> channels;
 
     /**
@@ -85,11 +86,32 @@ public class SqlLoggerService implements DataLoggerService, ManagedService {
      */
     public void shutdown() {
         logger.info("Deactivating SQL Logger");
+        if (writer != null) {
+            writer.shutdown();
+        }
         if (dbAccess != null) {
             dbAccess.closeConnection();
         }
     }
 
+    /**
+     * Shell command printing the connections of the pool and the queued, inserted and failed rows of the writer lanes.
+     * Registered by {@link SqlLoggerComponent}.
+     */
+    public String sqllogger() {
+        return metrics(dbAccess, writer);
+    }
+
+    static String metrics(DbAccess dbAccess, SqlWriter writer) {
+        if (dbAccess == null || writer == null) {
+            return "SQL logger not connected";
+        }
+        StringBuilder sb = new StringBuilder();
+        dbAccess.getConnectionPool().appendMetrics(sb);
+        writer.appendMetrics(sb);
+        return sb.toString();
+    }
+
     @Override
     public String getId() {
         return "sqllogger";
@@ -149,6 +171,17 @@ public class SqlLoggerService implements DataLoggerService, ManagedService {
         return records;
     }
 
+    @Override
+    public void readRecords(String channelId, long startTime, long endTime, Consumer<Record> consumer)
+            throws IOException {
+        for (LogChannel temp : this.channels) {
+            if (temp.getId().equals(channelId)) {
+                reader.readRecordsFromDb(channelId, temp.getValueType(), startTime, endTime, consumer);
+                break;
+            }
+        }
+    }
+
     /**
      * Returns the Record with the highest timestamp available in all logged data for the channel with the given
      * <code>channelId</code>. If there are multiple Records with the same timestamp, results will not be consistent.
@@ -25,6 +25,7 @@ import static org.openmuc.framework.datalogger.sql.utils.SqlValues.AND;
 
 import java.sql.Timestamp;
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.openmuc.framework.data.Record;
 import org.openmuc.framework.data.ValueType;
@@ -46,6 +47,28 @@ public class SqlReader {
 
     }
 
+    /**
+     * Passes the records of a channel between start and end time to the consumer while they are read from the
+     * database.
+     *
+     * @param channelId
+     *            ID of the channel
+     * @param valuetype
+     *            {@link ValueType}
+     * @param startTime
+     *            start of the timeframe
+     * @param endTime
+     *            end of the timeframe
+     * @param consumer
+     *            receives the records
+     */
+    public void readRecordsFromDb(String channelId, ValueType valuetype, long startTime, long endTime,
+            Consumer<Record> consumer) {
+        StringBuilder sbTable = new StringBuilder();
+        selectFromTable(channelId, new Timestamp(startTime), new Timestamp(endTime), sbTable);
+        dbAccess.queryRecords(sbTable, valuetype, consumer);
+    }
+
     /**
      * Get the latest Record by retrieving records in descending order - ordered by time - and limiting to 1 result
      * 
@@ -97,6 +120,6 @@ public class SqlReader {
                 .append(startTimestamp)
                 .append(AND)
                 .append(endTimestamp)
-                .append("';");
+                .append("' ORDER BY time;");
     }
 }
@@ -21,10 +21,21 @@
 
 package org.openmuc.framework.datalogger.sql;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.openmuc.framework.data.Record;
 import org.openmuc.framework.datalogger.spi.LoggingRecord;
@@ -32,96 +43,333 @@ import org.openmuc.framework.datalogger.sql.utils.SqlValues;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Inserts logged records into the channel tables. The tables are hash partitioned across writer lanes. Each lane is a
+ * thread with a bounded queue and a pooled connection of its own, so tables of different lanes are written in
+ * parallel while the rows of one table are always inserted in order. A lane keeps one prepared statement per table,
+ * adds the rows to its batch and commits all batches of a logging call in one transaction.
+ * <p>
+ * If the queue of a lane is full the logging call waits until the lane caught up.
+ */
 public class SqlWriter {
 
     private static final Logger logger = LoggerFactory.getLogger(SqlWriter.class);
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 5000;
+
     private final DbAccess dbAccess;
-    private final List<StringBuilder> tableListChannel;
+    private final WriterLane[] lanes;
+    private volatile boolean running = true;
 
     public SqlWriter(DbAccess dbAccess) {
         this.dbAccess = dbAccess;
-        tableListChannel = new ArrayList<>();
-
+        lanes = new WriterLane[dbAccess.getWriterLanes()];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new WriterLane(i, dbAccess.getWriterQueueDepth());
+        }
     }
 
     public void writeEventBasedContainerToDb(List<LoggingRecord> containers) {
-        synchronized (tableListChannel) {
-            writeAsTableList(containers);
-            tableListChannel.clear();
+        List<LoggingRecord> rows = new ArrayList<>(containers.size());
+        for (LoggingRecord logRecordContainer : containers) {
+            Record record = logRecordContainer.getRecord();
+            if (record.getTimestamp() != null && record.getValue() != null) {
+                rows.add(logRecordContainer);
+            }
         }
+        write(rows, null);
     }
 
-    private void writeAsTableList(List<LoggingRecord> containers) {
-        // createTableList();
-        addRecordsFromContainersToList(containers);
-
-        for (StringBuilder table : tableListChannel) {
-            if (table.toString().contains("),")) {
-                table.replace(table.length() - 1, table.length(), ";");
-                dbAccess.executeSQL(table);
+    public void writeRecordContainerToDb(List<LoggingRecord> containers, long timestamp) {
+        List<LoggingRecord> rows = new ArrayList<>(containers.size());
+        for (LoggingRecord logRecordContainer : containers) {
+            if (logRecordContainer.getRecord().getValue() != null) {
+                rows.add(logRecordContainer);
             }
         }
+        write(rows, new Timestamp(timestamp));
+    }
 
+    /**
+     * Hands the rows to the lanes of their tables.
+     *
+     * @param rows
+     *            records with a value
+     * @param timestamp
+     *            timestamp of all rows or null to use the timestamp of each record
+     */
+    private void write(List<LoggingRecord> rows, Timestamp timestamp) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        if (lanes.length == 1) {
+            lanes[0].put(new Batch(rows, timestamp, null));
+            return;
+        }
+        List<List<LoggingRecord>> partitions = new ArrayList<>(lanes.length);
+        for (int i = 0; i < lanes.length; i++) {
+            partitions.add(new ArrayList<>(rows.size() / lanes.length + 1));
+        }
+        for (LoggingRecord row : rows) {
+            partitions.get(Math.floorMod(row.getChannelId().hashCode(), lanes.length)).add(row);
+        }
+        for (int i = 0; i < lanes.length; i++) {
+            if (!partitions.get(i).isEmpty()) {
+                lanes[i].put(new Batch(partitions.get(i), timestamp, null));
+            }
+        }
     }
 
-    private void addRecordsFromContainersToList(List<LoggingRecord> containers) {
-        for (LoggingRecord logRecordContainer : containers) {
-            if (logRecordContainer.getRecord().getTimestamp() != null) {
-                long recordTs = logRecordContainer.getRecord().getTimestamp();
-                Timestamp sqlTimestamp = new Timestamp(recordTs);
-                addContainerToList(sqlTimestamp, logRecordContainer);
+    /**
+     * Waits until the rows queued so far are inserted.
+     */
+    public void flush() {
+        CountDownLatch flushed = new CountDownLatch(lanes.length);
+        for (WriterLane lane : lanes) {
+            if (!lane.put(new Batch(Collections.emptyList(), null, flushed))) {
+                flushed.countDown();
             }
         }
+        try {
+            flushed.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
-    public void writeRecordContainerToDb(List<LoggingRecord> containers, long timestamp) {
-        Timestamp sqlTimestamp = new Timestamp(timestamp);
-        // createTableList();
+    /**
+     * Stops accepting rows and waits a few seconds for the lanes to insert the queued ones.
+     */
+    public void shutdown() {
+        running = false;
+        for (WriterLane lane : lanes) {
+            lane.join();
+        }
+    }
 
-        for (LoggingRecord logRecordContainer : containers) {
-            addContainerToList(sqlTimestamp, logRecordContainer);
+    void appendMetrics(StringBuilder sb) {
+        for (WriterLane lane : lanes) {
+            lane.appendMetrics(sb);
+        }
+    }
+
+    private static final class Batch {
+        final List<LoggingRecord> rows;
+        final Timestamp timestamp;
+        final CountDownLatch flushed;
+
+        Batch(List<LoggingRecord> rows, Timestamp timestamp, CountDownLatch flushed) {
+            this.rows = rows;
+            this.timestamp = timestamp;
+            this.flushed = flushed;
         }
+    }
+
+    private final class WriterLane {
+
+        private final int index;
+        private final BlockingQueue<Batch> queue;
+        private final Thread thread;
+        private final Map<String, PreparedStatement> insertStatements = new HashMap<>();
+        private Connection connection;
+
+        private final AtomicLong batches = new AtomicLong();
+        private final AtomicLong insertedRows = new AtomicLong();
+        private final AtomicLong failedRows = new AtomicLong();
 
-        for (StringBuilder table : tableListChannel) {
-            if (table.toString().contains("),")) {
-                table.replace(table.length() - 1, table.length(), ";");
-                dbAccess.executeSQL(table);
+        WriterLane(int index, int queueDepth) {
+            this.index = index;
+            queue = new ArrayBlockingQueue<>(queueDepth);
+            thread = new Thread(this::run, "OpenMUC SQL Logger Writer " + index);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /**
+         * @return false if the writer was shut down and the batch is discarded
+         */
+        boolean put(Batch batch) {
+            if (!running) {
+                logger.warn("SQL writer is shut down, discarding {} records", batch.rows.size());
+                return false;
+            }
+            try {
+                queue.put(batch);
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
             }
         }
 
-    }
+        private void run() {
+            while (running || !queue.isEmpty()) {
+                Batch batch;
+                try {
+                    batch = queue.poll(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                if (batch == null) {
+                    continue;
+                }
+                if (batch.flushed != null) {
+                    batch.flushed.countDown();
+                }
+                else {
+                    write(batch.rows, batch.timestamp);
+                    batches.incrementAndGet();
+                }
+            }
+            releaseConnection(false);
+        }
 
-    /**
-     * Continues building the insert query and calls {@link #addValue(Record, StringBuilder, Integer)} using the
-     * appropriate parameters for the records' value type
-     *
-     * @param sqlTimestamp
-     *            The current timestamp
-     * @param logRecordContainer
-     *            Container object for the record
-     */
-    private void addContainerToList(Timestamp sqlTimestamp, LoggingRecord logRecordContainer) {
-        String channelId = logRecordContainer.getChannelId();
-        Record record = logRecordContainer.getRecord();
-
-        if (record.getValue() != null) {
-            StringBuilder sbChannel = new StringBuilder("INSERT INTO " + channelId + " (time,flag,\"VALUE\") VALUES ");
-            StringBuilder sbQuery2 = new StringBuilder();
-            sbQuery2.append("('")
-                    .append(sqlTimestamp)
-                    .append("',")
-                    .append(logRecordContainer.getRecord().getFlag().getCode())
-                    .append(',');
-
-            sbChannel.append(sbQuery2);
-            if (record.getValue() != null) {
-                SqlValues.appendValue(record.getValue(), sbChannel);
-            }
-            else {
-                sbChannel.append("NULL");
-            }
-            sbChannel.append("),");
-            Collections.addAll(tableListChannel, sbChannel);
+        void join() {
+            try {
+                thread.join(SHUTDOWN_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (thread.isAlive()) {
+                logger.warn("SQL writer lane {} did not finish in time, {} queued logging batches are lost.", index,
+                        queue.size());
+                thread.interrupt();
+            }
+        }
+
+        /**
+         * Inserts the rows in one transaction. If the transaction fails, e.g. because one row violates the primary key
+         * of its table, the rows are inserted one by one so the remaining rows are not lost.
+         */
+        private void write(List<LoggingRecord> rows, Timestamp timestamp) {
+            try {
+                insertInTransaction(rows, timestamp);
+                insertedRows.addAndGet(rows.size());
+                return;
+            } catch (SQLException e) {
+                if (rows.size() == 1) {
+                    logInsertError(rows.get(0), e);
+                    return;
+                }
+                logger.warn("Inserting {} records in one transaction failed, inserting them one by one: {}",
+                        rows.size(), e.getMessage());
+            }
+            for (int i = 0; i < rows.size(); i++) {
+                LoggingRecord row = rows.get(i);
+                try {
+                    insertInTransaction(Collections.singletonList(row), timestamp);
+                    insertedRows.incrementAndGet();
+                } catch (SQLException e) {
+                    logInsertError(row, e);
+                    if (connection == null) {
+                        int dropped = rows.size() - i - 1;
+                        failedRows.addAndGet(dropped);
+                        logger.error("No connection to the database, dropped {} more records", dropped);
+                        return;
+                    }
+                }
+            }
+        }
+
+        private void insertInTransaction(List<LoggingRecord> rows, Timestamp timestamp) throws SQLException {
+            if (connection == null) {
+                connection = dbAccess.getConnectionPool().acquire();
+                // prepared statements belong to the connection they were created with
+                closeInsertStatements();
+            }
+            try {
+                DbAccess.executeInTransaction(connection, c -> insert(c, rows, timestamp));
+            } catch (SQLException e) {
+                if (DbAccess.isBroken(connection)) {
+                    releaseConnection(true);
+                }
+                throw e;
+            }
+        }
+
+        private void releaseConnection(boolean broken) {
+            if (connection != null) {
+                // a healthy connection is reused, statements left open would pile up in the database
+                closeInsertStatements();
+                dbAccess.getConnectionPool().release(connection, broken);
+                connection = null;
+            }
+        }
+
+        private void closeInsertStatements() {
+            for (PreparedStatement statement : insertStatements.values()) {
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    logger.debug("Could not close insert statement: {}", e.getMessage());
+                }
+            }
+            insertStatements.clear();
+        }
+
+        private void insert(Connection connection, List<LoggingRecord> rows, Timestamp timestamp)
+                throws SQLException {
+            int batchSize = dbAccess.getBatchSize();
+            Map<PreparedStatement, Integer> pendingRows = new LinkedHashMap<>();
+            try {
+                for (LoggingRecord row : rows) {
+                    PreparedStatement statement = getInsertStatement(connection, row.getChannelId());
+                    Record record = row.getRecord();
+                    statement.setTimestamp(1, timestamp != null ? timestamp : new Timestamp(record.getTimestamp()));
+                    statement.setShort(2, record.getFlag().getCode());
+                    SqlValues.setValue(statement, 3, record.getValue());
+                    statement.addBatch();
+
+                    if (pendingRows.merge(statement, 1, Integer::sum) >= batchSize) {
+                        statement.executeBatch();
+                        pendingRows.put(statement, 0);
+                    }
+                }
+                for (Map.Entry<PreparedStatement, Integer> entry : pendingRows.entrySet()) {
+                    if (entry.getValue() > 0) {
+                        entry.getKey().executeBatch();
+                    }
+                }
+            } catch (SQLException e) {
+                for (PreparedStatement statement : pendingRows.keySet()) {
+                    try {
+                        statement.clearBatch();
+                    } catch (SQLException clearException) {
+                        e.addSuppressed(clearException);
+                    }
+                }
+                throw e;
+            }
+        }
+
+        private PreparedStatement getInsertStatement(Connection connection, String channelId) throws SQLException {
+            PreparedStatement statement = insertStatements.get(channelId);
+            if (statement == null) {
+                statement = connection
+                        .prepareStatement("INSERT INTO " + channelId + " (time,flag,\"VALUE\") VALUES (?,?,?)");
+                insertStatements.put(channelId, statement);
+            }
+            return statement;
+        }
+
+        private void logInsertError(LoggingRecord row, SQLException e) {
+            failedRows.incrementAndGet();
+            logger.error("Error inserting record of channel {}: {}", row.getChannelId(), e.getMessage());
+            logger.error("SQLState:     {}", e.getSQLState());
+            logger.error("VendorError:  {}", e.getErrorCode());
+        }
+
+        void appendMetrics(StringBuilder sb) {
+            sb.append("lane ")
+                    .append(index)
+                    .append(": queued=")
+                    .append(queue.size())
+                    .append(", batches=")
+                    .append(batches.get())
+                    .append(", rows=")
+                    .append(insertedRows.get())
+                    .append(", failedRows=")
+                    .append(failedRows.get())
+                    .append('\n');
         }
     }
 
@@ -34,6 +34,10 @@ public class Settings extends GenericSettings {
     public static String TCP_KEEP_ALIVE = "tcp_keep_alive";
     public static String PSQL_PASS = "psql_pass";
     public static String TIMEZONE = "timezone";
+    public static String BATCH_SIZE = "batch_size";
+    public static String POOL_SIZE = "pool_size";
+    public static String WRITER_LANES = "writer_lanes";
+    public static String WRITER_QUEUE_DEPTH = "writer_queue_depth";
 
     public Settings() {
         super();
@@ -47,5 +51,13 @@ public class Settings extends GenericSettings {
         properties.put(TCP_KEEP_ALIVE, new ServiceProperty(TCP_KEEP_ALIVE, "keep tcp connection alive", "true", false));
         properties.put(PSQL_PASS, new ServiceProperty(PSQL_PASS, "password for postgresql", "postgres", true));
         properties.put(TIMEZONE, new ServiceProperty(TIMEZONE, "local time zone", "Europe/Berlin", false));
+        properties.put(BATCH_SIZE,
+                new ServiceProperty(BATCH_SIZE, "number of rows inserted into a table in one batch", "1000", false));
+        properties.put(POOL_SIZE,
+                new ServiceProperty(POOL_SIZE, "maximum number of connections to the database", "4", false));
+        properties.put(WRITER_LANES,
+                new ServiceProperty(WRITER_LANES, "number of threads inserting records in parallel", "2", false));
+        properties.put(WRITER_QUEUE_DEPTH, new ServiceProperty(WRITER_QUEUE_DEPTH,
+                "number of logging batches queued per writer thread", "100", false));
     }
 }
@@ -22,6 +22,9 @@
 package org.openmuc.framework.datalogger.sql.utils;
 
 import java.sql.JDBCType;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
 import java.util.Arrays;
 import java.util.List;
 
@@ -104,6 +107,52 @@ public class SqlValues {
         }
     }
 
+    /**
+     * Binds the value to the parameter of a prepared statement using the setter matching the value's type, the
+     * counterpart of {@link #appendValue(Value, StringBuilder)}.
+     *
+     * @param statement
+     *            the prepared statement
+     * @param parameterIndex
+     *            index of the parameter, starting at 1
+     * @param value
+     *            the value to bind
+     * @throws SQLException
+     *             if the parameter could not be set
+     */
+    public static void setValue(PreparedStatement statement, int parameterIndex, Value value) throws SQLException {
+        switch (value.getValueType()) {
+        case BOOLEAN:
+            statement.setBoolean(parameterIndex, value.asBoolean());
+            break;
+        case BYTE:
+        case SHORT:
+            statement.setShort(parameterIndex, value.asShort());
+            break;
+        case BYTE_ARRAY:
+            statement.setBytes(parameterIndex, value.asByteArray());
+            break;
+        case DOUBLE:
+            statement.setDouble(parameterIndex, value.asDouble());
+            break;
+        case FLOAT:
+            statement.setFloat(parameterIndex, value.asFloat());
+            break;
+        case INTEGER:
+            statement.setInt(parameterIndex, value.asInt());
+            break;
+        case LONG:
+            statement.setLong(parameterIndex, value.asLong());
+            break;
+        case STRING:
+            statement.setString(parameterIndex, value.asString());
+            break;
+        default:
+            statement.setNull(parameterIndex, Types.NULL);
+            break;
+        }
+    }
+
     private static void byteArrayToHexString(StringBuilder sb, byte[] byteArray) {
         char[] hexChars = new char[byteArray.length * 2];
         for (int j = 0; j < byteArray.length; j++) {
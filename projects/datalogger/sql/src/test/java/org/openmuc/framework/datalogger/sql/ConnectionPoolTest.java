@@ -0,0 +1,96 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.sql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ConnectionPoolTest {
+
+    private DbConnectorTestable connector;
+    private ConnectionPool pool;
+
+    @BeforeEach
+    void setup() throws SQLException {
+        connector = new DbConnectorTestable("");
+        pool = new ConnectionPool(connector, 2, 100);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        pool.close();
+        connector.getConnection().close();
+    }
+
+    @Test
+    void acquireWaitsForReleasedConnectionWhenPoolIsExhausted() throws SQLException {
+        Connection first = pool.acquire();
+        Connection second = pool.acquire();
+        assertNotSame(first, second);
+        assertEquals(2, pool.getInUse());
+
+        assertThrows(SQLException.class, pool::acquire);
+
+        pool.release(second, false);
+        assertSame(second, pool.acquire());
+        StringBuilder metrics = new StringBuilder();
+        pool.appendMetrics(metrics);
+        assertTrue(metrics.toString().contains("open=2, inUse=2, waiting=0, acquired=3, timeouts=1"));
+    }
+
+    @Test
+    void brokenConnectionIsReplaced() throws SQLException {
+        Connection connection = pool.acquire();
+        pool.release(connection, true);
+
+        assertTrue(connection.isClosed());
+        Connection replacement = pool.acquire();
+        assertNotSame(connection, replacement);
+        assertTrue(replacement.isValid(1));
+        pool.release(replacement, false);
+    }
+
+    @Test
+    void closeClosesIdleAndReleasedConnections() throws SQLException {
+        Connection idle = pool.acquire();
+        Connection inUse = pool.acquire();
+        pool.release(idle, false);
+
+        pool.close();
+
+        assertTrue(idle.isClosed());
+        assertThrows(SQLException.class, pool::acquire);
+        pool.release(inUse, false);
+        assertTrue(inUse.isClosed());
+    }
+
+}
@@ -23,19 +23,23 @@ package org.openmuc.framework.datalogger.sql;
 
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DbConnectorTestable extends DbConnector {
 
+    private static final AtomicInteger databaseCounter = new AtomicInteger();
+
     private final String urlOverride;
+    private final String databaseUrl;
     private final Connection testableConnection;
 
     /**
-     * Creates with given url
+     * Creates with given url, all connections of the connector share a new in-memory database
      */
     public DbConnectorTestable(String url) throws SQLException {
         this.urlOverride = url;
-        this.testableConnection = TestConnectionHelper.getConnection();
+        this.databaseUrl = "jdbc:h2:mem:testable" + databaseCounter.incrementAndGet() + ";DB_CLOSE_DELAY=-1;MODE=MYSQL";
+        this.testableConnection = TestConnectionHelper.getConnection(databaseUrl);
     }
 
     @Override
@@ -44,8 +48,13 @@ public class DbConnectorTestable extends DbConnector {
     }
 
     @Override
-    public Statement createStatementWithConnection() throws SQLException {
-        return testableConnection.createStatement();
+    protected Connection getConnection() {
+        return testableConnection;
+    }
+
+    @Override
+    protected Connection openConnection() throws SQLException {
+        return TestConnectionHelper.getConnection(databaseUrl);
     }
 
     @Override
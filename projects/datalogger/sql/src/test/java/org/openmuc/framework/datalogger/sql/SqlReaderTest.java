@@ -21,14 +21,15 @@
 
 package org.openmuc.framework.datalogger.sql;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.doAnswer;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.spy;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -38,8 +39,8 @@ import org.openmuc.framework.data.ValueType;
 public class SqlReaderTest {
 
     private SqlReader sqlReader;
-    private DbAccess dbAccess, dbAccessSpy;
-    private DbConnector dbConnectorMock;
+    private DbAccess dbAccess;
+    private DbConnectorTestable connector;
     private Connection connection;
 
     private final String channelId = "testChannel";
@@ -47,18 +48,11 @@ public class SqlReaderTest {
 
     @BeforeEach
     void setup() throws SQLException {
-        connection = TestConnectionHelper.getConnection();
+        connector = new DbConnectorTestable("");
+        connection = connector.getConnection(); // queries run on pooled connections to the same database
 
-        dbConnectorMock = mock(DbConnector.class);
-        dbAccess = DbAccess.getTestInstance(dbConnectorMock); // Real DbAccess with mock DbConnector to prevent null
-                                                              // pointer exception in queryRecords
-        dbAccessSpy = spy(dbAccess); // DbAccess with modified executeQuery
-
-        doAnswer(invocation -> { // pass any executed sql queries to the test connection
-            return TestConnectionHelper.executeQuery(connection, invocation.getArgument(0).toString());
-        }).when(dbAccessSpy).executeQuery(any());
-
-        sqlReader = new SqlReader(dbAccessSpy);
+        dbAccess = DbAccess.getTestInstance(connector);
+        sqlReader = new SqlReader(dbAccess);
     }
 
     @Test
@@ -68,9 +62,26 @@ public class SqlReaderTest {
         Record record = sqlReader.readLatestRecordFromDb(channelId, valueType);
         assertTrue(record.getValue().asDouble() == 2);
 
+        dbAccess.closeConnection();
         connection.close();
     }
 
+    @Test
+    void readDoesNotWaitForStatementsOnTheSetupConnection() throws Exception {
+        writeTestRecords();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            synchronized (connector) { // held by DbAccess.executeSQL while tables are created
+                Future<Record> record = executor.submit(() -> sqlReader.readLatestRecordFromDb(channelId, valueType));
+                assertEquals(2, record.get(5, TimeUnit.SECONDS).getValue().asDouble());
+            }
+        } finally {
+            executor.shutdown();
+            dbAccess.closeConnection();
+            connection.close();
+        }
+    }
+
     void writeTestRecords() throws SQLException {
         TestConnectionHelper.executeSQL(connection,
                 String.format("CREATE TABLE %s (time TIMESTAMP NOT NULL, " + "\"VALUE\" DOUBLE)", channelId));
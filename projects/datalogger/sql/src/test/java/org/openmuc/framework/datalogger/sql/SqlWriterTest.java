@@ -21,43 +21,50 @@
 
 package org.openmuc.framework.datalogger.sql;
 
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.doAnswer;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.times;
-import static org.mockito.Mockito.verify;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.openmuc.framework.data.DoubleValue;
 import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.IntValue;
 import org.openmuc.framework.data.Record;
 import org.openmuc.framework.data.Value;
+import org.openmuc.framework.data.ValueType;
 import org.openmuc.framework.datalogger.spi.LoggingRecord;
 
 class SqlWriterTest {
 
     private SqlWriter sqlWriter;
-    private DbAccess dbAccessMock;
+    private DbAccess dbAccess;
+    private DbConnectorTestable connector;
     private Connection connection;
 
     @BeforeEach
     void setup() throws SQLException {
-        connection = TestConnectionHelper.getConnection();
+        connector = new DbConnectorTestable("");
+        connection = connector.getConnection();
 
-        dbAccessMock = mock(DbAccess.class);
-
-        doAnswer(invocation -> { // pass any executed sql statements to the test connection
-            TestConnectionHelper.executeSQL(connection, invocation.getArgument(0).toString());
-            return null;
-        }).when(dbAccessMock).executeSQL(any());
+        dbAccess = DbAccess.getTestInstance(connector);
+        sqlWriter = new SqlWriter(dbAccess);
+    }
 
-        sqlWriter = new SqlWriter(dbAccessMock);
+    @AfterEach
+    void tearDown() throws SQLException {
+        sqlWriter.shutdown();
+        dbAccess.closeConnection();
+        connection.close();
     }
 
     @Test
@@ -69,10 +76,133 @@ class SqlWriterTest {
                 recordList.get(0).getChannelId()));
 
         sqlWriter.writeEventBasedContainerToDb(recordList);
+        sqlWriter.flush();
+
+        assertEquals(5, countRows("testChannel"));
+    }
 
-        verify(dbAccessMock, times(5)).executeSQL(any());
+    @Test
+    void sqlloggerCommandPrintsPoolAndLaneMetrics() throws SQLException {
+        createTable("channelA", "DOUBLE");
+        long timestamp = 1599569019000L;
+        sqlWriter.writeRecordContainerToDb(Collections.singletonList(
+                new LoggingRecord("channelA", new Record(new DoubleValue(0.5), timestamp, Flag.VALID))), timestamp);
+        sqlWriter.flush();
 
-        connection.close();
+        String metrics = SqlLoggerService.metrics(dbAccess, sqlWriter);
+
+        assertTrue(metrics.startsWith("pool: size="), metrics);
+        assertTrue(metrics.contains("lane 0: queued=0, batches=1, rows=1, failedRows=0"), metrics);
+        assertEquals("SQL logger not connected", SqlLoggerService.metrics(null, null));
+    }
+
+    @Test
+    void writeRecordContainerToDbInsertsOneRowPerChannel() throws SQLException {
+        createTable("channelA", "DOUBLE");
+        createTable("channelB", "INTEGER");
+        long timestamp = 1599569019000L;
+
+        for (int i = 0; i < 3; i++) {
+            sqlWriter.writeRecordContainerToDb(Arrays.asList(
+                    new LoggingRecord("channelA", new Record(new DoubleValue(i + 0.5), timestamp, Flag.VALID)),
+                    new LoggingRecord("channelB", new Record(new IntValue(i), timestamp, Flag.VALID)),
+                    new LoggingRecord("channelA", new Record(null, timestamp, Flag.COMM_DEVICE_NOT_CONNECTED))),
+                    timestamp + i * 1000L);
+        }
+        sqlWriter.flush();
+
+        assertEquals(3, countRows("channelA"));
+        assertEquals(3, countRows("channelB"));
+        ResultSet resultSet = TestConnectionHelper.executeQuery(connection,
+                "SELECT time, flag, \"VALUE\" FROM channelB ORDER BY time DESC");
+        assertTrue(resultSet.next());
+        assertEquals(timestamp + 2000L, resultSet.getTimestamp(1).getTime());
+        assertEquals(Flag.VALID.getCode(), resultSet.getShort(2));
+        assertEquals(2, resultSet.getInt(3));
+    }
+
+    @Test
+    void failingRowDoesNotDropOtherRows() throws SQLException {
+        createTable("channelA", "DOUBLE");
+        createTable("channelB", "DOUBLE");
+        long timestamp = 1599569019000L;
+        sqlWriter.writeRecordContainerToDb(
+                Collections.singletonList(new LoggingRecord("channelA", new Record(new DoubleValue(1), timestamp))),
+                timestamp);
+
+        // channelA already has a row with this timestamp and violates the primary key
+        sqlWriter.writeRecordContainerToDb(
+                Arrays.asList(new LoggingRecord("channelA", new Record(new DoubleValue(2), timestamp)),
+                        new LoggingRecord("channelB", new Record(new DoubleValue(3), timestamp))),
+                timestamp);
+        sqlWriter.flush();
+
+        assertEquals(1, countRows("channelA"));
+        assertEquals(1, countRows("channelB"));
+    }
+
+    @Test
+    void tablesArePartitionedAcrossLanes() throws SQLException {
+        int tables = 20;
+        int ticks = 10;
+        List<LoggingRecord> records = new ArrayList<>();
+        for (int i = 0; i < tables; i++) {
+            createTable("channel" + i, "DOUBLE");
+        }
+        long timestamp = 1599569019000L;
+        for (int tick = 0; tick < ticks; tick++) {
+            records.clear();
+            for (int i = 0; i < tables; i++) {
+                records.add(new LoggingRecord("channel" + i, new Record(new DoubleValue(tick), timestamp)));
+            }
+            sqlWriter.writeRecordContainerToDb(records, timestamp + tick * 1000L);
+        }
+        sqlWriter.flush();
+
+        for (int i = 0; i < tables; i++) {
+            assertEquals(ticks, countRows("channel" + i));
+        }
+        StringBuilder metrics = new StringBuilder();
+        sqlWriter.appendMetrics(metrics);
+        assertTrue(metrics.toString().contains("lane 0: queued=0"));
+        assertTrue(metrics.toString().contains("lane 1: queued=0"));
+        assertFalse(metrics.toString().contains(", rows=0,"));
+    }
+
+    @Test
+    void queryRecordsRestoresAutoCommitOfPooledConnection() throws SQLException {
+        createTable("channelA", "DOUBLE");
+        long timestamp = 1599569019000L;
+        for (int i = 0; i < 3; i++) {
+            sqlWriter.writeRecordContainerToDb(Collections.singletonList(
+                    new LoggingRecord("channelA", new Record(new DoubleValue(i), timestamp, Flag.VALID))),
+                    timestamp + i * 1000L);
+        }
+        sqlWriter.flush();
+
+        List<Record> records = dbAccess.queryRecords(
+                new StringBuilder("SELECT time, \"VALUE\" FROM channelA ORDER BY time"), ValueType.DOUBLE);
+
+        assertEquals(3, records.size());
+        assertEquals(2.0, records.get(2).getValue().asDouble());
+        Connection pooled = dbAccess.getConnectionPool().acquire();
+        try {
+            assertTrue(pooled.getAutoCommit());
+        } finally {
+            dbAccess.getConnectionPool().release(pooled, false);
+        }
+    }
+
+    private void createTable(String channelId, String type) throws SQLException {
+        TestConnectionHelper.executeSQL(connection, String.format(
+                "CREATE TABLE %s (time TIMESTAMP NOT NULL, flag SMALLINT NOT NULL, \"VALUE\" %s, PRIMARY KEY (time))",
+                channelId, type));
+    }
+
+    private int countRows(String channelId) throws SQLException {
+        ResultSet resultSet = TestConnectionHelper.executeQuery(connection, "SELECT COUNT(*) FROM " + channelId);
+        resultSet.next();
+        return resultSet.getInt(1);
     }
 
     private List<LoggingRecord> buildLoggingRecordList(int numOfElements) {
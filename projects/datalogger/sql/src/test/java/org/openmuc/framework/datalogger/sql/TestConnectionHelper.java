@@ -44,8 +44,20 @@ public class TestConnectionHelper {
      * @throws SQLException
      */
     public static Connection getConnection() throws SQLException {
+        return getConnection(DB_CONNECTION);
+    }
+
+    /**
+     * Connects to the database with the given url, e.g. a named in-memory database shared by several connections
+     *
+     * @param url
+     *            JDBC url of the database
+     * @return Connection to the database
+     * @throws SQLException
+     */
+    public static Connection getConnection(String url) throws SQLException {
         Properties properties = new Properties();
-        properties.setProperty("url", DB_CONNECTION);
+        properties.setProperty("url", url);
         properties.setProperty("password", "");
         properties.setProperty("user", "");
 
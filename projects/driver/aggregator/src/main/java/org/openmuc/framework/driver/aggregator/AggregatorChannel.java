@@ -21,12 +21,7 @@
 package org.openmuc.framework.driver.aggregator;
 
 import java.io.IOException;
-import java.util.Iterator;
-import java.util.List;
 
-import org.openmuc.framework.data.Flag;
-import org.openmuc.framework.data.Record;
-import org.openmuc.framework.data.TypeConversionException;
 import org.openmuc.framework.dataaccess.Channel;
 import org.openmuc.framework.dataaccess.DataAccessService;
 import org.openmuc.framework.dataaccess.DataLoggerNotAvailableException;
@@ -74,11 +69,27 @@ public abstract class AggregatorChannel {
      */
     public abstract double aggregate(long currentTimestamp, long endTimestamp) throws AggregationException;
 
-    public List<Record> getLoggedRecords(long currentTimestamp, long endTimestamp)
+    /**
+     * Reads the valid logged records of the source channel of the aggregation interval ending at endTimestamp.
+     * 
+     * @param currentTimestamp
+     *            start TS.
+     * @param endTimestamp
+     *            stop TS.
+     * @return the valid records.
+     * @throws DataLoggerNotAvailableException
+     *             if no data logger is available.
+     * @throws IOException
+     *             if the logged data cannot be read.
+     * @throws AggregationException
+     *             if there are not enough valid records.
+     */
+    public LoggedRecords getLoggedRecords(long currentTimestamp, long endTimestamp)
             throws DataLoggerNotAvailableException, IOException, AggregationException {
 
         long startTimestamp = currentTimestamp - aggregationInterval;
-        List<Record> records = sourceChannel.getLoggedRecords(startTimestamp, endTimestamp);
+        LoggedRecords records = new LoggedRecords();
+        sourceChannel.readLoggedRecords(startTimestamp, endTimestamp, records);
 
         // for debugging - KEEP IT!
         // if (records.size() > 0) {
@@ -145,12 +156,10 @@ public abstract class AggregatorChannel {
 
     }
 
-    private void checkNumberOfRecords(List<Record> records) throws AggregationException {
+    private void checkNumberOfRecords(LoggedRecords records) throws AggregationException {
 
         // The check if intervals are multiples of each other is done in the checkIntervals Method
 
-        removeErrorRecords(records);
-
         long expectedNumberOfRecords = Math.round((double) aggregationInterval / sourceLoggingInterval);
         long necessaryRecords = Math.round(expectedNumberOfRecords * channelAddress.getQuality());
         int validRecords = records.size();
@@ -164,29 +173,4 @@ public abstract class AggregatorChannel {
         }
 
     }
-
-    /**
-     * Removes invalid records from the list. All records remaining a valid DOUBLE records.
-     * 
-     * NOTE: directly manipulates the records object for all future operations!
-     */
-    private void removeErrorRecords(List<Record> records) {
-        Iterator<Record> recordIterator = records.iterator();
-        while (recordIterator.hasNext()) {
-            Record record = recordIterator.next();
-            // check if the value is null or the flag isn't valid
-            if (record == null || record.getValue() == null || !record.getFlag().equals(Flag.VALID)) {
-                recordIterator.remove();
-                continue;
-            }
-
-            try {
-                // check if the value can be converted to double
-                record.getValue().asDouble();
-            } catch (TypeConversionException e) {
-                // remove record since it can't be cast to double for further processing
-                recordIterator.remove();
-            }
-        }
-    }
 }
@@ -20,10 +20,6 @@
  */
 package org.openmuc.framework.driver.aggregator;
 
-import java.util.List;
-
-import org.openmuc.framework.data.Record;
-
 /**
  * Collection of methods
  */
@@ -65,26 +61,6 @@ public class AggregatorUtil {
     // return result;
     // }
 
-    /**
-     * Returns the value of the last record of the list
-     * <p>
-     * Can be used for energy aggregation. Smart meter sums the energy automatically therefore the last value contains
-     * the aggregated value
-     * 
-     * @param recordList
-     *            List of Records
-     * @return the value of the last record of the list
-     * @throws AggregationException
-     *             on error
-     */
-    public static Record findLastRecordIn(List<Record> recordList) throws AggregationException {
-        if (recordList.isEmpty()) {
-            throw new AggregationException("Record list is empty.");
-        }
-
-        return recordList.get(recordList.size() - 1);
-    }
-
     /**
      * Don't let anyone instantiate this class.
      */
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.driver.aggregator;
+
+import java.util.function.Consumer;
+
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.TypeConversionException;
+
+/**
+ * Collects the valid logged records of a source channel while they are read. Only the first and the last record and
+ * the sum of the values are kept, so the number of records does not matter.
+ */
+public class LoggedRecords implements Consumer<Record> {
+
+    private int size;
+    private double sum;
+    private Record first;
+    private Record last;
+
+    /**
+     * Adds the record if its flag is valid and its value can be converted to double, otherwise it is ignored.
+     */
+    @Override
+    public void accept(Record record) {
+        // check if the value is null or the flag isn't valid
+        if (record == null || record.getValue() == null || !record.getFlag().equals(Flag.VALID)) {
+            return;
+        }
+
+        double value;
+        try {
+            // check if the value can be converted to double
+            value = record.getValue().asDouble();
+        } catch (TypeConversionException e) {
+            return;
+        }
+
+        if (first == null) {
+            first = record;
+        }
+        last = record;
+        sum += value;
+        size++;
+    }
+
+    /**
+     * @return the number of valid records
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the sum of the values of the valid records
+     */
+    public double getSum() {
+        return sum;
+    }
+
+    /**
+     * @return the first valid record
+     * @throws AggregationException
+     *             if there is no valid record
+     */
+    public Record getFirst() throws AggregationException {
+        if (first == null) {
+            throw new AggregationException("Record list is empty.");
+        }
+        return first;
+    }
+
+    /**
+     * Returns the last valid record
+     * <p>
+     * Can be used for energy aggregation. Smart meter sums the energy automatically therefore the last value contains
+     * the aggregated value
+     * 
+     * @return the last valid record
+     * @throws AggregationException
+     *             if there is no valid record
+     */
+    public Record getLast() throws AggregationException {
+        if (last == null) {
+            throw new AggregationException("Record list is empty.");
+        }
+        return last;
+    }
+}
@@ -20,13 +20,11 @@
  */
 package org.openmuc.framework.driver.aggregator.types;
 
-import java.util.List;
-
-import org.openmuc.framework.data.Record;
 import org.openmuc.framework.dataaccess.DataAccessService;
 import org.openmuc.framework.driver.aggregator.AggregationException;
 import org.openmuc.framework.driver.aggregator.AggregatorChannel;
 import org.openmuc.framework.driver.aggregator.ChannelAddress;
+import org.openmuc.framework.driver.aggregator.LoggedRecords;
 
 public class AverageAggregation extends AggregatorChannel {
 
@@ -38,8 +36,8 @@ public class AverageAggregation extends AggregatorChannel {
     @Override
     public double aggregate(long currentTimestamp, long endTimestamp) throws AggregationException {
         try {
-            List<Record> recordList = getLoggedRecords(currentTimestamp, endTimestamp);
-            return calcAvgOf(recordList);
+            LoggedRecords records = getLoggedRecords(currentTimestamp, endTimestamp);
+            return calcAvgOf(records);
 
         } catch (AggregationException e) {
             throw e;
@@ -52,19 +50,8 @@ public class AverageAggregation extends AggregatorChannel {
     /**
      * Calculates the average of the all records
      */
-    private static double calcAvgOf(List<Record> recordList) throws AggregationException {
-        double sum = calcSumOf(recordList);
-
-        return sum / recordList.size();
-    }
-
-    private static double calcSumOf(List<Record> recordList) {
-        double sum = 0;
-
-        for (Record record : recordList) {
-            sum += record.getValue().asDouble();
-        }
-        return sum;
+    private static double calcAvgOf(LoggedRecords records) throws AggregationException {
+        return records.getSum() / records.size();
     }
 
 }
@@ -20,14 +20,11 @@
  */
 package org.openmuc.framework.driver.aggregator.types;
 
-import java.util.List;
-
-import org.openmuc.framework.data.Record;
 import org.openmuc.framework.dataaccess.DataAccessService;
 import org.openmuc.framework.driver.aggregator.AggregationException;
 import org.openmuc.framework.driver.aggregator.AggregatorChannel;
-import org.openmuc.framework.driver.aggregator.AggregatorUtil;
 import org.openmuc.framework.driver.aggregator.ChannelAddress;
+import org.openmuc.framework.driver.aggregator.LoggedRecords;
 
 public class DiffAggregation extends AggregatorChannel {
 
@@ -40,8 +37,8 @@ public class DiffAggregation extends AggregatorChannel {
     public double aggregate(long currentTimestamp, long endTimestamp) throws AggregationException {
 
         try {
-            List<Record> recordList = getLoggedRecords(currentTimestamp, endTimestamp);
-            return calcDiffBetweenLastAndFirstRecord(recordList);
+            LoggedRecords records = getLoggedRecords(currentTimestamp, endTimestamp);
+            return calcDiffBetweenLastAndFirstRecord(records);
         } catch (AggregationException e) {
             throw e;
         } catch (Exception e) {
@@ -51,15 +48,15 @@ public class DiffAggregation extends AggregatorChannel {
     }
 
     /**
-     * Calculates the difference between the last and first value of the list. <br>
+     * Calculates the difference between the last and first value of the records. <br>
      * Can be used to determine the energy per interval
      */
-    private static double calcDiffBetweenLastAndFirstRecord(List<Record> recordList) throws AggregationException {
-        if (recordList.size() < 2) {
+    private static double calcDiffBetweenLastAndFirstRecord(LoggedRecords records) throws AggregationException {
+        if (records.size() < 2) {
             throw new AggregationException("List holds less than 2 records, calculation of difference not possible.");
         }
-        double end = AggregatorUtil.findLastRecordIn(recordList).getValue().asDouble();
-        double start = recordList.get(0).getValue().asDouble();
+        double end = records.getLast().getValue().asDouble();
+        double start = records.getFirst().getValue().asDouble();
 
         return end - start;
     }
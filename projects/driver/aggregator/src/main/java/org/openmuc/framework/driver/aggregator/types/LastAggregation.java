@@ -20,13 +20,9 @@
  */
 package org.openmuc.framework.driver.aggregator.types;
 
-import java.util.List;
-
-import org.openmuc.framework.data.Record;
 import org.openmuc.framework.dataaccess.DataAccessService;
 import org.openmuc.framework.driver.aggregator.AggregationException;
 import org.openmuc.framework.driver.aggregator.AggregatorChannel;
-import org.openmuc.framework.driver.aggregator.AggregatorUtil;
 import org.openmuc.framework.driver.aggregator.ChannelAddress;
 
 public class LastAggregation extends AggregatorChannel {
@@ -39,8 +35,7 @@ public class LastAggregation extends AggregatorChannel {
     @Override
     public double aggregate(long currentTimestamp, long endTimestamp) throws AggregationException {
         try {
-            List<Record> recordList = getLoggedRecords(currentTimestamp, endTimestamp);
-            return AggregatorUtil.findLastRecordIn(recordList).getValue().asDouble();
+            return getLoggedRecords(currentTimestamp, endTimestamp).getLast().getValue().asDouble();
         } catch (AggregationException e) {
             throw e;
         } catch (Exception e) {
@@ -20,16 +20,14 @@
  */
 package org.openmuc.framework.driver.aggregator.types;
 
-import java.util.List;
-
 import org.openmuc.framework.data.Record;
 import org.openmuc.framework.dataaccess.Channel;
 import org.openmuc.framework.dataaccess.DataAccessService;
 import org.openmuc.framework.driver.aggregator.AggregationException;
 import org.openmuc.framework.driver.aggregator.AggregatorChannel;
 import org.openmuc.framework.driver.aggregator.AggregatorConstants;
-import org.openmuc.framework.driver.aggregator.AggregatorUtil;
 import org.openmuc.framework.driver.aggregator.ChannelAddress;
+import org.openmuc.framework.driver.aggregator.LoggedRecords;
 
 public class PulseEnergyAggregation extends AggregatorChannel {
 
@@ -47,8 +45,8 @@ public class PulseEnergyAggregation extends AggregatorChannel {
     public double aggregate(long currentTimestamp, long endTimestamp) throws AggregationException {
 
         try {
-            List<Record> recordList = getLoggedRecords(currentTimestamp, endTimestamp);
-            return getPulsesEnergy(channelAddress, sourceChannel, recordList, aggregatedChannel);
+            LoggedRecords records = getLoggedRecords(currentTimestamp, endTimestamp);
+            return getPulsesEnergy(channelAddress, sourceChannel, records, aggregatedChannel);
         } catch (AggregationException e) {
             throw e;
         } catch (Exception e) {
@@ -57,7 +55,7 @@ public class PulseEnergyAggregation extends AggregatorChannel {
 
     }
 
-    private static double getPulsesEnergy(ChannelAddress simpleAdress, Channel sourceChannel, List<Record> recordList,
+    private static double getPulsesEnergy(ChannelAddress simpleAdress, Channel sourceChannel, LoggedRecords records,
             Channel aggregatedChannel) throws AggregationException, AggregationException {
 
         // parse type address params. length = 3: <type,pulsePerWh,maxCounterValue>
@@ -78,18 +76,18 @@ public class PulseEnergyAggregation extends AggregatorChannel {
             maxCounterValue = SHORT_MAX; // if negative or null then set default value
         }
 
-        return calcImpulsValue(sourceChannel, recordList, aggregatedChannel.getSamplingInterval(), pulsesPerWh,
+        return calcImpulsValue(sourceChannel, records, aggregatedChannel.getSamplingInterval(), pulsesPerWh,
                 maxCounterValue);
     }
 
-    private static double calcImpulsValue(Channel sourceChannel, List<Record> recordList, long samplingInterval,
+    private static double calcImpulsValue(Channel sourceChannel, LoggedRecords records, long samplingInterval,
             double pulsesPerX, double maxCounterValue) throws AggregationException {
 
-        if (recordList.isEmpty()) {
+        if (records.size() == 0) {
             throw new AggregationException("List holds less than 1 records, calculation of pulses not possible.");
         }
 
-        Record lastRecord = AggregatorUtil.findLastRecordIn(recordList);
+        Record lastRecord = records.getLast();
         double past = lastRecord.getValue().asDouble();
         double actual = retrieveLatestRecordValueWithTs(sourceChannel, lastRecord);
 
@@ -136,12 +136,11 @@ public class AmqpBufferHandler {
 
     public void persist() {
         if (isFileBufferEnabled()) {
+            addToFilePersistence();
             try {
-                filePersistence.restructure();
-                addToFilePersistence();
+                filePersistence.close();
             } catch (IOException e) {
-                logger.error("Buffer file restructuring error: {}", e.getMessage());
-                e.printStackTrace();
+                logger.error("Buffer file persisting error: {}", e.getMessage());
             }
         }
     }
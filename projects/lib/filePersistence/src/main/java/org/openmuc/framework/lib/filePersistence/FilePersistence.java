@@ -21,17 +21,13 @@
 
 package org.openmuc.framework.lib.filePersistence;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.nio.file.DirectoryNotEmptyException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -42,18 +38,26 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Provides configurable RAM friendly file persistence functionality
+ * <p>
+ * Every buffer is stored as {@link SegmentedLog} in its own directory. Files are kept open between calls and the read
+ * position is stored on disk, so a buffer can be read in any number of steps and across restarts without rewriting
+ * its files. {@link #getMessage(String)} removes a message when it is read. A caller which delivers messages
+ * asynchronously uses {@link #readMessage(String)} and {@link #commitMessage(String)} instead, messages which are read
+ * but not committed are read again after a restart. {@link #close()} has to be called before the instance is dropped.
  */
 public class FilePersistence {
     private static final Logger logger = LoggerFactory.getLogger(FilePersistence.class);
     private final Path DIRECTORY;
     private int maxFileCount;
     private final long MAX_FILE_SIZE_BYTES;
-    private final Map<String, Integer> nextFile = new HashMap<>();
-    private final Map<String, Long> readBytes = new HashMap<>();
-    private static final List<String> BUFFERS = new ArrayList<>();
+    private final Map<String, SegmentedLog> logs = new HashMap<>();
+    private final List<String> buffers = new ArrayList<>();
+    private boolean buffersLoaded;
+    private boolean bufferListChanged;
     public static final String DEFAULT_FILENAME = "buffer.0.log";
     public static final String DEFAULT_FILE_PREFIX = "buffer";
     public static final String DEFAULT_FILE_SUFFIX = "log";
+    private static final String BUFFER_LIST_FILENAME = "buffer_list";
 
     /**
      * @param directory
@@ -90,121 +94,86 @@ public class FilePersistence {
      * @param buffer
      *            directory without file name. Filename is automatically added by FilePersistence
      * @param payload
-     *            the data to be written. needs to be smaller than MAX_FILE_SIZE
+     *            the data to be written. needs to be smaller than MAX_FILE_SIZE minus the record header of 8 bytes
      * @throws IOException
      *             when writing fails
      */
-    public void writeBufferToFile(String buffer, byte[] payload) throws IOException {
+    public synchronized void writeBufferToFile(String buffer, byte[] payload) throws IOException {
 
         // buffer = topic for mqtt e.g. topic/test/openmuc
 
         checkPayLoadSize(payload.length);
         registerBuffer(buffer);
-        Path filePath = Paths.get(DIRECTORY.toString(), buffer, DEFAULT_FILENAME);
-        File file = createFileIfNotExist(filePath);
-        if (isFileFull(file.length(), payload.length)) {
-            handleFullFile(buffer, payload, file);
-        }
-        else {
-            appendToFile(file, payload);
+        getLog(buffer).append(payload);
+    }
+
+    private SegmentedLog getLog(String buffer) throws IOException {
+        SegmentedLog log = logs.get(buffer);
+        if (log == null) {
+            log = new SegmentedLog(Paths.get(DIRECTORY.toString(), buffer), maxFileCount, MAX_FILE_SIZE_BYTES);
+            logs.put(buffer, log);
         }
+        return log;
     }
 
     private void registerBuffer(String buffer) throws IOException {
-        if (!BUFFERS.contains(buffer)) {
-            BUFFERS.add(buffer);
-            writeBufferList();
+        loadBuffers();
+        if (!buffers.contains(buffer)) {
+            buffers.add(buffer);
+            Files.write(getBufferListPath(), (buffer + '\n').getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
         }
     }
 
     private void removeBufferIfEmpty(String buffer) throws IOException {
-        if (!fileExistsFor(buffer)) {
-            boolean buffersChanged = BUFFERS.remove(buffer);
-            if (buffersChanged) {
-                writeBufferList();
-            }
+        if (getLog(buffer).isEmpty()) {
+            bufferListChanged |= buffers.remove(buffer);
         }
     }
 
-    private void writeBufferList() throws IOException {
-        File buffers = Paths.get(DIRECTORY.toString(), "buffer_list").toFile();
-        FileWriter writer = new FileWriter(buffers);
-        for (String registeredBuffer : BUFFERS) {
-            writer.write(registeredBuffer + '\n');
+    /**
+     * Reads the buffer list once. New buffers are appended to the list file, emptied buffers are removed from the file
+     * by {@link #flush()} and {@link #close()} and skipped here in case it was not called.
+     */
+    private void loadBuffers() throws IOException {
+        if (buffersLoaded) {
+            return;
         }
-        writer.close();
-    }
-
-    public String[] getBuffers() {
-        if (BUFFERS.isEmpty()) {
-            Path buffers = Paths.get(DIRECTORY.toString(), "buffer_list");
-            if (buffers.toFile().exists()) {
-                try {
-                    BUFFERS.addAll(Files.readAllLines(buffers));
-                } catch (IOException e) {
-                    logger.error("Could not read buffer_list. Message: {}", e.getMessage());
-                }
-            }
+        buffersLoaded = true;
+        Path bufferList = getBufferListPath();
+        if (!bufferList.toFile().exists()) {
+            return;
         }
-        return BUFFERS.toArray(new String[0]);
-    }
-
-    private File createFileIfNotExist(Path filePath) throws IOException {
-        File file = filePath.toFile();
-        if (!file.exists()) {
-            logger.info("create new file: {}", file.getAbsolutePath());
-            Path storagePath = Paths.get(file.getAbsolutePath());
-            Files.createDirectories(storagePath.getParent());
-            Files.createFile(storagePath);
+        for (String buffer : Files.readAllLines(bufferList, StandardCharsets.UTF_8)) {
+            if (!buffer.isEmpty() && !buffers.contains(buffer) && !getLog(buffer).isEmpty()) {
+                buffers.add(buffer);
+            }
+            else {
+                bufferListChanged = true;
+            }
         }
-        return file;
     }
 
-    private void appendToFile(File file, byte[] payload) throws IOException {
-        FileOutputStream fileStream = new FileOutputStream(file, true);
-        fileStream.write(payload);
-        fileStream.write("\n".getBytes());
-        fileStream.close();
-    }
-
-    private void handleFullFile(String filePath, byte[] payload, File file) throws IOException {
-        if (maxFileCount > 1) {
-            handleMultipleFiles(filePath, payload, file);
-
-        }
-        else {
-            handleSingleFile(filePath, payload, file);
-        }
+    private void writeBufferList() throws IOException {
+        Files.write(getBufferListPath(), buffers, StandardCharsets.UTF_8);
+        bufferListChanged = false;
     }
 
-    private void handleSingleFile(String filePath, byte[] payload, File file) {
-        throw new UnsupportedOperationException("right now only maxFileCount >= 2 supported");
+    private Path getBufferListPath() {
+        return Paths.get(DIRECTORY.toString(), BUFFER_LIST_FILENAME);
     }
 
-    private void handleMultipleFiles(String buffer, byte[] payload, File file) throws IOException {
-
-        int nextFile = this.nextFile.getOrDefault(buffer, 1);
-        String newFileName = DEFAULT_FILE_PREFIX + '.' + nextFile + '.' + DEFAULT_FILE_SUFFIX;
-        if (++nextFile == maxFileCount) {
-            nextFile = 1;
+    public synchronized String[] getBuffers() {
+        try {
+            loadBuffers();
+        } catch (IOException e) {
+            logger.error("Could not read buffer_list. Message: {}", e.getMessage());
         }
-        this.nextFile.put(buffer, nextFile);
-        Path path = Paths.get(DIRECTORY.toString(), buffer, DEFAULT_FILENAME);
-        Path newPath = Paths.get(DIRECTORY.toString(), buffer, newFileName);
-        Files.move(path, newPath, StandardCopyOption.REPLACE_EXISTING);
-
-        logger.info("move file from: {} to {}", path, newPath);
-
-        Files.createFile(path);
-        appendToFile(path.toFile(), payload);
-    }
-
-    private boolean isFileFull(long fileLength, int payloadLength) {
-        return fileLength + payloadLength + 1 > MAX_FILE_SIZE_BYTES;
+        return buffers.toArray(new String[0]);
     }
 
     private void checkPayLoadSize(int payloadLength) throws IOException {
-        if (payloadLength >= MAX_FILE_SIZE_BYTES) {
+        if (payloadLength + SegmentedLog.HEADER_SIZE > MAX_FILE_SIZE_BYTES) {
             throw new IOException("Payload is bigger than maxFileSize. Current maxFileSize is "
                     + (MAX_FILE_SIZE_BYTES / 1024) + "kB");
         }
@@ -213,128 +182,127 @@ public class FilePersistence {
     /**
      * @param buffer
      *            the name of the buffer (e.g. the topic or queue name)
-     * @return if a file buffer exists
+     * @return if a file buffer with unread messages exists
      */
-    public boolean fileExistsFor(String buffer) {
-        String fileName = DEFAULT_FILE_PREFIX + ".0." + DEFAULT_FILE_SUFFIX;
-        return Paths.get(DIRECTORY.toString(), buffer, fileName).toFile().exists();
+    public synchronized boolean fileExistsFor(String buffer) {
+        try {
+            return getLog(buffer).hasUnread();
+        } catch (IOException e) {
+            logger.error("An error occurred while opening the buffer {}. Error message: {}", buffer, e.getMessage());
+            return false;
+        }
     }
 
-    public byte[] getMessage(String buffer) {
-        Path filePath = getOldestFilePath(buffer);
-        Long position = getFilePosition(filePath.toString());
-        String message = "";
+    /**
+     * @param buffer
+     *            the name of the buffer (e.g. the topic or queue name)
+     * @return the oldest message of the buffer, which is removed from the buffer, or an empty array if the buffer is
+     *         empty
+     */
+    public synchronized byte[] getMessage(String buffer) {
+        byte[] message = null;
         try {
-            message = readLine(buffer, filePath.toFile(), position);
+            SegmentedLog log = getLog(buffer);
+            message = log.read();
+            if (message != null) {
+                log.commit();
+            }
+            removeBufferIfEmpty(buffer);
         } catch (IOException e) {
             logger.error("An error occurred while reading the buffer {}. Error message: {}", buffer, e.getMessage());
         }
-
-        return message.getBytes();
+        return message != null ? message : new byte[0];
     }
 
-    private String readLine(String buffer, File file, Long position) throws IOException {
-        FileInputStream fileStream = new FileInputStream(file);
-        StringBuilder lineBuilder = new StringBuilder();
-        fileStream.skip(position);
-
-        int nextChar = fileStream.read();
-        position++;
-        while (nextChar != -1 && nextChar != '\n') {
-            lineBuilder.appendCodePoint(nextChar);
-            nextChar = fileStream.read();
-            position++;
+    /**
+     * Reads the next message without removing it. The message stays in the buffer until it is removed with
+     * {@link #commitMessage(String)}.
+     *
+     * @param buffer
+     *            the name of the buffer (e.g. the topic or queue name)
+     * @return the oldest unread message of the buffer or an empty array if all messages were read
+     */
+    public synchronized byte[] readMessage(String buffer) {
+        byte[] message = null;
+        try {
+            message = getLog(buffer).read();
+        } catch (IOException e) {
+            logger.error("An error occurred while reading the buffer {}. Error message: {}", buffer, e.getMessage());
         }
-        fileStream.close();
-
-        setFilePosition(file.toString(), position);
-        deleteIfEmpty(file, position);
-        removeBufferIfEmpty(buffer);
-
-        return lineBuilder.toString();
+        return message != null ? message : new byte[0];
     }
 
-    private void deleteIfEmpty(File file, Long position) throws IOException {
-        FileInputStream fileStream = new FileInputStream(file);
-        fileStream.skip(position);
-        int nextChar = fileStream.read();
-        fileStream.close();
-        if (nextChar == -1) {
-            boolean deleted = file.delete();
-            if (!deleted) {
-                throw new IOException("Empty file could not be deleted!");
-            }
-            else {
-                setFilePosition(file.toString(), 0L);
+    /**
+     * Removes the oldest message returned by {@link #readMessage(String)} from the buffer, e.g. once it was delivered.
+     * Messages are committed in the order they were read. Every read message takes one commit, also if it was dropped
+     * in the meantime because the buffer was full, in this case nothing is removed.
+     *
+     * @param buffer
+     *            the name of the buffer (e.g. the topic or queue name)
+     */
+    public synchronized void commitMessage(String buffer) {
+        try {
+            if (getLog(buffer).commit()) {
+                removeBufferIfEmpty(buffer);
             }
+        } catch (IOException e) {
+            logger.error("An error occurred while committing the buffer {}. Error message: {}", buffer,
+                    e.getMessage());
         }
     }
 
-    private void setFilePosition(String filePathString, Long position) {
-        readBytes.put(filePathString, position);
-    }
-
-    private Long getFilePosition(String filePathString) {
-        Long position = readBytes.get(filePathString);
-        if (position == null) {
-            position = 0L;
+    /**
+     * Forces the written messages to disk and stores the read positions and the buffer list.
+     *
+     * @throws IOException
+     *             when writing fails
+     */
+    public synchronized void flush() throws IOException {
+        for (SegmentedLog log : logs.values()) {
+            log.sync();
         }
-        return position;
-    }
-
-    private Path getOldestFilePath(String buffer) {
-        Path directoryPath = Paths.get(DIRECTORY.toString(), buffer);
-        String[] bufferFiles = directoryPath.toFile().list((file, s) -> s.endsWith(".log"));
-        String oldestFile = DEFAULT_FILENAME;
-        if (bufferFiles.length > 1) {
-            oldestFile = findOldestFile(buffer);
+        if (bufferListChanged) {
+            writeBufferList();
         }
-        return Paths.get(directoryPath.toString(), oldestFile);
     }
 
-    private String findOldestFile(String buffer) {
-        String oldestFile = DEFAULT_FILENAME;
-        int nextFile = this.nextFile.getOrDefault(buffer, 1);
-        for (int i = 0; i < maxFileCount; i++) {
-            String fileName = DEFAULT_FILE_PREFIX + '.' + nextFile + '.' + DEFAULT_FILE_SUFFIX;
-            if (Paths.get(DIRECTORY.toString(), buffer, fileName).toFile().exists()) {
-                oldestFile = fileName;
-                break;
-            }
-            if (++nextFile == maxFileCount) {
-                nextFile = 1;
-            }
-        }
-        return oldestFile;
+    /**
+     * Kept for compatibility, same as {@link #flush()}. Read positions are stored on disk, so the files don't have to
+     * be rewritten anymore.
+     *
+     * @throws IOException
+     *             when writing fails
+     */
+    public void restructure() throws IOException {
+        flush();
     }
 
-    public void restructure() throws IOException {
-        for (String buffer : getBuffers()) {
-            Path bufferPath = getOldestFilePath(buffer);
-            Long position = getFilePosition(bufferPath.toString());
-            if (position.equals(0L)) {
-                continue;
-            }
-            Path temp = bufferPath.getParent();
-            temp = Paths.get(temp.toString(), "temp");
+    /**
+     * Flushes and closes the files of all buffers. The instance can still be used afterwards, files are reopened on
+     * the next access.
+     *
+     * @throws IOException
+     *             when writing fails
+     */
+    public synchronized void close() throws IOException {
+        IOException exception = null;
+        try {
+            flush();
+        } catch (IOException e) {
+            exception = e;
+        }
+        for (SegmentedLog log : logs.values()) {
             try {
-                Files.move(bufferPath, temp, StandardCopyOption.REPLACE_EXISTING);
-            } catch (DirectoryNotEmptyException e) {
-                logger.error(bufferPath.toString() + " -> " + temp.toString());
+                log.close();
+            } catch (IOException e) {
+                exception = e;
             }
-            Files.createFile(bufferPath);
-            FileInputStream inputStream = new FileInputStream(temp.toFile());
-            inputStream.skip(position);
-            FileOutputStream outputStream = new FileOutputStream(bufferPath.toFile(), true);
-            int nextChar = inputStream.read();
-            while (nextChar != -1) {
-                outputStream.write(nextChar);
-                nextChar = inputStream.read();
-            }
-            inputStream.close();
-            outputStream.close();
-            temp.toFile().delete();
-            setFilePosition(bufferPath.toString(), 0L);
+        }
+        logs.clear();
+        buffers.clear();
+        buffersLoaded = false;
+        if (exception != null) {
+            throw exception;
         }
     }
 }
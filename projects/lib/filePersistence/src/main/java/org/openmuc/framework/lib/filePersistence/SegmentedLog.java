@@ -0,0 +1,622 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.lib.filePersistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only log of one buffer, stored in segment files of at most maxFileSize bytes.
+ * <p>
+ * Records are written as <code>[int length][int crc32][payload]</code> through a file channel which is kept open, so
+ * payloads are stored byte exact. <code>buffer.0.log</code> is the active segment, a full segment is moved to
+ * <code>buffer.N.log</code>, N counting from 1 to maxFileCount - 1 and overwriting the oldest segment. Reads map the
+ * segments into memory and continue at the byte offset of the read cursor.
+ * <p>
+ * Reading and committing are separate steps: {@link #read()} returns the next record, {@link #commit()} marks the
+ * oldest read record as delivered. Only the committed position is stored in <code>buffer.cursor</code> and a segment
+ * is deleted when all of its records are committed, so records which were read but not committed are read again
+ * after a restart. The committed position is stored and writes are forced to disk at most every
+ * {@link #SYNC_INTERVAL_MILLIS} or {@link #SYNC_BYTES}, on segment changes and on {@link #close()}.
+ * <p>
+ * Files in the newline separated format of earlier versions are converted when the log is opened. Files with invalid
+ * records are copied to <code>*.corrupt</code> before the invalid bytes are skipped. Not thread safe,
+ * {@link FilePersistence} synchronizes the access.
+ */
+final class SegmentedLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentedLog.class);
+
+    static final int HEADER_SIZE = 8;
+    static final long SYNC_INTERVAL_MILLIS = 1000;
+    static final long SYNC_BYTES = 4 << 20;
+    static final String CURSOR_FILENAME = FilePersistence.DEFAULT_FILE_PREFIX + ".cursor";
+    static final String CORRUPT_SUFFIX = ".corrupt";
+    private static final int CURSOR_SIZE = 16;
+    private static final long MAP_WINDOW_SIZE = 64 << 20;
+    /**
+     * types of uncommitted entries, DROPPED is a read record whose segment was overwritten before it was committed. It
+     * still takes one commit, so that the commits stay in step with the reads.
+     */
+    private static final long SKIPPED = 0;
+    private static final long RECORD = 1;
+    private static final long DROPPED = 2;
+
+    private final Path directory;
+    private final int maxFileCount;
+    private final long maxFileSizeBytes;
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * indices of the full segments, oldest first
+     */
+    private final List<Integer> sealed = new ArrayList<>();
+    private final long[] sealedSizes;
+    private int nextFile = 1;
+
+    private FileChannel writer;
+    private long activeSize;
+    private final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    private final ByteBuffer[] record = new ByteBuffer[2];
+
+    /**
+     * byte offset in the oldest segment up to which the read records are committed
+     */
+    private long commitPosition;
+    /**
+     * segment of the next record as index into the sealed segments, sealed.size() for the active segment
+     */
+    private int readSegment;
+    private long readPosition;
+    /**
+     * read records which are not committed yet, oldest first, as {file, end offset, type}
+     */
+    private final Deque<long[]> uncommitted = new ArrayDeque<>();
+
+    private Path mappedPath;
+    private MappedByteBuffer map;
+    private long mapOffset;
+
+    private FileChannel cursorChannel;
+    private final ByteBuffer cursor = ByteBuffer.allocate(CURSOR_SIZE);
+    private boolean cursorChanged;
+    private boolean unforcedWrites;
+    private long bytesSinceSync;
+    private long lastSync = System.currentTimeMillis();
+
+    SegmentedLog(Path directory, int maxFileCount, long maxFileSizeBytes) throws IOException {
+        this.directory = directory;
+        this.maxFileCount = maxFileCount;
+        this.maxFileSizeBytes = maxFileSizeBytes;
+        sealedSizes = new long[Math.max(maxFileCount, 1)];
+        load();
+    }
+
+    /**
+     * Restores the segment order and the committed position from the files of a previous run.
+     */
+    private void load() throws IOException {
+        int cursorFile = 0;
+        long cursorPosition = 0;
+        Path cursorPath = directory.resolve(CURSOR_FILENAME);
+        if (Files.isRegularFile(cursorPath) && Files.size(cursorPath) >= CURSOR_SIZE) {
+            ByteBuffer stored = ByteBuffer.wrap(Files.readAllBytes(cursorPath));
+            int storedNextFile = stored.getInt();
+            if (storedNextFile > 0 && storedNextFile < maxFileCount) {
+                nextFile = storedNextFile;
+            }
+            cursorFile = stored.getInt();
+            cursorPosition = stored.getLong();
+        }
+
+        int file = nextFile;
+        for (int i = 1; i < maxFileCount; i++) {
+            Path path = path(file);
+            if (Files.isRegularFile(path)) {
+                long size = prepare(path, false);
+                if (size >= 0) {
+                    sealed.add(file);
+                    sealedSizes[file] = size;
+                }
+            }
+            if (++file == maxFileCount) {
+                file = 1;
+            }
+        }
+
+        Path activePath = path(0);
+        if (Files.isRegularFile(activePath)) {
+            long size = prepare(activePath, true);
+            if (size > 0) {
+                openWriter();
+                activeSize = size;
+            }
+            else if (size == 0) {
+                Files.delete(activePath);
+            }
+        }
+
+        if (!isEmpty() && cursorFile == headFile() && cursorPosition <= headSize()) {
+            commitPosition = cursorPosition;
+            readPosition = cursorPosition;
+        }
+    }
+
+    /**
+     * Checks the records of a segment of a previous run.
+     *
+     * @return the size of the valid records or -1 if the file was moved aside
+     */
+    private long prepare(Path path, boolean active) throws IOException {
+        long size = Files.size(path);
+        long validSize = validSize(path, size);
+        if (validSize == size) {
+            return size;
+        }
+        if (validSize == 0 && isNewlineSeparated(path, size)) {
+            return convertNewlineSeparated(path);
+        }
+        if (validSize == 0) {
+            Path target = corruptPath(path);
+            Files.move(path, target);
+            logger.error("{} contains no valid records, moved to {}", path, target);
+            return -1;
+        }
+
+        if (active) {
+            // the end of a write interrupted by a crash or power loss
+            logger.warn("Discarding {} bytes after the last complete record of {}", size - validSize, path);
+        }
+        else {
+            Path target = corruptPath(path);
+            Files.copy(path, target);
+            logger.error("Discarding {} invalid bytes at the end of {}, copy saved as {}", size - validSize, path,
+                    target);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(validSize);
+        }
+        return validSize;
+    }
+
+    private long validSize(Path path, long size) throws IOException {
+        long position = 0;
+        byte[] payload;
+        while ((payload = readRecord(path, position, size)) != null) {
+            position += HEADER_SIZE + payload.length;
+        }
+        unmap();
+        return position;
+    }
+
+    private static boolean isNewlineSeparated(Path path, long size) throws IOException {
+        if (size == 0) {
+            return false;
+        }
+        ByteBuffer last = ByteBuffer.allocate(1);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            channel.read(last, size - 1);
+        }
+        return last.get(0) == '\n';
+    }
+
+    /**
+     * Converts a file written by earlier versions, which stored every message followed by a newline.
+     *
+     * @return the size of the converted file
+     */
+    private long convertNewlineSeparated(Path path) throws IOException {
+        byte[] content = Files.readAllBytes(path);
+        Path converted = path.resolveSibling(path.getFileName() + ".tmp");
+        int messages = 0;
+        try (FileChannel channel = FileChannel.open(converted, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            int start = 0;
+            for (int i = 0; i < content.length; i++) {
+                if (content[i] == '\n') {
+                    writeRecord(channel, ByteBuffer.wrap(content, start, i - start));
+                    messages++;
+                    start = i + 1;
+                }
+            }
+            channel.force(false);
+        }
+        Files.move(converted, path, StandardCopyOption.REPLACE_EXISTING);
+        logger.info("Converted {} messages of {} from the newline separated format", messages, path);
+        return Files.size(path);
+    }
+
+    private Path corruptPath(Path path) {
+        return path.resolveSibling(path.getFileName() + "." + System.currentTimeMillis() + CORRUPT_SUFFIX);
+    }
+
+    /**
+     * @return true if the log has no files, i.e. all records are committed
+     */
+    boolean isEmpty() {
+        return sealed.isEmpty() && writer == null;
+    }
+
+    /**
+     * @return true if there are records which were not read yet
+     */
+    boolean hasUnread() {
+        return readSegment < sealed.size() || writer != null && readPosition < activeSize;
+    }
+
+    void append(byte[] payload) throws IOException {
+        int recordSize = HEADER_SIZE + payload.length;
+        if (writer != null && activeSize + recordSize > maxFileSizeBytes) {
+            rotate();
+        }
+        if (writer == null) {
+            openWriter();
+        }
+
+        writeRecord(writer, ByteBuffer.wrap(payload));
+        activeSize += recordSize;
+        unforcedWrites = true;
+        syncIfDue(recordSize);
+    }
+
+    private void writeRecord(FileChannel channel, ByteBuffer payload) throws IOException {
+        int length = payload.remaining();
+        crc.reset();
+        crc.update(payload.array(), payload.arrayOffset() + payload.position(), length);
+        header.clear();
+        header.putInt(length).putInt((int) crc.getValue()).flip();
+        record[0] = header;
+        record[1] = payload;
+        long written = 0;
+        while (written < HEADER_SIZE + length) {
+            written += channel.write(record);
+        }
+        record[1] = null;
+    }
+
+    private void openWriter() throws IOException {
+        Path path = path(0);
+        if (!Files.exists(path)) {
+            logger.info("create new file: {}", path.toAbsolutePath());
+            Files.createDirectories(directory);
+        }
+        writer = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        activeSize = writer.size();
+    }
+
+    private void rotate() throws IOException {
+        if (maxFileCount < 2) {
+            throw new UnsupportedOperationException("right now only maxFileCount >= 2 supported");
+        }
+        writer.force(false);
+        writer.close();
+        writer = null;
+        unforcedWrites = false;
+
+        int file = nextFile;
+        if (++nextFile == maxFileCount) {
+            nextFile = 1;
+        }
+        Path path = path(0);
+        Path newPath = path(file);
+        if (!sealed.isEmpty() && sealed.get(0) == file) {
+            logger.warn("Buffer {} is full, dropping the oldest {} bytes", directory, sealedSizes[file] - commitPosition);
+            dropHead();
+        }
+        Files.move(path, newPath, StandardCopyOption.REPLACE_EXISTING);
+        logger.info("move file from: {} to {}", path, newPath);
+        if (path.equals(mappedPath)) {
+            // the mapping stays valid, only the name of the file changed
+            mappedPath = newPath;
+        }
+        for (long[] entry : uncommitted) {
+            if (entry[0] == 0) {
+                entry[0] = file;
+            }
+        }
+        sealed.add(file);
+        sealedSizes[file] = activeSize;
+        activeSize = 0;
+        if (readSegment == sealed.size() - 1 && readPosition >= sealedSizes[file]) {
+            nextReadSegment();
+        }
+        writeCursor();
+    }
+
+    /**
+     * Drops the oldest sealed segment, which is overwritten. Its uncommitted records are marked as dropped, so the
+     * caller's commits of these records do not commit records of the next segment.
+     */
+    private void dropHead() {
+        int file = sealed.remove(0);
+        if (path(file).equals(mappedPath)) {
+            unmap();
+        }
+        commitPosition = 0;
+        Iterator<long[]> it = uncommitted.iterator();
+        while (it.hasNext()) {
+            long[] entry = it.next();
+            if (entry[2] == DROPPED) {
+                continue;
+            }
+            if (entry[0] != file) {
+                break;
+            }
+            if (entry[2] == SKIPPED) {
+                it.remove();
+            }
+            else {
+                entry[0] = -1;
+                entry[2] = DROPPED;
+            }
+        }
+        if (readSegment > 0) {
+            readSegment--;
+        }
+        else {
+            readPosition = 0;
+        }
+    }
+
+    /**
+     * @return the payload of the oldest unread record or null if all records were read
+     */
+    byte[] read() throws IOException {
+        while (hasUnread()) {
+            boolean active = readSegment == sealed.size();
+            int file = active ? 0 : sealed.get(readSegment);
+            long size = active ? activeSize : sealedSizes[file];
+            Path path = path(file);
+            byte[] payload = readPosition < size ? readRecord(path, readPosition, size) : null;
+            if (payload == null) {
+                if (readPosition < size) {
+                    Path target = corruptPath(path);
+                    Files.copy(path, target);
+                    logger.error("Skipping {} bytes of {} which are not a valid record, copy saved as {}",
+                            size - readPosition, path, target);
+                }
+                readPosition = size;
+                if (!active) {
+                    nextReadSegment();
+                }
+                addUncommitted(file, size, false);
+                continue;
+            }
+            readPosition += HEADER_SIZE + payload.length;
+            long end = readPosition;
+            if (!active && readPosition >= size) {
+                nextReadSegment();
+            }
+            addUncommitted(file, end, true);
+            return payload;
+        }
+        return null;
+    }
+
+    private void nextReadSegment() {
+        readSegment++;
+        readPosition = 0;
+    }
+
+    private void addUncommitted(int file, long end, boolean isRecord) throws IOException {
+        if (!isRecord && uncommitted.isEmpty()) {
+            applyCommit(file, end);
+        }
+        else {
+            uncommitted.addLast(new long[] { file, end, isRecord ? RECORD : SKIPPED });
+        }
+    }
+
+    /**
+     * Marks the oldest read record as delivered. Nothing is committed if the record was dropped because its segment
+     * was overwritten in the meantime.
+     *
+     * @return false if there is no read record left to commit
+     */
+    boolean commit() throws IOException {
+        long[] entry = uncommitted.pollFirst();
+        if (entry == null) {
+            return false;
+        }
+        if (entry[2] != DROPPED) {
+            applyCommit((int) entry[0], entry[1]);
+        }
+        while (!uncommitted.isEmpty() && uncommitted.peekFirst()[2] == SKIPPED) {
+            entry = uncommitted.removeFirst();
+            applyCommit((int) entry[0], entry[1]);
+        }
+        syncIfDue(0);
+        return true;
+    }
+
+    /**
+     * Moves the committed position of the oldest segment and deletes the segment if it is completely committed.
+     */
+    private void applyCommit(int file, long end) throws IOException {
+        commitPosition = end;
+        cursorChanged = true;
+        if (!sealed.isEmpty()) {
+            if (end >= sealedSizes[file]) {
+                sealed.remove(0);
+                readSegment--;
+                commitPosition = 0;
+                deleteSegment(file);
+                writeCursor();
+            }
+        }
+        else if (end >= activeSize && readPosition >= activeSize) {
+            writer.close();
+            writer = null;
+            activeSize = 0;
+            unforcedWrites = false;
+            readPosition = 0;
+            commitPosition = 0;
+            deleteSegment(0);
+            deleteCursor();
+        }
+    }
+
+    private void deleteSegment(int file) throws IOException {
+        Path path = path(file);
+        if (path.equals(mappedPath)) {
+            unmap();
+        }
+        Files.deleteIfExists(path);
+    }
+
+    /**
+     * @return the payload of the record at the position or null if the bytes up to size are no valid record
+     */
+    private byte[] readRecord(Path path, long position, long size) throws IOException {
+        if (position + HEADER_SIZE > size) {
+            return null;
+        }
+        ByteBuffer in = mapped(path, position, HEADER_SIZE, size);
+        int length = in.getInt();
+        int checksum = in.getInt();
+        if (length < 0 || position + HEADER_SIZE + length > size) {
+            return null;
+        }
+        in = mapped(path, position + HEADER_SIZE, length, size);
+        byte[] payload = new byte[length];
+        in.get(payload);
+        crc.reset();
+        crc.update(payload, 0, length);
+        return (int) crc.getValue() == checksum ? payload : null;
+    }
+
+    /**
+     * @return the mapping of the file positioned at the given byte offset with at least length bytes remaining. A new
+     *         window is mapped if the current one does not cover the range, e.g. because the active segment grew.
+     */
+    private ByteBuffer mapped(Path path, long position, int length, long size) throws IOException {
+        if (map == null || !path.equals(mappedPath) || position < mapOffset
+                || position + length > mapOffset + map.limit()) {
+            long mapSize = Math.min(size - position, Math.max(MAP_WINDOW_SIZE, length));
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                map = channel.map(FileChannel.MapMode.READ_ONLY, position, mapSize);
+            }
+            mappedPath = path;
+            mapOffset = position;
+        }
+        map.position((int) (position - mapOffset));
+        return map;
+    }
+
+    private void unmap() {
+        map = null;
+        mappedPath = null;
+    }
+
+    private void syncIfDue(int bytes) throws IOException {
+        bytesSinceSync += bytes;
+        if (bytesSinceSync >= SYNC_BYTES || System.currentTimeMillis() - lastSync >= SYNC_INTERVAL_MILLIS) {
+            sync();
+        }
+    }
+
+    /**
+     * Forces the written records to disk and stores the committed position.
+     */
+    void sync() throws IOException {
+        if (unforcedWrites) {
+            writer.force(false);
+            unforcedWrites = false;
+        }
+        if (cursorChanged) {
+            writeCursor();
+        }
+        bytesSinceSync = 0;
+        lastSync = System.currentTimeMillis();
+    }
+
+    private void writeCursor() throws IOException {
+        if (cursorChannel == null) {
+            Files.createDirectories(directory);
+            cursorChannel = FileChannel.open(directory.resolve(CURSOR_FILENAME), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE);
+        }
+        cursor.clear();
+        cursor.putInt(nextFile).putInt(headFile()).putLong(commitPosition).flip();
+        while (cursor.hasRemaining()) {
+            cursorChannel.write(cursor, cursor.position());
+        }
+        cursorChanged = false;
+    }
+
+    private void deleteCursor() throws IOException {
+        if (cursorChannel != null) {
+            cursorChannel.close();
+            cursorChannel = null;
+        }
+        Files.deleteIfExists(directory.resolve(CURSOR_FILENAME));
+        cursorChanged = false;
+    }
+
+    /**
+     * Stores the committed position and closes the files. Records which were read but not committed are read again
+     * by the next instance.
+     */
+    void close() throws IOException {
+        sync();
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+        if (cursorChannel != null) {
+            cursorChannel.force(false);
+            cursorChannel.close();
+            cursorChannel = null;
+        }
+        unmap();
+    }
+
+    private int headFile() {
+        return sealed.isEmpty() ? 0 : sealed.get(0);
+    }
+
+    private long headSize() {
+        return sealed.isEmpty() ? activeSize : sealedSizes[sealed.get(0)];
+    }
+
+    private Path path(int file) {
+        return directory.resolve(
+                FilePersistence.DEFAULT_FILE_PREFIX + '.' + file + '.' + FilePersistence.DEFAULT_FILE_SUFFIX);
+    }
+
+}
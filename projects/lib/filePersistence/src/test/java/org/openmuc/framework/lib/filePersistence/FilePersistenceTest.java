@@ -24,6 +24,9 @@ package org.openmuc.framework.lib.filePersistence;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
@@ -31,6 +34,7 @@ import org.junit.jupiter.api.Test;
 
 class FilePersistenceTest {
     private static final String DIRECTORY = "/tmp/openmuc/filepersistence";
+    private static final int HEADER_SIZE = SegmentedLog.HEADER_SIZE;
     private static final String LOREM_IPSUM_1_KB = "Imperdiet Volutpat Sit Himenaeos Nunc Potenti Pharetra Porta Bibendum Sem Sociosqu Maecenas Vitae Metus Varius Ut Vulputate Eleifend Netus Scelerisque Ac Lobortis Mi Iaculis In Praesent Rutrum Tristique Aenean Quam Curabitur Consectetur Mattis Suscipit Ac Adipiscing Egestas Sagittis Viverra Nullam Nisi Gravida Leo Himenaeos At Quam In Gravida Rhoncus Neque Consequat Augue Faucibus Nostra In Ullamcorper Donec Nunc Conubia Hendrerit Consectetur Massa Lacinia Tempus Massa Fringilla Ut Est Condimentum Cubilia Fermentum Tincidunt Ac Eu Purus Bibendum Urna Elit Orci Phasellus Viverra Egestas Bibendum Maecenas Mauris Ultrices Elementum Quam Facilisis Mi Mauris Auctor Nibh Cubilia Erat Massa Non Leo Sodales Fames Consectetur Lorem Eros Dui Per Augue Urna Mollis Fames Nisl Sagittis Platea Sem Eget Sagittis Nulla Eget Convallis Venenatis Faucibus Enim Proin Bibendum Egestas Imperdiet Semper Id Molestie Leo Felis Metus Platea Sapien Elementum Risus Curabitur Risus Mi Morbi Pellentesque Nostra Condimentum Nisl In Suscipi";
 
     @AfterEach
@@ -57,18 +61,19 @@ class FilePersistenceTest {
         return new FilePersistence(DIRECTORY, 2, 1);
     }
 
+    // sizes below are record sizes, the payload is shortened by the record header
     private void write512Byte(FilePersistence filePersistence, String buffer) throws IOException {
-        filePersistence.writeBufferToFile(buffer, LOREM_IPSUM_1_KB.substring(513).getBytes());
+        filePersistence.writeBufferToFile(buffer, LOREM_IPSUM_1_KB.substring(512 + HEADER_SIZE).getBytes());
     }
 
     private void write512ByteUnique(FilePersistence filePersistence, String buffer, int id) throws IOException {
-        String message = LOREM_IPSUM_1_KB.substring(514);
+        String message = LOREM_IPSUM_1_KB.substring(513 + HEADER_SIZE);
         message += id;
         filePersistence.writeBufferToFile(buffer, message.getBytes());
     }
 
     private void write1KB(FilePersistence filePersistence, String buffer) throws IOException {
-        filePersistence.writeBufferToFile(buffer, LOREM_IPSUM_1_KB.substring(1).getBytes());
+        filePersistence.writeBufferToFile(buffer, LOREM_IPSUM_1_KB.substring(HEADER_SIZE).getBytes());
     }
 
     @Test
@@ -81,7 +86,7 @@ class FilePersistenceTest {
     @Test
     void writeWithTooBigPayload() {
         FilePersistence filePersistence = getFilePersistence();
-        // maxFileSize is 1024 Bytes, payload + newline char = 1025 Bytes
+        // maxFileSize is 1024 Bytes, payload + record header = 1032 Bytes
         Assertions.assertThrows(IOException.class,
                 () -> filePersistence.writeBufferToFile("test", LOREM_IPSUM_1_KB.getBytes()));
     }
@@ -122,9 +127,9 @@ class FilePersistenceTest {
         write512Byte(filePersistence, buffer);
         write1KB(filePersistence, buffer);
 
-        // Newline is not part of message so length is 1 Byte less
-        Assertions.assertEquals(511, filePersistence.getMessage(buffer).length);
-        Assertions.assertEquals(1023, filePersistence.getMessage(buffer).length);
+        // record header is not part of message
+        Assertions.assertEquals(512 - HEADER_SIZE, filePersistence.getMessage(buffer).length);
+        Assertions.assertEquals(1024 - HEADER_SIZE, filePersistence.getMessage(buffer).length);
         // buffer empty
         Assertions.assertFalse(filePersistence.fileExistsFor(buffer));
 
@@ -135,9 +140,9 @@ class FilePersistenceTest {
         write512ByteUnique(filePersistence, buffer, 4); // 1024 B
         write512ByteUnique(filePersistence, buffer, 5); // > 1024 B message is overriden
 
-        Assertions.assertEquals('3', filePersistence.getMessage(buffer)[510]);
-        Assertions.assertEquals('4', filePersistence.getMessage(buffer)[510]);
-        Assertions.assertEquals('5', filePersistence.getMessage(buffer)[510]);
+        Assertions.assertEquals('3', filePersistence.getMessage(buffer)[511 - HEADER_SIZE]);
+        Assertions.assertEquals('4', filePersistence.getMessage(buffer)[511 - HEADER_SIZE]);
+        Assertions.assertEquals('5', filePersistence.getMessage(buffer)[511 - HEADER_SIZE]);
         Assertions.assertFalse(filePersistence.fileExistsFor(buffer));
     }
 
@@ -148,9 +153,9 @@ class FilePersistenceTest {
         write512Byte(filePersistence, buffer);
         write1KB(filePersistence, buffer);
 
-        // Newline is not part of message so length is 1 Byte less
-        Assertions.assertEquals(511, filePersistence.getMessage(buffer).length);
-        Assertions.assertEquals(1023, filePersistence.getMessage(buffer).length);
+        // record header is not part of message
+        Assertions.assertEquals(512 - HEADER_SIZE, filePersistence.getMessage(buffer).length);
+        Assertions.assertEquals(1024 - HEADER_SIZE, filePersistence.getMessage(buffer).length);
         // buffer empty
         Assertions.assertFalse(filePersistence.fileExistsFor(buffer));
 
@@ -163,11 +168,150 @@ class FilePersistenceTest {
         write512ByteUnique(filePersistence, buffer, 6); // 1024 B
         write512ByteUnique(filePersistence, buffer, 7); // > 1024 B message is overriden
 
-        Assertions.assertEquals('3', filePersistence.getMessage(buffer)[510]);
-        Assertions.assertEquals('4', filePersistence.getMessage(buffer)[510]);
-        Assertions.assertEquals('5', filePersistence.getMessage(buffer)[510]);
-        Assertions.assertEquals('6', filePersistence.getMessage(buffer)[510]);
-        Assertions.assertEquals('7', filePersistence.getMessage(buffer)[510]);
+        Assertions.assertEquals('3', filePersistence.getMessage(buffer)[511 - HEADER_SIZE]);
+        Assertions.assertEquals('4', filePersistence.getMessage(buffer)[511 - HEADER_SIZE]);
+        Assertions.assertEquals('5', filePersistence.getMessage(buffer)[511 - HEADER_SIZE]);
+        Assertions.assertEquals('6', filePersistence.getMessage(buffer)[511 - HEADER_SIZE]);
+        Assertions.assertEquals('7', filePersistence.getMessage(buffer)[511 - HEADER_SIZE]);
         Assertions.assertFalse(filePersistence.fileExistsFor(buffer));
     }
+
+    @Test
+    void binaryPayload() throws IOException {
+        FilePersistence filePersistence = getFilePersistence();
+        byte[] payload = new byte[256];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) i;
+        }
+        filePersistence.writeBufferToFile("test", payload);
+        filePersistence.writeBufferToFile("test", new byte[0]);
+
+        Assertions.assertArrayEquals(payload, filePersistence.getMessage("test"));
+        Assertions.assertEquals(0, filePersistence.getMessage("test").length);
+        Assertions.assertFalse(filePersistence.fileExistsFor("test"));
+    }
+
+    @Test
+    void readPositionSurvivesClose() throws IOException {
+        FilePersistence filePersistence = new FilePersistence(DIRECTORY, 3, 1);
+        String buffer = "test";
+        for (int i = 1; i <= 5; i++) {
+            write512ByteUnique(filePersistence, buffer, i);
+        }
+        Assertions.assertEquals('1', filePersistence.getMessage(buffer)[511 - HEADER_SIZE]);
+        filePersistence.close();
+
+        filePersistence = new FilePersistence(DIRECTORY, 3, 1);
+        Assertions.assertArrayEquals(new String[] { buffer }, filePersistence.getBuffers());
+        Assertions.assertEquals('2', filePersistence.getMessage(buffer)[511 - HEADER_SIZE]);
+        Assertions.assertEquals('3', filePersistence.getMessage(buffer)[511 - HEADER_SIZE]);
+        filePersistence.close();
+
+        filePersistence = new FilePersistence(DIRECTORY, 3, 1);
+        Assertions.assertEquals('4', filePersistence.getMessage(buffer)[511 - HEADER_SIZE]);
+        Assertions.assertEquals('5', filePersistence.getMessage(buffer)[511 - HEADER_SIZE]);
+        Assertions.assertFalse(filePersistence.fileExistsFor(buffer));
+        filePersistence.close();
+
+        // emptied buffer is removed from the buffer list
+        Assertions.assertEquals(0, new FilePersistence(DIRECTORY, 3, 1).getBuffers().length);
+    }
+
+    @Test
+    void incompleteRecordIsDiscarded() throws IOException {
+        FilePersistence filePersistence = getFilePersistence();
+        String buffer = "test";
+        write512ByteUnique(filePersistence, buffer, 1);
+        filePersistence.close();
+
+        // simulates a write interrupted by a crash
+        Path file = FileSystems.getDefault().getPath(DIRECTORY, buffer, FilePersistence.DEFAULT_FILENAME);
+        Files.write(file, new byte[] { 0, 0, 1, 0, 42 }, StandardOpenOption.APPEND);
+
+        filePersistence = getFilePersistence();
+        Assertions.assertEquals('1', filePersistence.getMessage(buffer)[511 - HEADER_SIZE]);
+        Assertions.assertFalse(filePersistence.fileExistsFor(buffer));
+        Assertions.assertEquals(0, filePersistence.getMessage(buffer).length);
+    }
+
+    @Test
+    void uncommittedMessagesAreReadAgain() throws IOException {
+        FilePersistence filePersistence = new FilePersistence(DIRECTORY, 3, 1);
+        String buffer = "test";
+        for (int i = 1; i <= 3; i++) {
+            write512ByteUnique(filePersistence, buffer, i);
+        }
+        Assertions.assertEquals('1', filePersistence.readMessage(buffer)[511 - HEADER_SIZE]);
+        Assertions.assertEquals('2', filePersistence.readMessage(buffer)[511 - HEADER_SIZE]);
+        filePersistence.commitMessage(buffer);
+        filePersistence.close();
+
+        // the second message was read but not committed before the restart
+        filePersistence = new FilePersistence(DIRECTORY, 3, 1);
+        Assertions.assertEquals('2', filePersistence.readMessage(buffer)[511 - HEADER_SIZE]);
+        Assertions.assertEquals('3', filePersistence.readMessage(buffer)[511 - HEADER_SIZE]);
+        Assertions.assertFalse(filePersistence.fileExistsFor(buffer));
+        Assertions.assertArrayEquals(new String[] { buffer }, filePersistence.getBuffers());
+
+        filePersistence.commitMessage(buffer);
+        filePersistence.commitMessage(buffer);
+        Assertions.assertEquals(0, filePersistence.getBuffers().length);
+        filePersistence.close();
+        Assertions.assertFalse(FileSystems.getDefault().getPath(DIRECTORY, buffer, "buffer.1.log").toFile().exists());
+    }
+
+    @Test
+    void commitsOfDroppedMessagesDoNotCommitLaterMessages() throws IOException {
+        FilePersistence filePersistence = new FilePersistence(DIRECTORY, 3, 1);
+        String buffer = "test";
+        for (int i = 1; i <= 5; i++) {
+            write512ByteUnique(filePersistence, buffer, i);
+        }
+        Assertions.assertEquals('1', filePersistence.readMessage(buffer)[511 - HEADER_SIZE]);
+        Assertions.assertEquals('2', filePersistence.readMessage(buffer)[511 - HEADER_SIZE]);
+        Assertions.assertEquals('3', filePersistence.readMessage(buffer)[511 - HEADER_SIZE]);
+
+        // the file with the read messages 1 and 2 is overwritten before they are committed
+        write512ByteUnique(filePersistence, buffer, 6);
+        write512ByteUnique(filePersistence, buffer, 7);
+        filePersistence.commitMessage(buffer);
+        filePersistence.commitMessage(buffer);
+        Assertions.assertEquals('4', filePersistence.readMessage(buffer)[511 - HEADER_SIZE]);
+        filePersistence.close();
+
+        // message 3 was read but not committed before the restart
+        filePersistence = new FilePersistence(DIRECTORY, 3, 1);
+        Assertions.assertEquals('3', filePersistence.readMessage(buffer)[511 - HEADER_SIZE]);
+        filePersistence.close();
+    }
+
+    @Test
+    void newlineSeparatedFileIsConverted() throws IOException {
+        // buffer files of earlier versions stored one message per line
+        Path directory = FileSystems.getDefault().getPath(DIRECTORY, "test");
+        Files.createDirectories(directory);
+        Files.write(directory.resolve("buffer.1.log"), "first\nsecond\n".getBytes());
+        Files.write(directory.resolve(FilePersistence.DEFAULT_FILENAME), "third\n".getBytes());
+        Files.write(FileSystems.getDefault().getPath(DIRECTORY, "buffer_list"), "test\n".getBytes());
+
+        FilePersistence filePersistence = getFilePersistence();
+        Assertions.assertArrayEquals(new String[] { "test" }, filePersistence.getBuffers());
+        Assertions.assertEquals("first", new String(filePersistence.getMessage("test")));
+        Assertions.assertEquals("second", new String(filePersistence.getMessage("test")));
+        Assertions.assertEquals("third", new String(filePersistence.getMessage("test")));
+        Assertions.assertFalse(filePersistence.fileExistsFor("test"));
+    }
+
+    @Test
+    void corruptFileIsMovedAside() throws IOException {
+        Path directory = FileSystems.getDefault().getPath(DIRECTORY, "test");
+        Files.createDirectories(directory);
+        Files.write(directory.resolve(FilePersistence.DEFAULT_FILENAME), new byte[] { 0, 0, 0, 4, 1, 2, 3, 4, 5 });
+
+        FilePersistence filePersistence = getFilePersistence();
+        Assertions.assertFalse(filePersistence.fileExistsFor("test"));
+        Assertions.assertFalse(directory.resolve(FilePersistence.DEFAULT_FILENAME).toFile().exists());
+        Assertions.assertEquals(1,
+                directory.toFile().list((dir, name) -> name.endsWith(SegmentedLog.CORRUPT_SUFFIX)).length);
+    }
 }
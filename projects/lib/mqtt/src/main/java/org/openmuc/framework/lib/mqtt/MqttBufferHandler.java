@@ -221,14 +221,25 @@ public class MqttBufferHandler {
         return new MqttBufferMessageIterator(buffer, filePersistence);
     }
 
+    /**
+     * Removes the oldest message read by the iterator of {@link #getMessageIterator(String)} from the file buffer.
+     *
+     * @param buffer
+     *            the buffer the message was read from
+     */
+    public void commitMessage(String buffer) {
+        if (isFileBufferEnabled()) {
+            filePersistence.commitMessage(buffer);
+        }
+    }
+
     public void persist() {
         if (isFileBufferEnabled()) {
+            addToFilePersistence();
             try {
-                filePersistence.restructure();
-                addToFilePersistence();
+                filePersistence.close();
             } catch (IOException e) {
-                logger.error("Buffer file restructuring error: {}", e.getMessage());
-                e.printStackTrace();
+                logger.error("Buffer file persisting error: {}", e.getMessage());
             }
         }
     }
@@ -25,6 +25,11 @@ import java.util.Iterator;
 
 import org.openmuc.framework.lib.filePersistence.FilePersistence;
 
+/**
+ * Iterates over the messages of a file buffer. Messages stay in the buffer until they are committed with
+ * {@link MqttBufferHandler#commitMessage(String)}, so messages which were not delivered are read again after a
+ * restart.
+ */
 public class MqttBufferMessageIterator implements Iterator<MessageTuple> {
 
     private final FilePersistence filePersistence;
@@ -44,7 +49,7 @@ public class MqttBufferMessageIterator implements Iterator<MessageTuple> {
     public MessageTuple next() {
         byte[] message;
         synchronized (filePersistence) {
-            message = filePersistence.getMessage(buffer);
+            message = filePersistence.readMessage(buffer);
         }
         return new MessageTuple(buffer, message);
     }
@@ -22,6 +22,11 @@
 package org.openmuc.framework.lib.mqtt;
 
 public class MqttSettings {
+    /**
+     * default maximum number of published messages which are not yet acknowledged by the broker
+     */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 100;
+
     private final String host;
     private final int port;
     private final String username;
@@ -42,12 +47,28 @@ public class MqttSettings {
     private final int recoveryDelay;
     private final boolean webSocket;
     private final boolean retainedMessages;
+    private final int maxInFlight;
 
     public MqttSettings(String host, int port, String username, String password, boolean ssl, long maxBufferSize,
             long maxFileSize, int maxFileCount, int connectionRetryInterval, int connectionAliveInterval,
             String persistenceDirectory, String lastWillTopic, byte[] lastWillPayload, boolean lastWillAlways,
             String firstWillTopic, byte[] firstWillPayload, int recoveryChunkSize, int recoveryDelay, boolean webSocket,
             boolean retainedMessages) {
+        this(host, port, username, password, ssl, maxBufferSize, maxFileSize, maxFileCount, connectionRetryInterval,
+                connectionAliveInterval, persistenceDirectory, lastWillTopic, lastWillPayload, lastWillAlways,
+                firstWillTopic, firstWillPayload, recoveryChunkSize, recoveryDelay, webSocket, retainedMessages,
+                DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * @param maxInFlight
+     *            maximum number of published messages which are not yet acknowledged by the broker
+     */
+    public MqttSettings(String host, int port, String username, String password, boolean ssl, long maxBufferSize,
+            long maxFileSize, int maxFileCount, int connectionRetryInterval, int connectionAliveInterval,
+            String persistenceDirectory, String lastWillTopic, byte[] lastWillPayload, boolean lastWillAlways,
+            String firstWillTopic, byte[] firstWillPayload, int recoveryChunkSize, int recoveryDelay, boolean webSocket,
+            boolean retainedMessages, int maxInFlight) {
         this.host = host;
         this.port = port;
         this.username = username;
@@ -68,6 +89,7 @@ public class MqttSettings {
         this.recoveryChunkSize = recoveryChunkSize;
         this.recoveryDelay = recoveryDelay;
         this.retainedMessages = retainedMessages;
+        this.maxInFlight = maxInFlight;
     }
 
     public String getHost() {
@@ -148,8 +170,12 @@ public class MqttSettings {
         return !firstWillTopic.equals("") && lastWillPayload.length != 0;
     }
 
-    public boolean isRecoveryLimitSet() {
-        return recoveryChunkSize > 0 && recoveryDelay > 0;
+    /**
+     * @return the maximum number of recovered messages which are not yet acknowledged by the broker, 0 if only
+     *         {@link #getMaxInFlight()} applies
+     */
+    public int getRecoveryInFlight() {
+        return Math.max(0, recoveryChunkSize);
     }
 
     public int getRecoveryChunkSize() {
@@ -168,6 +194,10 @@ public class MqttSettings {
         return retainedMessages;
     }
 
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
     /**
      * Returns a string of all settings, always uses '*****' as password string.
      */
@@ -194,6 +224,7 @@ public class MqttSettings {
         sb.append("firstWillPayload=").append(new String(getFirstWillPayload()));
         sb.append("recoveryChunkSize=").append(getRecoveryChunkSize()).append("\n");
         sb.append("recoveryDelay=").append(getRecoveryDelay()).append("\n");
+        sb.append("maxInFlight=").append(getMaxInFlight()).append("\n");
         return sb.toString();
     }
 }
@@ -25,21 +25,36 @@ import java.text.SimpleDateFormat;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
 import java.util.Date;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.Locale;
+import java.util.Map;
 import java.util.TimeZone;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.helpers.MessageFormatter;
 
+import com.hivemq.client.mqtt.datatypes.MqttQos;
 import com.hivemq.client.mqtt.mqtt3.message.publish.Mqtt3Publish;
 
+/**
+ * Publishes messages with QoS 1 and buffers them while the broker is not reachable.
+ * <p>
+ * Delivery is at least once: messages read from the file buffer are committed only when they and all messages
+ * published before them are acknowledged by the broker, messages in flight at {@link #shutdown()} are buffered again.
+ * After a crash the uncommitted file messages are sent again, messages in the RAM buffer or in flight are lost.
+ */
 public class MqttWriter {
     private static final Logger logger = LoggerFactory.getLogger(MqttWriter.class);
+    private static final long WINDOW_TIMEOUT_MILLIS = 10_000;
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 2_000;
 
     private final MqttConnection connection;
     private boolean connected = false;
@@ -48,6 +63,17 @@ public class MqttWriter {
     private final SimpleDateFormat sdf = new SimpleDateFormat("HH:mm:ss", Locale.getDefault());
     private final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     private final MqttBufferHandler buffer;
+    private final PublishWindow window;
+    private final AtomicBoolean recovering = new AtomicBoolean(false);
+    /**
+     * publish sequence and buffer of the file messages which are not committed yet, ordered by sequence
+     */
+    private final Deque<FileMessage> uncommittedFileMessages = new ArrayDeque<>();
+    /**
+     * messages not read from the file buffer which are in flight, buffered again if not acknowledged before shutdown
+     */
+    private final Map<Long, MessageTuple> inFlightMessages = new ConcurrentHashMap<>();
+    private volatile boolean stopped;
     private final String pid;
 
     public MqttWriter(MqttConnection connection, String pid) {
@@ -57,6 +83,7 @@ public class MqttWriter {
         MqttSettings s = connection.getSettings();
         buffer = new MqttBufferHandler(s.getMaxBufferSize(), s.getMaxFileCount(), s.getMaxFileSize(),
                 s.getPersistenceDirectory());
+        window = new PublishWindow(s.getMaxInFlight());
         this.pid = pid;
     }
 
@@ -67,9 +94,7 @@ public class MqttWriter {
         if (buffers.length == 0) {
             log("File buffer already empty.");
         }
-        int messageCount = 0;
-        int chunkSize = connection.getSettings().getRecoveryChunkSize();
-        int delay = connection.getSettings().getRecoveryDelay();
+        Semaphore recoverySlots = newRecoverySlots();
         for (String buffer : buffers) {
             Iterator<MessageTuple> iterator = this.buffer.getMessageIterator(buffer);
             while (iterator.hasNext()) {
@@ -77,20 +102,20 @@ public class MqttWriter {
                     warn("Recovery from file buffer interrupted by connection loss.");
                     return;
                 }
+                acquire(recoverySlots);
+                long sequence = acquireWindow(recoverySlots);
+                if (sequence < 0) {
+                    warn("Recovery from file buffer interrupted by connection loss.");
+                    return;
+                }
                 MessageTuple messageTuple = iterator.next();
                 if (logger.isTraceEnabled()) {
                     trace("Resend from file: {}", new String(messageTuple.message));
                 }
-                write(messageTuple.topic, messageTuple.message);
-                messageCount++;
-                if (connection.getSettings().isRecoveryLimitSet() && messageCount == chunkSize) {
-                    messageCount = 0;
-                    try {
-                        Thread.sleep(delay);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
+                synchronized (uncommittedFileMessages) {
+                    uncommittedFileMessages.addLast(new FileMessage(sequence, buffer));
                 }
+                startPublishing(sequence, messageTuple.topic, messageTuple.message, recoverySlots, true);
             }
         }
 
@@ -112,50 +137,94 @@ public class MqttWriter {
             log("connected to broker {}:{}", serverHost, serverPort);
             connected = true;
 
+            // write does not block, so the callback thread of the client is not held up
             MqttSettings settings = connection.getSettings();
             if (settings.isFirstWillSet()) {
                 write(settings.getFirstWillTopic(), settings.getFirstWillPayload());
             }
 
-            Thread recovery = new Thread(this::emptyBuffer, "MqttRecovery");
-            recovery.start();
-
+            startRecovery();
         });
     }
 
+    private void startRecovery() {
+        if (recovering.compareAndSet(false, true)) {
+            new Thread(this::recover, "MqttRecovery").start();
+        }
+    }
+
+    private void recover() {
+        do {
+            emptyBuffer();
+            recovering.set(false);
+            // messages buffered by write after the buffer was found empty
+        } while (connected && !buffer.isEmpty() && recovering.compareAndSet(false, true));
+    }
+
+    /**
+     * Publishes the buffered messages as fast as the broker acknowledges them. The number of unacknowledged messages is
+     * limited by the publish window and additionally by the recovery chunk size if it is set.
+     */
     private void emptyBuffer() {
         log("Clearing memory (RAM) buffer.");
         if (buffer.isEmpty()) {
             log("Memory buffer already empty.");
         }
-        int messageCount = 0;
-        int chunkSize = connection.getSettings().getRecoveryChunkSize();
-        int delay = connection.getSettings().getRecoveryDelay();
+        Semaphore recoverySlots = newRecoverySlots();
         while (!buffer.isEmpty()) {
             if (!connected) {
                 warn("Recovery from memory buffer interrupted by connection loss.");
                 return;
             }
+            acquire(recoverySlots);
+            long sequence = acquireWindow(recoverySlots);
+            if (sequence < 0) {
+                warn("Recovery from memory buffer interrupted by connection loss.");
+                return;
+            }
             MessageTuple messageTuple = buffer.removeNextMessage();
             if (logger.isTraceEnabled()) {
                 trace("Resend from memory: {}", new String(messageTuple.message));
             }
-            write(messageTuple.topic, messageTuple.message);
-            messageCount++;
-            if (connection.getSettings().isRecoveryLimitSet() && messageCount == chunkSize) {
-                messageCount = 0;
-                try {
-                    Thread.sleep(delay);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-            }
-
+            startPublishing(sequence, messageTuple.topic, messageTuple.message, recoverySlots, false);
         }
         log("Empty memory buffer done.");
         emptyFileBuffer();
     }
 
+    private Semaphore newRecoverySlots() {
+        int recoveryInFlight = connection.getSettings().getRecoveryInFlight();
+        return recoveryInFlight > 0 ? new Semaphore(recoveryInFlight) : null;
+    }
+
+    private static void acquire(Semaphore recoverySlots) {
+        if (recoverySlots != null) {
+            recoverySlots.acquireUninterruptibly();
+        }
+    }
+
+    /**
+     * Waits until the publish window has room, only called by the recovery thread.
+     *
+     * @return the publish sequence or -1 if the connection was lost while waiting
+     */
+    private long acquireWindow(Semaphore recoverySlots) {
+        try {
+            while (connected) {
+                long sequence = window.acquire(WINDOW_TIMEOUT_MILLIS);
+                if (sequence >= 0) {
+                    return sequence;
+                }
+                warn("{} messages not acknowledged by broker within {} ms", window.getInFlight(),
+                        WINDOW_TIMEOUT_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        release(recoverySlots);
+        return -1;
+    }
+
     /**
      * Required for buffering
      */
@@ -204,7 +273,9 @@ public class MqttWriter {
     }
 
     /**
-     * Publishes a message to the specified topic
+     * Publishes a message to the specified topic. Does not block: the message is buffered if the broker is not
+     * connected, the publish window is full or buffered messages are being recovered, which keeps the order of the
+     * messages.
      *
      * @param topic
      *            the topic on which to publish the message
@@ -212,32 +283,75 @@ public class MqttWriter {
      *            the message to be published
      */
     public void write(String topic, byte[] message) {
-        if (connected) {
-            startPublishing(topic, message);
-        }
-        else {
+        if (!connected) {
             warn("No connection to broker - adding message to buffer");
             buffer.add(topic, message);
+            return;
         }
+        if (!recovering.get()) {
+            long sequence = window.tryAcquire();
+            if (sequence >= 0) {
+                startPublishing(sequence, topic, message, null, false);
+                return;
+            }
+            debug("{} messages not acknowledged by broker - adding message to buffer", window.getInFlight());
+        }
+        buffer.add(topic, message);
+        startRecovery();
     }
 
-    private void startPublishing(String topic, byte[] message) {
+    /**
+     * Publishes the message asynchronously with a sequence acquired from the publish window.
+     */
+    private void startPublishing(long sequence, String topic, byte[] message, Semaphore recoverySlots,
+            boolean fromFile) {
+        if (!fromFile) {
+            inFlightMessages.put(sequence, new MessageTuple(topic, message));
+        }
         publish(topic, message).whenComplete((publish, exception) -> {
+            // whoever removes an in-flight message, this callback or shutdown, adds it to the buffer
+            boolean inFlight = inFlightMessages.remove(sequence) != null;
+            window.complete(sequence, exception == null);
+            release(recoverySlots);
             if (exception != null) {
-                warn("Connection issue: {} message could not be sent. Adding message to buffer",
-                        exception.getMessage());
-                buffer.add(topic, message);
+                if (inFlight || !stopped) {
+                    warn("Connection issue: {} message could not be sent. Adding message to buffer",
+                            exception.getMessage());
+                    buffer.add(topic, message);
+                }
             }
             else if (logger.isTraceEnabled()) {
                 trace("Message successfully delivered on topic {}", topic);
             }
+            commitCompletedFileMessages();
         });
     }
 
+    /**
+     * Removes the file messages from the file buffer which are completed together with all messages published before
+     * them. Failed messages were added to the buffer again before.
+     */
+    private void commitCompletedFileMessages() {
+        synchronized (uncommittedFileMessages) {
+            long completedBelow = window.getCompletedBelow();
+            while (!stopped && !uncommittedFileMessages.isEmpty()
+                    && uncommittedFileMessages.peekFirst().sequence < completedBelow) {
+                buffer.commitMessage(uncommittedFileMessages.removeFirst().buffer);
+            }
+        }
+    }
+
+    private static void release(Semaphore recoverySlots) {
+        if (recoverySlots != null) {
+            recoverySlots.release();
+        }
+    }
+
     CompletableFuture<Mqtt3Publish> publish(String topic, byte[] message) {
         return connection.getClient()
                 .publishWith()
                 .topic(topic)
+                .qos(MqttQos.AT_LEAST_ONCE)
                 .retain(connection.getSettings().isRetainedMessages())
                 .payload(message)
                 .send();
@@ -251,6 +365,10 @@ public class MqttWriter {
         return connection != null && connected;
     }
 
+    PublishWindow getPublishWindow() {
+        return window;
+    }
+
     private void log(String message, Object... args) {
         message = MessageFormatter.arrayFormat(message, args).getMessage();
         logger.info("[{}] {}", pid, message);
@@ -280,7 +398,38 @@ public class MqttWriter {
         connected = false;
         cancelReconnect.set(true);
         logger.info("shutting down ");
+        try {
+            // failed publishes are added to the buffer, so it is saved after they completed
+            if (!window.awaitCompleted(SHUTDOWN_TIMEOUT_MILLIS)) {
+                warn("{} messages not acknowledged by broker before shutdown, they are sent again after the restart",
+                        window.getInFlight());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        commitCompletedFileMessages();
+        synchronized (uncommittedFileMessages) {
+            // later acknowledgements must not change the buffers anymore, uncommitted file messages are read again
+            stopped = true;
+            uncommittedFileMessages.clear();
+        }
+        for (Long sequence : inFlightMessages.keySet()) {
+            MessageTuple messageTuple = inFlightMessages.remove(sequence);
+            if (messageTuple != null) {
+                buffer.add(messageTuple.topic, messageTuple.message);
+            }
+        }
         log("Saving buffers.");
         buffer.persist();
     }
+
+    private static final class FileMessage {
+        private final long sequence;
+        private final String buffer;
+
+        private FileMessage(long sequence, String buffer) {
+            this.sequence = sequence;
+            this.buffer = buffer;
+        }
+    }
 }
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.lib.mqtt;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded window of published but not yet acknowledged messages.
+ * <p>
+ * Every publish takes a sequence number from the window and returns it when the broker acknowledged the message or
+ * the publish failed. Acknowledgements may arrive in any order, the window keeps track of the sequence up to which
+ * all publishes are completed, {@link MqttWriter} commits messages read from the file buffer up to this sequence. The
+ * number of messages allowed in flight adapts to the broker: it shrinks to half on a
+ * failed publish and grows by one per acknowledgement up to the configured maximum.
+ */
+final class PublishWindow {
+
+    private final int maxInFlight;
+    private int limit;
+    private int inFlight;
+    private long nextSequence;
+    private long completedBelow;
+    private final Set<Long> completedOutOfOrder = new HashSet<>();
+
+    PublishWindow(int maxInFlight) {
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.limit = this.maxInFlight;
+    }
+
+    /**
+     * Waits until a message may be published.
+     *
+     * @param timeoutMillis
+     *            maximum time to wait
+     * @return the sequence number to pass to {@link #complete(long, boolean)}, -1 if no message was acknowledged
+     *         within the timeout
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    synchronized long acquire(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (inFlight >= limit) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                return -1;
+            }
+            wait(remaining);
+        }
+        inFlight++;
+        return nextSequence++;
+    }
+
+    /**
+     * @return the sequence number to pass to {@link #complete(long, boolean)} or -1 if the window is full
+     */
+    synchronized long tryAcquire() {
+        if (inFlight >= limit) {
+            return -1;
+        }
+        inFlight++;
+        return nextSequence++;
+    }
+
+    /**
+     * Returns the slot of a publish.
+     *
+     * @param sequence
+     *            sequence number returned by {@link #acquire(long)} or {@link #tryAcquire()}
+     * @param success
+     *            true if the broker acknowledged the message
+     */
+    synchronized void complete(long sequence, boolean success) {
+        inFlight--;
+        if (success) {
+            if (limit < maxInFlight) {
+                limit++;
+            }
+        }
+        else {
+            limit = Math.max(1, limit / 2);
+        }
+
+        if (sequence == completedBelow) {
+            completedBelow++;
+            while (completedOutOfOrder.remove(completedBelow)) {
+                completedBelow++;
+            }
+        }
+        else {
+            completedOutOfOrder.add(sequence);
+        }
+        notifyAll();
+    }
+
+    /**
+     * Waits until all published messages are completed.
+     *
+     * @return true if no message is in flight anymore
+     */
+    synchronized boolean awaitCompleted(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (inFlight > 0) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        return true;
+    }
+
+    synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    synchronized int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return the sequence number below which all publishes are completed
+     */
+    synchronized long getCompletedBelow() {
+        return completedBelow;
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.lib.mqtt;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.hivemq.client.mqtt.mqtt3.message.publish.Mqtt3Publish;
+
+/**
+ * Stand-in for a broker which acknowledges the publishes of a {@link MqttWriter} asynchronously after a delay, like
+ * the PUBACK of a broker reached over the network. Records the published payloads and the highest number of
+ * publishes which were in flight at the same time.
+ */
+public class AsyncAckMqttWriterStub extends MqttWriter {
+
+    private final ScheduledExecutorService broker = Executors.newSingleThreadScheduledExecutor();
+    private final long ackDelayMillis;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final List<String> published = Collections.synchronizedList(new ArrayList<>());
+
+    public AsyncAckMqttWriterStub(MqttConnection connection, long ackDelayMillis) {
+        super(connection, "test");
+        this.ackDelayMillis = ackDelayMillis;
+    }
+
+    @Override
+    CompletableFuture<Mqtt3Publish> publish(String topic, byte[] message) {
+        int current = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(current, Math::max);
+        CompletableFuture<Mqtt3Publish> future = new CompletableFuture<>();
+        broker.schedule(() -> {
+            published.add(new String(message));
+            inFlight.decrementAndGet();
+            future.complete(Mqtt3Publish.builder().topic(topic).build());
+        }, ackDelayMillis, TimeUnit.MILLISECONDS);
+        return future;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight.get();
+    }
+
+    public List<String> getPublished() {
+        return published;
+    }
+
+    public void stopBroker() {
+        broker.shutdownNow();
+    }
+}
@@ -21,6 +21,7 @@
 
 package org.openmuc.framework.lib.mqtt;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
@@ -31,6 +32,9 @@ import static org.mockito.Mockito.when;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.FileSystems;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeEach;
@@ -38,6 +42,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.stubbing.Answer;
+import org.openmuc.framework.lib.filePersistence.FilePersistence;
 
 import com.hivemq.client.internal.mqtt.MqttClientConfig;
 import com.hivemq.client.mqtt.lifecycle.MqttClientConnectedListener;
@@ -145,4 +150,91 @@ public class MqttWriterTest {
         // files should be emptied and therefore removed
         assertFalse(file.exists() || file1.exists());
     }
+
+    @Test
+    void testRecoveryIsPacedByAcknowledgements() throws InterruptedException {
+        int maxInFlight = 5;
+        MqttConnection connection = mock(MqttConnection.class);
+        doAnswer((Answer<Void>) invocation -> {
+            connectedListener = invocation.getArgument(0);
+            return null;
+        }).when(connection).addConnectedListener(any(MqttClientConnectedListener.class));
+        // RAM buffer only
+        when(connection.getSettings()).thenReturn(new MqttSettings("localhost", 1883, null, null, false, 1024, 0, 0,
+                5000, 10, DIRECTORY, "", "".getBytes(), false, "", "".getBytes(), 0, 0, false, false, maxInFlight));
+
+        AsyncAckMqttWriterStub writer = new AsyncAckMqttWriterStub(connection, 1);
+        try {
+            // not connected yet, messages are buffered
+            for (int i = 0; i < 200; i++) {
+                writer.write("topic", String.valueOf(i).getBytes());
+            }
+            assertTrue(writer.getPublished().isEmpty());
+
+            connectedListener.onConnected(() -> null);
+
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (writer.getPublished().size() < 200 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(200, writer.getPublished().size());
+            assertEquals("0", writer.getPublished().get(0));
+            assertEquals("199", writer.getPublished().get(199));
+            assertTrue(writer.getMaxInFlight() <= maxInFlight);
+            assertTrue(writer.getPublishWindow().awaitCompleted(1000));
+            assertEquals(200, writer.getPublishWindow().getCompletedBelow());
+        } finally {
+            writer.stopBroker();
+        }
+    }
+
+    @Test
+    void testUnacknowledgedMessagesSurviveShutdown() throws InterruptedException {
+        String directory = DIRECTORY + "/shutdown";
+        MqttConnection connection = mock(MqttConnection.class);
+        doAnswer((Answer<Void>) invocation -> {
+            connectedListener = invocation.getArgument(0);
+            return null;
+        }).when(connection).addConnectedListener(any(MqttClientConnectedListener.class));
+        // 1 kB RAM buffer, messages are moved to the file buffer when it is full
+        when(connection.getSettings()).thenReturn(new MqttSettings("localhost", 1883, null, null, false, 1, 5, 2,
+                5000, 10, directory, "", "".getBytes(), false, "", "".getBytes(), 0, 0, false, false, 4));
+
+        // the broker never acknowledges
+        AsyncAckMqttWriterStub writer = new AsyncAckMqttWriterStub(connection, 60_000);
+        List<String> messages = new ArrayList<>();
+        try {
+            for (int i = 0; i < 4; i++) {
+                messages.add(i + new String(new char[400]).replace('\0', 'x'));
+                writer.write("topic", messages.get(i).getBytes());
+            }
+
+            // two messages from the RAM buffer and two from the file buffer are published
+            connectedListener.onConnected(() -> null);
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (writer.getPublishWindow().getInFlight() < 4 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(4, writer.getPublishWindow().getInFlight());
+
+            // the window is full, the message is buffered without waiting for an acknowledgement
+            messages.add("4");
+            long start = System.currentTimeMillis();
+            writer.write("topic", "4".getBytes());
+            assertTrue(System.currentTimeMillis() - start < 1_000);
+
+            writer.shutdown();
+        } finally {
+            writer.stopBroker();
+        }
+
+        FilePersistence filePersistence = new FilePersistence(directory, 2, 5);
+        List<String> buffered = new ArrayList<>();
+        while (filePersistence.fileExistsFor("topic")) {
+            buffered.add(new String(filePersistence.getMessage("topic")));
+        }
+        buffered.sort(null);
+        assertEquals(messages, buffered);
+        assertFalse(Arrays.asList(filePersistence.getBuffers()).contains("topic"));
+    }
 }
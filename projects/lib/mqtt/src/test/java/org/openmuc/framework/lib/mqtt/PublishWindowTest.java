@@ -0,0 +1,102 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.lib.mqtt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class PublishWindowTest {
+
+    @Test
+    void acquireWaitsForAcknowledgementWhenWindowIsFull() throws InterruptedException {
+        PublishWindow window = new PublishWindow(2);
+
+        long first = window.acquire(10);
+        long second = window.acquire(10);
+        assertEquals(0, first);
+        assertEquals(1, second);
+        assertEquals(-1, window.acquire(10));
+
+        window.complete(first, true);
+        assertEquals(2, window.acquire(10));
+        assertEquals(2, window.getInFlight());
+    }
+
+    @Test
+    void tryAcquireDoesNotWaitWhenWindowIsFull() {
+        PublishWindow window = new PublishWindow(1);
+
+        long first = window.tryAcquire();
+        assertEquals(0, first);
+        assertEquals(-1, window.tryAcquire());
+
+        window.complete(first, true);
+        assertEquals(1, window.tryAcquire());
+    }
+
+    @Test
+    void acknowledgementsOutOfOrderAreTracked() throws InterruptedException {
+        PublishWindow window = new PublishWindow(10);
+        for (int i = 0; i < 4; i++) {
+            window.acquire(10);
+        }
+
+        window.complete(2, true);
+        window.complete(1, true);
+        assertEquals(0, window.getCompletedBelow());
+
+        window.complete(0, true);
+        assertEquals(3, window.getCompletedBelow());
+
+        window.complete(3, false);
+        assertEquals(4, window.getCompletedBelow());
+    }
+
+    @Test
+    void limitShrinksOnFailureAndRecoversWithAcknowledgements() throws InterruptedException {
+        PublishWindow window = new PublishWindow(8);
+
+        window.complete(window.acquire(10), false);
+        assertEquals(4, window.getLimit());
+        window.complete(window.acquire(10), false);
+        assertEquals(2, window.getLimit());
+
+        for (int i = 0; i < 6; i++) {
+            window.complete(window.acquire(10), true);
+        }
+        assertEquals(8, window.getLimit());
+    }
+
+    @Test
+    void awaitCompletedReturnsWhenAllMessagesCompleted() throws InterruptedException {
+        PublishWindow window = new PublishWindow(4);
+        long sequence = window.acquire(10);
+        assertFalse(window.awaitCompleted(10));
+
+        new Thread(() -> window.complete(sequence, true)).start();
+        assertTrue(window.awaitCompleted(5000));
+    }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.lib.parser.binary;
+
+import org.openmuc.framework.data.Value;
+
+/**
+ * Header bits and value tags of the binary record format described in {@link BinaryParserServiceImpl}.
+ */
+final class BinaryFormat {
+
+    static final int HAS_TIMESTAMP = 0x80;
+    static final int TAG_MASK = 0x0F;
+
+    static final int NONE = 0;
+    static final int FALSE = 1;
+    static final int TRUE = 2;
+    static final int DOUBLE = 3;
+    static final int FLOAT = 4;
+    static final int LONG = 5;
+    static final int INTEGER = 6;
+    static final int SHORT = 7;
+    static final int BYTE = 8;
+    static final int STRING = 9;
+    static final int BYTE_ARRAY = 10;
+
+    private BinaryFormat() {
+    }
+
+    static int tagOf(Value value) {
+        switch (value.getValueType()) {
+        case BOOLEAN:
+            return value.asBoolean() ? TRUE : FALSE;
+        case BYTE:
+            return BYTE;
+        case BYTE_ARRAY:
+            return BYTE_ARRAY;
+        case DOUBLE:
+            return DOUBLE;
+        case FLOAT:
+            return FLOAT;
+        case INTEGER:
+            return INTEGER;
+        case LONG:
+            return LONG;
+        case SHORT:
+            return SHORT;
+        case STRING:
+            return STRING;
+        default:
+            throw new IllegalArgumentException("Unsupported value type " + value.getValueType());
+        }
+    }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.lib.parser.binary;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+import org.openmuc.framework.parser.spi.ParserService;
+
+/**
+ * Compact binary parser for OpenMUC to OpenMUC communication over metered links, registered with the parser ID
+ * "binary". A record is encoded as
+ *
+ * <pre>
+ * header     1 byte, bit 7 set if a timestamp follows, bits 0-3 value tag
+ * flag       1 byte, {@link org.openmuc.framework.data.Flag#getCode()}
+ * timestamp  zigzag varint, difference in ms to the timestamp of the previous record of the message
+ * value      depending on the tag:
+ *              0 no value (also written for records which are not VALID)
+ *              1 false, 2 true
+ *              3 double, 8 bytes big-endian IEEE 754
+ *              4 float, 4 bytes big-endian IEEE 754
+ *              5 long, 6 integer, 7 short as zigzag varint
+ *              8 byte, 1 byte
+ *              9 string, varint length and UTF-8 bytes
+ *             10 byte array, varint length and bytes
+ * </pre>
+ *
+ * The first record of a message has no predecessor, so its timestamp is the absolute epoch time. A list is written as
+ * its records one after another, records logged at the same time take 1 byte for the timestamp. As for the JSON
+ * parser, the channel ID is not part of the message. A {@link #deserialize(byte[], ValueType)} of a list returns its
+ * first record, {@link #deserializeList(byte[], ValueType)} returns all of them.
+ * <p>
+ * The service is thread safe without locking: every thread serializes into a writer of its own whose buffer is reused
+ * for the next message.
+ */
+public class BinaryParserServiceImpl implements ParserService {
+
+    private static final ThreadLocal<BinaryRecordWriter> writers = ThreadLocal.withInitial(BinaryRecordWriter::new);
+
+    @Override
+    public byte[] serialize(LoggingRecord openMucRecord) {
+        return write(openMucRecord).toByteArray();
+    }
+
+    @Override
+    public byte[] serialize(List<LoggingRecord> openMucRecords) {
+        return write(openMucRecords).toByteArray();
+    }
+
+    @Override
+    public void serialize(LoggingRecord openMucRecord, ByteBuffer buffer) {
+        write(openMucRecord).writeTo(buffer);
+    }
+
+    @Override
+    public void serialize(List<LoggingRecord> openMucRecords, ByteBuffer buffer) {
+        write(openMucRecords).writeTo(buffer);
+    }
+
+    @Override
+    public void serialize(LoggingRecord openMucRecord, OutputStream outputStream) throws IOException {
+        write(openMucRecord).writeTo(outputStream);
+    }
+
+    @Override
+    public void serialize(List<LoggingRecord> openMucRecords, OutputStream outputStream) throws IOException {
+        write(openMucRecords).writeTo(outputStream);
+    }
+
+    @Override
+    public Record deserialize(byte[] byteArray, ValueType valueType) {
+        return deserialize(ByteBuffer.wrap(byteArray), valueType);
+    }
+
+    @Override
+    public Record deserialize(ByteBuffer buffer, ValueType valueType) {
+        return new BinaryRecordReader(buffer, valueType).next();
+    }
+
+    /**
+     * Deserializes all records of a message written by {@link #serialize(List)}.
+     *
+     * @param byteArray
+     *            the message
+     * @param valueType
+     *            type of the values of the records
+     * @return the records in the order they were serialized
+     * @throws IllegalArgumentException
+     *             if the message is malformed
+     */
+    public List<Record> deserializeList(byte[] byteArray, ValueType valueType) {
+        return deserializeList(ByteBuffer.wrap(byteArray), valueType);
+    }
+
+    /**
+     * Deserializes all remaining records of the buffer, see {@link #deserializeList(byte[], ValueType)}.
+     */
+    public List<Record> deserializeList(ByteBuffer buffer, ValueType valueType) {
+        BinaryRecordReader reader = new BinaryRecordReader(buffer, valueType);
+        List<Record> records = new ArrayList<>();
+        while (reader.hasNext()) {
+            records.add(reader.next());
+        }
+        return records;
+    }
+
+    private static BinaryRecordWriter write(LoggingRecord openMucRecord) {
+        BinaryRecordWriter writer = writers.get();
+        writer.reset();
+        writer.writeRecord(openMucRecord.getRecord());
+        return writer;
+    }
+
+    private static BinaryRecordWriter write(List<LoggingRecord> openMucRecords) {
+        BinaryRecordWriter writer = writers.get();
+        writer.reset();
+        for (LoggingRecord openMucRecord : openMucRecords) {
+            writer.writeRecord(openMucRecord.getRecord());
+        }
+        return writer;
+    }
+
+}
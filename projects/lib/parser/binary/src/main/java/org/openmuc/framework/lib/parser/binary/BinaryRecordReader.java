@@ -0,0 +1,195 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.lib.parser.binary;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.openmuc.framework.data.BooleanValue;
+import org.openmuc.framework.data.ByteArrayValue;
+import org.openmuc.framework.data.ByteValue;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.FloatValue;
+import org.openmuc.framework.data.IntValue;
+import org.openmuc.framework.data.LongValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.ShortValue;
+import org.openmuc.framework.data.StringValue;
+import org.openmuc.framework.data.Value;
+import org.openmuc.framework.data.ValueType;
+
+/**
+ * Reads the records of one message in the binary format described in {@link BinaryParserServiceImpl} from a
+ * {@link ByteBuffer}. The reader keeps the timestamp of the previous record to resolve the timestamp differences of a
+ * list. Values are converted to the requested {@link ValueType} if they were written with another type.
+ */
+final class BinaryRecordReader {
+
+    private final ByteBuffer buffer;
+    private final ValueType valueType;
+    private long previousTimestamp;
+
+    BinaryRecordReader(ByteBuffer buffer, ValueType valueType) {
+        this.buffer = buffer;
+        this.valueType = valueType;
+    }
+
+    boolean hasNext() {
+        return buffer.hasRemaining();
+    }
+
+    /**
+     * Reads the next record and advances the position of the buffer behind it.
+     *
+     * @throws IllegalArgumentException
+     *             if the bytes are no valid record
+     */
+    Record next() {
+        int start = buffer.position();
+        try {
+            return readRecord();
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Malformed binary record at offset " + start + ", record is truncated");
+        }
+    }
+
+    private Record readRecord() {
+        int offset = buffer.position();
+        int header = buffer.get() & 0xFF;
+        if ((header & ~(BinaryFormat.HAS_TIMESTAMP | BinaryFormat.TAG_MASK)) != 0) {
+            throw new IllegalArgumentException("Malformed binary record, unknown header " + header + " at offset "
+                    + offset);
+        }
+        Flag flag = Flag.newFlag(buffer.get());
+
+        Long timestamp = null;
+        if ((header & BinaryFormat.HAS_TIMESTAMP) != 0) {
+            previousTimestamp += readSignedVarint();
+            timestamp = previousTimestamp;
+        }
+
+        Value value = readValue(header & BinaryFormat.TAG_MASK, offset);
+        if (value != null && value.getValueType() != valueType) {
+            value = convert(value);
+        }
+        return new Record(value, timestamp, flag);
+    }
+
+    private Value readValue(int tag, int offset) {
+        switch (tag) {
+        case BinaryFormat.NONE:
+            return null;
+        case BinaryFormat.FALSE:
+            return new BooleanValue(false);
+        case BinaryFormat.TRUE:
+            return new BooleanValue(true);
+        case BinaryFormat.DOUBLE:
+            return new DoubleValue(Double.longBitsToDouble(buffer.getLong()));
+        case BinaryFormat.FLOAT:
+            return new FloatValue(Float.intBitsToFloat(buffer.getInt()));
+        case BinaryFormat.LONG:
+            return new LongValue(readSignedVarint());
+        case BinaryFormat.INTEGER:
+            return new IntValue((int) readSignedVarint());
+        case BinaryFormat.SHORT:
+            return new ShortValue((short) readSignedVarint());
+        case BinaryFormat.BYTE:
+            return new ByteValue(buffer.get());
+        case BinaryFormat.STRING:
+            return new StringValue(readString());
+        case BinaryFormat.BYTE_ARRAY:
+            byte[] bytes = new byte[readLength()];
+            buffer.get(bytes);
+            return new ByteArrayValue(bytes);
+        default:
+            throw new IllegalArgumentException("Malformed binary record, unknown value tag " + tag + " at offset "
+                    + offset);
+        }
+    }
+
+    private Value convert(Value value) {
+        switch (valueType) {
+        case BOOLEAN:
+            return new BooleanValue(value.asBoolean());
+        case BYTE:
+            return new ByteValue(value.asByte());
+        case BYTE_ARRAY:
+            return new ByteArrayValue(value.asByteArray());
+        case DOUBLE:
+            return new DoubleValue(value.asDouble());
+        case FLOAT:
+            return new FloatValue(value.asFloat());
+        case INTEGER:
+            return new IntValue(value.asInt());
+        case LONG:
+            return new LongValue(value.asLong());
+        case SHORT:
+            return new ShortValue(value.asShort());
+        case STRING:
+            return new StringValue(value.asString());
+        default:
+            return value;
+        }
+    }
+
+    private String readString() {
+        int length = readLength();
+        if (buffer.hasArray()) {
+            int position = buffer.position();
+            String s = new String(buffer.array(), buffer.arrayOffset() + position, length, StandardCharsets.UTF_8);
+            buffer.position(position + length);
+            return s;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int readLength() {
+        long length = readVarint();
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        return (int) length;
+    }
+
+    private long readSignedVarint() {
+        long value = readVarint();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private long readVarint() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed binary record, varint longer than 10 bytes at offset "
+                + buffer.position());
+    }
+
+}
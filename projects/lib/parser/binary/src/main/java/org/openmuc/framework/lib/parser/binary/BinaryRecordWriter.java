@@ -0,0 +1,229 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.lib.parser.binary;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.Value;
+
+/**
+ * Writer of the binary record format described in {@link BinaryParserServiceImpl} into a reusable byte array. Not
+ * thread safe, {@link BinaryParserServiceImpl} keeps one writer per thread.
+ */
+final class BinaryRecordWriter {
+
+    private static final int INITIAL_CAPACITY = 256;
+    /**
+     * buffers which grew beyond this size for a large list are not kept for the next message
+     */
+    private static final int MAX_RETAINED_CAPACITY = 1 << 20;
+
+    private byte[] buf = new byte[INITIAL_CAPACITY];
+    private int count;
+    private long previousTimestamp;
+
+    /**
+     * Starts a new message, the timestamp of the next record is written absolute.
+     */
+    void reset() {
+        if (buf.length > MAX_RETAINED_CAPACITY) {
+            buf = new byte[INITIAL_CAPACITY];
+        }
+        count = 0;
+        previousTimestamp = 0;
+    }
+
+    int size() {
+        return count;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buf, count);
+    }
+
+    /**
+     * Copies the written bytes into the buffer with one bulk put.
+     *
+     * @throws BufferOverflowException
+     *             if the remaining space of the buffer is too small, the buffer is not modified in this case
+     */
+    void writeTo(ByteBuffer buffer) {
+        buffer.put(buf, 0, count);
+    }
+
+    void writeTo(OutputStream outputStream) throws IOException {
+        outputStream.write(buf, 0, count);
+    }
+
+    /**
+     * Appends the record. Its timestamp is written as difference to the timestamp of the previous record of the
+     * message.
+     */
+    void writeRecord(Record record) {
+        Value value = record.getValue();
+        Long timestamp = record.getTimestamp();
+        Flag flag = record.getFlag();
+
+        int tag = BinaryFormat.NONE;
+        if (value != null && flag == Flag.VALID) {
+            tag = BinaryFormat.tagOf(value);
+        }
+        ensureCapacity(2);
+        buf[count++] = (byte) (timestamp != null ? BinaryFormat.HAS_TIMESTAMP | tag : tag);
+        buf[count++] = flag.getCode();
+        if (timestamp != null) {
+            writeSignedVarint(timestamp - previousTimestamp);
+            previousTimestamp = timestamp;
+        }
+
+        switch (tag) {
+        case BinaryFormat.DOUBLE:
+            writeFixed64(Double.doubleToRawLongBits(value.asDouble()));
+            break;
+        case BinaryFormat.FLOAT:
+            writeFixed32(Float.floatToRawIntBits(value.asFloat()));
+            break;
+        case BinaryFormat.LONG:
+            writeSignedVarint(value.asLong());
+            break;
+        case BinaryFormat.INTEGER:
+            writeSignedVarint(value.asInt());
+            break;
+        case BinaryFormat.SHORT:
+            writeSignedVarint(value.asShort());
+            break;
+        case BinaryFormat.BYTE:
+            ensureCapacity(1);
+            buf[count++] = value.asByte();
+            break;
+        case BinaryFormat.STRING:
+            writeString(value.asString());
+            break;
+        case BinaryFormat.BYTE_ARRAY:
+            byte[] bytes = value.asByteArray();
+            writeVarint(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buf, count, bytes.length);
+            count += bytes.length;
+            break;
+        default:
+            // NONE, FALSE and TRUE are completely described by the tag
+            break;
+        }
+    }
+
+    private void writeSignedVarint(long value) {
+        writeVarint((value << 1) ^ (value >> 63));
+    }
+
+    private void writeVarint(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buf[count++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf[count++] = (byte) value;
+    }
+
+    private void writeFixed64(long value) {
+        ensureCapacity(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buf[count++] = (byte) (value >>> shift);
+        }
+    }
+
+    private void writeFixed32(int value) {
+        ensureCapacity(4);
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            buf[count++] = (byte) (value >>> shift);
+        }
+    }
+
+    /**
+     * Writes the UTF-8 length and the UTF-8 bytes of the string without an intermediate byte array. Unpaired
+     * surrogates are replaced by '?' like {@link String#getBytes(java.nio.charset.Charset)} does.
+     */
+    private void writeString(String s) {
+        int length = s.length();
+        int utf8Length = 0;
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                utf8Length++;
+            }
+            else if (c < 0x800) {
+                utf8Length += 2;
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                utf8Length += 4;
+                i++;
+            }
+            else if (Character.isSurrogate(c)) {
+                utf8Length++;
+            }
+            else {
+                utf8Length += 3;
+            }
+        }
+        writeVarint(utf8Length);
+        ensureCapacity(utf8Length);
+
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                buf[count++] = (byte) c;
+            }
+            else if (c < 0x800) {
+                buf[count++] = (byte) (0xC0 | (c >> 6));
+                buf[count++] = (byte) (0x80 | (c & 0x3F));
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, s.charAt(++i));
+                buf[count++] = (byte) (0xF0 | (codePoint >> 18));
+                buf[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buf[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buf[count++] = (byte) (0x80 | (codePoint & 0x3F));
+            }
+            else if (Character.isSurrogate(c)) {
+                buf[count++] = '?';
+            }
+            else {
+                buf[count++] = (byte) (0xE0 | (c >> 12));
+                buf[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[count++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private void ensureCapacity(int additional) {
+        if (count + additional > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length << 1, count + additional));
+        }
+    }
+
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.lib.parser.binary;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.data.BooleanValue;
+import org.openmuc.framework.data.ByteArrayValue;
+import org.openmuc.framework.data.ByteValue;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.FloatValue;
+import org.openmuc.framework.data.IntValue;
+import org.openmuc.framework.data.LongValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.ShortValue;
+import org.openmuc.framework.data.StringValue;
+import org.openmuc.framework.data.Value;
+import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+
+class BinaryParserServiceImplTest {
+
+    private static final long TIMESTAMP = 1582722316000L;
+
+    private BinaryParserServiceImpl parserService;
+
+    @BeforeEach
+    void setup() {
+        parserService = new BinaryParserServiceImpl();
+    }
+
+    @Test
+    void roundTripOfAllValueTypes() {
+        List<Value> values = Arrays.asList(new BooleanValue(true), new BooleanValue(false), new ByteValue((byte) -7),
+                new ShortValue(Short.MIN_VALUE), new IntValue(Integer.MAX_VALUE), new LongValue(Long.MIN_VALUE),
+                new FloatValue(-1.5f), new DoubleValue(Double.NaN), new DoubleValue(230.17),
+                new StringValue("a\n\u00e9\u20ac\ud83d\ude00"), new ByteArrayValue(new byte[] { 0, 10, -1 }));
+
+        for (Value value : values) {
+            byte[] serialized = parserService.serialize(new LoggingRecord("c", new Record(value, TIMESTAMP)));
+            Record record = parserService.deserialize(serialized, value.getValueType());
+
+            assertEquals(value, record.getValue());
+            assertEquals(TIMESTAMP, record.getTimestamp().longValue());
+            assertEquals(Flag.VALID, record.getFlag());
+        }
+    }
+
+    @Test
+    void doubleRecordTakes16Bytes() {
+        byte[] serialized = parserService
+                .serialize(new LoggingRecord("c", new Record(new DoubleValue(230.17), TIMESTAMP)));
+
+        // header, flag, 6 bytes timestamp, 8 bytes double
+        assertEquals(16, serialized.length);
+    }
+
+    @Test
+    void listTimestampsAreDifferences() {
+        List<LoggingRecord> loggingRecords = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            loggingRecords.add(new LoggingRecord("c" + i, new Record(new IntValue(i), TIMESTAMP + (i / 5) * 1000)));
+        }
+
+        byte[] serialized = parserService.serialize(loggingRecords);
+        // first record as above with a 1 byte integer, the others 1 byte header, flag, timestamp and integer, the
+        // 1000 ms step takes 2 bytes
+        assertEquals(9 + 9 * 4 + 1, serialized.length);
+
+        List<Record> records = parserService.deserializeList(serialized, ValueType.INTEGER);
+        assertEquals(10, records.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, records.get(i).getValue().asInt());
+            assertEquals(TIMESTAMP + (i / 5) * 1000, records.get(i).getTimestamp().longValue());
+        }
+    }
+
+    @Test
+    void recordsWithoutTimestampDoNotChangeTheReference() {
+        List<LoggingRecord> loggingRecords = Arrays.asList(
+                new LoggingRecord("c1", new Record(new LongValue(1), TIMESTAMP)),
+                new LoggingRecord("c2", new Record(new LongValue(2), null)),
+                new LoggingRecord("c3", new Record(new LongValue(3), TIMESTAMP - 5)));
+
+        List<Record> records = parserService.deserializeList(parserService.serialize(loggingRecords), ValueType.LONG);
+
+        assertEquals(TIMESTAMP, records.get(0).getTimestamp().longValue());
+        assertNull(records.get(1).getTimestamp());
+        assertEquals(TIMESTAMP - 5, records.get(2).getTimestamp().longValue());
+    }
+
+    @Test
+    void invalidRecordHasNoValue() {
+        byte[] serialized = parserService.serialize(
+                new LoggingRecord("c", new Record(new DoubleValue(3.0), TIMESTAMP, Flag.DRIVER_ERROR_READ_FAILURE)));
+        Record record = parserService.deserialize(serialized, ValueType.DOUBLE);
+
+        assertNull(record.getValue());
+        assertEquals(Flag.DRIVER_ERROR_READ_FAILURE, record.getFlag());
+    }
+
+    @Test
+    void valueIsConvertedToRequestedType() {
+        byte[] serialized = parserService
+                .serialize(new LoggingRecord("c", new Record(new IntValue(42), TIMESTAMP)));
+
+        assertEquals(new DoubleValue(42.0), parserService.deserialize(serialized, ValueType.DOUBLE).getValue());
+        assertEquals(new StringValue("42"), parserService.deserialize(serialized, ValueType.STRING).getValue());
+    }
+
+    @Test
+    void serializeIntoByteBufferAndReadRecordsOneAfterAnother() throws IOException {
+        LoggingRecord first = new LoggingRecord("c1", new Record(new StringValue("first"), TIMESTAMP));
+        LoggingRecord second = new LoggingRecord("c2", new Record(new StringValue("second"), TIMESTAMP + 1));
+
+        ByteBuffer buffer = ByteBuffer.allocate(100);
+        parserService.serialize(first, buffer);
+        parserService.serialize(second, buffer);
+        buffer.flip();
+
+        assertEquals("first", parserService.deserialize(buffer, ValueType.STRING).getValue().asString());
+        assertEquals(TIMESTAMP + 1, parserService.deserialize(buffer, ValueType.STRING).getTimestamp().longValue());
+        assertFalse(buffer.hasRemaining());
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        parserService.serialize(Arrays.asList(first, second), outputStream);
+        assertArrayEquals(parserService.serialize(Arrays.asList(first, second)), outputStream.toByteArray());
+
+        ByteBuffer tooSmall = ByteBuffer.allocate(4);
+        assertThrows(BufferOverflowException.class, () -> parserService.serialize(first, tooSmall));
+        assertEquals(0, tooSmall.position());
+    }
+
+    @Test
+    void malformedMessageThrows() {
+        byte[] serialized = parserService
+                .serialize(new LoggingRecord("c", new Record(new DoubleValue(1.0), TIMESTAMP)));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> parserService.deserialize(Arrays.copyOf(serialized, serialized.length - 1), ValueType.DOUBLE));
+        assertThrows(IllegalArgumentException.class,
+                () -> parserService.deserialize(new byte[] { 0x0F, 1 }, ValueType.DOUBLE));
+        assertThrows(IllegalArgumentException.class,
+                () -> parserService.deserialize(new byte[] { 0, 99 }, ValueType.DOUBLE));
+    }
+
+}
@@ -0,0 +1,416 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.lib.parser.openmuc;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.openmuc.framework.data.BooleanValue;
+import org.openmuc.framework.data.ByteArrayValue;
+import org.openmuc.framework.data.ByteValue;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.FloatValue;
+import org.openmuc.framework.data.IntValue;
+import org.openmuc.framework.data.LongValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.ShortValue;
+import org.openmuc.framework.data.StringValue;
+import org.openmuc.framework.data.Value;
+import org.openmuc.framework.data.ValueType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads one record of the OpenMUC JSON format directly from the bytes of a buffer, without copying the message or
+ * building a JSON tree. Numbers are parsed from the bytes, only string values and non-integer numbers are decoded to a
+ * String. Like Gson, unknown members are skipped, numbers may be quoted and a missing member keeps its default.
+ */
+final class JsonRecordReader {
+
+    private static final Logger logger = LoggerFactory.getLogger(JsonRecordReader.class);
+
+    private static final byte[] TIMESTAMP = "timestamp".getBytes();
+    private static final byte[] FLAG = "flag".getBytes();
+    private static final byte[] VALUE = "value".getBytes();
+    private static final byte[] NULL = "null".getBytes();
+
+    private final ByteBuffer buffer;
+    private final int limit;
+    private int pos;
+
+    // bounds of the last scalar read by readScalar(), without the quotes of a string
+    private int scalarStart;
+    private int scalarEnd;
+    private boolean scalarQuoted;
+    private boolean scalarEscaped;
+
+    private JsonRecordReader(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.pos = buffer.position();
+        this.limit = buffer.limit();
+    }
+
+    /**
+     * Reads a record starting at the position of the buffer and advances the position past it and the whitespace
+     * following it, so newline separated records can be read one after another.
+     *
+     * @return the record or null if the message is the JSON literal null
+     * @throws IllegalArgumentException
+     *             if the message is not a valid record
+     */
+    static Record read(ByteBuffer buffer, ValueType valueType) {
+        return new JsonRecordReader(buffer).readRecord(valueType);
+    }
+
+    private Record readRecord(ValueType valueType) {
+        skipWhitespace();
+        if (peek() == 'n') {
+            readScalar();
+            if (!matches(scalarStart, scalarEnd, NULL)) {
+                throw syntaxError("'{'");
+            }
+            finish();
+            return null;
+        }
+        expect('{');
+        Long timestamp = null;
+        Flag flag = Flag.DISABLED;
+        Value value = null;
+
+        skipWhitespace();
+        if (peek() == '}') {
+            pos++;
+        }
+        else {
+            while (true) {
+                skipWhitespace();
+                expect('"');
+                int keyStart = pos;
+                skipString();
+                int keyEnd = pos - 1;
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+
+                if (matches(keyStart, keyEnd, TIMESTAMP)) {
+                    if (readScalar()) {
+                        timestamp = scalarLong();
+                    }
+                }
+                else if (matches(keyStart, keyEnd, FLAG)) {
+                    if (readScalar()) {
+                        flag = scalarFlag();
+                    }
+                }
+                else if (matches(keyStart, keyEnd, VALUE)) {
+                    value = readScalar() ? scalarValue(valueType) : null;
+                }
+                else {
+                    skipValue();
+                }
+
+                skipWhitespace();
+                byte b = next();
+                if (b == '}') {
+                    break;
+                }
+                if (b != ',') {
+                    throw syntaxError("',' or '}'");
+                }
+            }
+        }
+        finish();
+        return new Record(value, timestamp, flag);
+    }
+
+    private void finish() {
+        skipWhitespace();
+        buffer.position(pos);
+    }
+
+    /**
+     * Reads a string, number or literal.
+     *
+     * @return false if the scalar is the literal null
+     */
+    private boolean readScalar() {
+        byte b = peek();
+        if (b == '{' || b == '[') {
+            throw syntaxError("a string, number or literal");
+        }
+        if (b == '"') {
+            pos++;
+            scalarStart = pos;
+            scalarEscaped = skipString();
+            scalarEnd = pos - 1;
+            scalarQuoted = true;
+            return true;
+        }
+        scalarStart = pos;
+        while (pos < limit && !isDelimiter(buffer.get(pos))) {
+            pos++;
+        }
+        scalarEnd = pos;
+        scalarQuoted = false;
+        scalarEscaped = false;
+        if (scalarStart == scalarEnd) {
+            throw syntaxError("a value");
+        }
+        return !matches(scalarStart, scalarEnd, NULL);
+    }
+
+    private Value scalarValue(ValueType valueType) {
+        switch (valueType) {
+        case BOOLEAN:
+            return new BooleanValue(Boolean.parseBoolean(scalarString()));
+        case BYTE_ARRAY:
+            return new ByteArrayValue(scalarBase64());
+        case BYTE:
+            return new ByteValue((byte) scalarLong());
+        case DOUBLE:
+            return new DoubleValue(scalarDouble());
+        case FLOAT:
+            return new FloatValue((float) scalarDouble());
+        case INTEGER:
+            return new IntValue((int) scalarLong());
+        case LONG:
+            return new LongValue(scalarLong());
+        case SHORT:
+            return new ShortValue((short) scalarLong());
+        case STRING:
+            return new StringValue(scalarString());
+        default:
+            logger.warn("Unsupported ValueType: {}", valueType);
+            return null;
+        }
+    }
+
+    private Flag scalarFlag() {
+        String name = scalarString();
+        try {
+            return Flag.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown flag " + name, e);
+        }
+    }
+
+    private long scalarLong() {
+        int i = scalarStart;
+        boolean negative = i < scalarEnd && buffer.get(i) == '-';
+        if (negative) {
+            i++;
+        }
+        // up to 18 digits can not overflow
+        if (!scalarEscaped && i < scalarEnd && scalarEnd - i <= 18) {
+            long v = 0;
+            for (; i < scalarEnd; i++) {
+                int digit = buffer.get(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                v = v * 10 + digit;
+            }
+            if (i == scalarEnd) {
+                return negative ? -v : v;
+            }
+        }
+        try {
+            return new BigDecimal(scalarString().trim()).longValue();
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Expected a number but was " + scalarString(), e);
+        }
+    }
+
+    private double scalarDouble() {
+        try {
+            return Double.parseDouble(scalarString());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Expected a number but was " + scalarString(), e);
+        }
+    }
+
+    private byte[] scalarBase64() {
+        if (scalarEscaped) {
+            return Base64.getDecoder().decode(scalarString());
+        }
+        ByteBuffer base64 = buffer.duplicate();
+        base64.limit(scalarEnd);
+        base64.position(scalarStart);
+        ByteBuffer decoded = Base64.getDecoder().decode(base64);
+        if (decoded.hasArray() && decoded.arrayOffset() == 0 && decoded.remaining() == decoded.array().length) {
+            return decoded.array();
+        }
+        byte[] bytes = new byte[decoded.remaining()];
+        decoded.get(bytes);
+        return bytes;
+    }
+
+    private String scalarString() {
+        if (!scalarEscaped) {
+            return decode(scalarStart, scalarEnd);
+        }
+        StringBuilder sb = new StringBuilder(scalarEnd - scalarStart);
+        int start = scalarStart;
+        for (int i = scalarStart; i < scalarEnd; i++) {
+            if (buffer.get(i) != '\\') {
+                continue;
+            }
+            sb.append(decode(start, i));
+            byte escaped = buffer.get(++i);
+            switch (escaped) {
+            case 't':
+                sb.append('\t');
+                break;
+            case 'b':
+                sb.append('\b');
+                break;
+            case 'n':
+                sb.append('\n');
+                break;
+            case 'r':
+                sb.append('\r');
+                break;
+            case 'f':
+                sb.append('\f');
+                break;
+            case 'u':
+                if (i + 4 >= scalarEnd) {
+                    throw syntaxError("four hex digits");
+                }
+                sb.append((char) Integer.parseInt(decode(i + 1, i + 5), 16));
+                i += 4;
+                break;
+            default:
+                sb.append((char) escaped);
+                break;
+            }
+            start = i + 1;
+        }
+        sb.append(decode(start, scalarEnd));
+        return sb.toString();
+    }
+
+    private String decode(int start, int end) {
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + start, end - start, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Skips to the byte after the closing quote of a string whose opening quote was already read.
+     *
+     * @return true if the string contains escape sequences
+     */
+    private boolean skipString() {
+        boolean escaped = false;
+        while (pos < limit) {
+            byte b = buffer.get(pos++);
+            if (b == '"') {
+                return escaped;
+            }
+            if (b == '\\') {
+                escaped = true;
+                pos++;
+            }
+        }
+        throw syntaxError("'\"'");
+    }
+
+    private void skipValue() {
+        byte b = peek();
+        if (b != '{' && b != '[') {
+            readScalar();
+            return;
+        }
+        int depth = 0;
+        do {
+            b = next();
+            if (b == '"') {
+                skipString();
+            }
+            else if (b == '{' || b == '[') {
+                depth++;
+            }
+            else if (b == '}' || b == ']') {
+                depth--;
+            }
+        } while (depth > 0);
+    }
+
+    private void skipWhitespace() {
+        while (pos < limit) {
+            byte b = buffer.get(pos);
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private static boolean isDelimiter(byte b) {
+        return b == ',' || b == '}' || b == ']' || b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private boolean matches(int start, int end, byte[] expected) {
+        if (end - start != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (buffer.get(start + i) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte peek() {
+        if (pos >= limit) {
+            throw syntaxError("more input");
+        }
+        return buffer.get(pos);
+    }
+
+    private byte next() {
+        byte b = peek();
+        pos++;
+        return b;
+    }
+
+    private void expect(char c) {
+        if (next() != c) {
+            throw syntaxError("'" + c + "'");
+        }
+    }
+
+    private IllegalArgumentException syntaxError(String expected) {
+        return new IllegalArgumentException("Malformed OpenMUC record, expected " + expected + " at offset " + pos);
+    }
+
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.lib.parser.openmuc;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.Value;
+import org.openmuc.framework.parser.spi.SerializationException;
+
+/**
+ * Streaming writer of the OpenMUC JSON format <code>{"timestamp":..,"flag":"..","value":..}</code> into a reusable byte
+ * array. The output is UTF-8 and equal to what Gson produced for the same record, without building a JSON tree or
+ * intermediate strings. Not thread safe, {@link OpenmucParserServiceImpl} keeps one writer per thread.
+ */
+final class JsonRecordWriter {
+
+    private static final int INITIAL_CAPACITY = 256;
+    /**
+     * buffers which grew beyond this size for a large list are not kept for the next message
+     */
+    private static final int MAX_RETAINED_CAPACITY = 1 << 20;
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+    private static final byte[] TIMESTAMP = "\"timestamp\":".getBytes();
+    private static final byte[] FLAG = "\"flag\":\"".getBytes();
+    private static final byte[] VALUE = ",\"value\":".getBytes();
+    private static final byte[][] FLAG_NAMES = new byte[Flag.values().length][];
+
+    static {
+        for (Flag flag : Flag.values()) {
+            FLAG_NAMES[flag.ordinal()] = flag.toString().getBytes();
+        }
+    }
+
+    private byte[] buf = new byte[INITIAL_CAPACITY];
+    private int count;
+
+    void reset() {
+        if (buf.length > MAX_RETAINED_CAPACITY) {
+            buf = new byte[INITIAL_CAPACITY];
+        }
+        count = 0;
+    }
+
+    int size() {
+        return count;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buf, count);
+    }
+
+    /**
+     * Copies the written bytes into the buffer with one bulk put.
+     *
+     * @throws BufferOverflowException
+     *             if the remaining space of the buffer is too small, the buffer is not modified in this case
+     */
+    void writeTo(ByteBuffer buffer) {
+        buffer.put(buf, 0, count);
+    }
+
+    void writeTo(OutputStream outputStream) throws IOException {
+        outputStream.write(buf, 0, count);
+    }
+
+    /**
+     * @throws SerializationException
+     *             if the value is NaN or infinite, which JSON cannot represent. The record may be partially written in
+     *             this case.
+     */
+    void writeRecord(Record record) throws SerializationException {
+        Value value = record.getValue();
+        Long timestamp = record.getTimestamp();
+        write('{');
+        if (timestamp != null) {
+            write(TIMESTAMP);
+            writeLong(timestamp);
+            write(',');
+        }
+        write(FLAG);
+        write(FLAG_NAMES[record.getFlag().ordinal()]);
+        write('"');
+
+        if (value != null && record.getFlag() == Flag.VALID) {
+            switch (value.getValueType()) {
+            case BOOLEAN:
+                write(VALUE);
+                writeAscii(value.asBoolean() ? "true" : "false");
+                break;
+            case BYTE:
+                write(VALUE);
+                writeLong(value.asByte());
+                break;
+            case BYTE_ARRAY:
+                write(VALUE);
+                write('"');
+                write(Base64.getEncoder().encode(value.asByteArray()));
+                write('"');
+                break;
+            case DOUBLE:
+                write(VALUE);
+                writeAscii(Double.toString(finite(value.asDouble())));
+                break;
+            case FLOAT:
+                write(VALUE);
+                writeAscii(Float.toString((float) finite(value.asFloat())));
+                break;
+            case INTEGER:
+                write(VALUE);
+                writeLong(value.asInt());
+                break;
+            case LONG:
+                write(VALUE);
+                writeLong(value.asLong());
+                break;
+            case SHORT:
+                write(VALUE);
+                writeLong(value.asShort());
+                break;
+            case STRING:
+                write(VALUE);
+                writeString(value.asString());
+                break;
+            default:
+                break;
+            }
+        }
+        write('}');
+    }
+
+    private static double finite(double value) throws SerializationException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new SerializationException(value + " is not a valid JSON number.");
+        }
+        return value;
+    }
+
+    void write(int b) {
+        ensureCapacity(1);
+        buf[count++] = (byte) b;
+    }
+
+    private void write(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buf, count, bytes.length);
+        count += bytes.length;
+    }
+
+    private void writeAscii(String s) {
+        int length = s.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            buf[count++] = (byte) s.charAt(i);
+        }
+    }
+
+    private void writeLong(long v) {
+        if (v == Long.MIN_VALUE) {
+            writeAscii(Long.toString(v));
+            return;
+        }
+        ensureCapacity(20);
+        if (v < 0) {
+            buf[count++] = '-';
+            v = -v;
+        }
+        int digits = 1;
+        for (long rest = v / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        int end = count + digits;
+        for (int i = end - 1; i >= count; i--) {
+            buf[i] = (byte) ('0' + v % 10);
+            v /= 10;
+        }
+        count = end;
+    }
+
+    /**
+     * Writes a quoted string, escaped like Gson does without HTML escaping, and encoded as UTF-8.
+     */
+    private void writeString(String s) {
+        int length = s.length();
+        // worst case is a \\u escape for every char
+        ensureCapacity(length * 6 + 2);
+        buf[count++] = '"';
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (c >= 0x20 && c != '"' && c != '\\') {
+                    buf[count++] = (byte) c;
+                }
+                else {
+                    writeEscaped(c);
+                }
+            }
+            else if (c < 0x800) {
+                buf[count++] = (byte) (0xc0 | c >> 6);
+                buf[count++] = (byte) (0x80 | c & 0x3f);
+            }
+            else if (c == '\u2028' || c == '\u2029') {
+                writeEscaped(c);
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, s.charAt(++i));
+                buf[count++] = (byte) (0xf0 | codePoint >> 18);
+                buf[count++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+                buf[count++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+                buf[count++] = (byte) (0x80 | codePoint & 0x3f);
+            }
+            else if (Character.isSurrogate(c)) {
+                // unpaired surrogate, replaced like String.getBytes does
+                buf[count++] = '?';
+            }
+            else {
+                buf[count++] = (byte) (0xe0 | c >> 12);
+                buf[count++] = (byte) (0x80 | c >> 6 & 0x3f);
+                buf[count++] = (byte) (0x80 | c & 0x3f);
+            }
+        }
+        buf[count++] = '"';
+    }
+
+    private void writeEscaped(char c) {
+        buf[count++] = '\\';
+        switch (c) {
+        case '"':
+            buf[count++] = '"';
+            break;
+        case '\\':
+            buf[count++] = '\\';
+            break;
+        case '\t':
+            buf[count++] = 't';
+            break;
+        case '\b':
+            buf[count++] = 'b';
+            break;
+        case '\n':
+            buf[count++] = 'n';
+            break;
+        case '\r':
+            buf[count++] = 'r';
+            break;
+        case '\f':
+            buf[count++] = 'f';
+            break;
+        default:
+            buf[count++] = 'u';
+            buf[count++] = HEX[c >> 12 & 0xf];
+            buf[count++] = HEX[c >> 8 & 0xf];
+            buf[count++] = HEX[c >> 4 & 0xf];
+            buf[count++] = HEX[c & 0xf];
+            break;
+        }
+    }
+
+    private void ensureCapacity(int additional) {
+        if (count + additional > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + additional));
+        }
+    }
+
+}
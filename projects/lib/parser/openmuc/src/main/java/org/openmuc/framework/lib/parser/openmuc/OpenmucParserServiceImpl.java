@@ -21,168 +21,85 @@
 
 package org.openmuc.framework.lib.parser.openmuc;
 
-import java.lang.reflect.Type;
-import java.util.Base64;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.List;
 
-import org.openmuc.framework.data.BooleanValue;
-import org.openmuc.framework.data.ByteArrayValue;
-import org.openmuc.framework.data.ByteValue;
-import org.openmuc.framework.data.DoubleValue;
-import org.openmuc.framework.data.Flag;
-import org.openmuc.framework.data.FloatValue;
-import org.openmuc.framework.data.IntValue;
-import org.openmuc.framework.data.LongValue;
 import org.openmuc.framework.data.Record;
-import org.openmuc.framework.data.ShortValue;
-import org.openmuc.framework.data.StringValue;
-import org.openmuc.framework.data.Value;
 import org.openmuc.framework.data.ValueType;
 import org.openmuc.framework.datalogger.spi.LoggingRecord;
 import org.openmuc.framework.parser.spi.ParserService;
 import org.openmuc.framework.parser.spi.SerializationException;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.InstanceCreator;
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParseException;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
 
 /**
  * Parser implementation for OpenMUC to OpenMUC communication e.g. for the AMQP driver.
+ * <p>
+ * Records are written as UTF-8 JSON objects <code>{"timestamp":..,"flag":"..","value":..}</code>, lists as one object
+ * per line. The service is thread safe without locking: every thread serializes into a writer of its own whose buffer
+ * is reused for the next message, and deserialization reads the message bytes in place.
  */
 public class OpenmucParserServiceImpl implements ParserService {
 
-    private final Logger logger = LoggerFactory.getLogger(OpenmucParserServiceImpl.class);
+    private static final ThreadLocal<JsonRecordWriter> writers = ThreadLocal.withInitial(JsonRecordWriter::new);
 
-    private final Gson gson;
-    private ValueType valueType;
-
-    public OpenmucParserServiceImpl() {
-        GsonBuilder gsonBuilder = new GsonBuilder();
-        gsonBuilder.registerTypeAdapter(Record.class, new RecordInstanceCreator());
-        gsonBuilder.registerTypeAdapter(Value.class, new ValueDeserializer());
-        gsonBuilder.registerTypeAdapter(Record.class, new RecordAdapter());
-        gsonBuilder.disableHtmlEscaping();
-        gson = gsonBuilder.create();
+    @Override
+    public byte[] serialize(LoggingRecord openMucRecord) throws SerializationException {
+        return write(openMucRecord).toByteArray();
     }
 
     @Override
-    public synchronized byte[] serialize(LoggingRecord openMucRecord) {
-        String serializedString = gson.toJson(openMucRecord.getRecord());
+    public byte[] serialize(List<LoggingRecord> openMucRecords) throws SerializationException {
+        return write(openMucRecords).toByteArray();
+    }
 
-        return serializedString.getBytes();
+    @Override
+    public void serialize(LoggingRecord openMucRecord, ByteBuffer buffer) throws SerializationException {
+        write(openMucRecord).writeTo(buffer);
     }
 
     @Override
-    public synchronized byte[] serialize(List<LoggingRecord> openMucRecords) throws SerializationException {
-        StringBuilder sb = new StringBuilder();
-        for (LoggingRecord openMucRecord : openMucRecords) {
-            sb.append(new String(serialize(openMucRecord)));
-            sb.append('\n');
-        }
-        return sb.toString().getBytes();
+    public void serialize(List<LoggingRecord> openMucRecords, ByteBuffer buffer) throws SerializationException {
+        write(openMucRecords).writeTo(buffer);
     }
 
     @Override
-    public synchronized Record deserialize(byte[] byteArray, ValueType valueType) {
-        this.valueType = valueType;
-        return gson.fromJson(new String(byteArray), Record.class);
+    public void serialize(LoggingRecord openMucRecord, OutputStream outputStream)
+            throws SerializationException, IOException {
+        write(openMucRecord).writeTo(outputStream);
+    }
 
+    @Override
+    public void serialize(List<LoggingRecord> openMucRecords, OutputStream outputStream)
+            throws SerializationException, IOException {
+        write(openMucRecords).writeTo(outputStream);
     }
 
-    private class RecordInstanceCreator implements InstanceCreator<Record> {
+    @Override
+    public Record deserialize(byte[] byteArray, ValueType valueType) {
+        return JsonRecordReader.read(ByteBuffer.wrap(byteArray), valueType);
+    }
 
-        @Override
-        public Record createInstance(Type type) {
-            return new Record(Flag.DISABLED);
-        }
+    @Override
+    public Record deserialize(ByteBuffer buffer, ValueType valueType) {
+        return JsonRecordReader.read(buffer, valueType);
     }
 
-    private class RecordAdapter implements JsonSerializer<Record> {
-
-        @Override
-        public JsonElement serialize(Record record, Type typeOfSrc, JsonSerializationContext context) {
-            JsonObject obj = new JsonObject();
-            Value value = record.getValue();
-            obj.addProperty("timestamp", record.getTimestamp());
-            obj.addProperty("flag", record.getFlag().toString());
-
-            if (value != null && record.getFlag() == Flag.VALID) {
-                String valueString = "value";
-
-                switch (value.getValueType()) {
-                case BOOLEAN:
-                    obj.addProperty(valueString, record.getValue().asBoolean());
-                    break;
-                case BYTE:
-                    obj.addProperty(valueString, record.getValue().asByte());
-                    break;
-                case BYTE_ARRAY:
-                    obj.addProperty(valueString, Base64.getEncoder().encodeToString(record.getValue().asByteArray()));
-                    break;
-                case DOUBLE:
-                    obj.addProperty(valueString, record.getValue().asDouble());
-                    break;
-                case FLOAT:
-                    obj.addProperty(valueString, record.getValue().asFloat());
-                    break;
-                case INTEGER:
-                    obj.addProperty(valueString, record.getValue().asInt());
-                    break;
-                case LONG:
-                    obj.addProperty(valueString, record.getValue().asLong());
-                    break;
-                case SHORT:
-                    obj.addProperty(valueString, record.getValue().asShort());
-                    break;
-                case STRING:
-                    obj.addProperty(valueString, record.getValue().asString());
-                    break;
-                default:
-                    break;
-                }
-            }
-            return obj;
-        }
+    private static JsonRecordWriter write(LoggingRecord openMucRecord) throws SerializationException {
+        JsonRecordWriter writer = writers.get();
+        writer.reset();
+        writer.writeRecord(openMucRecord.getRecord());
+        return writer;
     }
 
-    private class ValueDeserializer implements JsonDeserializer<Value> {
-        @Override
-        public Value deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context)
-                throws JsonParseException {
-
-            switch (valueType) {
-            case BOOLEAN:
-                return new BooleanValue(json.getAsBoolean());
-            case BYTE_ARRAY:
-                return new ByteArrayValue(Base64.getDecoder().decode(json.getAsString()));
-            case BYTE:
-                return new ByteValue(json.getAsByte());
-            case DOUBLE:
-                return new DoubleValue(json.getAsDouble());
-            case FLOAT:
-                return new FloatValue(json.getAsFloat());
-            case INTEGER:
-                return new IntValue(json.getAsInt());
-            case LONG:
-                return new LongValue(json.getAsLong());
-            case SHORT:
-                return new ShortValue(json.getAsShort());
-            case STRING:
-                return new StringValue(json.getAsString());
-            default:
-                logger.warn("Unsupported ValueType: {}", valueType);
-                return null;
-            }
+    private static JsonRecordWriter write(List<LoggingRecord> openMucRecords) throws SerializationException {
+        JsonRecordWriter writer = writers.get();
+        writer.reset();
+        for (LoggingRecord openMucRecord : openMucRecords) {
+            writer.writeRecord(openMucRecord.getRecord());
+            writer.write('\n');
         }
+        return writer;
     }
 
 }
@@ -21,23 +21,38 @@
 
 package org.openmuc.framework.lib.parser.openmuc;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.openmuc.framework.data.BooleanValue;
 import org.openmuc.framework.data.ByteArrayValue;
 import org.openmuc.framework.data.DoubleValue;
 import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.FloatValue;
+import org.openmuc.framework.data.IntValue;
+import org.openmuc.framework.data.LongValue;
 import org.openmuc.framework.data.Record;
 import org.openmuc.framework.data.StringValue;
 import org.openmuc.framework.data.Value;
@@ -157,6 +172,119 @@ class OpenmucParserServiceImplTest {
         assertEquals("VALID", recordDes.getFlag().name());
     }
 
+    @Test
+    void serializeEscapedString() throws SerializationException {
+        String controlString = "{\"flag\":\"VALID\",\"value\":\"a\\\"b\\\\c\\n\\u0001\u00e9\u20ac\\u2028</>\"}";
+        Record record = new Record(new StringValue("a\"b\\c\n\u0001\u00e9\u20ac\u2028</>"), null, Flag.VALID);
+
+        byte[] serializedRecord = parserService.serialize(new LoggingRecord("test", record));
+        assertEquals(controlString, new String(serializedRecord, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void serializeInvalidRecordWithoutValue() throws SerializationException {
+        String controlString = "{\"timestamp\":1582722316,\"flag\":\"DRIVER_ERROR_READ_FAILURE\"}";
+        Record record = new Record(new DoubleValue(3.0), 1582722316L, Flag.DRIVER_ERROR_READ_FAILURE);
+
+        byte[] serializedRecord = parserService.serialize(new LoggingRecord("test", record));
+        assertEquals(controlString, new String(serializedRecord));
+    }
+
+    @Test
+    void serializeIntoByteBuffer() throws SerializationException {
+        LoggingRecord loggingRecord = new LoggingRecord("test", new Record(new LongValue(-42), 1582722316L));
+        byte[] expected = parserService.serialize(loggingRecord);
+
+        ByteBuffer buffer = ByteBuffer.allocate(100);
+        buffer.put((byte) 'x');
+        parserService.serialize(loggingRecord, buffer);
+        assertEquals(1 + expected.length, buffer.position());
+        assertArrayEquals(expected, Arrays.copyOfRange(buffer.array(), 1, buffer.position()));
+
+        ByteBuffer tooSmall = ByteBuffer.allocate(expected.length - 1);
+        assertThrows(BufferOverflowException.class, () -> parserService.serialize(loggingRecord, tooSmall));
+        assertEquals(0, tooSmall.position());
+    }
+
+    @Test
+    void serializeListToOutputStream() throws SerializationException, IOException {
+        List<LoggingRecord> openMucRecords = Arrays.asList(
+                new LoggingRecord("channel1", new Record(new BooleanValue(true), 1L)),
+                new LoggingRecord("channel2", new Record(new ByteArrayValue(new byte[] { 1, 2 }), 2L)));
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        parserService.serialize(openMucRecords, outputStream);
+        assertArrayEquals(parserService.serialize(openMucRecords), outputStream.toByteArray());
+        assertEquals("{\"timestamp\":1,\"flag\":\"VALID\",\"value\":true}\n"
+                + "{\"timestamp\":2,\"flag\":\"VALID\",\"value\":\"AQI=\"}\n", outputStream.toString("UTF-8"));
+    }
+
+    @Test
+    void deserializeRecordsOneAfterAnotherFromByteBuffer() {
+        ByteBuffer buffer = ByteBuffer.wrap(("{\"timestamp\":1,\"flag\":\"VALID\",\"value\":\"a\\nb\"}\n"
+                + "{\"timestamp\":2,\"flag\":\"VALID\",\"value\":\"\u00e9\"}\n").getBytes(StandardCharsets.UTF_8));
+
+        Record first = parserService.deserialize(buffer, ValueType.STRING);
+        Record second = parserService.deserialize(buffer, ValueType.STRING);
+
+        assertEquals("a\nb", first.getValue().asString());
+        assertEquals(1, first.getTimestamp().longValue());
+        assertEquals("\u00e9", second.getValue().asString());
+        assertEquals(2, second.getTimestamp().longValue());
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    void deserializeSkipsUnknownMembersAndAcceptsQuotedNumbers() {
+        String inputString = " { \"extra\": {\"list\": [1, {\"x\": \"}\"}]}, \"value\" : \"7\", "
+                + "\"timestamp\" : \"1582722316\", \"flag\" : \"VALID\" } ";
+
+        Record recordDes = parserService.deserialize(inputString.getBytes(), ValueType.INTEGER);
+        assertEquals(7, recordDes.getValue().asInt());
+        assertEquals(1582722316, recordDes.getTimestamp().longValue());
+    }
+
+    @Test
+    void serializeNonFiniteValueThrows() {
+        for (Value value : Arrays.<Value> asList(new DoubleValue(Double.NaN), new DoubleValue(Double.POSITIVE_INFINITY),
+                new FloatValue(Float.NEGATIVE_INFINITY))) {
+            LoggingRecord loggingRecord = new LoggingRecord("test", new Record(value, 1582722316L));
+            assertThrows(SerializationException.class, () -> parserService.serialize(loggingRecord));
+        }
+    }
+
+    @Test
+    void deserializeMalformedRecordThrows() {
+        assertThrows(IllegalArgumentException.class,
+                () -> parserService.deserialize("{\"timestamp\":1,".getBytes(), ValueType.DOUBLE));
+    }
+
+    @Test
+    void serializeConcurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                int offset = thread * 1000;
+                results.add(executor.submit(() -> {
+                    for (int i = offset; i < offset + 1000; i++) {
+                        byte[] serialized = parserService
+                                .serialize(new LoggingRecord("c", new Record(new IntValue(i), (long) i)));
+                        if (parserService.deserialize(serialized, ValueType.INTEGER).getValue().asInt() != i) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     @Test
     void serialisationAndDeserialisationAreThreadSafe() {
         // this is pretty hard to test (at least I (dwerner) could not figure out how to in 1h, so I'm giving up now)
@@ -23,8 +23,13 @@ package org.openmuc.framework.lib.rest1;
 
 import static org.openmuc.framework.lib.rest1.Const.VALUE_STRING;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.lang.reflect.Type;
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.openmuc.framework.config.ChannelConfig;
 import org.openmuc.framework.config.ChannelScanInfo;
@@ -57,6 +62,7 @@ import com.google.gson.JsonNull;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
+import com.google.gson.stream.JsonWriter;
 
 public class ToJson {
 
@@ -101,6 +107,74 @@ public class ToJson {
         jsonObject.add(Const.RECORDS, jsa);
     }
 
+    /**
+     * Returns a consumer which writes the records it receives to the writer as a JSON object with the same records list
+     * as {@link #addRecordList(List, ValueType)}, one record at a time. I/O errors of the writer are thrown as
+     * {@link UncheckedIOException}.
+     * 
+     * @param writer
+     *            the writer
+     * @param valueType
+     *            value type of the records
+     * @return the consumer, which has to be closed after the last record
+     */
+    public RecordListWriter newRecordListWriter(Writer writer, ValueType valueType) {
+        return new RecordListWriter(writer, valueType);
+    }
+
+    /**
+     * Writes records to a JSON object. The object is started with the first record, so nothing is written if no record
+     * is received before an error.
+     */
+    public class RecordListWriter implements Consumer<Record>, Closeable {
+
+        private final JsonWriter jsonWriter;
+        private final ValueType valueType;
+        private boolean started;
+
+        private RecordListWriter(Writer writer, ValueType valueType) {
+            jsonWriter = new JsonWriter(writer);
+            this.valueType = valueType;
+        }
+
+        @Override
+        public void accept(Record record) {
+            try {
+                start();
+                gson.toJson(getRestRecord(record, valueType), RestRecord.class, jsonWriter);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * @return true if a record has been written
+         */
+        public boolean isStarted() {
+            return started;
+        }
+
+        private void start() throws IOException {
+            if (!started) {
+                started = true;
+                jsonWriter.beginObject();
+                jsonWriter.name(Const.RECORDS);
+                jsonWriter.beginArray();
+            }
+        }
+
+        /**
+         * Ends the records list and the object and closes the writer.
+         */
+        @Override
+        public void close() throws IOException {
+            start();
+            jsonWriter.endArray();
+            jsonWriter.endObject();
+            jsonWriter.close();
+        }
+    }
+
     public void addChannelRecordList(List<Channel> channels) throws ClassCastException {
 
         JsonArray jsa = new JsonArray();
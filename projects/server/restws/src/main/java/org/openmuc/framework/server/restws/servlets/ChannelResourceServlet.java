@@ -21,6 +21,9 @@
 package org.openmuc.framework.server.restws.servlets;
 
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -113,7 +116,8 @@ public class ChannelResourceServlet extends GenericServlet {
             else if (pathInfoArray[1].startsWith(Const.HISTORY)) {
                 String fromParameter = request.getParameter("from");
                 String untilParameter = request.getParameter("until");
-                doGetHistory(json, channelId, fromParameter, untilParameter, response);
+                String resolutionParameter = request.getParameter("resolution");
+                doGetHistory(json, channelId, fromParameter, untilParameter, resolutionParameter, response);
             }
             else if (pathInfoArray[1].equalsIgnoreCase(Const.DRIVER_ID)) {
                 doGetDriverId(json, channelId, response);
@@ -319,13 +323,17 @@ public class ChannelResourceServlet extends GenericServlet {
         }
     }
 
+    /*
+     * Writes the records directly to the response while they are read from the data logger, so long time spans are
+     * not held in memory. Errors can only be reported as long as no record has been written.
+     */
     private void doGetHistory(ToJson json, String channelId, String fromParameter, String untilParameter,
-            HttpServletResponse response) {
+            String resolutionParameter, HttpServletResponse response) throws IOException {
         long fromTimeStamp = 0;
         long untilTimeStamp = 0;
+        long resolution = 0;
 
         List<String> channelIds = dataAccess.getAllIds();
-        List<Record> records = null;
 
         if (channelIds.contains(channelId)) {
             Channel channel = dataAccess.getChannel(channelId);
@@ -333,20 +341,47 @@ public class ChannelResourceServlet extends GenericServlet {
             try {
                 fromTimeStamp = Long.parseLong(fromParameter);
                 untilTimeStamp = Long.parseLong(untilParameter);
+                if (resolutionParameter != null) {
+                    resolution = Long.parseLong(resolutionParameter);
+                }
             } catch (NumberFormatException ex) {
                 ServletLib.sendHTTPErrorAndLogDebug(response, HttpServletResponse.SC_BAD_REQUEST, logger,
-                        "From/To value is not a long number.");
+                        "From/To/Resolution value is not a long number.");
+                return;
             }
 
+            ToJson.RecordListWriter recordListWriter = json.newRecordListWriter(
+                    new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8), channel.getValueType());
             try {
-                records = channel.getLoggedRecords(fromTimeStamp, untilTimeStamp);
+                if (resolution > 0) {
+                    channel.getLoggedRecords(fromTimeStamp, untilTimeStamp, resolution).forEach(recordListWriter);
+                }
+                else {
+                    channel.readLoggedRecords(fromTimeStamp, untilTimeStamp, recordListWriter);
+                }
             } catch (DataLoggerNotAvailableException e) {
-                ServletLib.sendHTTPErrorAndLogDebug(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, logger,
+                sendHistoryError(recordListWriter, response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
                         e.getMessage());
+                return;
             } catch (IOException e) {
-                ServletLib.sendHTTPErrorAndLogDebug(response, HttpServletResponse.SC_NOT_FOUND, logger, e.getMessage());
+                sendHistoryError(recordListWriter, response, HttpServletResponse.SC_NOT_FOUND, e.getMessage());
+                return;
+            } catch (UncheckedIOException e) {
+                logger.debug("Sending history of channel {} failed: {}", channelId, e.getMessage());
+                return;
             }
-            json.addRecordList(records, channel.getValueType());
+            recordListWriter.close();
+        }
+    }
+
+    private void sendHistoryError(ToJson.RecordListWriter recordListWriter, HttpServletResponse response,
+            int errorCode, String message) throws IOException {
+        if (recordListWriter.isStarted()) {
+            logger.warn("Reading history failed after records were sent: {}", message);
+            response.flushBuffer();
+        }
+        else {
+            ServletLib.sendHTTPErrorAndLogDebug(response, errorCode, logger, message);
         }
     }
 